@@ -1,5 +1,8 @@
 package org.arend.core.context;
 
+import org.arend.util.PersistentLinkedMap;
+import org.arend.util.PersistentLinkedSet;
+
 import java.util.*;
 
 public class Utils {
@@ -15,12 +18,11 @@ public class Utils {
 
     public SetContextSaver(Set<K> set) {
       mySet = set;
-      myOriginalSet = new HashSet<>(mySet);
+      myOriginalSet = set instanceof PersistentLinkedSet ? new PersistentLinkedSet<>(set) : new HashSet<>(set);
     }
 
     public SetContextSaver(Map<K, ?> map) {
-      mySet = map.keySet();
-      myOriginalSet = new HashSet<>(mySet);
+      this(map.keySet());
     }
 
     @Override
@@ -56,7 +58,7 @@ public class Utils {
 
     public CompleteSetContextSaver(Set<T> context) {
       myContext = context;
-      myOldContext = new LinkedHashSet<>(context);
+      myOldContext = context instanceof PersistentLinkedSet ? new PersistentLinkedSet<>(context) : new LinkedHashSet<>(context);
     }
 
     public Set<T> getCurrentContext() {
@@ -69,8 +71,12 @@ public class Utils {
 
     @Override
     public void close() {
-      myContext.clear();
-      myContext.addAll(myOldContext);
+      if (myContext instanceof PersistentLinkedSet) {
+        ((PersistentLinkedSet<T>) myContext).restore((PersistentLinkedSet<T>) myOldContext);
+      } else {
+        myContext.clear();
+        myContext.addAll(myOldContext);
+      }
     }
   }
 
@@ -80,7 +86,7 @@ public class Utils {
 
     public CompleteMapContextSaver(Map<K, V> context) {
       myContext = context;
-      myOldContext = new LinkedHashMap<>(context);
+      myOldContext = context instanceof PersistentLinkedMap ? new PersistentLinkedMap<>(context) : new LinkedHashMap<>(context);
     }
 
     public Map<K, V> getCurrentContext() {
@@ -93,8 +99,12 @@ public class Utils {
 
     @Override
     public void close() {
-      myContext.clear();
-      myContext.putAll(myOldContext);
+      if (myContext instanceof PersistentLinkedMap) {
+        ((PersistentLinkedMap<K, V>) myContext).restore((PersistentLinkedMap<K, V>) myOldContext);
+      } else {
+        myContext.clear();
+        myContext.putAll(myOldContext);
+      }
     }
   }
 }
@@ -17,18 +17,21 @@ import org.jetbrains.annotations.NotNull;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.function.Supplier;
 
 public class FunctionDefinition extends Definition implements Function, CoreFunctionDefinition {
   private DependentLink myParameters;
   private Expression myResultType;
   private Expression myResultTypeLevel;
   private Body myBody;
+  private volatile Supplier<? extends Body> myBodyLoader;
   private List<Integer> myParametersTypecheckingOrder;
   private Kind myKind = Kind.FUNC;
   private boolean myBodyIsHidden = false;
   private List<Boolean> myGoodThisParameters = Collections.emptyList();
   private List<TypeClassParameterKind> myTypeClassParameters = Collections.emptyList();
   private int myVisibleParameter = -1;
+  private int myHeight;
   private final ParametersLevels<ParametersLevel> myParametersLevels = new ParametersLevels<>();
 
   public FunctionDefinition(TCReferable referable) {
@@ -38,14 +41,33 @@ public class FunctionDefinition extends Definition implements Function, CoreFunc
 
   @Override
   public Body getBody() {
-    return isSFunc() || myBodyIsHidden ? null : myBody;
+    return isSFunc() || myBodyIsHidden ? null : getActualBody();
   }
 
   @Override
   public Body getActualBody() {
+    if (myBodyLoader != null) {
+      loadBody();
+    }
     return myBody;
   }
 
+  private synchronized void loadBody() {
+    Supplier<? extends Body> loader = myBodyLoader;
+    if (loader != null) {
+      myBody = loader.get();
+      myBodyLoader = null;
+    }
+  }
+
+  /**
+   * Sets a loader which computes the body when it is accessed for the first time.
+   */
+  public void setBodyLoader(Supplier<? extends Body> loader) {
+    myBody = null;
+    myBodyLoader = loader;
+  }
+
   public boolean isBodyHidden() {
     return myBodyIsHidden;
   }
@@ -55,6 +77,7 @@ public class FunctionDefinition extends Definition implements Function, CoreFunc
   }
 
   public void setBody(Body body) {
+    myBodyLoader = null;
     myBody = body;
   }
 
@@ -109,6 +132,18 @@ public class FunctionDefinition extends Definition implements Function, CoreFunc
     myVisibleParameter = index;
   }
 
+  /**
+   * The definitional height of a function is one plus the maximal height of functions invoked in its body.
+   * It is 0 if it is unknown.
+   */
+  public int getHeight() {
+    return myHeight;
+  }
+
+  public void setHeight(int height) {
+    myHeight = height;
+  }
+
   @Override
   public List<Integer> getParametersTypecheckingOrder() {
     return myParametersTypecheckingOrder;
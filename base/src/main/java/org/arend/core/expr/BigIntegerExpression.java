@@ -89,6 +89,11 @@ public class BigIntegerExpression extends IntegerExpression {
     return new BigIntegerExpression(myInteger.subtract(BigInteger.valueOf(x)));
   }
 
+  @Override
+  public BigIntegerExpression subtract(IntegerExpression expr) {
+    return new BigIntegerExpression(myInteger.subtract(expr.getBigInteger()));
+  }
+
   @Override
   public BigIntegerExpression div(IntegerExpression expr) {
     return expr.isZero() ? this : new BigIntegerExpression(myInteger.divide(expr.getBigInteger()));
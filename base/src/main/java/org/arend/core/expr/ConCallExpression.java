@@ -32,6 +32,10 @@ public class ConCallExpression extends DefCallExpression implements CoreConCallE
       if (intExpr != null) {
         return intExpr.suc();
       }
+      OffsetExpression offsetExpr = arguments.get(0).cast(OffsetExpression.class);
+      if (offsetExpr != null) {
+        return OffsetExpression.make(offsetExpr.getBase(), offsetExpr.getOffset().suc());
+      }
     }
     return new ConCallExpression(constructor, sortArgument, dataTypeArguments, arguments);
   }
@@ -75,11 +79,11 @@ public class ConCallExpression extends DefCallExpression implements CoreConCallE
 
   @Override
   public Decision isWHNF() {
-    return getDefinition().getBody() != null ? getDefinition().getBody().isWHNF(myArguments) : Decision.YES;
+    return getDefinition().getBody() != null ? getDefinition().getBody().isWHNF(getDefCallArguments()) : Decision.YES;
   }
 
   @Override
   public Expression getStuckExpression() {
-    return getDefinition().getBody() != null ? getDefinition().getBody().getStuckExpression(myArguments, this) : null;
+    return getDefinition().getBody() != null ? getDefinition().getBody().getStuckExpression(getDefCallArguments(), this) : null;
   }
 }
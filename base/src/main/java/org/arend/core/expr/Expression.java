@@ -7,6 +7,8 @@ import org.arend.core.context.binding.inference.InferenceVariable;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.elimtree.Body;
+import org.arend.core.expr.eval.NormalizationSettings;
+import org.arend.core.expr.eval.WhnfCache;
 import org.arend.core.expr.type.Type;
 import org.arend.core.expr.type.TypeExpression;
 import org.arend.core.expr.visitor.*;
@@ -44,6 +46,8 @@ import org.jetbrains.annotations.TestOnly;
 import java.util.*;
 
 public abstract class Expression implements Body, CoreExpression {
+  private volatile long mySummary;
+
   public abstract <P, R> R accept(ExpressionVisitor<? super P, ? extends R> visitor, P params);
 
   public abstract <P1, P2, R> R accept(ExpressionVisitor2<? super P1, ? super P2, ? extends R> visitor, P1 param1, P2 param2);
@@ -145,6 +149,19 @@ public abstract class Expression implements Body, CoreExpression {
     return (CoreBinding) accept(new FindBindingVisitor(bindings), null);
   }
 
+  /**
+   * @return a summary of this expression computed by {@link SummaryVisitor}.
+   *         It is computed once and is used by {@link SubstVisitor} to skip subexpressions unaffected by a substitution.
+   */
+  public final long getSummary() {
+    long summary = mySummary;
+    if (summary == 0) {
+      summary = accept(SummaryVisitor.INSTANCE, null) | SummaryVisitor.COMPUTED;
+      mySummary = summary;
+    }
+    return summary;
+  }
+
   public Expression copy() {
     return accept(new SubstVisitor(new ExprSubstitution(), LevelSubstitution.EMPTY), null);
   }
@@ -184,7 +201,8 @@ public abstract class Expression implements Body, CoreExpression {
   @NotNull
   @Override
   public Expression normalize(@NotNull NormalizationMode mode) {
-    return accept(NormalizeVisitor.INSTANCE, mode);
+    WhnfCache cache = mode == NormalizationMode.WHNF ? WhnfCache.getCurrent() : null;
+    return cache != null ? cache.normalize(this) : NormalizationSettings.normalize(this, mode);
   }
 
   @Nullable
@@ -36,6 +36,11 @@ public abstract class IntegerExpression extends Expression implements CoreIntege
 
   public abstract IntegerExpression minus(int x);
 
+  /**
+   * Computes {@code this - expr} assuming that {@code expr} is not greater than {@code this}.
+   */
+  public abstract IntegerExpression subtract(IntegerExpression expr);
+
   public abstract IntegerExpression div(IntegerExpression expr);
 
   public abstract IntegerExpression mod(IntegerExpression expr);
@@ -0,0 +1,57 @@
+package org.arend.core.expr;
+
+import org.arend.core.sort.Sort;
+import org.arend.prelude.Prelude;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Represents {@code suc (... (suc base))}, where {@code suc} is applied {@code offset} times.
+ * It is a call of {@link Prelude#SUC} whose argument is computed on demand,
+ * so code which does not know about offsets peels one {@code suc} at a time.
+ */
+public class OffsetExpression extends ConCallExpression {
+  private final Expression myBase;
+  private final IntegerExpression myOffset;
+  private List<Expression> myArguments;
+
+  private OffsetExpression(Expression base, IntegerExpression offset) {
+    super(Prelude.SUC, Sort.PROP, Collections.emptyList(), null);
+    myBase = base;
+    myOffset = offset;
+  }
+
+  public static Expression make(Expression base, IntegerExpression offset) {
+    if (offset.isZero()) {
+      return base;
+    }
+    IntegerExpression intBase = base.cast(IntegerExpression.class);
+    if (intBase != null) {
+      return intBase.plus(offset);
+    }
+    OffsetExpression offsetBase = base.cast(OffsetExpression.class);
+    if (offsetBase != null) {
+      return new OffsetExpression(offsetBase.myBase, offsetBase.myOffset.plus(offset));
+    }
+    return new OffsetExpression(base, offset);
+  }
+
+  public Expression getBase() {
+    return myBase;
+  }
+
+  public IntegerExpression getOffset() {
+    return myOffset;
+  }
+
+  @NotNull
+  @Override
+  public List<Expression> getDefCallArguments() {
+    if (myArguments == null) {
+      myArguments = Collections.singletonList(myOffset.isOne() ? myBase : new OffsetExpression(myBase, myOffset.pred()));
+    }
+    return myArguments;
+  }
+}
@@ -123,6 +123,15 @@ public class SmallIntegerExpression extends IntegerExpression {
     return new SmallIntegerExpression(myInteger - x);
   }
 
+  @Override
+  public IntegerExpression subtract(IntegerExpression expr) {
+    if (expr instanceof SmallIntegerExpression) {
+      assert ((SmallIntegerExpression) expr).myInteger <= myInteger;
+      return new SmallIntegerExpression(myInteger - ((SmallIntegerExpression) expr).myInteger);
+    }
+    return new BigIntegerExpression(BigInteger.valueOf(myInteger).subtract(expr.getBigInteger()));
+  }
+
   @Override
   public IntegerExpression div(IntegerExpression expr) {
     if (expr.isZero()) {
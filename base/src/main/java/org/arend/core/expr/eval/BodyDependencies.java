@@ -0,0 +1,99 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.definition.Function;
+import org.arend.core.elimtree.Body;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+/**
+ * Bodies of definitions that were consulted during a cached computation.
+ * <p>
+ * A computation is recorded by the current thread, and nested computations are added to the enclosing one.
+ * Its result remains valid as long as recorded definitions have the same bodies,
+ * so a change of a definition invalidates only results that depend on it.
+ */
+public class BodyDependencies {
+  private static final ThreadLocal<BodyDependencies> ourCurrent = new ThreadLocal<>();
+
+  private BodyDependencies myParent;
+  private final Map<Function, Body> myBodies = new IdentityHashMap<>();
+  private boolean myStuck;
+
+  private BodyDependencies(BodyDependencies parent) {
+    myParent = parent;
+  }
+
+  /**
+   * Records the body of a definition which is about to be unfolded.
+   */
+  public static void record(Function function) {
+    BodyDependencies current = ourCurrent.get();
+    if (current != null && !current.myBodies.containsKey(function)) {
+      current.myBodies.put(function, function.getBody());
+    }
+  }
+
+  /**
+   * Records that the computation is stuck on an unsolved inference variable, so its result cannot be reused.
+   */
+  public static void recordStuck() {
+    BodyDependencies current = ourCurrent.get();
+    if (current != null) {
+      current.myStuck = true;
+    }
+  }
+
+  /**
+   * Adds dependencies of a reused result to the current computation.
+   */
+  static void addToCurrent(BodyDependencies dependencies) {
+    BodyDependencies current = ourCurrent.get();
+    if (current != null) {
+      current.add(dependencies);
+    }
+  }
+
+  /**
+   * Starts recording of a computation in the current thread.
+   * It must be followed by {@link #finish}.
+   */
+  static BodyDependencies start() {
+    BodyDependencies dependencies = new BodyDependencies(ourCurrent.get());
+    ourCurrent.set(dependencies);
+    return dependencies;
+  }
+
+  void finish() {
+    BodyDependencies parent = myParent;
+    if (parent == null) {
+      ourCurrent.remove();
+    } else {
+      ourCurrent.set(parent);
+      parent.add(this);
+      myParent = null;
+    }
+  }
+
+  private void add(BodyDependencies dependencies) {
+    for (Map.Entry<Function, Body> entry : dependencies.myBodies.entrySet()) {
+      myBodies.putIfAbsent(entry.getKey(), entry.getValue());
+    }
+    if (dependencies.myStuck) {
+      myStuck = true;
+    }
+  }
+
+  boolean isStuck() {
+    return myStuck;
+  }
+
+  boolean isValid() {
+    for (Map.Entry<Function, Body> entry : myBodies.entrySet()) {
+      if (entry.getKey().getBody() != entry.getValue()) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,197 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.expr.*;
+import org.arend.core.expr.visitor.StructuralKeyVisitor;
+import org.arend.ext.core.ops.CMP;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A bounded cache of results of comparisons of closed data, class, and function calls.
+ * <p>
+ * Keys are structural forms of expressions (see {@link StructuralKeyVisitor}), so they coincide up to renaming of bound variables
+ * and looking up a key does not run comparisons.
+ * Successful comparisons are reused for any type, while failed ones are reused only for comparisons without a type.
+ * Each typechecking session has its own cache which is used by threads that run its computations (see {@link #setCurrent}).
+ * Every entry remembers bodies of definitions that were unfolded during the comparison (see {@link BodyDependencies}),
+ * so it is dropped only when one of these definitions changes.
+ * The cache lives for the duration of typechecking of a library.
+ * The cache is disabled by default; use {@link #setMaximumSize} to enable it.
+ */
+public class ConversionCache {
+  private static final ThreadLocal<ConversionCache> ourCurrent = new ThreadLocal<>();
+
+  public static class Key {
+    private final List<Object> key1;
+    private final List<Object> key2;
+    private final CMP cmp;
+
+    private Key(List<Object> key1, List<Object> key2, CMP cmp) {
+      this.key1 = key1;
+      this.key2 = key2;
+      this.cmp = cmp;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (!(o instanceof Key)) return false;
+      Key key = (Key) o;
+      return cmp == key.cmp && key1.equals(key.key1) && key2.equals(key.key2);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(key1, key2, cmp);
+    }
+  }
+
+  private static class Entry {
+    final boolean result;
+    final BodyDependencies dependencies;
+
+    Entry(boolean result, BodyDependencies dependencies) {
+      this.result = result;
+      this.dependencies = dependencies;
+    }
+  }
+
+  private volatile int myMaximumSize;
+  private final Map<Key, Entry> myEntries = new LinkedHashMap<>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > myMaximumSize;
+    }
+  };
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+
+  /**
+   * Gets the cache of the session which runs in the current thread.
+   *
+   * @return the cache or null if comparisons are not cached in this thread.
+   */
+  public static ConversionCache getCurrent() {
+    return ourCurrent.get();
+  }
+
+  /**
+   * Sets the cache of the current thread.
+   *
+   * @return the previous cache of the current thread.
+   */
+  public static ConversionCache setCurrent(ConversionCache cache) {
+    ConversionCache previous = ourCurrent.get();
+    if (cache == null) {
+      ourCurrent.remove();
+    } else {
+      ourCurrent.set(cache);
+    }
+    return previous;
+  }
+
+  public int getMaximumSize() {
+    return myMaximumSize;
+  }
+
+  /**
+   * Sets the maximum number of cached comparisons; 0 disables the cache.
+   */
+  public synchronized void setMaximumSize(int size) {
+    myMaximumSize = size;
+    if (size == 0) {
+      myEntries.clear();
+    }
+  }
+
+  public synchronized void clear() {
+    myEntries.clear();
+    myHits.set(0);
+    myMisses.set(0);
+  }
+
+  /**
+   * Removes cached comparisons, but keeps the counters.
+   */
+  public synchronized void invalidate() {
+    myEntries.clear();
+  }
+
+  public long getHits() {
+    return myHits.get();
+  }
+
+  public long getMisses() {
+    return myMisses.get();
+  }
+
+  private static boolean isCacheable(Expression expr) {
+    return expr instanceof DataCallExpression || expr instanceof ClassCallExpression || expr instanceof FunCallExpression;
+  }
+
+  /**
+   * @return a key for a comparison of the given expressions or null if it cannot be cached.
+   */
+  public Key getKey(Expression expr1, Expression expr2, CMP cmp) {
+    if (myMaximumSize == 0 || !isCacheable(expr1) || !isCacheable(expr2)) {
+      return null;
+    }
+    List<Object> key1 = StructuralKeyVisitor.getKey(expr1);
+    if (key1 == null) {
+      return null;
+    }
+    List<Object> key2 = StructuralKeyVisitor.getKey(expr2);
+    return key2 == null ? null : new Key(key1, key2, cmp);
+  }
+
+  /**
+   * @param typed true if expressions are compared with respect to a type.
+   * @return the cached result of a comparison or null if it is unknown.
+   */
+  public Boolean get(Key key, boolean typed) {
+    Entry entry;
+    synchronized (this) {
+      entry = myEntries.get(key);
+    }
+    if (entry != null && (entry.result || !typed)) {
+      if (entry.dependencies.isValid()) {
+        myHits.incrementAndGet();
+        BodyDependencies.addToCurrent(entry.dependencies);
+        return entry.result;
+      }
+      synchronized (this) {
+        myEntries.remove(key, entry);
+      }
+    }
+    myMisses.incrementAndGet();
+    return null;
+  }
+
+  /**
+   * Runs a comparison and stores its result.
+   * Failed comparisons with respect to a type are not stored.
+   *
+   * @param typed true if expressions are compared with respect to a type.
+   */
+  public boolean compute(Key key, boolean typed, BooleanSupplier comparison) {
+    boolean result;
+    BodyDependencies dependencies = BodyDependencies.start();
+    try {
+      result = comparison.getAsBoolean();
+    } finally {
+      dependencies.finish();
+    }
+    if ((result || !typed) && !dependencies.isStuck()) {
+      Entry entry = new Entry(result, dependencies);
+      synchronized (this) {
+        myEntries.put(key, entry);
+      }
+    }
+    return result;
+  }
+}
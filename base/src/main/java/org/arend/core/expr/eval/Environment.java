@@ -0,0 +1,68 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.expr.Expression;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.core.subst.LevelSubstitution;
+
+/**
+ * An immutable environment of the lazy normalizer.
+ * It maps bindings to (possibly unevaluated) thunks and remembers the level substitution of the current definition.
+ */
+public final class Environment {
+  public static final Environment EMPTY = new Environment(null, null, null, LevelSubstitution.EMPTY);
+
+  private final Binding myBinding;
+  private final Thunk myThunk;
+  private final Environment myParent;
+  private final LevelSubstitution myLevels;
+
+  private Environment(Binding binding, Thunk thunk, Environment parent, LevelSubstitution levels) {
+    myBinding = binding;
+    myThunk = thunk;
+    myParent = parent;
+    myLevels = levels;
+  }
+
+  public static Environment empty(LevelSubstitution levels) {
+    return levels.isEmpty() ? EMPTY : new Environment(null, null, null, levels);
+  }
+
+  public Environment extend(Binding binding, Thunk thunk) {
+    return new Environment(binding, thunk, this, myLevels);
+  }
+
+  public Thunk lookup(Binding binding) {
+    for (Environment env = this; env.myBinding != null; env = env.myParent) {
+      if (env.myBinding == binding) {
+        return env.myThunk;
+      }
+    }
+    return null;
+  }
+
+  public LevelSubstitution getLevels() {
+    return myLevels;
+  }
+
+  public boolean isEmpty() {
+    return myBinding == null && myLevels.isEmpty();
+  }
+
+  public ExprSubstitution toSubstitution() {
+    ExprSubstitution substitution = new ExprSubstitution();
+    for (Environment env = this; env.myBinding != null; env = env.myParent) {
+      if (substitution.get(env.myBinding) == null) {
+        substitution.add(env.myBinding, env.myThunk.readback());
+      }
+    }
+    return substitution;
+  }
+
+  /**
+   * Converts a term that lives in this environment to an ordinary closed expression.
+   */
+  public Expression readback(Expression term) {
+    return isEmpty() ? term : term.subst(toSubstitution(), myLevels);
+  }
+}
@@ -0,0 +1,299 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.constructor.IdpConstructor;
+import org.arend.core.constructor.SingleConstructor;
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.EvaluatingBinding;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.*;
+import org.arend.core.expr.*;
+import org.arend.core.expr.let.LetClause;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.pattern.Pattern;
+import org.arend.core.subst.LevelSubstitution;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.prelude.Prelude;
+import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.util.Pair;
+
+import java.util.*;
+
+/**
+ * Computes weak head normal forms with a Krivine-style machine.
+ * Instead of substituting arguments into bodies, the machine evaluates terms in an {@link Environment}
+ * and shares evaluated arguments between all their occurrences.
+ * Terms are read back to ordinary expressions only when the head is stuck.
+ * Primitives with special reduction rules are reduced by {@link NormalizeVisitor}.
+ */
+public class LazyNormalizer {
+  public static final LazyNormalizer INSTANCE = new LazyNormalizer();
+
+  private LazyNormalizer() {
+  }
+
+  private static class Argument {
+    final Thunk thunk;
+    final boolean isExplicit;
+
+    Argument(Thunk thunk, boolean isExplicit) {
+      this.thunk = thunk;
+      this.isExplicit = isExplicit;
+    }
+  }
+
+  public Expression normalize(Expression expr, NormalizationMode mode) {
+    if (mode == NormalizationMode.WHNF) {
+      return eval(expr, Environment.EMPTY);
+    }
+    if (mode == NormalizationMode.NF) {
+      return eval(expr, Environment.EMPTY).accept(NormalizeVisitor.INSTANCE, mode);
+    }
+    return expr.accept(NormalizeVisitor.INSTANCE, mode);
+  }
+
+  /**
+   * @return the weak head normal form of {@code term} evaluated in {@code env}; the result does not depend on {@code env}.
+   */
+  public Expression eval(Expression term, Environment env) {
+    return eval(term, env, new ArrayDeque<>());
+  }
+
+  private Expression eval(Expression term, Environment env, Deque<Argument> stack) {
+    while (true) {
+      if (term instanceof AppExpression) {
+        AppExpression app = (AppExpression) term;
+        stack.push(new Argument(new Thunk(app.getArgument(), env), app.isExplicit()));
+        term = app.getFunction();
+      } else if (term instanceof LamExpression) {
+        if (stack.isEmpty()) {
+          return env.readback(term);
+        }
+        LamExpression lam = (LamExpression) term;
+        SingleDependentLink link = lam.getParameters();
+        for (; link.hasNext() && !stack.isEmpty(); link = link.getNext()) {
+          env = env.extend(link, stack.pop().thunk);
+        }
+        if (link.hasNext()) {
+          return env.readback(new LamExpression(lam.getResultSort(), link, lam.getBody()));
+        }
+        term = lam.getBody();
+      } else if (term instanceof ReferenceExpression) {
+        Binding binding = ((ReferenceExpression) term).getBinding();
+        Thunk thunk = env.lookup(binding);
+        if (thunk != null) {
+          return continueWith(thunk.force(), stack);
+        }
+        if (!(binding instanceof EvaluatingBinding)) {
+          return continueWith(term, stack);
+        }
+        term = ((EvaluatingBinding) binding).getExpression();
+        env = Environment.EMPTY;
+      } else if (term instanceof OfTypeExpression) {
+        term = ((OfTypeExpression) term).getExpression();
+      } else if (term instanceof SubstExpression) {
+        term = ((SubstExpression) term).getSubstExpression();
+      } else if (term instanceof InferenceReferenceExpression) {
+        Expression solution = ((InferenceReferenceExpression) term).getSubstExpression();
+        if (solution == null) {
+          BodyDependencies.recordStuck();
+          return continueWith(term, stack);
+        }
+        term = solution;
+      } else if (term instanceof ProjExpression) {
+        ProjExpression proj = (ProjExpression) term;
+        Expression value = eval(proj.getExpression(), env);
+        TupleExpression tuple = value.cast(TupleExpression.class);
+        if (tuple == null) {
+          return continueWith(ProjExpression.make(value, proj.getField()), stack);
+        }
+        term = tuple.getFields().get(proj.getField());
+        env = Environment.EMPTY;
+      } else if (term instanceof LetExpression) {
+        LetExpression let = (LetExpression) term;
+        if (!let.isStrict() && !hasMatchingPatterns(let)) {
+          for (LetClause clause : let.getClauses()) {
+            env = env.extend(clause, new Thunk(clause.getExpression(), env));
+          }
+          term = let.getExpression();
+        } else {
+          let = (LetExpression) env.readback(let);
+          term = let.isStrict() ? let.getExpression().subst(let.getClausesSubstitution()) : let.getExpression();
+          env = Environment.EMPTY;
+        }
+      } else if (term instanceof CaseExpression) {
+        CaseExpression caseExpr = (CaseExpression) term;
+        Pair<Expression, Environment> result = null;
+        if (!caseExpr.isSCase()) {
+          List<Thunk> arguments = new ArrayList<>(caseExpr.getArguments().size());
+          for (Expression argument : caseExpr.getArguments()) {
+            arguments.add(new Thunk(argument, env));
+          }
+          result = match(caseExpr.getElimBody(), arguments, env);
+        }
+        if (result == null) {
+          return continueWith(env.readback(caseExpr), stack);
+        }
+        term = result.proj1;
+        env = result.proj2;
+      } else if (term instanceof FunCallExpression) {
+        FunCallExpression funCall = (FunCallExpression) term;
+        FunctionDefinition definition = funCall.getDefinition();
+        BodyDependencies.record(definition);
+        Body body = definition.getBody();
+        if (definition.isSFunc() || body == null) {
+          return continueWith(env.readback(funCall), stack);
+        }
+        if (body instanceof IntervalElim || isPrimitive(definition)) {
+          return continueWith(env.readback(funCall).accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF), stack);
+        }
+
+        LevelSubstitution levels = funCall.getSortArgument().subst(env.getLevels()).toLevelSubstitution();
+        List<Thunk> arguments = new ArrayList<>(funCall.getDefCallArguments().size());
+        for (Expression argument : funCall.getDefCallArguments()) {
+          arguments.add(new Thunk(argument, env));
+        }
+
+        Pair<Expression, Environment> result;
+        if (body instanceof Expression) {
+          Environment newEnv = Environment.empty(levels);
+          DependentLink link = definition.getParameters();
+          for (Thunk argument : arguments) {
+            newEnv = newEnv.extend(link, argument);
+            link = link.getNext();
+          }
+          result = new Pair<>((Expression) body, newEnv);
+        } else {
+          result = match((ElimBody) body, arguments, Environment.empty(levels));
+        }
+
+        ComputationRunner.checkCanceled();
+
+        if (result == null) {
+          return continueWith(env.readback(funCall), stack);
+        }
+        term = result.proj1;
+        env = result.proj2;
+      } else if (term instanceof FieldCallExpression || term instanceof ConCallExpression && hasConditions(((ConCallExpression) term).getDefinition())) {
+        return continueWith(env.readback(term).accept(NormalizeVisitor.INSTANCE, NormalizationMode.WHNF), stack);
+      } else {
+        return continueWith(env.readback(term), stack);
+      }
+    }
+  }
+
+  private Expression continueWith(Expression value, Deque<Argument> stack) {
+    if (stack.isEmpty()) {
+      return value;
+    }
+
+    LamExpression lam = value.cast(LamExpression.class);
+    if (lam != null) {
+      return eval(lam, Environment.EMPTY, stack);
+    }
+
+    while (!stack.isEmpty()) {
+      Argument argument = stack.pop();
+      value = AppExpression.make(value, argument.thunk.readback(), argument.isExplicit);
+    }
+    return value;
+  }
+
+  private static boolean hasConditions(Constructor constructor) {
+    BodyDependencies.record(constructor);
+    return constructor.getBody() != null;
+  }
+
+  private static boolean isPrimitive(Definition definition) {
+    return definition == Prelude.COERCE || definition == Prelude.COERCE2 || definition == Prelude.PLUS || definition == Prelude.MINUS || definition == Prelude.MUL || definition == Prelude.DIV || definition == Prelude.MOD || definition == Prelude.DIV_MOD || definition == Prelude.SUC;
+  }
+
+  private static boolean hasMatchingPatterns(LetExpression let) {
+    for (LetClause clause : let.getClauses()) {
+      if (clause.getPattern().isMatching()) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private Pair<Expression, Environment> match(ElimBody elimBody, List<Thunk> arguments, Environment env) {
+    Deque<Thunk> stack = new ArrayDeque<>();
+    for (int i = arguments.size() - 1; i >= 0; i--) {
+      stack.push(arguments.get(i));
+    }
+    List<Thunk> result = new ArrayList<>();
+
+    ElimTree elimTree = elimBody.getElimTree();
+    while (true) {
+      for (int i = 0; i < elimTree.getSkip(); i++) {
+        result.add(stack.pop());
+      }
+
+      if (elimTree instanceof LeafElimTree) {
+        LeafElimTree leafElimTree = (LeafElimTree) elimTree;
+        ElimClause<Pattern> clause = elimBody.getClauses().get(leafElimTree.getClauseIndex());
+        int i = 0;
+        for (DependentLink link = clause.getParameters(); link.hasNext(); link = link.getNext(), i++) {
+          env = env.extend(link, result.get(leafElimTree.getArgumentIndex(i)));
+        }
+        return new Pair<>(Objects.requireNonNull(clause.getExpression()), env);
+      }
+
+      elimTree = updateStack(stack, result, (BranchElimTree) elimTree);
+      if (elimTree == null) {
+        return null;
+      }
+    }
+  }
+
+  private ElimTree updateStack(Deque<Thunk> stack, List<Thunk> argList, BranchElimTree branchElimTree) {
+    Expression argument = Objects.requireNonNull(stack.peek()).force();
+    ConCallExpression conCall = argument.cast(ConCallExpression.class);
+    Constructor constructor = conCall == null ? null : conCall.getDefinition();
+    IntegerExpression intExpr = constructor == null ? argument.cast(IntegerExpression.class) : null;
+    if (intExpr != null) {
+      constructor = intExpr.isZero() ? Prelude.ZERO : Prelude.SUC;
+    }
+
+    ElimTree elimTree = constructor == null ? branchElimTree.getSingleConstructorChild() : branchElimTree.getChild(constructor);
+    if (elimTree == null && constructor == Prelude.PATH_CON && branchElimTree.getSingleConstructorKey() instanceof IdpConstructor) {
+      elimTree = branchElimTree.getSingleConstructorChild();
+      constructor = null;
+    }
+    if (elimTree != null) {
+      stack.pop();
+      if (branchElimTree.keepConCall()) {
+        argList.add(Thunk.evaluated(argument));
+      }
+
+      List<? extends Expression> args;
+      if (constructor != null) {
+        args = conCall != null
+          ? conCall.getDefCallArguments()
+          : constructor == Prelude.ZERO
+            ? Collections.emptyList()
+            : Collections.singletonList(intExpr.pred());
+      } else {
+        SingleConstructor singleConstructor = branchElimTree.getSingleConstructorKey();
+        if (singleConstructor == null) {
+          return null;
+        }
+
+        args = singleConstructor.getMatchedArguments(argument, true);
+        if (args == null) {
+          return null;
+        }
+      }
+
+      for (int i = args.size() - 1; i >= 0; i--) {
+        stack.push(Thunk.closed(args.get(i)));
+      }
+    }
+
+    return elimTree;
+  }
+}
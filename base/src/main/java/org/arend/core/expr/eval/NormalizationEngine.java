@@ -0,0 +1,32 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.ext.core.ops.NormalizationMode;
+
+/**
+ * Implementations of {@link Expression#normalize}; the engine of each mode is chosen by {@link NormalizationSettings}.
+ */
+public enum NormalizationEngine {
+  /**
+   * Substitutes arguments into bodies; implemented by {@link NormalizeVisitor}.
+   */
+  SUBSTITUTION {
+    @Override
+    public Expression normalize(Expression expr, NormalizationMode mode) {
+      return expr.accept(NormalizeVisitor.INSTANCE, mode);
+    }
+  },
+
+  /**
+   * Evaluates terms lazily in an environment; implemented by {@link LazyNormalizer}.
+   */
+  ENVIRONMENT {
+    @Override
+    public Expression normalize(Expression expr, NormalizationMode mode) {
+      return LazyNormalizer.INSTANCE.normalize(expr, mode);
+    }
+  };
+
+  public abstract Expression normalize(Expression expr, NormalizationMode mode);
+}
@@ -0,0 +1,71 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.expr.Expression;
+import org.arend.ext.core.ops.NormalizationMode;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Chooses a {@link NormalizationEngine} for each {@link NormalizationMode}.
+ * <p>
+ * Each typechecking session has its own settings which are used by threads that run its computations (see {@link #setCurrent}).
+ * Other threads always use {@link NormalizationEngine#SUBSTITUTION}.
+ * {@link NormalizationEngine#ENVIRONMENT} can be chosen only for {@link NormalizationMode#WHNF} and {@link NormalizationMode#NF}
+ * since other modes do not unfold functions.
+ */
+public class NormalizationSettings {
+  private static final ThreadLocal<NormalizationSettings> ourCurrent = new ThreadLocal<>();
+
+  private final Map<NormalizationMode, NormalizationEngine> myEngines = new EnumMap<>(NormalizationMode.class);
+
+  /**
+   * Gets the settings of the session which runs in the current thread.
+   *
+   * @return the settings or null if the current thread does not belong to a session.
+   */
+  public static NormalizationSettings getCurrent() {
+    return ourCurrent.get();
+  }
+
+  /**
+   * Sets the settings of the current thread.
+   *
+   * @return the previous settings of the current thread.
+   */
+  public static NormalizationSettings setCurrent(NormalizationSettings settings) {
+    NormalizationSettings previous = ourCurrent.get();
+    if (settings == null) {
+      ourCurrent.remove();
+    } else {
+      ourCurrent.set(settings);
+    }
+    return previous;
+  }
+
+  /**
+   * Normalizes an expression with the engine chosen for {@code mode} in the current thread.
+   */
+  public static Expression normalize(Expression expr, NormalizationMode mode) {
+    NormalizationSettings settings = ourCurrent.get();
+    return (settings == null ? NormalizationEngine.SUBSTITUTION : settings.getEngine(mode)).normalize(expr, mode);
+  }
+
+  public synchronized NormalizationEngine getEngine(NormalizationMode mode) {
+    return myEngines.getOrDefault(mode, NormalizationEngine.SUBSTITUTION);
+  }
+
+  public synchronized void setEngine(NormalizationMode mode, NormalizationEngine engine) {
+    if (engine == NormalizationEngine.ENVIRONMENT && mode != NormalizationMode.WHNF && mode != NormalizationMode.NF) {
+      throw new IllegalArgumentException("Mode " + mode + " is not supported by " + engine);
+    }
+    myEngines.put(mode, engine);
+  }
+
+  /**
+   * Restores {@link NormalizationEngine#SUBSTITUTION} for all modes.
+   */
+  public synchronized void reset() {
+    myEngines.clear();
+  }
+}
@@ -0,0 +1,50 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.expr.Expression;
+
+/**
+ * A suspended computation of the lazy normalizer.
+ * Both the weak head normal form and the read back expression are computed at most once.
+ */
+public final class Thunk {
+  private final Expression myTerm;
+  private final Environment myEnvironment;
+  private Expression myValue;
+  private Expression myReadback;
+
+  public Thunk(Expression term, Environment environment) {
+    myTerm = term;
+    myEnvironment = environment;
+  }
+
+  public static Thunk closed(Expression expression) {
+    return new Thunk(expression, Environment.EMPTY);
+  }
+
+  public static Thunk evaluated(Expression value) {
+    Thunk thunk = new Thunk(value, Environment.EMPTY);
+    thunk.myValue = value;
+    return thunk;
+  }
+
+  public boolean isEvaluated() {
+    return myValue != null;
+  }
+
+  public Expression force() {
+    if (myValue == null) {
+      myValue = LazyNormalizer.INSTANCE.eval(myTerm, myEnvironment);
+    }
+    return myValue;
+  }
+
+  public Expression readback() {
+    if (myValue != null) {
+      return myValue;
+    }
+    if (myReadback == null) {
+      myReadback = myEnvironment.readback(myTerm);
+    }
+    return myReadback;
+  }
+}
@@ -0,0 +1,168 @@
+package org.arend.core.expr.eval;
+
+import org.arend.core.expr.*;
+import org.arend.ext.core.ops.NormalizationMode;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded cache of weak head normal forms keyed by the identity of expressions.
+ * <p>
+ * Each typechecking session has its own cache which is used by threads that run its computations (see {@link #setCurrent}).
+ * Every entry remembers bodies of definitions that were unfolded (see {@link BodyDependencies}),
+ * so an entry is dropped only when one of these definitions changes.
+ * When the cache is full, the least recently used entry is evicted.
+ * Normal forms that are stuck on unsolved inference variables are never cached.
+ * The cache is disabled by default; use {@link #setMaximumSize} to enable it.
+ */
+public class WhnfCache {
+  private static final ThreadLocal<WhnfCache> ourCurrent = new ThreadLocal<>();
+
+  private static class Key {
+    final Expression expression;
+
+    Key(Expression expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).expression == expression;
+    }
+
+    @Override
+    public int hashCode() {
+      return System.identityHashCode(expression);
+    }
+  }
+
+  private static class Entry {
+    final Expression value;
+    final BodyDependencies dependencies;
+
+    Entry(Expression value, BodyDependencies dependencies) {
+      this.value = value;
+      this.dependencies = dependencies;
+    }
+  }
+
+  private volatile int myMaximumSize;
+  private final Map<Key, Entry> myEntries = new LinkedHashMap<Key, Entry>(16, 0.75f, true) {
+    @Override
+    protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+      return size() > myMaximumSize;
+    }
+  };
+  private final AtomicLong myHits = new AtomicLong();
+  private final AtomicLong myMisses = new AtomicLong();
+
+  /**
+   * Gets the cache of the session which runs in the current thread.
+   *
+   * @return the cache or null if weak head normal forms are not cached in this thread.
+   */
+  public static WhnfCache getCurrent() {
+    return ourCurrent.get();
+  }
+
+  /**
+   * Sets the cache of the current thread.
+   *
+   * @return the previous cache of the current thread.
+   */
+  public static WhnfCache setCurrent(WhnfCache cache) {
+    WhnfCache previous = ourCurrent.get();
+    if (cache == null) {
+      ourCurrent.remove();
+    } else {
+      ourCurrent.set(cache);
+    }
+    return previous;
+  }
+
+  public int getMaximumSize() {
+    return myMaximumSize;
+  }
+
+  /**
+   * Sets the maximum number of cached expressions; 0 disables the cache.
+   */
+  public void setMaximumSize(int size) {
+    synchronized (myEntries) {
+      myMaximumSize = size;
+      if (size == 0) {
+        myEntries.clear();
+      } else {
+        evict(size);
+      }
+    }
+  }
+
+  public void clear() {
+    synchronized (myEntries) {
+      myEntries.clear();
+    }
+    myHits.set(0);
+    myMisses.set(0);
+  }
+
+  public long getHits() {
+    return myHits.get();
+  }
+
+  public long getMisses() {
+    return myMisses.get();
+  }
+
+  private static boolean isCacheable(Expression expr) {
+    return expr instanceof FunCallExpression || expr instanceof AppExpression || expr instanceof CaseExpression || expr instanceof ProjExpression || expr instanceof LetExpression;
+  }
+
+  public Expression normalize(Expression expr) {
+    if (myMaximumSize == 0 || !isCacheable(expr)) {
+      return NormalizationSettings.normalize(expr, NormalizationMode.WHNF);
+    }
+
+    Key key = new Key(expr);
+    Entry entry;
+    synchronized (myEntries) {
+      entry = myEntries.get(key);
+      if (entry != null && !entry.dependencies.isValid()) {
+        myEntries.remove(key);
+        entry = null;
+      }
+    }
+    if (entry != null) {
+      myHits.incrementAndGet();
+      BodyDependencies.addToCurrent(entry.dependencies);
+      return entry.value;
+    }
+
+    myMisses.incrementAndGet();
+    Expression result;
+    BodyDependencies dependencies = BodyDependencies.start();
+    try {
+      result = NormalizationSettings.normalize(expr, NormalizationMode.WHNF);
+    } finally {
+      dependencies.finish();
+    }
+    if (!dependencies.isStuck()) {
+      synchronized (myEntries) {
+        if (myMaximumSize > 0) {
+          myEntries.put(key, new Entry(result, dependencies));
+        }
+      }
+    }
+    return result;
+  }
+
+  private void evict(int size) {
+    for (Iterator<Key> it = myEntries.keySet().iterator(); it.hasNext() && myEntries.size() > size; ) {
+      it.next();
+      it.remove();
+    }
+  }
+}
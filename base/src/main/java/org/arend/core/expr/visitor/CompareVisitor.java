@@ -8,6 +8,7 @@ import org.arend.core.context.param.*;
 import org.arend.core.definition.*;
 import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
+import org.arend.core.expr.eval.ConversionCache;
 import org.arend.core.expr.type.Type;
 import org.arend.core.expr.type.TypeExpression;
 import org.arend.core.pattern.Pattern;
@@ -19,6 +20,7 @@ import org.arend.prelude.Prelude;
 import org.arend.term.concrete.Concrete;
 import org.arend.typechecking.implicitargs.equations.DummyEquations;
 import org.arend.typechecking.implicitargs.equations.Equations;
+import org.arend.typechecking.profiling.ProfilingCounters;
 import org.jetbrains.annotations.TestOnly;
 
 import java.util.*;
@@ -272,6 +274,7 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
   }
 
   public Boolean compare(Expression expr1, Expression expr2, Expression type) {
+    ProfilingCounters.countComparison();
     expr1 = expr1.getUnderlyingExpression();
     expr2 = expr2.getUnderlyingExpression();
     if (expr1 == expr2) {
@@ -311,9 +314,65 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
       return myEquations.addEquation(expr1, expr2.subst(getSubstitution()), type, myCMP, stuckVar1.getSourceNode(), stuckVar1, stuckVar2);
     }
 
+    if (stuckVar1 != null || stuckVar2 != null) {
+      return normalizedCompare(expr1.normalize(NormalizationMode.WHNF), expr2.normalize(NormalizationMode.WHNF), type == null ? null : type.normalize(NormalizationMode.WHNF));
+    }
+
+    ConversionCache cache = myOnlySolveVars ? null : ConversionCache.getCurrent();
+    ConversionCache.Key key = cache == null ? null : cache.getKey(expr1, expr2, myCMP);
+    if (key != null) {
+      Boolean result = cache.get(key, type != null);
+      if (result != null) {
+        return result;
+      }
+      Expression finalExpr1 = expr1;
+      Expression finalExpr2 = expr2;
+      return cache.compute(key, type != null, () -> unfoldingCompare(finalExpr1, finalExpr2, type));
+    }
+    return unfoldingCompare(expr1, expr2, type);
+  }
+
+  private boolean unfoldingCompare(Expression expr1, Expression expr2, Expression type) {
+    // Unfold the function with the greater height first since it might reduce to the other side
+    while (true) {
+      FunctionDefinition function1 = getUnfoldableFunction(expr1);
+      FunctionDefinition function2 = getUnfoldableFunction(expr2);
+      if (function1 == function2) {
+        break;
+      }
+
+      boolean unfoldFirst = function2 == null || function1 != null && function1.getHeight() >= function2.getHeight();
+      Expression unfolded = NormalizeVisitor.INSTANCE.eval(unfoldFirst ? expr1 : expr2);
+      if (unfolded == null) {
+        break;
+      }
+      if (unfoldFirst) {
+        expr1 = unfolded.getUnderlyingExpression();
+      } else {
+        expr2 = unfolded.getUnderlyingExpression();
+      }
+      if (expr1.getStuckInferenceVariable() != null || expr2.getStuckInferenceVariable() != null) {
+        break;
+      }
+      if (nonNormalizingCompare(expr1, expr2, type)) {
+        return true;
+      }
+    }
+
     return normalizedCompare(expr1.normalize(NormalizationMode.WHNF), expr2.normalize(NormalizationMode.WHNF), type == null ? null : type.normalize(NormalizationMode.WHNF));
   }
 
+  /**
+   * @return the function of a function call which can be unfolded lazily or null.
+   */
+  private static FunctionDefinition getUnfoldableFunction(Expression expr) {
+    if (!(expr instanceof FunCallExpression)) {
+      return null;
+    }
+    FunctionDefinition function = ((FunCallExpression) expr).getDefinition();
+    return function.getHeight() > 0 && !(function instanceof DConstructor) && function.getBody() != null && !(function.getBody() instanceof IntervalElim) ? function : null;
+  }
+
   private ExprSubstitution getSubstitution() {
     ExprSubstitution substitution = new ExprSubstitution();
     for (Map.Entry<Binding, Binding> entry : mySubstitution.entrySet()) {
@@ -451,6 +510,12 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
       if (intExpr != null) {
         return visitInteger(intExpr, expr1);
       }
+      if (((ConCallExpression) expr1).getDefinition() == Prelude.SUC) {
+        ConCallExpression conCall2 = expr2.cast(ConCallExpression.class);
+        if (conCall2 != null && conCall2.getDefinition() == Prelude.SUC && (expr1 instanceof OffsetExpression || conCall2 instanceof OffsetExpression)) {
+          return visitOffsets(expr1, conCall2);
+        }
+      }
     }
     return visitDefCall(expr1, expr2, type, true);
   }
@@ -1050,6 +1115,11 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
       return expr1.isEqual(intExpr2);
     }
 
+    OffsetExpression offset2 = expr2.cast(OffsetExpression.class);
+    if (offset2 != null) {
+      return expr1.compare(offset2.getOffset()) >= 0 && compare(expr1.subtract(offset2.getOffset()), offset2.getBase(), ExpressionFactory.Nat());
+    }
+
     ConCallExpression conCall2 = expr2.cast(ConCallExpression.class);
     Constructor constructor2 = conCall2 == null ? null : conCall2.getDefinition();
     if (constructor2 == null || !expr1.match(constructor2)) {
@@ -1061,6 +1131,46 @@ public class CompareVisitor implements ExpressionVisitor2<Expression, Expression
     return compare(expr1.pred(), conCall2.getDefCallArguments().get(0), ExpressionFactory.Nat());
   }
 
+  private static IntegerExpression getSucCount(Expression expr) {
+    IntegerExpression count = new SmallIntegerExpression(0);
+    while (true) {
+      OffsetExpression offset = expr.cast(OffsetExpression.class);
+      if (offset != null) {
+        count = count.plus(offset.getOffset());
+        expr = offset.getBase();
+        continue;
+      }
+      ConCallExpression conCall = expr.cast(ConCallExpression.class);
+      if (conCall == null || conCall.getDefinition() != Prelude.SUC) {
+        return count;
+      }
+      count = count.suc();
+      expr = conCall.getDefCallArguments().get(0);
+    }
+  }
+
+  private static Expression stripSucs(Expression expr) {
+    while (true) {
+      OffsetExpression offset = expr.cast(OffsetExpression.class);
+      if (offset != null) {
+        expr = offset.getBase();
+        continue;
+      }
+      ConCallExpression conCall = expr.cast(ConCallExpression.class);
+      if (conCall == null || conCall.getDefinition() != Prelude.SUC) {
+        return expr;
+      }
+      expr = conCall.getDefCallArguments().get(0);
+    }
+  }
+
+  private boolean visitOffsets(Expression expr1, Expression expr2) {
+    IntegerExpression offset1 = getSucCount(expr1);
+    IntegerExpression offset2 = getSucCount(expr2);
+    IntegerExpression min = offset1.compare(offset2) <= 0 ? offset1 : offset2;
+    return compare(OffsetExpression.make(stripSucs(expr1), offset1.subtract(min)), OffsetExpression.make(stripSucs(expr2), offset2.subtract(min)), ExpressionFactory.Nat());
+  }
+
   @Override
   public Boolean visitInteger(IntegerExpression expr, Expression expr2, Expression type) {
     return visitInteger(expr, expr2);
@@ -0,0 +1,28 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.elimtree.Body;
+import org.arend.core.expr.DefCallExpression;
+
+/**
+ * Computes the definitional height of a function, that is, one plus the maximal height of functions invoked in its body.
+ */
+public class DefinitionHeightVisitor extends VoidExpressionVisitor<Void> {
+  private int myHeight;
+
+  private DefinitionHeightVisitor() {}
+
+  public static int getHeight(Body body) {
+    DefinitionHeightVisitor visitor = new DefinitionHeightVisitor();
+    visitor.visitBody(body, null);
+    return visitor.myHeight + 1;
+  }
+
+  @Override
+  public Void visitDefCall(DefCallExpression expr, Void params) {
+    if (expr.getDefinition() instanceof FunctionDefinition) {
+      myHeight = Math.max(myHeight, ((FunctionDefinition) expr.getDefinition()).getHeight());
+    }
+    return super.visitDefCall(expr, params);
+  }
+}
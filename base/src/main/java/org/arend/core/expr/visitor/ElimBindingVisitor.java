@@ -111,6 +111,10 @@ public class ElimBindingVisitor extends BaseExpressionVisitor<Void, Expression>
 
   @Override
   public Expression visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      Expression newBase = acceptSelf(((OffsetExpression) expr).getBase(), true);
+      return newBase == null ? null : OffsetExpression.make(newBase, ((OffsetExpression) expr).getOffset());
+    }
     List<Expression> newArgs = visitDefCallArguments(expr.getDefCallArguments());
     if (newArgs == null) {
       return null;
@@ -43,6 +43,9 @@ public class FindBindingVisitor extends BaseExpressionVisitor<Void, Variable> {
 
   @Override
   public Variable visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      return ((OffsetExpression) expr).getBase().accept(this, null);
+    }
     for (Expression arg : expr.getDataTypeArguments()) {
       Variable result = arg.accept(this, null);
       if (result != null) {
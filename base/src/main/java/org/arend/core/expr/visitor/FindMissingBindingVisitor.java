@@ -45,6 +45,9 @@ public class FindMissingBindingVisitor extends BaseExpressionVisitor<Void, Varia
 
   @Override
   public Variable visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      return ((OffsetExpression) expr).getBase().accept(this, null);
+    }
     for (Expression arg : expr.getDataTypeArguments()) {
       Variable result = arg.accept(this, null);
       if (result != null) {
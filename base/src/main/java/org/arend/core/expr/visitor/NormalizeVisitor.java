@@ -9,6 +9,7 @@ import org.arend.core.context.param.SingleDependentLink;
 import org.arend.core.definition.*;
 import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
+import org.arend.core.expr.eval.BodyDependencies;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.pattern.Pattern;
 import org.arend.core.subst.ExprSubstitution;
@@ -16,6 +17,7 @@ import org.arend.core.subst.LevelSubstitution;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.prelude.Prelude;
 import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.typechecking.profiling.ProfilingCounters;
 import org.arend.util.Pair;
 
 import java.util.*;
@@ -33,6 +35,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     Expression function = expr.getFunction().accept(this, mode);
     LamExpression lamExpr = function.cast(LamExpression.class);
     if (lamExpr != null) {
+      ProfilingCounters.countNormalizationStep();
       return AppExpression.make(lamExpr, expr.getArgument(), expr.isExplicit()).accept(this, mode);
     } else {
       return AppExpression.make(function, mode == NormalizationMode.WHNF ? expr.getArgument() : expr.getArgument().accept(this, mode), expr.isExplicit());
@@ -91,15 +94,17 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
       if (mode != NormalizationMode.WHNF) {
         arg1 = arg1.accept(this, mode);
       }
-      for (int i = 0; intExpr2.compare(i) > 0; i++) {
-        arg1 = Suc(arg1);
-      }
-      return arg1;
+      return OffsetExpression.make(arg1, intExpr2);
     }
 
     List<Expression> newDefCallArgs = new ArrayList<>(2);
     newDefCallArgs.add(arg1.accept(this, mode));
     Expression result = new FunCallExpression(Prelude.PLUS, expr.getSortArgument(), newDefCallArgs);
+    OffsetExpression offset2 = arg2.cast(OffsetExpression.class);
+    if (offset2 != null) {
+      result = OffsetExpression.make(result, offset2.getOffset());
+      arg2 = offset2.getBase();
+    }
     ConCallExpression conCall2 = arg2.cast(ConCallExpression.class);
     while (conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
       result = Suc(result);
@@ -126,6 +131,15 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
         return Neg(mode == NormalizationMode.WHNF ? arg2 : arg2.accept(this, mode));
       }
 
+      OffsetExpression offset2 = arg2.cast(OffsetExpression.class);
+      if (offset2 != null) {
+        if (intExpr1.compare(offset2.getOffset()) < 0) {
+          return Neg(OffsetExpression.make(offset2.getBase(), offset2.getOffset().subtract(intExpr1)));
+        }
+        intExpr1 = intExpr1.subtract(offset2.getOffset());
+        arg2 = offset2.getBase();
+      }
+
       ConCallExpression conCall2 = arg2.cast(ConCallExpression.class);
       while (!intExpr1.isZero() && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
         intExpr1 = intExpr1.pred();
@@ -154,6 +168,16 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     arg2 = arg2.accept(this, NormalizationMode.WHNF);
     IntegerExpression intExpr2 = arg2.cast(IntegerExpression.class);
     if (intExpr2 != null) {
+      OffsetExpression offset1 = arg1.cast(OffsetExpression.class);
+      if (offset1 != null) {
+        if (intExpr2.compare(offset1.getOffset()) < 0) {
+          return Pos(OffsetExpression.make(offset1.getBase(), offset1.getOffset().subtract(intExpr2)));
+        }
+        intExpr2 = intExpr2.subtract(offset1.getOffset());
+        arg1 = offset1.getBase();
+        conCall1 = arg1.cast(ConCallExpression.class);
+      }
+
       while (!intExpr2.isZero() && conCall1 != null && conCall1.getDefinition() == Prelude.SUC) {
         intExpr2 = intExpr2.pred();
         arg1 = conCall1.getDefCallArguments().get(0);
@@ -170,6 +194,16 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
       return new FunCallExpression(Prelude.MINUS, expr.getSortArgument(), newDefCallArgs);
     }
 
+    OffsetExpression offset1 = arg1.cast(OffsetExpression.class);
+    OffsetExpression offset2 = arg2.cast(OffsetExpression.class);
+    if (offset1 != null && offset2 != null) {
+      int cmp = offset1.getOffset().compare(offset2.getOffset());
+      IntegerExpression min = cmp <= 0 ? offset1.getOffset() : offset2.getOffset();
+      arg1 = OffsetExpression.make(offset1.getBase(), offset1.getOffset().subtract(min));
+      arg2 = OffsetExpression.make(offset2.getBase(), offset2.getOffset().subtract(min));
+      conCall1 = arg1.cast(ConCallExpression.class);
+    }
+
     ConCallExpression conCall2 = arg2.cast(ConCallExpression.class);
     while (conCall1 != null && conCall1.getDefinition() == Prelude.SUC && conCall2 != null && conCall2.getDefinition() == Prelude.SUC) {
       arg1 = conCall1.getDefCallArguments().get(0);
@@ -299,6 +333,9 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     }
 
     if (definition == Prelude.SUC) {
+      if (expr instanceof OffsetExpression) {
+        return OffsetExpression.make(((OffsetExpression) expr).getBase().accept(this, mode), ((OffsetExpression) expr).getOffset());
+      }
       Expression arg = defCallArgs.get(0).accept(this, mode);
       IntegerExpression intArg = arg.cast(IntegerExpression.class);
       return intArg != null ? intArg.suc() : Suc(arg);
@@ -362,7 +399,11 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
 
     ComputationRunner.checkCanceled();
 
-    return result == null ? applyDefCall(expr, mode) : result.accept(this, mode);
+    if (result == null) {
+      return applyDefCall(expr, mode);
+    }
+    ProfilingCounters.countNormalizationStep();
+    return result.accept(this, mode);
   }
 
   public Stack<Expression> makeStack(List<? extends Expression> arguments) {
@@ -376,6 +417,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
   public Expression eval(Expression expr) {
     if (expr instanceof FunCallExpression) {
       FunCallExpression funCall = (FunCallExpression) expr;
+      BodyDependencies.record(funCall.getDefinition());
       Body body = funCall.getDefinition().getActualBody();
       if (body instanceof Expression) {
         return ((Expression) body).subst(new ExprSubstitution().add(funCall.getDefinition().getParameters(), funCall.getDefCallArguments()), funCall.getSortArgument().toLevelSubstitution());
@@ -504,6 +546,9 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
 
   @Override
   public Expression visitDefCall(DefCallExpression expr, NormalizationMode mode) {
+    if (expr.getDefinition() instanceof Function) {
+      BodyDependencies.record((Function) expr.getDefinition());
+    }
     if (expr.getDefinition() instanceof FunctionDefinition && ((FunctionDefinition) expr.getDefinition()).isSFunc() ||
         expr.getDefinition() instanceof ClassField && ((ClassField) expr.getDefinition()).isProperty() ||
         expr.getDefinition().status() != Definition.TypeCheckingStatus.NO_ERRORS && expr.getDefinition() instanceof Function && ((Function) expr.getDefinition()).getBody() == null) {
@@ -558,7 +603,11 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
 
   @Override
   public Expression visitInferenceReference(InferenceReferenceExpression expr, NormalizationMode mode) {
-    return expr.getSubstExpression() != null ? expr.getSubstExpression().accept(this, mode) : expr;
+    if (expr.getSubstExpression() == null) {
+      BodyDependencies.recordStuck();
+      return expr;
+    }
+    return expr.getSubstExpression().accept(this, mode);
   }
 
   @Override
@@ -671,6 +720,7 @@ public class NormalizeVisitor extends BaseExpressionVisitor<NormalizationMode, E
     if (!expr.isSCase()) {
       Expression result = eval(expr.getElimBody(), expr.getArguments(), new ExprSubstitution(), LevelSubstitution.EMPTY);
       if (result != null) {
+        ProfilingCounters.countNormalizationStep();
         return result.accept(this, mode);
       }
     }
@@ -43,6 +43,9 @@ public class StripVisitor implements ExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      return OffsetExpression.make(((OffsetExpression) expr).getBase().accept(this, null), ((OffsetExpression) expr).getOffset());
+    }
     List<Expression> dataTypeArgs = new ArrayList<>(expr.getDataTypeArguments().size());
     for (Expression arg : expr.getDataTypeArguments()) {
       dataTypeArgs.add(arg.accept(this, null));
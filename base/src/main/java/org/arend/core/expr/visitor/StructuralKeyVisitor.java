@@ -0,0 +1,233 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.context.param.DependentLink;
+import org.arend.core.definition.ClassField;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+
+import java.util.*;
+
+/**
+ * Computes a key of closed expressions which is invariant under renaming of bound variables.
+ * Two expressions have equal keys if and only if they coincide up to renaming of bound variables,
+ * so keys can be compared without comparing expressions.
+ * Expressions with free variables, inference variables, or errors are not closed.
+ * Expressions that contain let and case expressions do not have keys either.
+ */
+public class StructuralKeyVisitor implements ExpressionVisitor<Void, Boolean> {
+  private final Map<Binding, Integer> myBound = new HashMap<>();
+  private final List<Object> myKey = new ArrayList<>();
+
+  private StructuralKeyVisitor() {}
+
+  /**
+   * @return the key of {@code expr} or null if it is not closed.
+   */
+  public static List<Object> getKey(Expression expr) {
+    StructuralKeyVisitor visitor = new StructuralKeyVisitor();
+    return expr.accept(visitor, null) ? visitor.myKey : null;
+  }
+
+  private void bind(Binding binding) {
+    myBound.put(binding, myBound.size());
+  }
+
+  private boolean addLevel(Level level) {
+    if (level.getVar() instanceof InferenceLevelVariable) {
+      return false;
+    }
+    myKey.add(level.getVar());
+    myKey.add(level.getConstant());
+    myKey.add(level.getMaxConstant());
+    return true;
+  }
+
+  private boolean addSort(Sort sort) {
+    return addLevel(sort.getPLevel()) && addLevel(sort.getHLevel());
+  }
+
+  private boolean addExpressions(List<? extends Expression> exprs) {
+    myKey.add(exprs.size());
+    for (Expression expr : exprs) {
+      if (!expr.accept(this, null)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private boolean addParameters(DependentLink link) {
+    for (; link.hasNext(); link = link.getNext()) {
+      myKey.add(link.isExplicit());
+      if (!link.getTypeExpr().accept(this, null)) {
+        return false;
+      }
+      bind(link);
+    }
+    myKey.add(DependentLink.class);
+    return true;
+  }
+
+  private boolean addDefCall(DefCallExpression expr) {
+    myKey.add(expr.getDefinition());
+    return addSort(expr.getSortArgument()) && addExpressions(expr.getDefCallArguments());
+  }
+
+  @Override
+  public Boolean visitApp(AppExpression expr, Void params) {
+    myKey.add(AppExpression.class);
+    myKey.add(expr.isExplicit());
+    return expr.getFunction().accept(this, null) && expr.getArgument().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitFunCall(FunCallExpression expr, Void params) {
+    myKey.add(FunCallExpression.class);
+    return addDefCall(expr);
+  }
+
+  @Override
+  public Boolean visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      myKey.add(OffsetExpression.class);
+      myKey.add(((OffsetExpression) expr).getOffset().getBigInteger());
+      return ((OffsetExpression) expr).getBase().accept(this, null);
+    }
+    myKey.add(ConCallExpression.class);
+    return addExpressions(expr.getDataTypeArguments()) && addDefCall(expr);
+  }
+
+  @Override
+  public Boolean visitDataCall(DataCallExpression expr, Void params) {
+    myKey.add(DataCallExpression.class);
+    return addDefCall(expr);
+  }
+
+  @Override
+  public Boolean visitFieldCall(FieldCallExpression expr, Void params) {
+    myKey.add(FieldCallExpression.class);
+    myKey.add(expr.getDefinition());
+    return addSort(expr.getSortArgument()) && expr.getArgument().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitClassCall(ClassCallExpression expr, Void params) {
+    myKey.add(ClassCallExpression.class);
+    myKey.add(expr.getDefinition());
+    if (!addSort(expr.getSortArgument())) {
+      return false;
+    }
+    bind(expr.getThisBinding());
+    Map<ClassField, Expression> implementations = expr.getImplementedHere();
+    myKey.add(implementations.size());
+    for (ClassField field : expr.getDefinition().getFields()) {
+      Expression impl = implementations.get(field);
+      if (impl != null) {
+        myKey.add(field);
+        if (!impl.accept(this, null)) {
+          return false;
+        }
+      }
+    }
+    return true;
+  }
+
+  @Override
+  public Boolean visitReference(ReferenceExpression expr, Void params) {
+    Integer index = myBound.get(expr.getBinding());
+    if (index == null) {
+      return false;
+    }
+    myKey.add(ReferenceExpression.class);
+    myKey.add(index);
+    return true;
+  }
+
+  @Override
+  public Boolean visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    return expr.getSubstExpression() != null && expr.getSubstExpression().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitSubst(SubstExpression expr, Void params) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitLam(LamExpression expr, Void params) {
+    myKey.add(LamExpression.class);
+    return addSort(expr.getResultSort()) && addParameters(expr.getParameters()) && expr.getBody().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitPi(PiExpression expr, Void params) {
+    myKey.add(PiExpression.class);
+    return addSort(expr.getResultSort()) && addParameters(expr.getParameters()) && expr.getCodomain().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitSigma(SigmaExpression expr, Void params) {
+    myKey.add(SigmaExpression.class);
+    return addSort(expr.getSort()) && addParameters(expr.getParameters());
+  }
+
+  @Override
+  public Boolean visitUniverse(UniverseExpression expr, Void params) {
+    myKey.add(UniverseExpression.class);
+    return addSort(expr.getSort());
+  }
+
+  @Override
+  public Boolean visitError(ErrorExpression expr, Void params) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitTuple(TupleExpression expr, Void params) {
+    myKey.add(TupleExpression.class);
+    return visitSigma(expr.getSigmaType(), null) && addExpressions(expr.getFields());
+  }
+
+  @Override
+  public Boolean visitProj(ProjExpression expr, Void params) {
+    myKey.add(ProjExpression.class);
+    myKey.add(expr.getField());
+    return expr.getExpression().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitNew(NewExpression expr, Void params) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitPEval(PEvalExpression expr, Void params) {
+    myKey.add(PEvalExpression.class);
+    return expr.getExpression().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitLet(LetExpression expr, Void params) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitCase(CaseExpression expr, Void params) {
+    return false;
+  }
+
+  @Override
+  public Boolean visitOfType(OfTypeExpression expr, Void params) {
+    return expr.getExpression().accept(this, null);
+  }
+
+  @Override
+  public Boolean visitInteger(IntegerExpression expr, Void params) {
+    myKey.add(IntegerExpression.class);
+    myKey.add(expr.getBigInteger());
+    return true;
+  }
+}
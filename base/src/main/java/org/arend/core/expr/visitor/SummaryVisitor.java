@@ -0,0 +1,162 @@
+package org.arend.core.expr.visitor;
+
+import org.arend.core.context.binding.Binding;
+import org.arend.core.context.binding.EvaluatingBinding;
+import org.arend.core.context.binding.inference.InferenceLevelVariable;
+import org.arend.core.expr.*;
+import org.arend.core.sort.Level;
+import org.arend.core.sort.Sort;
+import org.arend.ext.variable.Variable;
+
+import java.util.List;
+
+/**
+ * Computes summaries of expressions.
+ * The lower {@link #FILTER_SIZE} bits of a summary form a bloom filter of free variables of an expression, and the upper bits are flags.
+ * Expressions that bind variables, may be mutated, or may be changed by a substitution even if it does not mention their free variables are {@link #OPAQUE}.
+ */
+public class SummaryVisitor extends BaseExpressionVisitor<Void, Long> {
+  public static final SummaryVisitor INSTANCE = new SummaryVisitor();
+
+  public static final long COMPUTED = 1L << 63;
+  public static final long OPAQUE = 1L << 62;
+  public static final long LEVELS = 1L << 61;
+  public static final long INFERENCE_LEVELS = 1L << 60;
+  public static final int FILTER_SIZE = 60;
+
+  private SummaryVisitor() {}
+
+  public static long getFilter(Variable variable) {
+    int hash = System.identityHashCode(variable) * 0x9E3779B9;
+    return 1L << ((hash >>> 1) % FILTER_SIZE);
+  }
+
+  private static long getSummary(Level level) {
+    return level.getVar() == null ? 0 : level.getVar() instanceof InferenceLevelVariable ? LEVELS | INFERENCE_LEVELS : LEVELS;
+  }
+
+  private static long getSummary(Sort sort) {
+    return getSummary(sort.getPLevel()) | getSummary(sort.getHLevel());
+  }
+
+  private static long getSummary(List<? extends Expression> expressions) {
+    long result = 0;
+    for (Expression expression : expressions) {
+      result |= expression.getSummary();
+    }
+    return result;
+  }
+
+  private static long normalize(long summary) {
+    return (summary & OPAQUE) != 0 ? OPAQUE : summary & ~COMPUTED;
+  }
+
+  @Override
+  public Long visitApp(AppExpression expr, Void params) {
+    return normalize(expr.getFunction().getSummary() | expr.getArgument().getSummary());
+  }
+
+  @Override
+  public Long visitDefCall(DefCallExpression expr, Void params) {
+    return normalize(getSummary(expr.getSortArgument()) | getSummary(expr.getDefCallArguments()));
+  }
+
+  @Override
+  public Long visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      return normalize(getSummary(expr.getSortArgument()) | ((OffsetExpression) expr).getBase().getSummary());
+    }
+    return normalize(getSummary(expr.getSortArgument()) | getSummary(expr.getDataTypeArguments()) | getSummary(expr.getDefCallArguments()));
+  }
+
+  @Override
+  public Long visitFieldCall(FieldCallExpression expr, Void params) {
+    return normalize(getSummary(expr.getSortArgument()) | expr.getArgument().getSummary());
+  }
+
+  @Override
+  public Long visitClassCall(ClassCallExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitReference(ReferenceExpression expr, Void params) {
+    Binding binding = expr.getBinding();
+    return binding instanceof EvaluatingBinding || binding instanceof ClassCallExpression.ClassCallBinding ? OPAQUE : getFilter(binding);
+  }
+
+  @Override
+  public Long visitInferenceReference(InferenceReferenceExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitSubst(SubstExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitLam(LamExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitPi(PiExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitSigma(SigmaExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitUniverse(UniverseExpression expr, Void params) {
+    return getSummary(expr.getSort());
+  }
+
+  @Override
+  public Long visitError(ErrorExpression expr, Void params) {
+    return expr.getExpression() == null ? 0 : OPAQUE;
+  }
+
+  @Override
+  public Long visitTuple(TupleExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitProj(ProjExpression expr, Void params) {
+    return normalize(expr.getExpression().getSummary());
+  }
+
+  @Override
+  public Long visitNew(NewExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitPEval(PEvalExpression expr, Void params) {
+    return normalize(expr.getExpression().getSummary());
+  }
+
+  @Override
+  public Long visitLet(LetExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitCase(CaseExpression expr, Void params) {
+    return OPAQUE;
+  }
+
+  @Override
+  public Long visitOfType(OfTypeExpression expr, Void params) {
+    return normalize(expr.getExpression().getSummary() | expr.getTypeOf().getSummary());
+  }
+
+  @Override
+  public Long visitInteger(IntegerExpression expr, Void params) {
+    return 0L;
+  }
+}
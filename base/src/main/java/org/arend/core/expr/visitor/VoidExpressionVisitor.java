@@ -28,6 +28,9 @@ public class VoidExpressionVisitor<P> extends BaseExpressionVisitor<P,Void> {
 
   @Override
   public Void visitConCall(ConCallExpression expr, P params) {
+    if (expr instanceof OffsetExpression) {
+      return ((OffsetExpression) expr).getBase().accept(this, params);
+    }
     for (Expression arg : expr.getDataTypeArguments()) {
       arg.accept(this, params);
     }
@@ -3,11 +3,13 @@ package org.arend.core.subst;
 import org.arend.ext.variable.Variable;
 import org.arend.core.context.param.DependentLink;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.SummaryVisitor;
 
 import java.util.*;
 
 public class ExprSubstitution {
   private Map<Variable, Expression> mySubstExprs;
+  private long myFilter; // a bloom filter of keys; it is not updated when a key is removed
 
   public ExprSubstitution() {
     mySubstExprs = Collections.emptyMap();
@@ -15,6 +17,7 @@ public class ExprSubstitution {
 
   public ExprSubstitution(ExprSubstitution substitution) {
     mySubstExprs = substitution.mySubstExprs.isEmpty() ? Collections.emptyMap() : new HashMap<>(substitution.mySubstExprs);
+    myFilter = substitution.myFilter;
   }
 
   public ExprSubstitution(Variable from, Expression to) {
@@ -38,6 +41,13 @@ public class ExprSubstitution {
     return mySubstExprs.size();
   }
 
+  /**
+   * @return a bloom filter of keys of this substitution, compatible with {@link SummaryVisitor#getFilter}.
+   */
+  public long getFilter() {
+    return myFilter;
+  }
+
   public Expression get(Variable binding)  {
     return mySubstExprs.get(binding);
   }
@@ -46,6 +56,7 @@ public class ExprSubstitution {
     if (!mySubstExprs.isEmpty()) {
       mySubstExprs.clear();
     }
+    myFilter = 0;
   }
 
   public void remove(Variable variable) {
@@ -59,6 +70,7 @@ public class ExprSubstitution {
       mySubstExprs = new HashMap<>();
     }
     mySubstExprs.put(binding, expression);
+    myFilter |= SummaryVisitor.getFilter(binding);
   }
 
   public void addSubst(Variable binding, Expression expression) {
@@ -70,6 +82,7 @@ public class ExprSubstitution {
       }
     }
     mySubstExprs.put(binding, expression);
+    myFilter |= SummaryVisitor.getFilter(binding);
   }
 
   public void addAll(ExprSubstitution substitution) {
@@ -78,6 +91,7 @@ public class ExprSubstitution {
         mySubstExprs = new HashMap<>();
       }
       mySubstExprs.putAll(substitution.mySubstExprs);
+      myFilter |= substitution.myFilter;
     }
   }
 
@@ -90,6 +104,7 @@ public class ExprSubstitution {
         break;
       }
       mySubstExprs.put(link, arg);
+      myFilter |= SummaryVisitor.getFilter(link);
       link = link.getNext();
     }
     return this;
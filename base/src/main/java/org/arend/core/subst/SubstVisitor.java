@@ -12,6 +12,7 @@ import org.arend.core.elimtree.*;
 import org.arend.core.expr.*;
 import org.arend.core.expr.let.LetClause;
 import org.arend.core.expr.visitor.BaseExpressionVisitor;
+import org.arend.core.expr.visitor.SummaryVisitor;
 import org.arend.core.pattern.Pattern;
 
 import java.util.*;
@@ -19,12 +20,18 @@ import java.util.*;
 public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
   private final ExprSubstitution myExprSubstitution;
   private final LevelSubstitution myLevelSubstitution;
+  private final boolean myPreserveUnaffected;
 
   public static class SubstException extends RuntimeException {}
 
+  /**
+   * If both substitutions are empty, the visitor copies expressions.
+   * Otherwise, it returns subexpressions unaffected by the substitutions as is.
+   */
   public SubstVisitor(ExprSubstitution exprSubstitution, LevelSubstitution levelSubstitution) {
     myExprSubstitution = exprSubstitution;
     myLevelSubstitution = levelSubstitution;
+    myPreserveUnaffected = !isEmpty();
   }
 
   public ExprSubstitution getExprSubstitution() {
@@ -39,13 +46,28 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
     return myExprSubstitution.isEmpty() && myLevelSubstitution.isEmpty();
   }
 
+  private boolean isUnaffected(Expression expr) {
+    if (!myPreserveUnaffected) {
+      return false;
+    }
+    // Subexpressions with inference level variables are not shared since they are updated in place when levels are solved
+    long summary = expr.getSummary();
+    return (summary & (SummaryVisitor.OPAQUE | SummaryVisitor.INFERENCE_LEVELS | myExprSubstitution.getFilter())) == 0 && (myLevelSubstitution.isEmpty() || (summary & SummaryVisitor.LEVELS) == 0);
+  }
+
   @Override
   public Expression visitApp(AppExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return AppExpression.make(expr.getFunction().accept(this, null), expr.getArgument().accept(this, null), expr.isExplicit());
   }
 
   @Override
   public Expression visitDefCall(DefCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     List<Expression> args = new ArrayList<>(expr.getDefCallArguments().size());
     for (Expression arg : expr.getDefCallArguments()) {
       args.add(arg.accept(this, null));
@@ -55,6 +77,12 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitConCall(ConCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
+    if (expr instanceof OffsetExpression) {
+      return OffsetExpression.make(((OffsetExpression) expr).getBase().accept(this, null), ((OffsetExpression) expr).getOffset());
+    }
     List<Expression> dataTypeArgs = new ArrayList<>(expr.getDataTypeArguments().size());
     for (Expression parameter : expr.getDataTypeArguments()) {
       dataTypeArgs.add(parameter.accept(this, null));
@@ -86,6 +114,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitFieldCall(FieldCallExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return FieldCallExpression.make(expr.getDefinition(), expr.getSortArgument().subst(myLevelSubstitution), expr.getArgument().accept(this, null));
   }
 
@@ -194,6 +225,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitProj(ProjExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return ProjExpression.make(expr.getExpression().accept(this, null), expr.getField());
   }
 
@@ -208,6 +242,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitPEval(PEvalExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return new PEvalExpression(expr.getExpression().accept(this, null));
   }
 
@@ -267,6 +304,9 @@ public class SubstVisitor extends BaseExpressionVisitor<Void, Expression> {
 
   @Override
   public Expression visitOfType(OfTypeExpression expr, Void params) {
+    if (isUnaffected(expr)) {
+      return expr;
+    }
     return new OfTypeExpression(expr.getExpression().accept(this, null), expr.getTypeOf().accept(this, null));
   }
 
@@ -124,7 +124,7 @@ public abstract class BaseLibrary implements Library {
     return false;
   }
 
-  private void orderModules(Collection<? extends ModulePath> modules, Ordering ordering) {
+  protected void orderModules(Collection<? extends ModulePath> modules, Ordering ordering) {
     if (modules.isEmpty()) {
       return;
     }
@@ -146,6 +146,11 @@ public abstract class BaseLibrary implements Library {
     return true;
   }
 
+  @Override
+  public boolean resolvePostponedModules() {
+    return false;
+  }
+
   @Override
   public boolean orderTestModules(Ordering ordering) {
     orderModules(getTestModules(), ordering);
@@ -152,6 +152,14 @@ public interface Library {
    */
   boolean orderModules(Ordering ordering);
 
+  /**
+   * Invoked after modules ordered by {@link #orderModules} are typechecked.
+   * Loads modules that were postponed until the modules on which they depend are typechecked.
+   *
+   * @return true if {@link #orderModules} should be invoked again, false otherwise.
+   */
+  boolean resolvePostponedModules();
+
   /**
    * Runs an ordering on test modules.
    *
@@ -123,6 +123,18 @@ public class LibraryManager {
     return myReverseDependencies.keySet();
   }
 
+  /**
+   * Gets libraries that directly depend on a given library.
+   *
+   * @param library a registered library.
+   *
+   * @return the set of dependent libraries.
+   */
+  public Collection<? extends Library> getDependentLibraries(Library library) {
+    Set<Library> dependents = myReverseDependencies.get(library);
+    return dependents == null ? Collections.emptySet() : dependents;
+  }
+
   /**
    * Gets the library with the given name.
    *
@@ -276,6 +288,43 @@ public class LibraryManager {
     }
   }
 
+  /**
+   * Unloads libraries together with all libraries transitively depending on them and unregisters them from this library manager.
+   * Unlike {@link #unloadLibrary(Library)}, dependent libraries are unloaded rather than reset,
+   * so they are loaded again with references to the new definitions of their dependencies.
+   *
+   * @param libraries the libraries to unload.
+   */
+  public void unloadLibrariesWithDependents(Collection<? extends Library> libraries) {
+    if (!myLoadingLibraries.isEmpty()) {
+      myLibraryErrorReporter.report(LibraryError.unloadDuringLoading(myLoadingLibraries.stream().map(Library::getName)));
+      return;
+    }
+
+    Set<Library> toUnload = new LinkedHashSet<>();
+    Deque<Library> toVisit = new ArrayDeque<>(libraries);
+    while (!toVisit.isEmpty()) {
+      Library library = toVisit.pop();
+      if (toUnload.add(library)) {
+        Set<Library> dependents = myReverseDependencies.get(library);
+        if (dependents != null) {
+          toVisit.addAll(dependents);
+        }
+      }
+    }
+
+    for (Library library : toUnload) {
+      getClassLoader(library.isExternal()).removeDelegate(library);
+      myFailedLibraries.remove(library);
+      if (library.unload()) {
+        myReverseDependencies.remove(library);
+      }
+    }
+    for (Set<Library> dependents : myReverseDependencies.values()) {
+      dependents.removeAll(toUnload);
+    }
+  }
+
   /**
    * Unloads all libraries.
    */
@@ -24,6 +24,7 @@ import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.source.error.PersistingError;
 import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.IncrementalTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
@@ -35,15 +36,17 @@ import java.util.Collection;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Represents a library which can load modules in the binary format (see {@link #getBinarySource})
  * as well as ordinary modules (see {@link #getRawSource}).
  */
 public abstract class SourceLibrary extends BaseLibrary {
-  public enum Flag { RECOMPILE }
+  public enum Flag { RECOMPILE, UNCOMPRESSED_BINARIES }
   private final EnumSet<Flag> myFlags = EnumSet.noneOf(Flag.class);
   private final SimpleModuleScopeProvider myAdditionalModuleScopeProvider = new SimpleModuleScopeProvider();
+  private final Map<ModulePath, byte[]> myModuleFingerprints = new ConcurrentHashMap<>();
   private ArendExtension myExtension;
 
   /**
@@ -69,6 +72,49 @@ public abstract class SourceLibrary extends BaseLibrary {
     myFlags.remove(flag);
   }
 
+  /**
+   * Checks if a flag is set.
+   */
+  public boolean hasFlag(Flag flag) {
+    return myFlags.contains(flag);
+  }
+
+  /**
+   * Gets the fingerprint of a module that was loaded from or persisted to a binary source.
+   * The fingerprint changes whenever typechecked definitions of the module change.
+   *
+   * @param modulePath  a module.
+   * @return the fingerprint or null if the module was not loaded from a binary source and was not persisted.
+   */
+  @Nullable
+  public byte[] getModuleFingerprint(ModulePath modulePath) {
+    return myModuleFingerprints.get(modulePath);
+  }
+
+  /**
+   * Sets the fingerprint of a module.
+   */
+  public void setModuleFingerprint(ModulePath modulePath, byte[] fingerprint) {
+    myModuleFingerprints.put(modulePath, fingerprint);
+  }
+
+  /**
+   * Forgets the fingerprint of a module, for example, if its binary source turned out to be outdated.
+   */
+  public void removeModuleFingerprint(ModulePath modulePath) {
+    myModuleFingerprints.remove(modulePath);
+  }
+
+  /**
+   * Invoked by a binary source which is up to date except that some modules on which it depends are typechecked from raw sources.
+   * The library may load the binary source after these modules are typechecked if their fingerprints do not change.
+   * Otherwise, the module is typechecked from its raw source.
+   *
+   * @param modulePath    the path to the module.
+   * @param fingerprints  fingerprints of typechecked modules recorded in the binary source.
+   */
+  public void postponeModule(ModulePath modulePath, Map<ModulePath, byte[]> fingerprints) {}
+
   /**
    * Gets the raw source (that is, the source containing not typechecked data) for a given module path.
    *
@@ -182,12 +228,25 @@ public abstract class SourceLibrary extends BaseLibrary {
 
   /**
    * Gets a dependency listener for definitions loaded from binary sources.
+   * By default, dependencies are recorded only if the typechecker state is an {@link IncrementalTypecheckerState}.
    *
    * @return a dependency listener.
    */
   @NotNull
   public DependencyListener getDependencyListener() {
-    return DummyDependencyListener.INSTANCE;
+    TypecheckerState state = getTypecheckerState();
+    return state instanceof IncrementalTypecheckerState ? (IncrementalTypecheckerState) state : DummyDependencyListener.INSTANCE;
+  }
+
+  /**
+   * Checks if bodies of functions loaded from binary sources may be deserialized when they are accessed for the first time.
+   * Dependencies of such bodies are reported to {@link #getDependencyListener} only when they are loaded,
+   * so by default bodies are loaded lazily only if dependencies are not tracked.
+   *
+   * @return true if bodies may be loaded lazily, false otherwise.
+   */
+  public boolean loadsBodiesLazily() {
+    return getDependencyListener() == DummyDependencyListener.INSTANCE;
   }
 
   /**
@@ -269,6 +328,7 @@ public abstract class SourceLibrary extends BaseLibrary {
     try {
       SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
       if (hasRawSources()) {
+        sourceLoader.prepareRaw(header.modules, false);
         for (ModulePath module : header.modules) {
           sourceLoader.preloadRaw(module, false);
         }
@@ -320,6 +380,7 @@ public abstract class SourceLibrary extends BaseLibrary {
     for (ModulePath module : getLoadedModules()) {
       sourceLoader.setModuleLoaded(module);
     }
+    sourceLoader.prepareRaw(modules, true);
     for (ModulePath module : modules) {
       sourceLoader.preloadRaw(module, true);
     }
@@ -331,6 +392,7 @@ public abstract class SourceLibrary extends BaseLibrary {
   @Override
   public boolean unload() {
     myAdditionalModuleScopeProvider.clear();
+    myModuleFingerprints.clear();
     return super.unload();
   }
 
@@ -1,16 +1,37 @@
 package org.arend.library;
 
+import org.arend.error.DummyErrorReporter;
 import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.error.ListErrorReporter;
 import org.arend.ext.module.ModulePath;
+import org.arend.module.ModuleLocation;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
 import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.module.scopeprovider.SimpleModuleScopeProvider;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.source.BinarySource;
+import org.arend.source.Source;
+import org.arend.source.SourceLoader;
+import org.arend.source.error.PersistingError;
+import org.arend.term.NamespaceCommand;
 import org.arend.term.group.ChildGroup;
+import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.order.Ordering;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.util.ComputationInterruptedException;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * Represents a library which cannot be modified after loading.
@@ -21,6 +42,13 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
   private final SimpleModuleScopeProvider myModuleScopeProvider = new SimpleModuleScopeProvider();
   private final Map<ModulePath, ChildGroup> myGroups = new HashMap<>();
   private final Set<ModulePath> myUpdatedModules = new LinkedHashSet<>();
+  private final Set<ModulePath> myOrderedModules = new HashSet<>();
+  private final Map<ModulePath, Map<ModulePath, byte[]>> myPostponedModules = new LinkedHashMap<>();
+  private LibraryManager myLibraryManager;
+  private final Map<ModulePath, CompletableFuture<ModuleProtos.Module>> mySerializedModules = new HashMap<>();
+  private final Map<ModulePath, CompletableFuture<Boolean>> myPersistingResults = new HashMap<>();
+  private final Map<ModulePath, ListErrorReporter> myPersistingErrors = new HashMap<>();
+  private ExecutorService myPersistingExecutor;
 
   /**
    * Creates a new {@code UnmodifiableSourceLibrary}
@@ -52,6 +80,7 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
         myGroups.remove(modulePath);
         myModuleScopeProvider.unregisterModule(modulePath);
         myUpdatedModules.remove(modulePath);
+        myPostponedModules.remove(modulePath);
       } else {
         myGroups.put(modulePath, group);
         myModuleScopeProvider.registerModule(modulePath, group);
@@ -73,12 +102,20 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
     return myGroups.keySet();
   }
 
+  @Override
+  public boolean load(LibraryManager libraryManager, TypecheckingOrderingListener typechecking) {
+    myLibraryManager = libraryManager;
+    return super.load(libraryManager, typechecking);
+  }
+
   @Override
   public boolean unload() {
     super.unload();
     myGroups.clear();
     myModuleScopeProvider.clear();
     myUpdatedModules.clear();
+    myOrderedModules.clear();
+    myPostponedModules.clear();
     return true;
   }
 
@@ -86,6 +123,8 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
   public void reset() {
     super.reset();
     myUpdatedModules.addAll(getLoadedModules());
+    myOrderedModules.clear();
+    myPostponedModules.clear();
   }
 
   @Override
@@ -103,19 +142,407 @@ public abstract class UnmodifiableSourceLibrary extends SourceLibrary {
 
   public void clearUpdateModules() {
     myUpdatedModules.clear();
+    myOrderedModules.clear();
+  }
+
+  @Override
+  public void postponeModule(ModulePath modulePath, Map<ModulePath, byte[]> fingerprints) {
+    myPostponedModules.put(modulePath, fingerprints);
+  }
+
+  /**
+   * Orders updated modules except for postponed modules and modules that import them.
+   */
+  @Override
+  public boolean orderModules(Ordering ordering) {
+    List<ModulePath> modules = new ArrayList<>();
+    Map<ModulePath, Boolean> waiting = new HashMap<>();
+    for (ModulePath module : getUpdatedModules()) {
+      if (!waitsForPostponed(module, waiting)) {
+        modules.add(module);
+      }
+    }
+    myOrderedModules.addAll(modules);
+    orderModules(modules, ordering);
+    return true;
+  }
+
+  private boolean waitsForPostponed(ModulePath module, Map<ModulePath, Boolean> waiting) {
+    Boolean result = waiting.get(module);
+    if (result != null) {
+      return result;
+    }
+    waiting.put(module, false);
+
+    result = myPostponedModules.containsKey(module);
+    ChildGroup group = myGroups.get(module);
+    if (!result && group != null) {
+      for (NamespaceCommand command : group.getNamespaceCommands()) {
+        if (command.getKind() == NamespaceCommand.Kind.IMPORT && waitsForPostponed(new ModulePath(command.getPath()), waiting)) {
+          result = true;
+          break;
+        }
+      }
+    }
+    waiting.put(module, result);
+    return result;
   }
 
+  /**
+   * Loads binary sources of postponed modules if fingerprints of typechecked modules on which they depend did not change.
+   * A postponed module is resolved after all such modules are typechecked.
+   * Its binary source is loaded if their fingerprints coincide with the recorded ones, and it is typechecked otherwise.
+   */
+  @Override
+  public boolean resolvePostponedModules() {
+    if (myPostponedModules.isEmpty()) {
+      return false;
+    }
+
+    SourceLoader sourceLoader = new SourceLoader(this, myLibraryManager);
+    for (ModulePath module : getLoadedModules()) {
+      if (isTypechecked(module)) {
+        sourceLoader.setModuleTypechecked(module);
+      } else {
+        sourceLoader.setModuleLoaded(module);
+      }
+    }
+
+    boolean resolved = false;
+    Map<ModulePath, byte[]> fingerprints = new HashMap<>();
+    for (ModulePath module : orderByImports(new LinkedHashSet<>(myPostponedModules.keySet()))) {
+      Map<ModulePath, byte[]> dependencies = myPostponedModules.get(module);
+      if (!dependencies.keySet().stream().allMatch(this::isTypechecked)) {
+        continue;
+      }
+
+      resolved = true;
+      if (checkFingerprints(dependencies, fingerprints)) {
+        sourceLoader.loadBinary(module);
+      }
+      myPostponedModules.remove(module);
+    }
+
+    // Modules that wait for each other are typechecked
+    if (!resolved) {
+      myPostponedModules.clear();
+    }
+    return true;
+  }
+
+  private boolean isTypechecked(ModulePath module) {
+    return !myPostponedModules.containsKey(module) && (!myUpdatedModules.contains(module) || myOrderedModules.contains(module));
+  }
+
+  private boolean checkFingerprints(Map<ModulePath, byte[]> dependencies, Map<ModulePath, byte[]> fingerprints) {
+    for (Map.Entry<ModulePath, byte[]> entry : dependencies.entrySet()) {
+      ModulePath dependency = entry.getKey();
+      byte[] fingerprint;
+      if (fingerprints.containsKey(dependency)) {
+        fingerprint = fingerprints.get(dependency);
+      } else {
+        fingerprint = getCurrentFingerprint(dependency);
+        fingerprints.put(dependency, fingerprint);
+      }
+      if (!Arrays.equals(fingerprint, entry.getValue())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private byte[] getCurrentFingerprint(ModulePath module) {
+    if (!myUpdatedModules.contains(module)) {
+      return getModuleFingerprint(module);
+    }
+
+    ChildGroup group = myGroups.get(module);
+    ModuleProtos.Module proto = group == null ? null : new ModuleSerialization(getTypecheckerState(), DummyErrorReporter.INSTANCE).writeModule(group, module, IdReferableConverter.INSTANCE);
+    if (proto == null) {
+      return null;
+    }
+    byte[] fingerprint = proto.getFingerprint().toByteArray();
+    setModuleFingerprint(module, fingerprint);
+    return fingerprint;
+  }
+
+  /**
+   * Starts persisting of an updated module in the background.
+   * It may be invoked as soon as the module is typechecked, so that persisting overlaps with typechecking of other modules.
+   * The module is written after updated modules on which it depends are serialized, so that it records their actual fingerprints.
+   * Errors are reported and the result is awaited by {@link #persistUpdatedModules}.
+   */
+  public void persistModuleAsync(ModulePath module) {
+    if (supportsPersisting()) {
+      schedulePersisting(module);
+    }
+  }
+
+  private synchronized void schedulePersisting(ModulePath module) {
+    if (!myUpdatedModules.contains(module) || myPersistingResults.containsKey(module)) {
+      return;
+    }
+    if (myPersistingExecutor == null) {
+      myPersistingExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+
+    ListErrorReporter errorReporter = new ListErrorReporter();
+    myPersistingErrors.put(module, errorReporter);
+    CompletableFuture<ModuleProtos.Module> serialized = getSerializedModule(module);
+    BinarySource source = getBinarySource(module);
+    if (source == null) {
+      errorReporter.report(new PersistingError(module));
+      serialized.complete(null);
+      myPersistingResults.put(module, CompletableFuture.completedFuture(false));
+      return;
+    }
+
+    // Serialization does not wait for other modules, so modules that depend on each other cannot block each other
+    CompletableFuture.supplyAsync(() -> source.serialize(this, IdReferableConverter.INSTANCE, errorReporter), myPersistingExecutor)
+      .whenComplete((result, e) -> {
+        if (e != null) {
+          serialized.completeExceptionally(e);
+        } else {
+          serialized.complete(result);
+        }
+      });
+    myPersistingResults.put(module, serialized.thenCompose(result -> result == null
+      ? CompletableFuture.completedFuture(false)
+      : getSerializedDependencies(module, result).thenApplyAsync(ignored -> source.write(this, result, errorReporter), myPersistingExecutor)));
+  }
+
+  private CompletableFuture<ModuleProtos.Module> getSerializedModule(ModulePath module) {
+    return mySerializedModules.computeIfAbsent(module, k -> new CompletableFuture<>());
+  }
+
+  private synchronized CompletableFuture<Void> getSerializedDependencies(ModulePath module, ModuleProtos.Module serialized) {
+    List<CompletableFuture<?>> dependencies = new ArrayList<>();
+    for (ModulePath dependency : ModuleSerialization.getDependencies(serialized)) {
+      if (!dependency.equals(module) && myUpdatedModules.contains(dependency)) {
+        dependencies.add(getSerializedModule(dependency).exceptionally(e -> null));
+      }
+    }
+    return CompletableFuture.allOf(dependencies.toArray(new CompletableFuture<?>[0]));
+  }
+
+  /**
+   * Persists updated modules.
+   * Modules are serialized and written in parallel, including those already passed to {@link #persistModuleAsync}.
+   * Errors are reported in the order of imports.
+   */
   public boolean persistUpdatedModules(ErrorReporter errorReporter) {
+    List<ModulePath> modules = orderByImports(myUpdatedModules);
     boolean ok = true;
-    for (ModulePath module : myUpdatedModules) {
-      if (!persistModule(module, IdReferableConverter.INSTANCE, errorReporter)) {
-        ok = false;
+    try {
+      for (ModulePath module : modules) {
+        schedulePersisting(module);
+      }
+
+      for (ModulePath module : modules) {
+        CompletableFuture<Boolean> result;
+        ListErrorReporter moduleErrorReporter;
+        synchronized (this) {
+          result = myPersistingResults.get(module);
+          moduleErrorReporter = myPersistingErrors.get(module);
+        }
+
+        try {
+          if (!result.get()) {
+            ok = false;
+          }
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          throw new ComputationInterruptedException();
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+          }
+          if (cause instanceof Error) {
+            throw (Error) cause;
+          }
+          throw new IllegalStateException(cause);
+        } finally {
+          moduleErrorReporter.reportTo(errorReporter);
+        }
       }
+    } finally {
+      synchronized (this) {
+        if (myPersistingExecutor != null) {
+          myPersistingExecutor.shutdown();
+          myPersistingExecutor = null;
+        }
+        mySerializedModules.clear();
+        myPersistingResults.clear();
+        myPersistingErrors.clear();
+      }
+      myUpdatedModules.clear();
+      myOrderedModules.clear();
     }
-    myUpdatedModules.clear();
     return ok;
   }
 
+  /**
+   * Reloads modules from raw sources.
+   * Modules that import reloaded modules or contain definitions depending on their definitions are reloaded as well, so that they refer to new definitions.
+   * Definitions of reloaded modules and their dependents are reset, and reloaded modules are marked as updated.
+   * Modules are loaded from the test directory if they are not found among sources.
+   * Modules whose raw sources are no longer available are removed from the library.
+   * Affected modules of other libraries are reloaded in the same way if their raw sources are available, so these libraries should be typechecked again.
+   *
+   * @param modules             modules that were changed.
+   * @param dependencyListener  a listener that recorded dependencies of typechecked definitions.
+   * @param libraryManager      the library manager of this library.
+   *
+   * @return the set of reloaded modules of this library.
+   */
+  public Set<ModulePath> reloadModules(Collection<? extends ModulePath> modules, DependencyListener dependencyListener, LibraryManager libraryManager) {
+    Set<ModulePath> reloaded = new LinkedHashSet<>();
+    Map<UnmodifiableSourceLibrary, Set<ModulePath>> otherModules = new LinkedHashMap<>();
+    Deque<ModulePath> toVisit = new ArrayDeque<>(modules);
+    while (!toVisit.isEmpty()) {
+      ModulePath module = toVisit.pop();
+      if (!reloaded.add(module)) {
+        continue;
+      }
+
+      ChildGroup group = myGroups.get(module);
+      if (group != null) {
+        List<TCReferable> dependents = new ArrayList<>();
+        invalidateGroup(group, dependencyListener, dependents);
+        for (TCReferable dependent : dependents) {
+          ModuleLocation location = dependent.getLocation();
+          if (location == null) {
+            continue;
+          }
+          if (myName.equals(location.getLibraryName())) {
+            if (myGroups.containsKey(location.getModulePath())) {
+              toVisit.add(location.getModulePath());
+            }
+          } else {
+            Library library = libraryManager.getRegisteredLibrary(location.getLibraryName());
+            if (library instanceof UnmodifiableSourceLibrary) {
+              otherModules.computeIfAbsent((UnmodifiableSourceLibrary) library, k -> new LinkedHashSet<>()).add(location.getModulePath());
+            }
+          }
+        }
+        resetGroup(group);
+      }
+
+      addImporters(module, toVisit);
+      for (Library library : libraryManager.getDependentLibraries(this)) {
+        if (library instanceof UnmodifiableSourceLibrary && library.getModuleGroup(module) == null) {
+          ((UnmodifiableSourceLibrary) library).addImporters(module, otherModules.computeIfAbsent((UnmodifiableSourceLibrary) library, k -> new LinkedHashSet<>()));
+        }
+      }
+    }
+
+    myOrderedModules.removeAll(reloaded);
+    myPostponedModules.keySet().removeAll(reloaded);
+    SourceLoader sourceLoader = new SourceLoader(this, libraryManager);
+    for (ModulePath module : getLoadedModules()) {
+      if (!reloaded.contains(module)) {
+        sourceLoader.setModuleLoaded(module);
+      }
+    }
+    List<ModulePath> sourceModules = new ArrayList<>();
+    List<ModulePath> testModules = new ArrayList<>();
+    for (ModulePath module : reloaded) {
+      if (isAvailable(getRawSource(module))) {
+        sourceModules.add(module);
+      } else if (isAvailable(getTestSource(module))) {
+        testModules.add(module);
+      } else {
+        onGroupLoaded(module, null, true);
+      }
+    }
+    sourceLoader.prepareRaw(sourceModules, false);
+    sourceLoader.prepareRaw(testModules, true);
+    for (ModulePath module : sourceModules) {
+      if (!sourceLoader.preloadRaw(module, false)) {
+        onGroupLoaded(module, null, true);
+      }
+    }
+    for (ModulePath module : testModules) {
+      if (!sourceLoader.preloadRaw(module, true)) {
+        onGroupLoaded(module, null, true);
+      }
+    }
+    sourceLoader.loadRawSources();
+
+    for (Map.Entry<UnmodifiableSourceLibrary, Set<ModulePath>> entry : otherModules.entrySet()) {
+      UnmodifiableSourceLibrary library = entry.getKey();
+      Set<ModulePath> libraryModules = entry.getValue();
+      libraryModules.removeIf(module -> !isAvailable(library.getRawSource(module)) && !isAvailable(library.getTestSource(module)));
+      if (!libraryModules.isEmpty()) {
+        library.reloadModules(libraryModules, dependencyListener, libraryManager);
+      }
+    }
+
+    return reloaded;
+  }
+
+  private static boolean isAvailable(Source source) {
+    return source != null && source.isAvailable();
+  }
+
+  private void addImporters(ModulePath module, Collection<? super ModulePath> importers) {
+    for (Map.Entry<ModulePath, ChildGroup> entry : myGroups.entrySet()) {
+      for (NamespaceCommand command : entry.getValue().getNamespaceCommands()) {
+        if (command.getKind() == NamespaceCommand.Kind.IMPORT && module.equals(new ModulePath(command.getPath()))) {
+          importers.add(entry.getKey());
+          break;
+        }
+      }
+    }
+  }
+
+  private void invalidateGroup(Group group, DependencyListener dependencyListener, List<TCReferable> dependents) {
+    invalidateReferable(group.getReferable(), dependencyListener, dependents);
+    for (Group.InternalReferable internal : group.getInternalReferables()) {
+      invalidateReferable(internal.getReferable(), dependencyListener, dependents);
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      invalidateGroup(subgroup, dependencyListener, dependents);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      invalidateGroup(subgroup, dependencyListener, dependents);
+    }
+  }
+
+  private void invalidateReferable(LocatedReferable referable, DependencyListener dependencyListener, List<TCReferable> dependents) {
+    if (referable instanceof TCReferable) {
+      dependents.addAll(dependencyListener.update((TCReferable) referable));
+    }
+  }
+
+  private List<ModulePath> orderByImports(Collection<? extends ModulePath> modules) {
+    List<ModulePath> result = new ArrayList<>(modules.size());
+    Set<ModulePath> visited = new HashSet<>();
+    for (ModulePath module : modules) {
+      orderByImports(module, modules, visited, result);
+    }
+    return result;
+  }
+
+  private void orderByImports(ModulePath module, Collection<? extends ModulePath> modules, Set<ModulePath> visited, List<ModulePath> result) {
+    if (!visited.add(module)) {
+      return;
+    }
+    ChildGroup group = myGroups.get(module);
+    if (group != null) {
+      for (NamespaceCommand command : group.getNamespaceCommands()) {
+        if (command.getKind() == NamespaceCommand.Kind.IMPORT) {
+          ModulePath imported = new ModulePath(command.getPath());
+          if (modules.contains(imported)) {
+            orderByImports(imported, modules, visited, result);
+          }
+        }
+      }
+    }
+    result.add(module);
+  }
+
   @Override
   public boolean isExternal() {
     return myExternal;
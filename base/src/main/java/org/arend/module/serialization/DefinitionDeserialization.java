@@ -9,6 +9,10 @@ import org.arend.core.expr.*;
 import org.arend.core.pattern.*;
 import org.arend.core.sort.Sort;
 import org.arend.ext.core.definition.CoreFunctionDefinition;
+import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.module.ModulePath;
+import org.arend.module.ModuleLocation;
+import org.arend.module.error.DeserializationError;
 import org.arend.naming.reference.ClassReferableImpl;
 import org.arend.naming.reference.DataLocatedReferableImpl;
 import org.arend.naming.reference.TCClassReferable;
@@ -22,14 +26,20 @@ import java.util.*;
 public class DefinitionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
   private final DependencyListener myDependencyListener;
+  private final ExpressionTable myExpressionTable;
+  private final boolean myLazyBodies;
+  private final ErrorReporter myErrorReporter;
 
-  public DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener) {
+  DefinitionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, ExpressionTable expressionTable, boolean lazyBodies, ErrorReporter errorReporter) {
     myCallTargetProvider = callTargetProvider;
     myDependencyListener = dependencyListener;
+    myExpressionTable = expressionTable;
+    myLazyBodies = lazyBodies;
+    myErrorReporter = errorReporter;
   }
 
   public void fillInDefinition(DefinitionProtos.Definition defProto, Definition def) throws DeserializationException {
-    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, myDependencyListener, def.getReferable());
+    final ExpressionDeserialization defDeserializer = new ExpressionDeserialization(myCallTargetProvider, myDependencyListener, def.getReferable(), myExpressionTable);
 
     switch (defProto.getDefinitionDataCase()) {
       case CLASS:
@@ -328,8 +338,24 @@ public class DefinitionDeserialization {
     }
     functionDef.setKind(kind);
     functionDef.setVisibleParameter(functionProto.getVisibleParameter());
+    functionDef.setHeight(functionProto.getHeight());
     if (functionProto.hasBody()) {
-      functionDef.setBody(readBody(defDeserializer, functionProto.getBody(), DependentLink.Helper.size(functionDef.getParameters())));
+      DefinitionProtos.Body bodyProto = functionProto.getBody();
+      int numberOfParameters = DependentLink.Helper.size(functionDef.getParameters());
+      // Bodies of defined constructors are followed by patterns which may register bindings, so they are read eagerly
+      if (myLazyBodies && !(functionDef instanceof DConstructor)) {
+        functionDef.setBodyLoader(() -> {
+          try {
+            return readBody(defDeserializer, bodyProto, numberOfParameters);
+          } catch (DeserializationException e) {
+            ModuleLocation location = functionDef.getReferable().getLocation();
+            myErrorReporter.report(new DeserializationError(location == null ? new ModulePath() : location.getModulePath(), new DeserializationException("Cannot load the body of '" + functionDef.getName() + "': " + e.getMessage())));
+            return null;
+          }
+        });
+      } else {
+        functionDef.setBody(readBody(defDeserializer, bodyProto, numberOfParameters));
+      }
     }
     // setTypeClassReference(functionDef.getReferable(), functionDef.getParameters(), functionDef.getResultType());
   }
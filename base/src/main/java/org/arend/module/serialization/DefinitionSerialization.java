@@ -25,13 +25,15 @@ import java.util.Set;
 
 public class DefinitionSerialization {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final ExpressionTableBuilder myExpressionTable;
 
-  public DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+  DefinitionSerialization(CallTargetIndexProvider callTargetIndexProvider, ExpressionTableBuilder expressionTable) {
     myCallTargetIndexProvider = callTargetIndexProvider;
+    myExpressionTable = expressionTable;
   }
 
   DefinitionProtos.Definition writeDefinition(Definition definition) {
-    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider);
+    final ExpressionSerialization defSerializer = new ExpressionSerialization(myCallTargetIndexProvider, myExpressionTable);
 
     final DefinitionProtos.Definition.Builder out = DefinitionProtos.Definition.newBuilder();
     out.setHasTypeClassReference(definition.getReferable().getTypeClassReference() != null);
@@ -278,6 +280,7 @@ public class DefinitionSerialization {
     }
     builder.setKind(kind);
     builder.setVisibleParameter(definition.getVisibleParameter());
+    builder.setHeight(definition.getHeight());
     if (definition.getActualBody() != null) {
       builder.setBody(writeBody(defSerializer, definition.getActualBody()));
     }
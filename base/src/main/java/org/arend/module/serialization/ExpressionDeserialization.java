@@ -27,20 +27,31 @@ import java.util.*;
 class ExpressionDeserialization {
   private final CallTargetProvider myCallTargetProvider;
   private final List<Binding> myBindings = new ArrayList<>();
+  private boolean myHasBindings;
 
   private final DependencyListener myDependencyListener;
   private final TCReferable myDefinition;
+  private final ExpressionTable myExpressionTable;
 
-  ExpressionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, TCReferable definition) {
+  ExpressionDeserialization(CallTargetProvider callTargetProvider, DependencyListener dependencyListener, TCReferable definition, ExpressionTable expressionTable) {
     myCallTargetProvider = callTargetProvider;
     myDependencyListener = dependencyListener;
     myDefinition = definition;
+    myExpressionTable = expressionTable;
   }
 
   // Bindings
 
   private void registerBinding(Binding binding) {
     myBindings.add(binding);
+    myHasBindings = true;
+  }
+
+  /**
+   * Checks if deserialized expressions bind variables, including those read from the expression table.
+   */
+  boolean hasBindings() {
+    return myHasBindings;
   }
 
   private Type readType(ExpressionProtos.Type proto) throws DeserializationException {
@@ -301,6 +312,16 @@ class ExpressionDeserialization {
         return readSmallInteger(proto.getSmallInteger());
       case BIG_INTEGER:
         return readBigInteger(proto.getBigInteger());
+      case OFFSET:
+        return readOffset(proto.getOffset());
+      case SHARED: {
+        int index = proto.getShared().getIndex();
+        Expression expr = myExpressionTable.get(index, myDependencyListener, myDefinition);
+        if (myExpressionTable.hasBindings(index)) {
+          myHasBindings = true;
+        }
+        return expr;
+      }
       default:
         throw new DeserializationException("Unknown Expression kind: " + proto.getKindCase());
     }
@@ -472,4 +493,12 @@ class ExpressionDeserialization {
   private BigIntegerExpression readBigInteger(ExpressionProtos.Expression.BigInteger proto) {
     return new BigIntegerExpression(new BigInteger(proto.getValue().toByteArray()));
   }
+
+  private Expression readOffset(ExpressionProtos.Expression.Offset proto) throws DeserializationException {
+    Expression offset = readExpr(proto.getOffset());
+    if (!(offset instanceof IntegerExpression)) {
+      throw new DeserializationException("Expected an integer");
+    }
+    return OffsetExpression.make(readExpr(proto.getBase()), (IntegerExpression) offset);
+  }
 }
@@ -30,11 +30,14 @@ import java.util.Map;
 
 class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProtos.Expression> {
   private final CallTargetIndexProvider myCallTargetIndexProvider;
+  private final ExpressionTableBuilder myExpressionTable;
   private final Map<Binding, Integer> myBindingsMap = new HashMap<>();
   private int myIndex;
+  private int myMinBindingRef = Integer.MAX_VALUE;
 
-  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider) {
+  ExpressionSerialization(CallTargetIndexProvider callTargetIndexProvider, ExpressionTableBuilder expressionTable) {
     myCallTargetIndexProvider = callTargetIndexProvider;
+    myExpressionTable = expressionTable;
   }
 
   // Bindings
@@ -60,6 +63,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
       return 0;
     } else {
       Integer ref = myBindingsMap.get(binding);
+      myMinBindingRef = Math.min(myMinBindingRef, ref);
       return ref + 1;  // zero is reserved for null
     }
   }
@@ -158,7 +162,27 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   }
 
   ExpressionProtos.Expression writeExpr(Expression expr) {
-    return expr.accept(this, null);
+    Integer index = myExpressionTable.getIndex(expr);
+    if (index != null) {
+      return writeShared(index);
+    }
+
+    int start = myIndex;
+    int minBindingRef = myMinBindingRef;
+    myMinBindingRef = Integer.MAX_VALUE;
+    ExpressionProtos.Expression result = expr.accept(this, null);
+    boolean isClosed = myMinBindingRef >= start;
+    myMinBindingRef = Math.min(minBindingRef, myMinBindingRef);
+    // Only closed expressions that do not bind variables are stored in the expression table,
+    // since other expressions are not shared after deserialization anyway
+    if (!isClosed || myIndex != start || result.getKindCase() == ExpressionProtos.Expression.KindCase.REFERENCE || result.getKindCase() == ExpressionProtos.Expression.KindCase.SMALL_INTEGER) {
+      return result;
+    }
+    return writeShared(myExpressionTable.add(expr, result));
+  }
+
+  private ExpressionProtos.Expression writeShared(int index) {
+    return ExpressionProtos.Expression.newBuilder().setShared(ExpressionProtos.Expression.Shared.newBuilder().setIndex(index)).build();
   }
 
   ExpressionProtos.Pattern writePattern(Pattern pattern) {
@@ -265,8 +289,8 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitApp(AppExpression expr, Void params) {
     ExpressionProtos.Expression.App.Builder builder = ExpressionProtos.Expression.App.newBuilder();
-    builder.setFunction(expr.getFunction().accept(this, null));
-    builder.setArgument(expr.getArgument().accept(this, null));
+    builder.setFunction(writeExpr(expr.getFunction()));
+    builder.setArgument(writeExpr(expr.getArgument()));
     builder.setIsExplicit(expr.isExplicit());
     return ExpressionProtos.Expression.newBuilder().setApp(builder).build();
   }
@@ -277,7 +301,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return builder.build();
   }
@@ -289,15 +313,22 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
 
   @Override
   public ExpressionProtos.Expression visitConCall(ConCallExpression expr, Void params) {
+    if (expr instanceof OffsetExpression) {
+      ExpressionProtos.Expression.Offset.Builder builder = ExpressionProtos.Expression.Offset.newBuilder();
+      builder.setBase(writeExpr(((OffsetExpression) expr).getBase()));
+      builder.setOffset(visitInteger(((OffsetExpression) expr).getOffset(), null));
+      return ExpressionProtos.Expression.newBuilder().setOffset(builder).build();
+    }
+
     ExpressionProtos.Expression.ConCall.Builder builder = ExpressionProtos.Expression.ConCall.newBuilder();
     builder.setConstructorRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDataTypeArguments()) {
-      builder.addDatatypeArgument(arg.accept(this, null));
+      builder.addDatatypeArgument(writeExpr(arg));
     }
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setConCall(builder).build();
   }
@@ -309,7 +340,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
     for (Expression arg : expr.getDefCallArguments()) {
-      builder.addArgument(arg.accept(this, null));
+      builder.addArgument(writeExpr(arg));
     }
     return ExpressionProtos.Expression.newBuilder().setDataCall(builder).build();
   }
@@ -367,7 +398,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Lam.Builder builder = ExpressionProtos.Expression.Lam.newBuilder();
     builder.setResultSort(writeSort(expr.getResultSort()));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setBody(expr.getBody().accept(this, null));
+    builder.setBody(writeExpr(expr.getBody()));
     return ExpressionProtos.Expression.newBuilder().setLam(builder).build();
   }
 
@@ -375,7 +406,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     ExpressionProtos.Expression.Pi.Builder builder = ExpressionProtos.Expression.Pi.newBuilder();
     builder.setResultSort(LevelProtos.Sort.newBuilder(writeSort(expr.getResultSort())));
     builder.setParam(writeSingleParameter(expr.getParameters()));
-    builder.setCodomain(expr.getCodomain().accept(this, null));
+    builder.setCodomain(writeExpr(expr.getCodomain()));
     return builder.build();
   }
 
@@ -395,7 +426,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitError(ErrorExpression expr, Void params) {
     ExpressionProtos.Expression.Error.Builder builder = ExpressionProtos.Expression.Error.newBuilder();
     if (expr.getExpression() != null && expr.isGoal()) {
-      builder.setExpression(expr.getExpression().accept(this, null));
+      builder.setExpression(writeExpr(expr.getExpression()));
     }
     builder.setIsGoal(expr.isGoal());
     builder.setUseExpression(expr.useExpression());
@@ -406,7 +437,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   public ExpressionProtos.Expression visitTuple(TupleExpression expr, Void params) {
     ExpressionProtos.Expression.Tuple.Builder builder = ExpressionProtos.Expression.Tuple.newBuilder();
     for (Expression field : expr.getFields()) {
-      builder.addField(field.accept(this, null));
+      builder.addField(writeExpr(field));
     }
     builder.setType(writeSigma(expr.getSigmaType()));
     return ExpressionProtos.Expression.newBuilder().setTuple(builder).build();
@@ -428,7 +459,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitProj(ProjExpression expr, Void params) {
     ExpressionProtos.Expression.Proj.Builder builder = ExpressionProtos.Expression.Proj.newBuilder();
-    builder.setExpression(expr.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(expr.getExpression()));
     builder.setField(expr.getField());
     return ExpressionProtos.Expression.newBuilder().setProj(builder).build();
   }
@@ -446,7 +477,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
   @Override
   public ExpressionProtos.Expression visitPEval(PEvalExpression expr, Void params) {
     ExpressionProtos.Expression.PEval.Builder builder = ExpressionProtos.Expression.PEval.newBuilder();
-    builder.setExpression(expr.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(expr.getExpression()));
     return ExpressionProtos.Expression.newBuilder().setPEval(builder).build();
   }
 
@@ -464,7 +495,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
       builder.addClause(letBuilder);
       registerBinding(letClause);
     }
-    builder.setExpression(letExpression.getExpression().accept(this, null));
+    builder.setExpression(writeExpr(letExpression.getExpression()));
     return ExpressionProtos.Expression.newBuilder().setLet(builder).build();
   }
 
@@ -532,7 +563,7 @@ class ExpressionSerialization implements ExpressionVisitor<Void, ExpressionProto
     builder.setFieldRef(myCallTargetIndexProvider.getDefIndex(expr.getDefinition()));
     builder.setPLevel(writeLevel(expr.getSortArgument().getPLevel()));
     builder.setHLevel(writeLevel(expr.getSortArgument().getHLevel()));
-    builder.setExpression(expr.getArgument().accept(this, null));
+    builder.setExpression(writeExpr(expr.getArgument()));
     return ExpressionProtos.Expression.newBuilder().setFieldCall(builder).build();
   }
 }
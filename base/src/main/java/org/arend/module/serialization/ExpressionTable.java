@@ -0,0 +1,86 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.Expression;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.order.dependency.DependencyListener;
+
+import java.util.*;
+
+/**
+ * Closed expressions of a module which may be shared between definitions.
+ * Entries are deserialized on demand.
+ * An entry that does not bind variables is deserialized only once and the resulting object is shared.
+ * Other entries (such as class calls and lambdas) contain mutable bindings, so they are deserialized again on each request.
+ * Since bodies of functions may be loaded lazily, entries can be requested from different threads.
+ */
+class ExpressionTable {
+  private final List<ExpressionProtos.Expression> myProtos;
+  private final CallTargetProvider myCallTargetProvider;
+  private final Expression[] myExpressions;
+  private final List<Set<TCReferable>> myDependencies;
+  private final boolean[] myHasBindings;
+  private final boolean[] myInProgress;
+
+  ExpressionTable(List<ExpressionProtos.Expression> protos, CallTargetProvider callTargetProvider) {
+    myProtos = protos;
+    myCallTargetProvider = callTargetProvider;
+    myExpressions = new Expression[protos.size()];
+    myDependencies = new ArrayList<>(Collections.nCopies(protos.size(), null));
+    myHasBindings = new boolean[protos.size()];
+    myInProgress = new boolean[protos.size()];
+  }
+
+  private static class DependencyCollector implements DependencyListener {
+    private final Set<TCReferable> myDependencies = new LinkedHashSet<>();
+
+    @Override
+    public void dependsOn(TCReferable def1, TCReferable def2) {
+      myDependencies.add(def2);
+    }
+
+    @Override
+    public Set<? extends TCReferable> update(TCReferable definition) {
+      return Collections.emptySet();
+    }
+  }
+
+  synchronized Expression get(int index, DependencyListener dependencyListener, TCReferable definition) throws DeserializationException {
+    if (index < 0 || index >= myExpressions.length) {
+      throw new DeserializationException("Wrong expression index");
+    }
+
+    Expression result = myExpressions[index];
+    if (result == null) {
+      if (myInProgress[index]) {
+        throw new DeserializationException("Cyclic reference in the expression table");
+      }
+      myInProgress[index] = true;
+      try {
+        DependencyCollector collector = new DependencyCollector();
+        ExpressionDeserialization deserialization = new ExpressionDeserialization(myCallTargetProvider, collector, null, this);
+        result = deserialization.readExpr(myProtos.get(index));
+        myDependencies.set(index, collector.myDependencies);
+        if (deserialization.hasBindings()) {
+          myHasBindings[index] = true;
+        } else {
+          myExpressions[index] = result;
+        }
+      } finally {
+        myInProgress[index] = false;
+      }
+    }
+
+    for (TCReferable dependency : myDependencies.get(index)) {
+      dependencyListener.dependsOn(definition, dependency);
+    }
+    return result;
+  }
+
+  /**
+   * Checks if an entry binds variables, so it is not shared.
+   * This is known only after the entry is requested.
+   */
+  synchronized boolean hasBindings(int index) {
+    return myHasBindings[index];
+  }
+}
@@ -0,0 +1,34 @@
+package org.arend.module.serialization;
+
+import org.arend.core.expr.Expression;
+
+import java.util.*;
+
+/**
+ * Collects closed expressions of a module that do not bind variables.
+ * Structurally equal expressions are stored only once.
+ */
+class ExpressionTableBuilder {
+  private final Map<ExpressionProtos.Expression, Integer> myIndices = new HashMap<>();
+  private final Map<Expression, Integer> myExpressions = new IdentityHashMap<>();
+  private final List<ExpressionProtos.Expression> myEntries = new ArrayList<>();
+
+  Integer getIndex(Expression expression) {
+    return myExpressions.get(expression);
+  }
+
+  int add(Expression expression, ExpressionProtos.Expression proto) {
+    Integer index = myIndices.get(proto);
+    if (index == null) {
+      index = myEntries.size();
+      myEntries.add(proto);
+      myIndices.put(proto, index);
+    }
+    myExpressions.put(expression, index);
+    return index;
+  }
+
+  List<ExpressionProtos.Expression> getEntries() {
+    return myEntries;
+  }
+}
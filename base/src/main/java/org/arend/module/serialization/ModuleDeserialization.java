@@ -1,6 +1,8 @@
 package org.arend.module.serialization;
 
 import org.arend.core.definition.*;
+import org.arend.error.DummyErrorReporter;
+import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.arend.ext.reference.Precedence;
 import org.arend.module.ModuleLocation;
@@ -11,6 +13,7 @@ import org.arend.naming.scope.Scope;
 import org.arend.term.group.*;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
 import org.arend.util.Pair;
 import org.jetbrains.annotations.NotNull;
 
@@ -34,6 +37,19 @@ public class ModuleDeserialization {
   }
 
   public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener) throws DeserializationException {
+    readModule(moduleScopeProvider, dependencyListener, false, DummyErrorReporter.INSTANCE);
+  }
+
+  /**
+   * Fills in definitions of the module.
+   * If the module stores dependencies of its definitions, they are reported to {@code dependencyListener} instead of dependencies found in bodies,
+   * so that they are available even if bodies are loaded lazily.
+   *
+   * @param lazyBodies     if true, bodies of functions are deserialized only when they are accessed for the first time.
+   * @param errorReporter  a reporter for errors that occur when bodies are loaded lazily.
+   *                       A body that cannot be loaded is reported and replaced with null.
+   */
+  public void readModule(ModuleScopeProvider moduleScopeProvider, DependencyListener dependencyListener, boolean lazyBodies, ErrorReporter errorReporter) throws DeserializationException {
     if (myModuleProto.getVersion() != ModuleSerialization.VERSION) {
       throw new DeserializationException("Version mismatch");
     }
@@ -50,9 +66,19 @@ public class ModuleDeserialization {
       }
     }
 
-    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, dependencyListener);
+    boolean hasDependencies = myModuleProto.getHasDependencies();
+    DefinitionDeserialization defDeserialization = new DefinitionDeserialization(myCallTargetProvider, hasDependencies ? DummyDependencyListener.INSTANCE : dependencyListener, new ExpressionTable(myModuleProto.getExpressionTableList(), myCallTargetProvider), lazyBodies, errorReporter);
     for (Pair<DefinitionProtos.Definition, Definition> pair : myDefinitions) {
       defDeserialization.fillInDefinition(pair.proj1, pair.proj2);
+      if (hasDependencies) {
+        for (Integer index : pair.proj1.getDependencyList()) {
+          Definition dependency = myCallTargetProvider.getCallTarget(index);
+          if (dependency == null) {
+            throw new DeserializationException("Cannot find a dependency of '" + pair.proj2.getReferable().textRepresentation() + "'");
+          }
+          dependencyListener.dependsOn(pair.proj2.getReferable(), dependency.getReferable());
+        }
+      }
     }
     myDefinitions.clear();
   }
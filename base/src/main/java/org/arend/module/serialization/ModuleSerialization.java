@@ -1,5 +1,7 @@
 package org.arend.module.serialization;
 
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
 import org.arend.core.definition.ClassField;
 import org.arend.core.definition.Constructor;
 import org.arend.core.definition.Definition;
@@ -12,19 +14,26 @@ import org.arend.naming.reference.TCReferable;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.source.error.LocationError;
 import org.arend.term.group.Group;
+import org.arend.typechecking.IncrementalTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
+import org.arend.util.ContentHash;
+import org.arend.util.Pair;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.util.*;
+import java.util.function.Function;
 
 public class ModuleSerialization {
   private final TypecheckerState myState;
   private final ErrorReporter myErrorReporter;
   private final SimpleCallTargetIndexProvider myCallTargetIndexProvider = new SimpleCallTargetIndexProvider();
-  private final DefinitionSerialization myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider);
+  private final ExpressionTableBuilder myExpressionTable = new ExpressionTableBuilder();
+  private final DefinitionSerialization myDefinitionSerialization = new DefinitionSerialization(myCallTargetIndexProvider, myExpressionTable);
   private final Set<Integer> myCurrentDefinitions = new HashSet<>();
   private boolean myComplete;
 
-  static final int VERSION = 3;
+  static final int VERSION = 6;
 
   public ModuleSerialization(TypecheckerState state, ErrorReporter errorReporter) {
     myState = state;
@@ -39,6 +48,8 @@ public class ModuleSerialization {
     out.setVersion(VERSION);
     out.setGroup(writeGroup(group, referableConverter));
     out.setComplete(myComplete);
+    out.setHasDependencies(myState instanceof IncrementalTypecheckerState);
+    out.addAllExpressionTable(myExpressionTable.getEntries());
 
     // Now write the call target tree
     Map<ModulePath, Map<String, CallTargetTree>> moduleCallTargets = new HashMap<>();
@@ -74,9 +85,82 @@ public class ModuleSerialization {
       out.addModuleCallTargets(builder.build());
     }
 
+    out.setFingerprint(ByteString.copyFrom(computeFingerprint(out.build())));
     return out.build();
   }
 
+  /**
+   * Records fingerprints of modules on which a serialized module depends, so that the binary can be invalidated when one of them changes.
+   * They do not affect the fingerprint of the module itself, so modules can be serialized in any order and completed afterwards.
+   *
+   * @param fingerprintProvider  gives the current fingerprint of a module or null if it is unknown.
+   */
+  public static ModuleProtos.Module setDependencyFingerprints(ModuleProtos.Module module, Function<ModulePath, byte[]> fingerprintProvider) {
+    ModuleProtos.Module.Builder builder = module.toBuilder();
+    for (int i = 0; i < builder.getModuleCallTargetsCount(); i++) {
+      ModuleProtos.ModuleCallTargets moduleCallTargets = builder.getModuleCallTargets(i);
+      byte[] fingerprint = fingerprintProvider.apply(new ModulePath(moduleCallTargets.getNameList()));
+      ModuleProtos.ModuleCallTargets.Builder targetsBuilder = moduleCallTargets.toBuilder();
+      if (fingerprint != null) {
+        targetsBuilder.setFingerprint(ByteString.copyFrom(fingerprint));
+      } else {
+        targetsBuilder.clearFingerprint();
+      }
+      builder.setModuleCallTargets(i, targetsBuilder);
+    }
+    return builder.build();
+  }
+
+  /**
+   * Gets modules on which a serialized module depends.
+   */
+  public static List<ModulePath> getDependencies(ModuleProtos.Module module) {
+    List<ModulePath> result = new ArrayList<>(module.getModuleCallTargetsCount());
+    for (ModuleProtos.ModuleCallTargets moduleCallTargets : module.getModuleCallTargetsList()) {
+      result.add(new ModulePath(moduleCallTargets.getNameList()));
+    }
+    return result;
+  }
+
+  /**
+   * Computes the fingerprint of a module.
+   * It depends on everything that dependent modules can observe, that is, on all typechecked data except for bodies of lemmas.
+   */
+  public static byte[] computeFingerprint(ModuleProtos.Module module) {
+    ModuleProtos.Module.Builder builder = module.toBuilder().clearSourceHash().clearFingerprint();
+    builder.setGroup(clearLemmaBodies(module.getGroup()));
+    for (int i = 0; i < builder.getModuleCallTargetsCount(); i++) {
+      builder.setModuleCallTargets(i, builder.getModuleCallTargets(i).toBuilder().clearFingerprint());
+    }
+
+    try {
+      ByteArrayOutputStream stream = new ByteArrayOutputStream();
+      CodedOutputStream codedStream = CodedOutputStream.newInstance(stream);
+      codedStream.useDeterministicSerialization();
+      builder.build().writeTo(codedStream);
+      codedStream.flush();
+      return ContentHash.of(stream.toByteArray());
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private static ModuleProtos.Group clearLemmaBodies(ModuleProtos.Group group) {
+    ModuleProtos.Group.Builder builder = group.toBuilder();
+    if (group.hasDefinition() && group.getDefinition().getDefinitionDataCase() == DefinitionProtos.Definition.DefinitionDataCase.FUNCTION && group.getDefinition().getFunction().getKind() == DefinitionProtos.Definition.FunctionKind.LEMMA) {
+      DefinitionProtos.Definition.Builder defBuilder = group.getDefinition().toBuilder();
+      defBuilder.setFunction(defBuilder.getFunction().toBuilder().clearBody());
+      builder.setDefinition(defBuilder);
+    }
+    for (int i = 0; i < builder.getSubgroupCount(); i++) {
+      builder.setSubgroup(i, clearLemmaBodies(builder.getSubgroup(i)));
+    }
+    for (int i = 0; i < builder.getDynamicSubgroupCount(); i++) {
+      builder.setDynamicSubgroup(i, clearLemmaBodies(builder.getDynamicSubgroup(i)));
+    }
+    return builder.build();
+  }
+
   private ModuleProtos.Group writeGroup(Group group, ReferableConverter referableConverter) {
     ModuleProtos.Group.Builder builder = ModuleProtos.Group.newBuilder();
 
@@ -89,7 +173,11 @@ public class ModuleSerialization {
     TCReferable tcReferable = referableConverter.toDataLocatedReferable(referable);
     Definition typechecked = tcReferable == null ? null : myState.getTypechecked(tcReferable);
     if (typechecked != null && typechecked.status() == Definition.TypeCheckingStatus.NO_ERRORS && !(typechecked instanceof Constructor || typechecked instanceof ClassField)) {
-      builder.setDefinition(myDefinitionSerialization.writeDefinition(typechecked));
+      DefinitionProtos.Definition defProto = myDefinitionSerialization.writeDefinition(typechecked);
+      if (myState instanceof IncrementalTypecheckerState) {
+        defProto = defProto.toBuilder().addAllDependency(writeDependencies((IncrementalTypecheckerState) myState, tcReferable)).build();
+      }
+      builder.setDefinition(defProto);
       int index = myCallTargetIndexProvider.getDefIndex(typechecked);
       refBuilder.setIndex(index);
       myCurrentDefinitions.add(index);
@@ -118,6 +206,29 @@ public class ModuleSerialization {
     return builder.build();
   }
 
+  /**
+   * Writes indices of typechecked dependencies of a definition.
+   * Dependencies are ordered by their full names, so that indices of new call targets do not depend on the order in which dependencies were recorded.
+   */
+  private List<Integer> writeDependencies(IncrementalTypecheckerState state, TCReferable referable) {
+    List<Pair<String, Definition>> dependencies = new ArrayList<>();
+    for (TCReferable dependency : state.getDependencies(referable)) {
+      Definition definition = state.getTypechecked(dependency);
+      if (definition != null && definition.status() == Definition.TypeCheckingStatus.NO_ERRORS) {
+        List<String> longName = new ArrayList<>();
+        ModuleLocation location = LocatedReferable.Helper.getLocation(dependency, longName);
+        dependencies.add(new Pair<>((location == null ? "" : location.getModulePath() + ":") + String.join(".", longName), definition));
+      }
+    }
+    dependencies.sort(Comparator.comparing(pair -> pair.proj1));
+
+    List<Integer> result = new ArrayList<>(dependencies.size());
+    for (Pair<String, Definition> pair : dependencies) {
+      result.add(myCallTargetIndexProvider.getDefIndex(pair.proj2));
+    }
+    return result;
+  }
+
   private static class CallTargetTree {
     Map<String, CallTargetTree> subtreeMap = new HashMap<>();
     int index;
@@ -11,9 +11,7 @@ import org.arend.term.group.Group;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
+import java.util.*;
 
 @SuppressWarnings("Duplicates")
 public class LexicalScope implements Scope {
@@ -22,15 +20,109 @@ public class LexicalScope implements Scope {
   private final ModulePath myModule;
   private final Kind myKind;
   private final boolean myOnlyExternal;
+  private GroupIndex myIndex;
+  private volatile List<Scope> myNamespaces;
 
   private enum Kind { INSIDE, OPENED, OPENED_INTERNAL }
 
-  private LexicalScope(Scope parent, Group group, ModulePath module, Kind kind, boolean onlyExternal) {
+  /**
+   * Names defined in a group.
+   * It is built once for a group and shared by scopes derived from each other, so a reloaded group gets a new index.
+   * If several referables have the same name, the index contains the first of them in the order in which they are found by a linear search.
+   */
+  private static class GroupIndex {
+    final Map<String, GlobalReferable> internal = new HashMap<>();
+    final Map<String, GlobalReferable> visibleInternal = new HashMap<>();
+    final Map<String, GlobalReferable> staticReferables;
+    final Map<String, GlobalReferable> referables;
+    final Map<String, Group> staticSubgroups;
+    final Map<String, Group> subgroups;
+    private final Map<Group, GroupIndex> mySubgroupIndices = new HashMap<>();
+
+    GroupIndex(Group group) {
+      for (Group.InternalReferable constructor : group.getConstructors()) {
+        add(constructor.getReferable(), internal);
+        if (constructor.isVisible()) {
+          add(constructor.getReferable(), visibleInternal);
+        }
+      }
+      boolean isClass = group.getReferable() instanceof ClassReferable;
+      for (Group.InternalReferable field : group.getFields()) {
+        if (!isClass) {
+          add(field.getReferable(), internal);
+        }
+        if (field.isVisible()) {
+          add(field.getReferable(), visibleInternal);
+        }
+      }
+
+      Map<String, GlobalReferable> staticRefs = new HashMap<>();
+      Map<String, Group> staticGroups = new HashMap<>();
+      addSubgroups(group.getSubgroups(), staticRefs, staticGroups);
+      Collection<? extends Group> dynamicSubgroups = group.getDynamicSubgroups();
+      if (dynamicSubgroups.isEmpty()) {
+        referables = staticRefs;
+        subgroups = staticGroups;
+      } else {
+        referables = new HashMap<>(staticRefs);
+        subgroups = new HashMap<>(staticGroups);
+        addSubgroups(dynamicSubgroups, referables, subgroups);
+      }
+      staticReferables = staticRefs;
+      staticSubgroups = staticGroups;
+    }
+
+    private static void add(GlobalReferable referable, Map<String, GlobalReferable> map) {
+      map.putIfAbsent(referable.textRepresentation(), referable);
+      String alias = referable.getAliasName();
+      if (alias != null) {
+        map.putIfAbsent(alias, new AliasReferable(referable));
+      }
+    }
+
+    private static void addSubgroups(Collection<? extends Group> groups, Map<String, GlobalReferable> referables, Map<String, Group> subgroups) {
+      for (Group subgroup : groups) {
+        GlobalReferable ref = subgroup.getReferable();
+        add(ref, referables);
+        subgroups.putIfAbsent(ref.textRepresentation(), subgroup);
+        String alias = ref.getAliasName();
+        if (alias != null) {
+          subgroups.putIfAbsent(alias, subgroup);
+        }
+        for (Group.InternalReferable internalRef : subgroup.getConstructors()) {
+          if (internalRef.isVisible()) {
+            add(internalRef.getReferable(), referables);
+          }
+        }
+        for (Group.InternalReferable internalRef : subgroup.getFields()) {
+          if (internalRef.isVisible()) {
+            add(internalRef.getReferable(), referables);
+          }
+        }
+      }
+    }
+
+    synchronized GroupIndex getSubgroupIndex(Group subgroup) {
+      return mySubgroupIndices.computeIfAbsent(subgroup, GroupIndex::new);
+    }
+  }
+
+  private LexicalScope(Scope parent, Group group, ModulePath module, Kind kind, boolean onlyExternal, GroupIndex index) {
     myParent = parent;
     myGroup = group;
     myModule = module;
     myKind = kind;
     myOnlyExternal = onlyExternal;
+    myIndex = index;
+  }
+
+  private GroupIndex getIndex() {
+    GroupIndex index = myIndex;
+    if (index == null) {
+      index = new GroupIndex(myGroup);
+      myIndex = index;
+    }
+    return index;
   }
 
   private boolean ignoreOpens() {
@@ -39,19 +131,19 @@ public class LexicalScope implements Scope {
 
   public static LexicalScope insideOf(Group group, Scope parent, boolean onlyExternal) {
     ModuleLocation moduleLocation = group.getReferable().getLocation();
-    return new LexicalScope(parent, group, moduleLocation == null ? null : moduleLocation.getModulePath(), Kind.INSIDE, onlyExternal);
+    return new LexicalScope(parent, group, moduleLocation == null ? null : moduleLocation.getModulePath(), Kind.INSIDE, onlyExternal, null);
   }
 
   public static LexicalScope insideOf(Group group, Scope parent) {
     return insideOf(group, parent, false);
   }
 
-  private static LexicalScope opened(Group group, boolean onlyInternal) {
-    return new LexicalScope(EmptyScope.INSTANCE, group, null, onlyInternal ? Kind.OPENED_INTERNAL : Kind.OPENED, false);
+  private static LexicalScope opened(Group group, boolean onlyInternal, GroupIndex index) {
+    return new LexicalScope(EmptyScope.INSTANCE, group, null, onlyInternal ? Kind.OPENED_INTERNAL : Kind.OPENED, false, index);
   }
 
   public static LexicalScope opened(Group group) {
-    return opened(group, false);
+    return opened(group, false, null);
   }
 
   private void addReferable(Referable referable, List<Referable> elements) {
@@ -101,6 +193,25 @@ public class LexicalScope implements Scope {
       addSubgroups(myGroup.getDynamicSubgroups(), elements);
     }
 
+    for (Scope namespace : getNamespaces()) {
+      elements.addAll(namespace.getElements());
+    }
+
+    elements.addAll(myParent.getElements());
+    return elements;
+  }
+
+  /**
+   * Namespaces of namespace commands of the group.
+   * They are resolved once since the resolution of an {@code \open} command requires the scope of the whole group.
+   */
+  private List<Scope> getNamespaces() {
+    List<Scope> namespaces = myNamespaces;
+    if (namespaces != null) {
+      return namespaces;
+    }
+
+    namespaces = new ArrayList<>();
     Scope cachingScope = null;
     for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
       if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
@@ -115,73 +226,14 @@ public class LexicalScope implements Scope {
         scope = getImportedSubscope();
       } else {
         if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal));
+          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal, myIndex));
         }
         scope = cachingScope;
       }
-      elements.addAll(NamespaceCommandNamespace.resolveNamespace(scope, cmd).getElements());
+      namespaces.add(NamespaceCommandNamespace.resolveNamespace(scope, cmd));
     }
-
-    elements.addAll(myParent.getElements());
-    return elements;
-  }
-
-  private static GlobalReferable resolveInternal(Group group, String name, boolean onlyInternal) {
-    for (Group.InternalReferable internalReferable : group.getConstructors()) {
-      if (!onlyInternal || internalReferable.isVisible()) {
-        GlobalReferable constructor = internalReferable.getReferable();
-        if (constructor.textRepresentation().equals(name)) {
-          return constructor;
-        }
-        String alias = constructor.getAliasName();
-        if (alias != null && alias.equals(name)) {
-          return new AliasReferable(constructor);
-        }
-      }
-    }
-
-    if (onlyInternal || !(group.getReferable() instanceof ClassReferable)) {
-      for (Group.InternalReferable internalReferable : group.getFields()) {
-        if (!onlyInternal || internalReferable.isVisible()) {
-          GlobalReferable field = internalReferable.getReferable();
-          if (field.textRepresentation().equals(name)) {
-            return field;
-          }
-          String alias = field.getAliasName();
-          if (alias != null && alias.equals(name)) {
-            return new AliasReferable(field);
-          }
-        }
-      }
-    } else {
-      Referable referable = new ClassFieldImplScope((ClassReferable) group.getReferable(), false).resolveName(name);
-      return referable instanceof GlobalReferable ? (GlobalReferable) referable : null;
-    }
-
-    return null;
-  }
-
-  private static Object resolveSubgroup(Group group, String name, ResolveType resolveType) {
-    GlobalReferable ref = group.getReferable();
-    boolean match = ref.textRepresentation().equals(name);
-    if (!match) {
-      String alias = ref.getAliasName();
-      if (alias != null && alias.equals(name)) {
-        if (resolveType == ResolveType.REF) {
-          return new AliasReferable(ref);
-        }
-        match = true;
-      }
-    }
-    if (match) {
-      return resolveType == ResolveType.REF ? ref : LexicalScope.opened(group, resolveType == ResolveType.INTERNAL_SCOPE);
-    }
-
-    if (resolveType == ResolveType.REF) {
-      return resolveInternal(group, name, true);
-    }
-
-    return null;
+    myNamespaces = namespaces;
+    return namespaces;
   }
 
   private enum ResolveType { REF, SCOPE, INTERNAL_SCOPE }
@@ -191,49 +243,34 @@ public class LexicalScope implements Scope {
       return null;
     }
 
-    if (resolveType == ResolveType.REF && !myOnlyExternal) {
-      Object result = resolveInternal(myGroup, name, myKind == Kind.OPENED_INTERNAL);
-      if (result != null) {
-        return result;
-      }
-    }
-
-    for (Group subgroup : myGroup.getSubgroups()) {
-      Object result = resolveSubgroup(subgroup, name, resolveType);
-      if (result != null) {
-        return result;
-      }
-    }
-    if (!myOnlyExternal) {
-      for (Group subgroup : myGroup.getDynamicSubgroups()) {
-        Object result = resolveSubgroup(subgroup, name, resolveType);
+    GroupIndex index = getIndex();
+    if (resolveType == ResolveType.REF) {
+      if (!myOnlyExternal) {
+        GlobalReferable result = (myKind == Kind.OPENED_INTERNAL ? index.visibleInternal : index.internal).get(name);
         if (result != null) {
           return result;
         }
+        if (myKind != Kind.OPENED_INTERNAL && myGroup.getReferable() instanceof ClassReferable) {
+          Referable referable = new ClassFieldImplScope((ClassReferable) myGroup.getReferable(), false).resolveName(name);
+          if (referable instanceof GlobalReferable) {
+            return referable;
+          }
+        }
       }
-    }
 
-    Scope cachingScope = null;
-    for (NamespaceCommand cmd : myGroup.getNamespaceCommands()) {
-      if (ignoreOpens() && cmd.getKind() == NamespaceCommand.Kind.OPEN) {
-        continue;
+      GlobalReferable result = (myOnlyExternal ? index.staticReferables : index.referables).get(name);
+      if (result != null) {
+        return result;
       }
-
-      Scope scope;
-      if (cmd.getKind() == NamespaceCommand.Kind.IMPORT) {
-        if (myModule != null && cmd.getPath().equals(myModule.toList())) {
-          continue;
-        }
-        scope = getImportedSubscope();
-      } else {
-        if (cachingScope == null) {
-          cachingScope = CachingScope.make(new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal));
-        }
-        scope = cachingScope;
+    } else {
+      Group subgroup = (myOnlyExternal ? index.staticSubgroups : index.subgroups).get(name);
+      if (subgroup != null) {
+        return opened(subgroup, resolveType == ResolveType.INTERNAL_SCOPE, index.getSubgroupIndex(subgroup));
       }
+    }
 
-      scope = NamespaceCommandNamespace.resolveNamespace(scope, cmd);
-      Object result = resolveType == ResolveType.REF ? scope.resolveName(name) : scope.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
+    for (Scope namespace : getNamespaces()) {
+      Object result = resolveType == ResolveType.REF ? namespace.resolveName(name) : namespace.resolveNamespace(name, resolveType == ResolveType.INTERNAL_SCOPE);
       if (result != null) {
         return result;
       }
@@ -259,7 +296,7 @@ public class LexicalScope implements Scope {
   @NotNull
   @Override
   public Scope getGlobalSubscopeWithoutOpens() {
-    return ignoreOpens() ? this : new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal);
+    return ignoreOpens() ? this : new LexicalScope(myParent, myGroup, null, Kind.OPENED, myOnlyExternal, myIndex);
   }
 
   @Nullable
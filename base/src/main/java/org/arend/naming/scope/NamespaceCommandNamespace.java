@@ -14,6 +14,28 @@ import java.util.*;
 public class NamespaceCommandNamespace implements Scope {
   private final Scope myModuleNamespace;
   private final NamespaceCommand myNamespaceCommand;
+  private Filter myFilter;
+
+  /**
+   * Names hidden and renamed by a namespace command.
+   */
+  private static class Filter {
+    final Set<String> hidden = new HashSet<>();
+    final Map<String, NameRenaming> renamings = new HashMap<>();
+    final Set<String> renamed = new HashSet<>();
+
+    Filter(NamespaceCommand cmd) {
+      for (Referable hiddenRef : cmd.getHiddenReferences()) {
+        hidden.add(hiddenRef.textRepresentation());
+      }
+      for (NameRenaming renaming : cmd.getOpenedReferences()) {
+        String newName = renaming.getName();
+        String oldName = renaming.getOldReference().textRepresentation();
+        renamings.putIfAbsent(newName != null ? newName : oldName, renaming);
+        renamed.add(oldName);
+      }
+    }
+  }
 
   private NamespaceCommandNamespace(Scope moduleNamespace, NamespaceCommand namespaceCommand) {
     myNamespaceCommand = namespaceCommand;
@@ -36,6 +58,15 @@ public class NamespaceCommandNamespace implements Scope {
     return parentScope == null ? EmptyScope.INSTANCE : new NamespaceCommandNamespace(parentScope, cmd);
   }
 
+  private Filter getFilter() {
+    Filter filter = myFilter;
+    if (filter == null) {
+      filter = new Filter(myNamespaceCommand);
+      myFilter = filter;
+    }
+    return filter;
+  }
+
   @NotNull
   @Override
   public Collection<? extends Referable> getElements() {
@@ -81,63 +112,34 @@ public class NamespaceCommandNamespace implements Scope {
   @Nullable
   @Override
   public Referable resolveName(String name) {
-    for (Referable hiddenRef : myNamespaceCommand.getHiddenReferences()) {
-      if (hiddenRef.textRepresentation().equals(name)) {
-        return null;
-      }
-    }
-
-    Collection<? extends NameRenaming> opened = myNamespaceCommand.getOpenedReferences();
-    for (NameRenaming renaming : opened) {
-      String newName = renaming.getName();
-      Referable oldRef = renaming.getOldReference();
-      if ((newName != null ? newName : oldRef.textRepresentation()).equals(name)) {
-        oldRef = ExpressionResolveNameVisitor.resolve(oldRef, myModuleNamespace);
-        return oldRef == null || oldRef instanceof ErrorReference ? null : newName != null ? new RedirectingReferableImpl(oldRef, renaming.getPrecedence(), newName) : oldRef;
-      }
-    }
-
-    if (!myNamespaceCommand.isUsing()) {
+    Filter filter = getFilter();
+    if (filter.hidden.contains(name)) {
       return null;
     }
 
-    for (NameRenaming renaming : opened) {
-      if (renaming.getOldReference().textRepresentation().equals(name)) {
-        return null;
-      }
+    NameRenaming renaming = filter.renamings.get(name);
+    if (renaming != null) {
+      String newName = renaming.getName();
+      Referable oldRef = ExpressionResolveNameVisitor.resolve(renaming.getOldReference(), myModuleNamespace);
+      return oldRef == null || oldRef instanceof ErrorReference ? null : newName != null ? new RedirectingReferableImpl(oldRef, renaming.getPrecedence(), newName) : oldRef;
     }
 
-    return myModuleNamespace.resolveName(name);
+    return !myNamespaceCommand.isUsing() || filter.renamed.contains(name) ? null : myModuleNamespace.resolveName(name);
   }
 
   @Nullable
   @Override
   public Scope resolveNamespace(String name, boolean onlyInternal) {
-    for (Referable hiddenRef : myNamespaceCommand.getHiddenReferences()) {
-      if (hiddenRef.textRepresentation().equals(name)) {
-        return null;
-      }
-    }
-
-    Collection<? extends NameRenaming> opened = myNamespaceCommand.getOpenedReferences();
-    for (NameRenaming renaming : opened) {
-      String newName = renaming.getName();
-      Referable oldRef = renaming.getOldReference();
-      if ((newName != null ? newName : oldRef.textRepresentation()).equals(name)) {
-        return myModuleNamespace.resolveNamespace(oldRef.textRepresentation(), onlyInternal);
-      }
-    }
-
-    if (!myNamespaceCommand.isUsing()) {
+    Filter filter = getFilter();
+    if (filter.hidden.contains(name)) {
       return null;
     }
 
-    for (NameRenaming renaming : opened) {
-      if (renaming.getOldReference().textRepresentation().equals(name)) {
-        return null;
-      }
+    NameRenaming renaming = filter.renamings.get(name);
+    if (renaming != null) {
+      return myModuleNamespace.resolveNamespace(renaming.getOldReference().textRepresentation(), onlyInternal);
     }
 
-    return myModuleNamespace.resolveNamespace(name, onlyInternal);
+    return !myNamespaceCommand.isUsing() || filter.renamed.contains(name) ? null : myModuleNamespace.resolveNamespace(name, onlyInternal);
   }
 }
@@ -2,7 +2,9 @@ package org.arend.source;
 
 import org.arend.ext.error.ErrorReporter;
 import org.arend.library.SourceLibrary;
+import org.arend.module.serialization.ModuleProtos;
 import org.arend.naming.reference.converter.ReferableConverter;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * Represents a module persisted in a binary format.
@@ -17,7 +19,35 @@ public interface BinarySource extends Source {
    *
    * @return true if the operation is successful, false otherwise
    */
-  boolean persist(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter);
+  default boolean persist(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter) {
+    ModuleProtos.Module module = serialize(library, referableConverter, errorReporter);
+    return module != null && write(library, module, errorReporter);
+  }
+
+  /**
+   * Serializes the source and updates its fingerprint in the library.
+   * Fingerprints of modules on which it depends are recorded by {@link #write},
+   * so modules can be serialized in any order.
+   *
+   * @param library             the library to which this source belongs.
+   * @param referableConverter  a referable converter.
+   * @param errorReporter       a reporter for all errors that occur during serialization.
+   *
+   * @return the serialized module or null if some error occurred.
+   */
+  @Nullable
+  ModuleProtos.Module serialize(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter);
+
+  /**
+   * Writes a serialized module together with current fingerprints of modules on which it depends.
+   *
+   * @param library             the library to which this source belongs.
+   * @param module              a module returned by {@link #serialize}.
+   * @param errorReporter       a reporter for all errors that occur during writing.
+   *
+   * @return true if the operation is successful, false otherwise
+   */
+  boolean write(SourceLibrary library, ModuleProtos.Module module, ErrorReporter errorReporter);
 
   /**
    * Deletes the source.
@@ -6,12 +6,12 @@ import org.arend.util.FileUtils;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.StandardOpenOption;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
 
 public class FileBinarySource extends StreamBinarySource {
   private final Path myFile;
@@ -40,11 +40,18 @@ public class FileBinarySource extends StreamBinarySource {
     return Files.newInputStream(myFile);
   }
 
+  @Nullable
+  @Override
+  protected ByteBuffer getByteBuffer() throws IOException {
+    // The file is not mapped into memory since it may be replaced while the mapping is alive
+    return ByteBuffer.wrap(Files.readAllBytes(myFile));
+  }
+
   @Nullable
   @Override
   protected OutputStream getOutputStream() throws IOException {
     Files.createDirectories(myFile.getParent());
-    return Files.newOutputStream(myFile, StandardOpenOption.CREATE);
+    return new AtomicFileOutputStream(myFile);
   }
 
   @Override
@@ -70,4 +77,76 @@ public class FileBinarySource extends StreamBinarySource {
       return false;
     }
   }
+
+  /**
+   * Writes to a temporary file in the same directory and moves it to the target file when the stream is closed,
+   * so that the target file is either left unchanged or replaced completely.
+   * If writing fails, the temporary file is deleted instead.
+   */
+  private static class AtomicFileOutputStream extends FilterOutputStream {
+    private final Path myFile;
+    private final Path myTempFile;
+    private boolean myFailed;
+    private boolean myClosed;
+
+    AtomicFileOutputStream(Path file) throws IOException {
+      this(file, Files.createTempFile(file.getParent(), file.getFileName().toString(), ".tmp"));
+    }
+
+    private AtomicFileOutputStream(Path file, Path tempFile) throws IOException {
+      super(Files.newOutputStream(tempFile));
+      myFile = file;
+      myTempFile = tempFile;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      try {
+        out.write(b);
+      } catch (IOException | RuntimeException e) {
+        myFailed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      try {
+        out.write(b, off, len);
+      } catch (IOException | RuntimeException e) {
+        myFailed = true;
+        throw e;
+      }
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (myClosed) {
+        return;
+      }
+      myClosed = true;
+
+      try {
+        out.close();
+      } catch (IOException | RuntimeException e) {
+        myFailed = true;
+        throw e;
+      } finally {
+        if (myFailed) {
+          try {
+            Files.deleteIfExists(myTempFile);
+          } catch (IOException ignored) {}
+        }
+      }
+      if (myFailed) {
+        return;
+      }
+
+      try {
+        Files.move(myTempFile, myFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+      } catch (AtomicMoveNotSupportedException e) {
+        Files.move(myTempFile, myFile, StandardCopyOption.REPLACE_EXISTING);
+      }
+    }
+  }
 }
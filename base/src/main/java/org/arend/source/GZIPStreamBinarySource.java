@@ -8,6 +8,7 @@ import org.jetbrains.annotations.Nullable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
@@ -29,6 +30,12 @@ public class GZIPStreamBinarySource extends StreamBinarySource {
     return stream == null ? null : new GZIPInputStream(stream);
   }
 
+  @Nullable
+  @Override
+  protected ByteBuffer getByteBuffer() throws IOException {
+    return mySource.getByteBuffer();
+  }
+
   @Nullable
   @Override
   protected OutputStream getOutputStream() throws IOException {
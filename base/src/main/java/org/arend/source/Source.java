@@ -28,6 +28,15 @@ public interface Source {
    */
   boolean preload(SourceLoader sourceLoader);
 
+  /**
+   * Does the part of preloading that depends neither on other sources nor on the state of the library, such as parsing.
+   * This method can be invoked concurrently for different sources before {@link #preload} is invoked.
+   * It must not report errors directly; they should be reported by {@link #preload} instead.
+   *
+   * @param sourceLoader    the state of the loading process.
+   */
+  default void prepare(SourceLoader sourceLoader) {}
+
   /**
    * This method is called after all dependencies of the source were preloaded.
    *
@@ -46,6 +55,17 @@ public interface Source {
    */
   long getTimeStamp();
 
+  /**
+   * Gets a hash of the contents of this source.
+   * If the hash is available, it is used instead of the timestamp to decide whether a binary module is up to date.
+   *
+   * @return the hash of the contents or null if it cannot be computed.
+   */
+  @Nullable
+  default byte[] getContentHash() {
+    return null;
+  }
+
   /**
    * Checks if the source is available for loading.
    *
@@ -10,10 +10,11 @@ import org.arend.module.scopeprovider.ModuleScopeProvider;
 import org.arend.naming.reference.converter.ReferableConverter;
 import org.arend.naming.scope.Scope;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.util.ComputationInterruptedException;
+import org.jetbrains.annotations.Nullable;
 
-import java.util.HashMap;
-import java.util.Iterator;
-import java.util.Map;
+import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Contains all necessary information for source loading.
@@ -25,6 +26,8 @@ public final class SourceLoader {
   private final Map<ModulePath, SourceType> myLoadedModules = new HashMap<>();
   private final Map<ModulePath, BinarySource> myLoadingBinaryModules = new HashMap<>();
   private final Map<ModulePath, Source> myLoadingRawModules = new HashMap<>();
+  private final Map<ModulePath, Source> myPreparedRawModules = new HashMap<>();
+  private final Map<ModulePath, byte[]> myRawContentHashes = new HashMap<>();
   private ModuleScopeProvider myModuleScopeProvider;
   private ModuleScopeProvider myTestsModuleScopeProvider;
 
@@ -74,10 +77,99 @@ public final class SourceLoader {
     return myLibraryManager.getLibraryErrorReporter();
   }
 
+  /**
+   * Gets the hash of the raw source of a module.
+   *
+   * @param modulePath  a module.
+   * @return the hash of the raw source or null if either the library does not have raw sources or the hash is not available.
+   */
+  @Nullable
+  public byte[] getRawContentHash(ModulePath modulePath) {
+    if (!myLibrary.hasRawSources()) {
+      return null;
+    }
+    if (myRawContentHashes.containsKey(modulePath)) {
+      return myRawContentHashes.get(modulePath);
+    }
+    Source rawSource = myLibrary.getRawSource(modulePath);
+    byte[] hash = rawSource != null && rawSource.isAvailable() ? rawSource.getContentHash() : null;
+    myRawContentHashes.put(modulePath, hash);
+    return hash;
+  }
+
   public void setModuleLoaded(ModulePath modulePath) {
     myLoadedModules.put(modulePath, SourceType.RAW);
   }
 
+  /**
+   * Marks a module as typechecked, so that binary sources depending on it can be loaded without loading it.
+   */
+  public void setModuleTypechecked(ModulePath modulePath) {
+    myLoadedModules.put(modulePath, SourceType.BINARY);
+  }
+
+  /**
+   * Prepares raw sources of modules in parallel (see {@link Source#prepare}).
+   * Modules are still preloaded by {@link #preloadRaw}, which uses prepared sources if they are available,
+   * so the result of loading does not depend on whether modules were prepared.
+   *
+   * @param modules     modules to prepare.
+   * @param inTests     true if the modules located in the test directory, false otherwise.
+   */
+  public void prepareRaw(Collection<? extends ModulePath> modules, boolean inTests) {
+    int threads = Runtime.getRuntime().availableProcessors();
+    if (threads <= 1 || modules.size() <= 1) {
+      return;
+    }
+
+    List<Callable<Void>> tasks = new ArrayList<>(modules.size());
+    for (ModulePath module : modules) {
+      if (myLoadedModules.containsKey(module) || myLoadingRawModules.containsKey(module) || myPreparedRawModules.containsKey(module)) {
+        continue;
+      }
+      Source rawSource = inTests ? myLibrary.getTestSource(module) : myLibrary.getRawSource(module);
+      if (rawSource != null && rawSource.isAvailable()) {
+        myPreparedRawModules.put(module, rawSource);
+        tasks.add(() -> {
+          rawSource.prepare(this);
+          return null;
+        });
+      }
+    }
+    if (tasks.size() <= 1) {
+      return;
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+    List<Future<Void>> results;
+    try {
+      results = executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ComputationInterruptedException();
+    } finally {
+      executor.shutdown();
+    }
+
+    for (Future<Void> result : results) {
+      try {
+        result.get();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ComputationInterruptedException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+  }
+
   /**
    * Loads the structure of the source and its dependencies.
    *
@@ -93,7 +185,10 @@ public final class SourceLoader {
       return true;
     }
 
-    Source rawSource = inTests ? myLibrary.getTestSource(modulePath) : myLibrary.getRawSource(modulePath);
+    Source rawSource = myPreparedRawModules.remove(modulePath);
+    if (rawSource == null) {
+      rawSource = inTests ? myLibrary.getTestSource(modulePath) : myLibrary.getRawSource(modulePath);
+    }
     boolean rawSourceIsAvailable = rawSource != null && rawSource.isAvailable();
 
     if (!rawSourceIsAvailable) {
@@ -150,7 +245,7 @@ public final class SourceLoader {
       }
     }
 
-    return true;
+    return myLoadedModules.get(modulePath) != SourceType.BINARY_FAIL;
   }
 
   /**
@@ -176,7 +271,8 @@ public final class SourceLoader {
       return false;
     }
 
-    if (myLibrary.hasRawSources()) {
+    // If the hash of the raw source is available, it is compared with the hash stored in the binary source during preloading
+    if (myLibrary.hasRawSources() && getRawContentHash(modulePath) == null) {
       Source rawSource = myLibrary.getRawSource(modulePath);
       if (rawSource != null && rawSource.isAvailable() && binarySource.getTimeStamp() < rawSource.getTimeStamp()) {
         return false;
@@ -1,5 +1,6 @@
 package org.arend.source;
 
+import com.google.protobuf.ByteString;
 import com.google.protobuf.CodedInputStream;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.module.ModulePath;
@@ -21,9 +22,15 @@ import org.arend.term.group.Group;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
 
 /**
  * Represents a source that loads a binary module from an {@link InputStream} and persists it to an {@link OutputStream}.
@@ -51,17 +58,57 @@ public abstract class StreamBinarySource implements BinarySource {
   @Nullable
   protected abstract OutputStream getOutputStream() throws IOException;
 
+  /**
+   * Gets a buffer with the contents of the source.
+   * If the buffer is available and not compressed, the module is parsed directly from it.
+   *
+   * @return a buffer with the contents of the source or null if the source should be read from {@link #getInputStream}.
+   */
+  @Nullable
+  protected ByteBuffer getByteBuffer() throws IOException {
+    return null;
+  }
+
+  private static boolean isCompressed(ByteBuffer buffer) {
+    return buffer.remaining() >= 2 && (buffer.get(buffer.position()) & 0xff) == 0x1f && (buffer.get(buffer.position() + 1) & 0xff) == 0x8b;
+  }
+
+  /**
+   * Wraps a stream in {@link GZIPInputStream} if it starts with the gzip header.
+   */
+  private static InputStream decompressIfNeeded(InputStream stream) throws IOException {
+    InputStream result = stream.markSupported() ? stream : new BufferedInputStream(stream);
+    result.mark(2);
+    int b1 = result.read();
+    int b2 = result.read();
+    result.reset();
+    return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(result) : result;
+  }
+
   @Override
   public boolean preload(SourceLoader sourceLoader) {
     SourceLibrary library = sourceLoader.getLibrary();
     ModulePath modulePath = getModulePath();
     ChildGroup group = null;
-    try (InputStream inputStream = getInputStream()) {
-      if (inputStream == null) {
+    ByteBuffer buffer;
+    try {
+      buffer = getByteBuffer();
+    } catch (IOException e) {
+      buffer = null;
+    }
+    if (buffer != null && isCompressed(buffer)) {
+      buffer = null;
+    }
+
+    try (InputStream inputStream = buffer == null ? getInputStream() : null) {
+      CodedInputStream codedInputStream;
+      if (buffer != null) {
+        codedInputStream = CodedInputStream.newInstance(buffer);
+      } else if (inputStream != null) {
+        codedInputStream = CodedInputStream.newInstance(decompressIfNeeded(inputStream));
+      } else {
         return false;
       }
-
-      CodedInputStream codedInputStream = CodedInputStream.newInstance(inputStream);
       codedInputStream.setRecursionLimit(Integer.MAX_VALUE);
       ModuleProtos.Module moduleProto = ModuleProtos.Module.parseFrom(codedInputStream);
       boolean isComplete = moduleProto.getComplete();
@@ -70,12 +117,44 @@ public abstract class StreamBinarySource implements BinarySource {
         return false;
       }
 
+      // The binary source is outdated if the raw source was changed
+      byte[] sourceHash = sourceLoader.getRawContentHash(modulePath);
+      if (sourceHash != null && !Arrays.equals(sourceHash, moduleProto.getSourceHash().toByteArray())) {
+        return false;
+      }
+
+      // The fingerprint is set before dependencies are preloaded, so that modules that depend on each other can check it
+      library.setModuleFingerprint(modulePath, moduleProto.getFingerprint().toByteArray());
+      Map<ModulePath, byte[]> typecheckedDependencies = new LinkedHashMap<>();
       for (ModuleProtos.ModuleCallTargets moduleCallTargets : moduleProto.getModuleCallTargetsList()) {
         ModulePath module = new ModulePath(moduleCallTargets.getNameList());
-        if (library.containsModule(module) && !sourceLoader.preloadBinary(module)) {
-          return false;
+        if (library.containsModule(module)) {
+          // The binary source is also outdated if a module on which it depends was changed or if its fingerprint is unknown
+          byte[] recordedFingerprint = moduleCallTargets.getFingerprint().toByteArray();
+          if (recordedFingerprint.length == 0) {
+            library.removeModuleFingerprint(modulePath);
+            return false;
+          }
+          if (!sourceLoader.preloadBinary(module)) {
+            if (!library.hasRawSources()) {
+              library.removeModuleFingerprint(modulePath);
+              return false;
+            }
+            // The dependency will be typechecked, and it may turn out that it has the same fingerprint
+            typecheckedDependencies.put(module, recordedFingerprint);
+            continue;
+          }
+          if (!Arrays.equals(library.getModuleFingerprint(module), recordedFingerprint)) {
+            library.removeModuleFingerprint(modulePath);
+            return false;
+          }
         }
       }
+      if (!typecheckedDependencies.isEmpty()) {
+        library.removeModuleFingerprint(modulePath);
+        library.postponeModule(modulePath, typecheckedDependencies);
+        return false;
+      }
 
       ReferableConverter referableConverter = sourceLoader.getReferableConverter();
       myModuleDeserialization = new ModuleDeserialization(moduleProto, library.getTypecheckerState(), referableConverter);
@@ -87,6 +166,7 @@ public abstract class StreamBinarySource implements BinarySource {
         group = library.getModuleGroup(modulePath);
         if (group == null) {
           sourceLoader.getLibraryErrorReporter().report(LibraryError.moduleNotFound(modulePath, library.getName()));
+          library.removeModuleFingerprint(modulePath);
           library.onGroupLoaded(modulePath, null, false);
           return false;
         }
@@ -108,6 +188,7 @@ public abstract class StreamBinarySource implements BinarySource {
       for (ModuleProtos.ModuleCallTargets moduleCallTargets : myModuleDeserialization.getModuleProto().getModuleCallTargetsList()) {
         ModulePath module = new ModulePath(moduleCallTargets.getNameList());
         if (library.containsModule(module) && !sourceLoader.fillInBinary(module)) {
+          library.removeModuleFingerprint(modulePath);
           ChildGroup group = library.getModuleGroup(modulePath);
           if (group != null) {
             library.resetGroup(group);
@@ -116,8 +197,10 @@ public abstract class StreamBinarySource implements BinarySource {
         }
       }
 
-      myModuleDeserialization.readModule(sourceLoader.getModuleScopeProvider(false), library.getDependencyListener());
-      library.onBinaryLoaded(modulePath, myModuleDeserialization.getModuleProto().getComplete());
+      // Bodies can be loaded lazily if the module stores dependencies of its definitions
+      ModuleProtos.Module moduleProto = myModuleDeserialization.getModuleProto();
+      myModuleDeserialization.readModule(sourceLoader.getModuleScopeProvider(false), library.getDependencyListener(), library.loadsBodiesLazily() || moduleProto.getHasDependencies(), sourceLoader.getLibraryErrorReporter());
+      library.onBinaryLoaded(modulePath, moduleProto.getComplete());
       myModuleDeserialization = null;
       return LoadResult.SUCCESS;
     } catch (DeserializationException e) {
@@ -128,6 +211,7 @@ public abstract class StreamBinarySource implements BinarySource {
 
   private void loadingFailed(SourceLoader sourceLoader, ModulePath modulePath, Group group, Exception e) {
     sourceLoader.getLibraryErrorReporter().report(new DeserializationError(modulePath, e));
+    sourceLoader.getLibrary().removeModuleFingerprint(modulePath);
     if (!sourceLoader.getLibrary().hasRawSources()) {
       sourceLoader.getLibrary().onGroupLoaded(modulePath, null, false);
     }
@@ -136,27 +220,45 @@ public abstract class StreamBinarySource implements BinarySource {
     }
   }
 
+  @Nullable
   @Override
-  public boolean persist(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter) {
+  public ModuleProtos.Module serialize(SourceLibrary library, ReferableConverter referableConverter, ErrorReporter errorReporter) {
     ModulePath currentModulePath = getModulePath();
     Group group = library.getModuleGroup(currentModulePath);
     if (group == null) {
       errorReporter.report(LocationError.module(currentModulePath));
-      return false;
+      return null;
+    }
+
+    try {
+      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter).writeModule(group, currentModulePath, referableConverter);
+      if (module == null) {
+        return null;
+      }
+
+      Source rawSource = library.hasRawSources() ? library.getRawSource(currentModulePath) : null;
+      byte[] sourceHash = rawSource != null && rawSource.isAvailable() ? rawSource.getContentHash() : null;
+      if (sourceHash != null) {
+        module = module.toBuilder().setSourceHash(ByteString.copyFrom(sourceHash)).build();
+      }
+
+      library.setModuleFingerprint(currentModulePath, module.getFingerprint().toByteArray());
+      return module;
+    } catch (Exception e) {
+      errorReporter.report(new ExceptionError(e, "persisting", currentModulePath));
+      return null;
     }
+  }
 
+  @Override
+  public boolean write(SourceLibrary library, ModuleProtos.Module module, ErrorReporter errorReporter) {
+    ModulePath currentModulePath = getModulePath();
     try (OutputStream outputStream = getOutputStream()) {
       if (outputStream == null) {
         errorReporter.report(new PersistingError(currentModulePath));
         return false;
       }
-
-      ModuleProtos.Module module = new ModuleSerialization(library.getTypecheckerState(), errorReporter).writeModule(group, currentModulePath, referableConverter);
-      if (module == null) {
-        return false;
-      }
-
-      module.writeTo(outputStream);
+      ModuleSerialization.setDependencyFingerprints(module, library::getModuleFingerprint).writeTo(outputStream);
       return true;
     } catch (Exception e) {
       errorReporter.report(new ExceptionError(e, "persisting", currentModulePath));
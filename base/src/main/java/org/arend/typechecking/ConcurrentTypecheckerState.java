@@ -0,0 +1,53 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.Definition;
+import org.arend.naming.reference.GlobalReferable;
+import org.arend.naming.reference.TCReferable;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A typechecker state which can be shared between threads which typecheck independent definitions.
+ */
+public class ConcurrentTypecheckerState implements TypecheckerState {
+  private final Map<GlobalReferable, Definition> myTypechecked = new ConcurrentHashMap<>();
+  private final AtomicLong myResetCount = new AtomicLong();
+
+  @Override
+  public Definition record(TCReferable def, Definition res) {
+    return myTypechecked.putIfAbsent(def, res);
+  }
+
+  @Override
+  public void rewrite(TCReferable def, Definition res) {
+    myTypechecked.put(def, res);
+  }
+
+  @Override
+  public Definition getTypechecked(TCReferable def) {
+    assert def != null;
+    return myTypechecked.get(def);
+  }
+
+  @Override
+  public Definition reset(TCReferable def) {
+    Definition result = myTypechecked.remove(def);
+    if (result != null) {
+      myResetCount.incrementAndGet();
+    }
+    return result;
+  }
+
+  @Override
+  public void reset() {
+    myTypechecked.clear();
+    myResetCount.incrementAndGet();
+  }
+
+  @Override
+  public long getResetCount() {
+    return myResetCount.get();
+  }
+}
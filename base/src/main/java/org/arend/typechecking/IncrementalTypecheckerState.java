@@ -0,0 +1,128 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.ClassDefinition;
+import org.arend.core.definition.ClassField;
+import org.arend.core.definition.Constructor;
+import org.arend.core.definition.DataDefinition;
+import org.arend.core.definition.Definition;
+import org.arend.naming.reference.TCReferable;
+import org.arend.typechecking.order.dependency.DependencyListener;
+
+import java.util.*;
+
+/**
+ * A typechecker state which also records dependencies between definitions.
+ * It should be used as the dependency listener of typechecking and of libraries, so that the recorded graph is complete.
+ * In this case, the graph is also stored in binary modules and restored when they are loaded.
+ */
+public class IncrementalTypecheckerState extends ConcurrentTypecheckerState implements DependencyListener {
+  private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
+  private final Map<TCReferable, Set<TCReferable>> myDependents = new HashMap<>();
+
+  @Override
+  public synchronized void dependsOn(TCReferable def1, TCReferable def2) {
+    if (def1.equals(def2)) {
+      return;
+    }
+    myDependencies.computeIfAbsent(def1, k -> new LinkedHashSet<>()).add(def2);
+    myDependents.computeIfAbsent(def2, k -> new LinkedHashSet<>()).add(def1);
+  }
+
+  /**
+   * @return definitions on which {@code definition} depends directly.
+   */
+  public synchronized Set<TCReferable> getDependencies(TCReferable definition) {
+    Set<TCReferable> result = myDependencies.get(definition);
+    return result == null ? Collections.emptySet() : new LinkedHashSet<>(result);
+  }
+
+  /**
+   * @return definitions which depend on {@code definition} directly.
+   */
+  public synchronized Set<TCReferable> getDependents(TCReferable definition) {
+    Set<TCReferable> result = myDependents.get(definition);
+    return result == null ? Collections.emptySet() : new LinkedHashSet<>(result);
+  }
+
+  /**
+   * Resets a definition together with all definitions which depend on it transitively.
+   * Other definitions are kept.
+   *
+   * @return the set of reset definitions.
+   */
+  public Set<TCReferable> invalidate(TCReferable definition) {
+    Set<TCReferable> invalidated = new LinkedHashSet<>();
+    synchronized (this) {
+      Deque<TCReferable> toVisit = new ArrayDeque<>();
+      toVisit.push(definition);
+      while (!toVisit.isEmpty()) {
+        TCReferable toInvalidate = toVisit.pop();
+        if (!invalidated.add(toInvalidate)) {
+          continue;
+        }
+
+        removeDependencies(toInvalidate);
+        Set<TCReferable> dependents = myDependents.remove(toInvalidate);
+        if (dependents != null) {
+          toVisit.addAll(dependents);
+        }
+      }
+    }
+
+    for (TCReferable referable : invalidated) {
+      Definition def = super.reset(referable);
+      if (def instanceof ClassDefinition) {
+        for (ClassField field : ((ClassDefinition) def).getPersonalFields()) {
+          super.reset(field.getReferable());
+        }
+      } else if (def instanceof DataDefinition) {
+        for (Constructor constructor : ((DataDefinition) def).getConstructors()) {
+          super.reset(constructor.getReferable());
+        }
+      }
+    }
+
+    return invalidated;
+  }
+
+  @Override
+  public Set<? extends TCReferable> update(TCReferable definition) {
+    return invalidate(definition);
+  }
+
+  private void removeDependencies(TCReferable definition) {
+    Set<TCReferable> dependencies = myDependencies.remove(definition);
+    if (dependencies != null) {
+      for (TCReferable dependency : dependencies) {
+        Set<TCReferable> dependents = myDependents.get(dependency);
+        if (dependents != null) {
+          dependents.remove(definition);
+          if (dependents.isEmpty()) {
+            myDependents.remove(dependency);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Resets a definition and forgets its dependencies, which are recorded again when it is typechecked.
+   * Dependents of the definition are kept.
+   */
+  @Override
+  public Definition reset(TCReferable def) {
+    synchronized (this) {
+      removeDependencies(def);
+    }
+    return super.reset(def);
+  }
+
+  @Override
+  public void reset() {
+    synchronized (this) {
+      myDependencies.clear();
+      myDependents.clear();
+    }
+    super.reset();
+  }
+}
@@ -9,6 +9,7 @@ import java.util.Map;
 
 public class SimpleTypecheckerState implements TypecheckerState {
   private final Map<GlobalReferable, Definition> myTypechecked;
+  private long myResetCount;
 
   public SimpleTypecheckerState() {
     myTypechecked = new HashMap<>();
@@ -32,11 +33,21 @@ public class SimpleTypecheckerState implements TypecheckerState {
 
   @Override
   public Definition reset(TCReferable def) {
-    return myTypechecked.remove(def);
+    Definition result = myTypechecked.remove(def);
+    if (result != null) {
+      myResetCount++;
+    }
+    return result;
   }
 
   @Override
   public void reset() {
     myTypechecked.clear();
+    myResetCount++;
+  }
+
+  @Override
+  public long getResetCount() {
+    return myResetCount;
   }
 }
@@ -13,6 +13,12 @@ public interface TypecheckerState extends DefinitionProvider {
   Definition reset(TCReferable def);
   void reset();
 
+  /**
+   * Gets the number of times typechecked definitions were reset.
+   * Data computed from typechecked definitions can be discarded when it changes.
+   */
+  long getResetCount();
+
   @Override
   default @Nullable Definition getCoreDefinition(@Nullable ArendRef ref) {
     return ref instanceof TCReferable ? getTypechecked((TCReferable) ref) : null;
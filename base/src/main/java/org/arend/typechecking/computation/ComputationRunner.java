@@ -5,18 +5,26 @@ import org.arend.util.ComputationInterruptedException;
 import java.util.function.Supplier;
 
 public class ComputationRunner<T> {
-  private static CancellationIndicator CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
+  private static final ThreadLocal<CancellationIndicator> CANCELLATION_INDICATOR = ThreadLocal.withInitial(() -> ThreadCancellationIndicator.INSTANCE);
 
   public static void checkCanceled() throws ComputationInterruptedException {
-    CANCELLATION_INDICATOR.checkCanceled();
+    CANCELLATION_INDICATOR.get().checkCanceled();
   }
 
   public static CancellationIndicator getCancellationIndicator() {
-    return CANCELLATION_INDICATOR;
+    return CANCELLATION_INDICATOR.get();
+  }
+
+  /**
+   * Sets the cancellation indicator of the current thread.
+   * It is used by worker threads which run a part of a computation started by {@link #run}.
+   */
+  public static void setCancellationIndicator(CancellationIndicator cancellationIndicator) {
+    CANCELLATION_INDICATOR.set(cancellationIndicator);
   }
 
   public static void resetCancellationIndicator() {
-    CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
+    CANCELLATION_INDICATOR.remove();
   }
 
   protected T computationInterrupted() {
@@ -26,7 +34,7 @@ public class ComputationRunner<T> {
   public T run(CancellationIndicator cancellationIndicator, Supplier<T> runnable) {
     synchronized (ComputationRunner.class) {
       if (cancellationIndicator != null) {
-        CANCELLATION_INDICATOR = cancellationIndicator;
+        setCancellationIndicator(cancellationIndicator);
       }
 
       try {
@@ -35,7 +43,7 @@ public class ComputationRunner<T> {
         return computationInterrupted();
       } finally {
         if (cancellationIndicator != null) {
-          CANCELLATION_INDICATOR = ThreadCancellationIndicator.INSTANCE;
+          resetCancellationIndicator();
         }
       }
     }
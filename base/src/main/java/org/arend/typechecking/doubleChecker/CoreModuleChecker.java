@@ -1,12 +1,21 @@
 package org.arend.typechecking.doubleChecker;
 
 import org.arend.core.definition.Definition;
+import org.arend.error.DummyErrorReporter;
 import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.error.ListErrorReporter;
 import org.arend.naming.reference.LocatedReferable;
 import org.arend.naming.reference.TCReferable;
 import org.arend.term.group.Group;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.error.local.LocalErrorReporter;
+import org.arend.util.ComputationInterruptedException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.*;
 
 public class CoreModuleChecker {
   private final ErrorReporter myErrorReporter;
@@ -20,27 +29,95 @@ public class CoreModuleChecker {
   }
 
   public boolean checkGroup(Group group) {
+    return checkGroups(Collections.singletonList(group), 1);
+  }
+
+  /**
+   * Checks definitions of groups and their subgroups.
+   * If {@code threads} is greater than 1, definitions are checked in parallel, each thread has its own {@link CoreDefinitionChecker}.
+   * In this case, errors are collected and reported after all definitions are checked in the same order as in the sequential mode.
+   */
+  public boolean checkGroups(Collection<? extends Group> groups, int threads) {
+    List<LocatedReferable> refs = new ArrayList<>();
+    List<Definition> definitions = new ArrayList<>();
+    for (Group group : groups) {
+      collectDefinitions(group, refs, definitions);
+    }
+
+    if (threads <= 1 || definitions.size() <= 1) {
+      boolean ok = true;
+      for (int i = 0; i < definitions.size(); i++) {
+        myChecker.setErrorReporter(new LocalErrorReporter(refs.get(i), myErrorReporter));
+        if (!myChecker.check(definitions.get(i))) {
+          ok = false;
+        }
+      }
+      return ok;
+    }
+
+    ThreadLocal<CoreDefinitionChecker> checkers = ThreadLocal.withInitial(() -> new CoreDefinitionChecker(DummyErrorReporter.INSTANCE));
+    List<ListErrorReporter> errorReporters = new ArrayList<>(definitions.size());
+    List<Callable<Boolean>> tasks = new ArrayList<>(definitions.size());
+    for (int i = 0; i < definitions.size(); i++) {
+      ListErrorReporter errorReporter = new ListErrorReporter();
+      errorReporters.add(errorReporter);
+      LocatedReferable ref = refs.get(i);
+      Definition definition = definitions.get(i);
+      tasks.add(() -> {
+        CoreDefinitionChecker checker = checkers.get();
+        checker.setErrorReporter(new LocalErrorReporter(ref, errorReporter));
+        return checker.check(definition);
+      });
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<Boolean>> results;
+    try {
+      results = executor.invokeAll(tasks);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ComputationInterruptedException();
+    } finally {
+      executor.shutdown();
+    }
+
+    boolean ok = true;
+    for (int i = 0; i < results.size(); i++) {
+      errorReporters.get(i).reportTo(myErrorReporter);
+      try {
+        if (!results.get(i).get()) {
+          ok = false;
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new ComputationInterruptedException();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof RuntimeException) {
+          throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+          throw (Error) cause;
+        }
+        throw new IllegalStateException(cause);
+      }
+    }
+    return ok;
+  }
+
+  private void collectDefinitions(Group group, List<LocatedReferable> refs, List<Definition> definitions) {
     LocatedReferable ref = group.getReferable();
     Definition def = ref instanceof TCReferable ? myState.getTypechecked((TCReferable) ref) : null;
-    boolean ok = true;
     if (def != null) {
-      myChecker.setErrorReporter(new LocalErrorReporter(ref, myErrorReporter));
-      if (!myChecker.check(def)) {
-        ok = false;
-      }
+      refs.add(ref);
+      definitions.add(def);
     }
 
     for (Group subgroup : group.getSubgroups()) {
-      if (!checkGroup(subgroup)) {
-        ok = false;
-      }
+      collectDefinitions(subgroup, refs, definitions);
     }
     for (Group subgroup : group.getDynamicSubgroups()) {
-      if (!checkGroup(subgroup)) {
-        ok = false;
-      }
+      collectDefinitions(subgroup, refs, definitions);
     }
-
-    return ok;
   }
 }
@@ -1,6 +1,7 @@
 package org.arend.typechecking.implicitargs.equations;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -40,7 +41,107 @@ public class LevelEquations<Var> {
     return myVariables.isEmpty() && myEquations.isEmpty();
   }
 
+  /**
+   * Solves the equations by Bellman-Ford over variables and equations indexed into arrays.
+   * An equation is skipped if its first variable has not changed since the equation was checked last time.
+   * If the equations cannot be solved, they are solved again by {@link #solveWithPaths} to find the offending path.
+   *
+   * @return null if the equations are solved; otherwise, a path of equations that cannot be satisfied.
+   */
   public List<LevelEquation<Var>> solve(Map<Var, Integer> solution) {
+    Map<Var, Integer> indices = new HashMap<>();
+    List<Var> variables = new ArrayList<>();
+    indices.put(null, 0);
+    variables.add(null);
+    for (Var var : myVariables) {
+      addIndex(var, indices, variables);
+    }
+    int numberOfRegistered = variables.size();
+
+    // Equations are kept in their original order since it determines the reported path.
+    // An infinity equation has no source, and ?x <= max(?y + c, d) is applicable only if solution(?x) < -d.
+    int m = myEquations.size();
+    int[] sources = new int[m];
+    int[] targets = new int[m];
+    int[] constants = new int[m];
+    int[] bounds = new int[m];
+    for (int i = 0; i < m; i++) {
+      LevelEquation<Var> equation = myEquations.get(i);
+      if (equation.isInfinity()) {
+        sources[i] = -1;
+        targets[i] = addIndex(equation.getVariable(), indices, variables);
+      } else {
+        sources[i] = addIndex(equation.getVariable1(), indices, variables);
+        targets[i] = addIndex(equation.getVariable2(), indices, variables);
+        constants[i] = equation.getConstant();
+        Integer maxConstant = equation.getMaxConstant();
+        bounds[i] = maxConstant == null ? INFINITY : -maxConstant;
+      }
+    }
+
+    int n = variables.size();
+    int[] values = new int[n];
+    for (int i = numberOfRegistered; i < n; i++) {
+      values[i] = solution.getOrDefault(variables.get(i), 0);
+    }
+
+    // The time of the last update of each variable and of the last check of each equation
+    int time = 1;
+    int[] updateTimes = new int[n];
+    Arrays.fill(updateTimes, 1);
+    int[] checkTimes = new int[m];
+
+    for (int i = myVariables.size(); i >= 0; i--) {
+      boolean updated = false;
+      for (int j = 0; j < m; j++) {
+        int w = targets[j];
+        if (sources[j] < 0) {
+          if (values[w] != INFINITY) {
+            values[w] = INFINITY;
+            updateTimes[w] = ++time;
+            updated = true;
+          }
+          continue;
+        }
+
+        int v = sources[j];
+        if (updateTimes[v] <= checkTimes[j]) {
+          continue;
+        }
+        checkTimes[j] = ++time;
+
+        int a = values[v];
+        int b = values[w];
+        if (b != INFINITY && (a == INFINITY || a < bounds[j] && b > a + constants[j])) {
+          if (i == 0 || w == 0 && a != INFINITY) {
+            return solveWithPaths(solution);
+          }
+          values[w] = a == INFINITY ? INFINITY : a + constants[j];
+          updateTimes[w] = ++time;
+          updated = true;
+        }
+      }
+      if (!updated) {
+        break;
+      }
+    }
+
+    for (int i = 1; i < n; i++) {
+      solution.put(variables.get(i), values[i]);
+    }
+    return null;
+  }
+
+  private static <Var> int addIndex(Var var, Map<Var, Integer> indices, List<Var> variables) {
+    Integer index = indices.putIfAbsent(var, variables.size());
+    if (index != null) {
+      return index;
+    }
+    variables.add(var);
+    return variables.size() - 1;
+  }
+
+  private List<LevelEquation<Var>> solveWithPaths(Map<Var, Integer> solution) {
     Map<Var, List<LevelEquation<Var>>> paths = new HashMap<>();
 
     solution.put(null, 0);
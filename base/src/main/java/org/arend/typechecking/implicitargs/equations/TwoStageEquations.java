@@ -26,6 +26,7 @@ import org.arend.typechecking.error.local.ConstantSolveLevelEquationError;
 import org.arend.typechecking.error.local.SolveEquationError;
 import org.arend.typechecking.error.local.SolveEquationsError;
 import org.arend.typechecking.error.local.SolveLevelEquationsError;
+import org.arend.typechecking.profiling.ProfilingCounters;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 import org.arend.typechecking.visitor.ProcessDefCallsVisitor;
 import org.arend.util.Pair;
@@ -1035,6 +1036,7 @@ public class TwoStageEquations implements Equations {
 
     if (actualType.isLessOrEquals(expectedType, this, var.getSourceNode())) {
       var.solve(this, OfTypeExpression.make(result, actualType, expectedType));
+      ProfilingCounters.countSolvedEquation();
       return SolveResult.SOLVED;
     } else {
       if (trySolve) {
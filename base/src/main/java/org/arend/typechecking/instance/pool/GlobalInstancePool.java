@@ -11,11 +11,16 @@ import org.arend.core.subst.ExprSubstitution;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.naming.reference.TCClassReferable;
 import org.arend.term.concrete.Concrete;
+import org.arend.prelude.Prelude;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceClassifier;
 import org.arend.typechecking.instance.provider.InstanceProvider;
+import org.arend.typechecking.profiling.ProfilingCounters;
 import org.arend.typechecking.result.TypecheckingResult;
 import org.arend.typechecking.visitor.CheckTypeVisitor;
 import org.arend.util.Pair;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.function.Predicate;
@@ -104,6 +109,7 @@ public class GlobalInstancePool implements InstancePool {
   }
 
   private Pair<Concrete.Expression, ClassDefinition> getInstanceX(Expression classifyingExpression, TCClassReferable classRef, Concrete.SourceNode sourceNode, RecursiveInstanceHoleExpression recursiveHoleExpression) {
+    ProfilingCounters.countInstanceSearch();
     ClassField classifyingField;
     Expression normClassifyingExpression = classifyingExpression;
     if (classifyingExpression != null) {
@@ -131,38 +137,32 @@ public class GlobalInstancePool implements InstancePool {
     class MyPredicate implements Predicate<Concrete.FunctionDefinition> {
       private FunctionDefinition instanceDef = null;
 
+      // Instances that do not match the classifying expression are filtered out by the classifier
       @Override
       public boolean test(Concrete.FunctionDefinition instance) {
         instanceDef = (FunctionDefinition) myCheckTypeVisitor.getTypecheckingState().getTypechecked(instance.getData());
-        if (instanceDef == null || !instanceDef.status().headerIsOK() || !(instanceDef.getResultType() instanceof ClassCallExpression)) {
-          return false;
-        }
-
-        if (finalClassifyingExpression == null) {
-          return true;
-        }
-
-        Expression instanceClassifyingExpr = ((ClassCallExpression) instanceDef.getResultType()).getAbsImplementationHere(classifyingField);
-        if (instanceClassifyingExpr != null) {
-          instanceClassifyingExpr = instanceClassifyingExpr.normalize(NormalizationMode.WHNF);
-        }
-        while (instanceClassifyingExpr instanceof LamExpression) {
-          instanceClassifyingExpr = ((LamExpression) instanceClassifyingExpr).getBody();
-        }
-        return
-          instanceClassifyingExpr instanceof UniverseExpression && finalClassifyingExpression instanceof UniverseExpression ||
-            instanceClassifyingExpr instanceof SigmaExpression && finalClassifyingExpression instanceof SigmaExpression ||
-            instanceClassifyingExpr instanceof IntegerExpression && (finalClassifyingExpression instanceof IntegerExpression && ((IntegerExpression) instanceClassifyingExpr).isEqual((IntegerExpression) finalClassifyingExpression) ||
-              finalClassifyingExpression instanceof ConCallExpression && ((IntegerExpression) instanceClassifyingExpr).match(((ConCallExpression) finalClassifyingExpression).getDefinition())) ||
-            instanceClassifyingExpr instanceof DefCallExpression && finalClassifyingExpression instanceof DefCallExpression && ((DefCallExpression) instanceClassifyingExpr).getDefinition() == ((DefCallExpression) finalClassifyingExpression).getDefinition();
+        return instanceDef != null && instanceDef.status().headerIsOK() && instanceDef.getResultType() instanceof ClassCallExpression;
       }
     }
 
     MyPredicate predicate = new MyPredicate();
-    Concrete.FunctionDefinition instance = myInstanceProvider.findInstance(classRef, predicate);
-    if (instance == null || predicate.instanceDef == null) {
+    Concrete.FunctionDefinition instance;
+    if (finalClassifyingExpression == null) {
+      instance = myInstanceProvider.findInstance(classRef, predicate);
+    } else {
+      Object key = getKey(finalClassifyingExpression);
+      instance = key == null ? null : myInstanceProvider.findInstance(classRef, new HeadClassifier(myCheckTypeVisitor.getTypecheckingState(), classifyingField), key, predicate);
+    }
+    if (instance == null) {
+      return null;
+    }
+
+    // The result may be cached by the provider, so the predicate is not necessarily invoked
+    Definition instanceDef = myCheckTypeVisitor.getTypecheckingState().getTypechecked(instance.getData());
+    if (!(instanceDef instanceof FunctionDefinition && instanceDef.status().headerIsOK() && ((FunctionDefinition) instanceDef).getResultType() instanceof ClassCallExpression)) {
       return null;
     }
+    predicate.instanceDef = (FunctionDefinition) instanceDef;
 
     ClassDefinition classDef = ((ClassCallExpression) predicate.instanceDef.getResultType()).getDefinition();
     Concrete.Expression instanceExpr = new Concrete.ReferenceExpression(sourceNode.getData(), instance.getData());
@@ -178,6 +178,92 @@ public class GlobalInstancePool implements InstancePool {
     return new Pair<>(instanceExpr, classDef);
   }
 
+  /**
+   * Computes the key of the head of a classifying expression.
+   * Integers are distinguished, so the key of an integer is the integer itself.
+   */
+  private static Object getKey(Expression expr) {
+    if (expr instanceof IntegerExpression) {
+      return ((IntegerExpression) expr).getBigInteger();
+    }
+    if (expr instanceof UniverseExpression || expr instanceof SigmaExpression) {
+      return expr.getClass();
+    }
+    if (expr instanceof DefCallExpression) {
+      return ((DefCallExpression) expr).getDefinition().getReferable();
+    }
+    return null;
+  }
+
+  /**
+   * Classifies instances by heads of implementations of a classifying field.
+   * Keys of instances are computed once, so implementations are not normalized on every lookup.
+   * Integers are put into the buckets of {@link Prelude#ZERO} and {@link Prelude#SUC}, so they are found by both integers and constructors.
+   * Keys are discarded when typechecked definitions are reset since instances may be typechecked again.
+   */
+  private static class HeadClassifier implements InstanceClassifier {
+    private static final Object NO_HEAD = new Object();
+
+    private final TypecheckerState myState;
+    private final ClassField myClassifyingField;
+
+    private HeadClassifier(TypecheckerState state, ClassField classifyingField) {
+      myState = state;
+      myClassifyingField = classifyingField;
+    }
+
+    @Override
+    public Object getKey(Concrete.FunctionDefinition instance) {
+      Definition instanceDef = myState.getTypechecked(instance.getData());
+      if (!(instanceDef instanceof FunctionDefinition) || !instanceDef.status().headerIsOK()) {
+        return null;
+      }
+      Expression resultType = ((FunctionDefinition) instanceDef).getResultType();
+      if (!(resultType instanceof ClassCallExpression)) {
+        return NO_HEAD;
+      }
+
+      Expression expr = ((ClassCallExpression) resultType).getAbsImplementationHere(myClassifyingField);
+      if (expr == null) {
+        return NO_HEAD;
+      }
+      expr = expr.normalize(NormalizationMode.WHNF);
+      while (expr instanceof LamExpression) {
+        expr = ((LamExpression) expr).getBody();
+      }
+      Object key = GlobalInstancePool.getKey(expr);
+      return key == null ? NO_HEAD : key;
+    }
+
+    @Override
+    public Object getBucketKey(Object key) {
+      return key instanceof BigInteger ? (((BigInteger) key).signum() == 0 ? Prelude.ZERO : Prelude.SUC).getReferable() : key;
+    }
+
+    @Override
+    public boolean matches(Object instanceKey, Object queryKey) {
+      return !(queryKey instanceof BigInteger) || queryKey.equals(instanceKey);
+    }
+
+    @Override
+    public long getVersion() {
+      return myState.getResetCount();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      HeadClassifier that = (HeadClassifier) o;
+      return myState == that.myState && myClassifyingField == that.myClassifyingField;
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(myState) + System.identityHashCode(myClassifyingField);
+    }
+  }
+
   @Override
   public GlobalInstancePool subst(ExprSubstitution substitution) {
     return myInstancePool != null ? new GlobalInstancePool(myInstanceProvider, myCheckTypeVisitor, myInstancePool.subst(substitution)) : this;
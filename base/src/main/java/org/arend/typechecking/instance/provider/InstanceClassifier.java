@@ -0,0 +1,51 @@
+package org.arend.typechecking.instance.provider;
+
+import org.arend.term.concrete.Concrete;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Computes keys by which instances are indexed.
+ * Classifiers which compute the same keys should be equal so that indices and cached results can be reused.
+ */
+public interface InstanceClassifier {
+  /**
+   * Computes the key of an instance.
+   *
+   * @return the key of the instance or null if it cannot be computed yet.
+   */
+  @Nullable Object getKey(Concrete.FunctionDefinition instance);
+
+  /**
+   * Computes the key of the bucket of instances with the given key.
+   * The bucket of a query key contains all instances that may be found by the query.
+   */
+  default Object getBucketKey(Object key) {
+    return key;
+  }
+
+  /**
+   * Checks if an instance may be found by a query.
+   * It is invoked only if their keys belong to the same bucket.
+   */
+  default boolean matches(Object instanceKey, Object queryKey) {
+    return true;
+  }
+
+  /**
+   * Computes the key of an instance and checks if it may be found by a query.
+   * Instances whose keys cannot be computed yet are not found.
+   */
+  default boolean isCandidate(Concrete.FunctionDefinition instance, Object queryKey) {
+    Object instanceKey = getKey(instance);
+    return instanceKey != null && getBucketKey(instanceKey).equals(getBucketKey(queryKey)) && matches(instanceKey, queryKey);
+  }
+
+  /**
+   * Gets the version of the data from which keys are computed.
+   * Keys of instances and cached results are discarded when it changes.
+   * This method is invoked on every lookup, so it should be cheap.
+   */
+  default long getVersion() {
+    return 0;
+  }
+}
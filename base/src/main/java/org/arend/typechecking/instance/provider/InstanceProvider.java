@@ -7,4 +7,14 @@ import java.util.function.Predicate;
 
 public interface InstanceProvider {
   Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred);
+
+  /**
+   * Finds an instance among those whose key computed by {@code classifier} matches {@code key}.
+   * Instances whose keys cannot be computed yet are skipped.
+   * Instances are tested in the same order as in {@link #findInstance(ClassReferable, Predicate)}.
+   * The result may be cached, so {@code pred} must be determined by {@code classRef}, {@code classifier}, and {@code key}.
+   */
+  default Concrete.FunctionDefinition findInstance(ClassReferable classRef, InstanceClassifier classifier, Object key, Predicate<Concrete.FunctionDefinition> pred) {
+    return findInstance(classRef, instance -> classifier.isCandidate(instance, key) && pred.test(instance));
+  }
 }
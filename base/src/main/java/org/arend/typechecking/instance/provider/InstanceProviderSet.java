@@ -16,12 +16,17 @@ import org.arend.term.group.Group;
 import org.arend.typechecking.provider.ConcreteProvider;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
+/**
+ * Instance providers of definitions.
+ * Providers are collected when modules are loaded, and they can be requested from several threads at once when definitions are typechecked in parallel.
+ */
 public class InstanceProviderSet {
-  private final Map<TCReferable, InstanceProvider> myProviders = new HashMap<>();
-  private final Set<Group> myCollected = new HashSet<>();
+  private final Map<TCReferable, InstanceProvider> myProviders = new ConcurrentHashMap<>();
+  private final Set<Group> myCollected = ConcurrentHashMap.newKeySet();
 
   public void put(TCReferable referable, InstanceProvider provider) {
     myProviders.put(referable, provider);
@@ -35,6 +40,38 @@ public class InstanceProviderSet {
     return myProviders.computeIfAbsent(referable, fun);
   }
 
+  private Collection<SimpleInstanceProvider> getSimpleProviders() {
+    Set<SimpleInstanceProvider> result = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (InstanceProvider provider : myProviders.values()) {
+      if (provider instanceof SimpleInstanceProvider) {
+        result.add((SimpleInstanceProvider) provider);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of instance lookups answered from caches of providers.
+   */
+  public long getCacheHits() {
+    long result = 0;
+    for (SimpleInstanceProvider provider : getSimpleProviders()) {
+      result += provider.getCacheHits();
+    }
+    return result;
+  }
+
+  /**
+   * Gets the number of instance lookups that were not cached.
+   */
+  public long getCacheMisses() {
+    long result = 0;
+    for (SimpleInstanceProvider provider : getSimpleProviders()) {
+      result += provider.getCacheMisses();
+    }
+    return result;
+  }
+
   private class MyPredicate implements Predicate<Referable> {
     private final ConcreteProvider concreteProvider;
     private final ReferableConverter referableConverter;
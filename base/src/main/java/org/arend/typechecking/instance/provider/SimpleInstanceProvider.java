@@ -4,34 +4,269 @@ import org.arend.naming.reference.ClassReferable;
 import org.arend.naming.reference.Referable;
 import org.arend.term.concrete.Concrete;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Predicate;
 
+/**
+ * A list of instances.
+ * A provider created from another one shares its instances instead of copying them.
+ * Instances added to the original provider after that are not visible in the new one.
+ * <p>
+ * Results of indexed lookups, including failed ones, are cached until a new instance is added.
+ * A result is not cached if some candidate could not be classified yet since it may become applicable later.
+ * Indices and cached results are discarded when the version of their classifier changes.
+ * Keys of instances are computed without holding the lock of the provider.
+ */
 public class SimpleInstanceProvider implements InstanceProvider {
-  private List<Concrete.FunctionDefinition> myInstances;
+  private final SimpleInstanceProvider myParent;
+  private final int myParentSize;
+  private final List<Concrete.FunctionDefinition> myInstances = new ArrayList<>();
+  private final Map<InstanceClassifier, Index> myIndices = new HashMap<>();
+  private final Map<CacheKey, CacheEntry> myCache = new HashMap<>();
+  private final AtomicLong myCacheHits = new AtomicLong();
+  private final AtomicLong myCacheMisses = new AtomicLong();
+
+  /**
+   * Instances of {@link #myInstances} grouped by their bucket keys.
+   * Instances whose keys cannot be computed yet are kept in {@link #pending}.
+   */
+  private static class Index {
+    final long version;
+    final Map<Object, List<Integer>> buckets = new HashMap<>();
+    final Map<Integer, Object> keys = new HashMap<>();
+    final TreeSet<Integer> pending = new TreeSet<>();
+    int processed;
+
+    Index(long version) {
+      this.version = version;
+    }
+  }
+
+  private static class CacheKey {
+    final ClassReferable classRef;
+    final InstanceClassifier classifier;
+    final Object key;
+
+    CacheKey(ClassReferable classRef, InstanceClassifier classifier, Object key) {
+      this.classRef = classRef;
+      this.classifier = classifier;
+      this.key = key;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) return true;
+      if (o == null || getClass() != o.getClass()) return false;
+      CacheKey cacheKey = (CacheKey) o;
+      return classRef.equals(cacheKey.classRef) && classifier.equals(cacheKey.classifier) && key.equals(cacheKey.key);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(classRef, classifier, key);
+    }
+  }
+
+  private static class CacheEntry {
+    final Concrete.FunctionDefinition instance;
+    final long version;
+
+    CacheEntry(Concrete.FunctionDefinition instance, long version) {
+      this.instance = instance;
+      this.version = version;
+    }
+  }
+
+  /**
+   * Candidates which were not classified when they were collected.
+   * They are classified again before they are tested.
+   */
+  private static class Lookup {
+    final Set<Concrete.FunctionDefinition> pending = Collections.newSetFromMap(new IdentityHashMap<>());
+    boolean hasPending;
+  }
 
   public SimpleInstanceProvider() {
-    myInstances = new ArrayList<>();
+    myParent = null;
+    myParentSize = 0;
   }
 
   public SimpleInstanceProvider(SimpleInstanceProvider another) {
-    myInstances = new ArrayList<>(another.myInstances);
+    myParent = another;
+    myParentSize = another.size();
+  }
+
+  public synchronized int size() {
+    return myParentSize + myInstances.size();
   }
 
-  public void put(Concrete.FunctionDefinition instance) {
+  public synchronized void put(Concrete.FunctionDefinition instance) {
     myInstances.add(instance);
+    myCache.clear();
+  }
+
+  public long getCacheHits() {
+    return myCacheHits.get();
+  }
+
+  public long getCacheMisses() {
+    return myCacheMisses.get();
+  }
+
+  private static boolean isInstanceOf(Concrete.FunctionDefinition instance, ClassReferable classRef) {
+    Concrete.Expression type = instance.getResultType();
+    Referable ref = type == null ? null : type.getUnderlyingReferable();
+    return ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf(classRef);
   }
 
   @Override
   public Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred) {
-    for (Concrete.FunctionDefinition instance : myInstances) {
-      Concrete.Expression type = instance.getResultType();
-      Referable ref = type == null ? null : type.getUnderlyingReferable();
-      if (ref instanceof ClassReferable && ((ClassReferable) ref).isSubClassOf(classRef) && pred.test(instance)) {
+    return findInstance(classRef, pred, size());
+  }
+
+  private Concrete.FunctionDefinition findInstance(ClassReferable classRef, Predicate<Concrete.FunctionDefinition> pred, int size) {
+    if (myParent != null) {
+      Concrete.FunctionDefinition result = myParent.findInstance(classRef, pred, Math.min(size, myParentSize));
+      if (result != null) {
+        return result;
+      }
+    }
+
+    List<Concrete.FunctionDefinition> instances;
+    synchronized (this) {
+      instances = new ArrayList<>(myInstances.subList(0, Math.max(0, Math.min(size - myParentSize, myInstances.size()))));
+    }
+    for (Concrete.FunctionDefinition instance : instances) {
+      if (isInstanceOf(instance, classRef) && pred.test(instance)) {
+        return instance;
+      }
+    }
+    return null;
+  }
+
+  @Override
+  public Concrete.FunctionDefinition findInstance(ClassReferable classRef, InstanceClassifier classifier, Object key, Predicate<Concrete.FunctionDefinition> pred) {
+    CacheKey cacheKey = new CacheKey(classRef, classifier, key);
+    long version = classifier.getVersion();
+    int size;
+    synchronized (this) {
+      CacheEntry entry = myCache.get(cacheKey);
+      if (entry != null && entry.version == version) {
+        myCacheHits.incrementAndGet();
+        return entry.instance;
+      }
+      size = size();
+    }
+
+    myCacheMisses.incrementAndGet();
+    Lookup lookup = new Lookup();
+    Concrete.FunctionDefinition result = findInstance(classRef, classifier, key, pred, size, lookup);
+    if (!lookup.hasPending) {
+      synchronized (this) {
+        if (size == size() && version == classifier.getVersion()) {
+          myCache.put(cacheKey, new CacheEntry(result, version));
+        }
+      }
+    }
+    return result;
+  }
+
+  private Concrete.FunctionDefinition findInstance(ClassReferable classRef, InstanceClassifier classifier, Object key, Predicate<Concrete.FunctionDefinition> pred, int size, Lookup lookup) {
+    if (myParent != null) {
+      Concrete.FunctionDefinition result = myParent.findInstance(classRef, classifier, key, pred, Math.min(size, myParentSize), lookup);
+      if (result != null) {
+        return result;
+      }
+    }
+
+    for (Concrete.FunctionDefinition instance : getCandidates(classifier, key, size - myParentSize, lookup)) {
+      if (isInstanceOf(instance, classRef) && (!lookup.pending.contains(instance) || classifier.isCandidate(instance, key)) && pred.test(instance)) {
         return instance;
       }
     }
     return null;
   }
+
+  /**
+   * Gets the index of the classifier and adds new instances to it.
+   * The index is rebuilt if it was built for an older version of the classifier.
+   */
+  private Index getIndex(InstanceClassifier classifier, long version) {
+    Index index = myIndices.get(classifier);
+    if (index == null || index.version < version) {
+      index = new Index(version);
+      myIndices.put(classifier, index);
+    }
+    for (; index.processed < myInstances.size(); index.processed++) {
+      index.pending.add(index.processed);
+    }
+    return index;
+  }
+
+  private List<Concrete.FunctionDefinition> getCandidates(InstanceClassifier classifier, Object key, int size, Lookup lookup) {
+    long version = classifier.getVersion();
+    Map<Integer, Concrete.FunctionDefinition> pending = new LinkedHashMap<>();
+    synchronized (this) {
+      size = Math.min(size, myInstances.size());
+      if (size <= 0) {
+        return Collections.emptyList();
+      }
+      for (Integer i : getIndex(classifier, version).pending.headSet(size)) {
+        pending.put(i, myInstances.get(i));
+      }
+    }
+
+    // Keys may require normalization, so they are computed without holding the lock
+    Map<Integer, Object> keys = new HashMap<>();
+    for (Map.Entry<Integer, Concrete.FunctionDefinition> entry : pending.entrySet()) {
+      Object instanceKey = classifier.getKey(entry.getValue());
+      if (instanceKey != null) {
+        keys.put(entry.getKey(), instanceKey);
+      }
+    }
+
+    synchronized (this) {
+      Index index = getIndex(classifier, version);
+      // Keys computed for another version are discarded
+      if (index.version == version && version == classifier.getVersion()) {
+        for (Map.Entry<Integer, Object> entry : keys.entrySet()) {
+          int i = entry.getKey();
+          if (index.pending.remove(i)) {
+            List<Integer> bucket = index.buckets.computeIfAbsent(classifier.getBucketKey(entry.getValue()), k -> new ArrayList<>());
+            int pos = Collections.binarySearch(bucket, i);
+            bucket.add(pos < 0 ? -pos - 1 : pos, i);
+            index.keys.put(i, entry.getValue());
+          }
+        }
+      } else {
+        lookup.hasPending = true;
+      }
+
+      // Both sequences are sorted, so their merge preserves the order of instances
+      List<Integer> bucket = index.buckets.getOrDefault(classifier.getBucketKey(key), Collections.emptyList());
+      Iterator<Integer> pendingIt = index.pending.headSet(size).iterator();
+      List<Concrete.FunctionDefinition> result = new ArrayList<>();
+      int i = 0;
+      int next2 = pendingIt.hasNext() ? pendingIt.next() : size;
+      while (true) {
+        int next1 = i < bucket.size() ? bucket.get(i) : size;
+        if (next1 >= size && next2 >= size) {
+          break;
+        }
+        if (next1 < next2) {
+          if (classifier.matches(index.keys.get(next1), key)) {
+            result.add(myInstances.get(next1));
+          }
+          i++;
+        } else {
+          result.add(myInstances.get(next2));
+          lookup.pending.add(myInstances.get(next2));
+          lookup.hasPending = true;
+          next2 = pendingIt.hasNext() ? pendingIt.next() : size;
+        }
+      }
+      return result;
+    }
+  }
 }
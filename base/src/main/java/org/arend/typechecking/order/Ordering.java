@@ -65,6 +65,7 @@ public class Ordering extends BellmanFord<Concrete.Definition> {
   public void orderModules(Collection<? extends Group> modules) {
     for (Group group : modules) {
       orderModule(group);
+      myOrderingListener.moduleFinished(group);
     }
   }
 
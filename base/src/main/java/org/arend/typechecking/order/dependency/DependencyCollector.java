@@ -42,7 +42,7 @@ public class DependencyCollector implements DependencyListener {
         for (TCReferable dependency : dependencies) {
           Set<TCReferable> definitions = myReverseDependencies.get(dependency);
           if (definitions != null) {
-            definitions.remove(definition);
+            definitions.remove(toUpdate);
           }
         }
       }
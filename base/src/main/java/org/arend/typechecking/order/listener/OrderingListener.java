@@ -1,6 +1,7 @@
 package org.arend.typechecking.order.listener;
 
 import org.arend.term.concrete.Concrete;
+import org.arend.term.group.Group;
 
 import java.util.List;
 
@@ -10,4 +11,9 @@ public interface OrderingListener {
   void headerFound(Concrete.Definition definition);
   void bodiesFound(List<Concrete.Definition> definitions);
   void useFound(List<Concrete.UseDefinition> definitions);
+
+  /**
+   * Invoked after all definitions of a module and their dependencies are ordered.
+   */
+  default void moduleFinished(Group module) {}
 }
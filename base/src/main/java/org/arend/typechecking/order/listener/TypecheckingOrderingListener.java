@@ -7,6 +7,9 @@ import org.arend.core.definition.*;
 import org.arend.core.expr.ClassCallExpression;
 import org.arend.core.expr.ErrorExpression;
 import org.arend.core.expr.PiExpression;
+import org.arend.core.expr.eval.ConversionCache;
+import org.arend.core.expr.eval.NormalizationSettings;
+import org.arend.core.expr.eval.WhnfCache;
 import org.arend.core.sort.Sort;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
@@ -32,28 +35,39 @@ import org.arend.typechecking.order.Ordering;
 import org.arend.typechecking.order.PartialComparator;
 import org.arend.typechecking.order.dependency.DependencyListener;
 import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.arend.typechecking.order.parallel.OrderingUnitGraph;
+import org.arend.typechecking.order.parallel.ParallelUnitExecutor;
 import org.arend.typechecking.patternmatching.ExtElimClause;
 import org.arend.typechecking.provider.ConcreteProvider;
 import org.arend.typechecking.termination.DefinitionCallGraph;
 import org.arend.typechecking.termination.RecursiveBehavior;
 import org.arend.typechecking.visitor.*;
+import org.arend.util.ComputationInterruptedException;
 import org.arend.util.Pair;
 import org.jetbrains.annotations.Nullable;
 
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 public class TypecheckingOrderingListener extends ComputationRunner<Boolean> implements OrderingListener {
   private final TypecheckerState myState;
   private final DependencyListener myDependencyListener;
-  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new HashMap<>();
+  private final Map<GlobalReferable, Pair<CheckTypeVisitor,Boolean>> mySuspensions = new ConcurrentHashMap<>();
   private final ErrorReporter myErrorReporter;
   private final InstanceProviderSet myInstanceProviderSet;
   private final ConcreteProvider myConcreteProvider;
   private final ReferableConverter myReferableConverter;
   private final PartialComparator<TCReferable> myComparator;
   private final ArendExtensionProvider myExtensionProvider;
-  private List<TCReferable> myCurrentDefinitions = Collections.emptyList();
-  private boolean myHeadersAreOK = true;
+  private final ThreadLocal<List<TCReferable>> myCurrentDefinitions = ThreadLocal.withInitial(Collections::emptyList);
+  private final ThreadLocal<Boolean> myHeadersAreOK = ThreadLocal.withInitial(() -> true);
+  private final WhnfCache myWhnfCache = new WhnfCache();
+  private final ConversionCache myConversionCache = new ConversionCache();
+  private final NormalizationSettings myNormalizationSettings = new NormalizationSettings();
+  private final Object myHookLock = new Object();
+  private int myThreads = 1;
 
   public TypecheckingOrderingListener(InstanceProviderSet instanceProviderSet, TypecheckerState state, ConcreteProvider concreteProvider, ReferableConverter referableConverter, ErrorReporter errorReporter, DependencyListener dependencyListener, PartialComparator<TCReferable> comparator, ArendExtensionProvider extensionProvider) {
     myState = state;
@@ -82,18 +96,104 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     return myState;
   }
 
+  /**
+   * Gets the cache of weak head normal forms which is used by computations of this listener.
+   */
+  public WhnfCache getWhnfCache() {
+    return myWhnfCache;
+  }
+
+  /**
+   * Gets the cache of comparisons which is used by computations of this listener.
+   */
+  public ConversionCache getConversionCache() {
+    return myConversionCache;
+  }
+
+  /**
+   * Gets the choice of normalization engines which is used by computations of this listener.
+   */
+  public NormalizationSettings getNormalizationSettings() {
+    return myNormalizationSettings;
+  }
+
+  /**
+   * Sets the number of threads which are used to typecheck libraries and modules.
+   * If it is greater than 1, the typechecker state, the error reporter, and the dependency listener must be thread-safe.
+   * Units of definitions are typechecked concurrently, but a definition is never typechecked or desugared while another thread reads it
+   * (see {@link OrderingUnitGraph}).
+   * Hooks such as {@link #typecheckingUnitFinished} are invoked under a lock, so they are never invoked concurrently.
+   */
+  public void setNumberOfThreads(int threads) {
+    myThreads = threads;
+  }
+
+  public int getNumberOfThreads() {
+    return myThreads;
+  }
+
   @Override
   protected Boolean computationInterrupted() {
-    for (TCReferable currentDefinition : myCurrentDefinitions) {
-      typecheckingInterrupted(currentDefinition, myState.reset(currentDefinition));
+    for (TCReferable currentDefinition : myCurrentDefinitions.get()) {
+      Definition typechecked = myState.reset(currentDefinition);
+      invokeHook(() -> typecheckingInterrupted(currentDefinition, typechecked));
     }
-    myCurrentDefinitions = Collections.emptyList();
+    myCurrentDefinitions.remove();
     return false;
   }
 
+  @Override
+  public Boolean run(CancellationIndicator cancellationIndicator, Supplier<Boolean> runnable) {
+    return super.run(cancellationIndicator, () -> withCaches(runnable));
+  }
+
+  private <T> T withCaches(Supplier<T> runnable) {
+    WhnfCache whnfCache = WhnfCache.setCurrent(myWhnfCache);
+    ConversionCache conversionCache = ConversionCache.setCurrent(myConversionCache);
+    NormalizationSettings normalizationSettings = NormalizationSettings.setCurrent(myNormalizationSettings);
+    try {
+      return runnable.get();
+    } finally {
+      WhnfCache.setCurrent(whnfCache);
+      ConversionCache.setCurrent(conversionCache);
+      NormalizationSettings.setCurrent(normalizationSettings);
+    }
+  }
+
+  private Ordering newOrdering(OrderingListener listener, DependencyListener dependencyListener) {
+    return new Ordering(myInstanceProviderSet, myConcreteProvider, listener, dependencyListener, myReferableConverter, myState, myComparator);
+  }
+
+  private boolean order(Function<Ordering, Boolean> orderer) {
+    if (myThreads <= 1) {
+      return orderer.apply(newOrdering(this, myDependencyListener));
+    }
+
+    OrderingUnitGraph graph = new OrderingUnitGraph(myDependencyListener);
+    if (!orderer.apply(newOrdering(graph, graph))) {
+      return false;
+    }
+
+    new ParallelUnitExecutor(myThreads).execute(graph, unit -> {
+      try {
+        withCaches(() -> {
+          unit.feed(this);
+          return null;
+        });
+      } catch (ComputationInterruptedException e) {
+        computationInterrupted();
+        throw e;
+      } finally {
+        myCurrentDefinitions.remove();
+        myHeadersAreOK.remove();
+      }
+    });
+    return true;
+  }
+
   public boolean typecheckDefinitions(final Collection<? extends Concrete.Definition> definitions, CancellationIndicator cancellationIndicator) {
     return run(cancellationIndicator, () -> {
-      Ordering ordering = new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator);
+      Ordering ordering = newOrdering(this, myDependencyListener);
       for (Concrete.Definition definition : definitions) {
         ordering.order(definition);
       }
@@ -102,14 +202,25 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
   }
 
   public boolean typecheckModules(final Collection<? extends Group> modules, CancellationIndicator cancellationIndicator) {
-    return run(cancellationIndicator, () -> {
-      new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator).orderModules(modules);
+    return run(cancellationIndicator, () -> order(ordering -> {
+      ordering.orderModules(modules);
       return true;
-    });
+    }));
   }
 
   public boolean typecheckLibrary(Library library, CancellationIndicator cancellationIndicator) {
-    return run(cancellationIndicator, () -> library.orderModules(new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator)));
+    myConversionCache.clear();
+    try {
+      return run(cancellationIndicator, () -> {
+        boolean ok = order(library::orderModules);
+        while (ok && library.resolvePostponedModules()) {
+          ok = order(library::orderModules);
+        }
+        return ok;
+      });
+    } finally {
+      myConversionCache.invalidate();
+    }
   }
 
   public boolean typecheckLibrary(Library library) {
@@ -117,7 +228,12 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
   }
 
   public boolean typecheckTests(Library library, CancellationIndicator cancellationIndicator) {
-    return run(cancellationIndicator, () -> library.orderTestModules(new Ordering(myInstanceProviderSet, myConcreteProvider, this, myDependencyListener, myReferableConverter, myState, myComparator)));
+    myConversionCache.clear();
+    try {
+      return run(cancellationIndicator, () -> order(library::orderTestModules));
+    } finally {
+      myConversionCache.invalidate();
+    }
   }
   public boolean typecheckCollected(CollectingOrderingListener collector, CancellationIndicator cancellationIndicator) {
     return run(cancellationIndicator, () -> {
@@ -126,6 +242,12 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     });
   }
 
+  private void invokeHook(Runnable hook) {
+    synchronized (myHookLock) {
+      hook.run();
+    }
+  }
+
   public void typecheckingHeaderStarted(TCReferable definition) {
 
   }
@@ -191,15 +313,16 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
 
   @Override
   public void unitFound(Concrete.Definition definition, boolean recursive) {
-    myHeadersAreOK = true;
+    myHeadersAreOK.set(true);
 
     if (recursive) {
       Set<TCReferable> dependencies = new HashSet<>();
       definition.accept(new CollectDefCallsVisitor(myConcreteProvider, myInstanceProviderSet.get(definition.getData()), dependencies, false), null);
       if (dependencies.contains(definition.getData())) {
-        typecheckingUnitStarted(definition.getData());
+        invokeHook(() -> typecheckingUnitStarted(definition.getData()));
         myErrorReporter.report(new CycleError(Collections.singletonList(definition.getData())));
-        typecheckingUnitFinished(definition.getData(), newDefinition(definition));
+        Definition typechecked = newDefinition(definition);
+        invokeHook(() -> typecheckingUnitFinished(definition.getData(), typechecked));
         return;
       }
     }
@@ -211,8 +334,8 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     CheckTypeVisitor checkTypeVisitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), myErrorReporter), null, myExtensionProvider.getArendExtension(definition.getData()));
     checkTypeVisitor.setInstancePool(new GlobalInstancePool(myInstanceProviderSet.get(definition.getData()), checkTypeVisitor));
     DesugarVisitor.desugar(definition, myConcreteProvider, checkTypeVisitor.getErrorReporter());
-    myCurrentDefinitions = Collections.singletonList(definition.getData());
-    typecheckingUnitStarted(definition.getData());
+    myCurrentDefinitions.set(Collections.singletonList(definition.getData()));
+    invokeHook(() -> typecheckingUnitStarted(definition.getData()));
     clauses = definition.accept(new DefinitionTypechecker(checkTypeVisitor), null);
     typechecked = myState.getTypechecked(definition.getData());
 
@@ -220,8 +343,8 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
       checkRecursiveFunctions(Collections.singletonMap((FunctionDefinition) typechecked, definition), Collections.singletonMap((FunctionDefinition) typechecked, clauses));
     }
 
-    typecheckingUnitFinished(definition.getData(), typechecked);
-    myCurrentDefinitions = Collections.emptyList();
+    invokeHook(() -> typecheckingUnitFinished(definition.getData(), typechecked));
+    myCurrentDefinitions.remove();
   }
 
   @Override
@@ -232,23 +355,21 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
         cycle.add(definition.getData());
       }
 
-      Definition typechecked = myState.getTypechecked(definition.getData());
-      if (typechecked == null) {
-        typechecked = newDefinition(definition);
-      }
+      Definition oldTypechecked = myState.getTypechecked(definition.getData());
+      Definition typechecked = oldTypechecked != null ? oldTypechecked : newDefinition(definition);
       typechecked.addStatus(Definition.TypeCheckingStatus.HAS_ERRORS);
 
-      typecheckingUnitStarted(definition.getData());
+      invokeHook(() -> typecheckingUnitStarted(definition.getData()));
       mySuspensions.remove(definition.getData());
-      typecheckingUnitFinished(definition.getData(), typechecked);
+      invokeHook(() -> typecheckingUnitFinished(definition.getData(), typechecked));
     }
     myErrorReporter.report(new CycleError(cycle));
   }
 
   @Override
   public void headerFound(Concrete.Definition definition) {
-    myCurrentDefinitions = Collections.singletonList(definition.getData());
-    typecheckingHeaderStarted(definition.getData());
+    myCurrentDefinitions.set(Collections.singletonList(definition.getData()));
+    invokeHook(() -> typecheckingHeaderStarted(definition.getData()));
 
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
     CheckTypeVisitor visitor = new CheckTypeVisitor(myState, new LocalErrorReporter(definition.getData(), new CompositeErrorReporter(myErrorReporter, countingErrorReporter)), null, myExtensionProvider.getArendExtension(definition.getData()));
@@ -261,10 +382,10 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
       mySuspensions.put(definition.getData(), new Pair<>(visitor, oldTypechecked == null));
     }
 
-    typecheckingHeaderFinished(definition.getData(), typechecked);
-    myCurrentDefinitions = Collections.emptyList();
+    invokeHook(() -> typecheckingHeaderFinished(definition.getData(), typechecked));
+    myCurrentDefinitions.remove();
     if (!typechecked.status().headerIsOK()) {
-      myHeadersAreOK = false;
+      myHeadersAreOK.set(false);
     }
   }
 
@@ -287,16 +408,18 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     orderedDefinitions.addAll(otherDefs);
 
     DefinitionTypechecker typechecking = new DefinitionTypechecker(null);
-    myCurrentDefinitions = new ArrayList<>();
+    List<TCReferable> currentDefinitions = new ArrayList<>();
     for (Concrete.Definition definition : orderedDefinitions) {
-      myCurrentDefinitions.add(definition.getData());
+      currentDefinitions.add(definition.getData());
     }
+    myCurrentDefinitions.set(currentDefinitions);
+    boolean headersAreOK = myHeadersAreOK.get();
     for (Concrete.Definition definition : orderedDefinitions) {
-      typecheckingBodyStarted(definition.getData());
+      invokeHook(() -> typecheckingBodyStarted(definition.getData()));
 
       Definition def = myState.getTypechecked(definition.getData());
       Pair<CheckTypeVisitor, Boolean> pair = mySuspensions.remove(definition.getData());
-      if (myHeadersAreOK && pair != null) {
+      if (headersAreOK && pair != null) {
         typechecking.setTypechecker(pair.proj1);
         List<ExtElimClause> clauses = typechecking.typecheckBody(def, definition, dataDefinitions, pair.proj2);
         if (clauses != null) {
@@ -305,9 +428,9 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
         }
       }
     }
-    myCurrentDefinitions = Collections.emptyList();
+    myCurrentDefinitions.remove();
 
-    myHeadersAreOK = true;
+    myHeadersAreOK.set(true);
 
     if (!functionDefinitions.isEmpty()) {
       FindDefCallVisitor<DataDefinition> visitor = new FindDefCallVisitor<>(dataDefinitions, false);
@@ -331,19 +454,20 @@ public class TypecheckingOrderingListener extends ComputationRunner<Boolean> imp
     }
 
     for (Concrete.Definition definition : orderedDefinitions) {
-      typecheckingBodyFinished(definition.getData(), myState.getTypechecked(definition.getData()));
+      invokeHook(() -> typecheckingBodyFinished(definition.getData(), myState.getTypechecked(definition.getData())));
     }
   }
 
   @Override
   public void useFound(List<Concrete.UseDefinition> definitions) {
-    myCurrentDefinitions = new ArrayList<>();
+    List<TCReferable> currentDefinitions = new ArrayList<>();
     for (Concrete.UseDefinition definition : definitions) {
-      myCurrentDefinitions.add(definition.getData());
-      myCurrentDefinitions.add(definition.getUseParent());
+      currentDefinitions.add(definition.getData());
+      currentDefinitions.add(definition.getUseParent());
     }
+    myCurrentDefinitions.set(currentDefinitions);
     UseTypechecking.typecheck(definitions, myState, myErrorReporter);
-    myCurrentDefinitions = Collections.emptyList();
+    myCurrentDefinitions.remove();
   }
 
   private void checkRecursiveFunctions(Map<FunctionDefinition,Concrete.Definition> definitions, Map<FunctionDefinition, List<ExtElimClause>> clauses) {
@@ -0,0 +1,43 @@
+package org.arend.typechecking.order.parallel;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.order.listener.CollectingOrderingListener;
+import org.arend.typechecking.order.listener.OrderingListener;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A unit of parallel typechecking.
+ * It consists of a sequence of events of an {@link OrderingListener} which must be processed on a single thread.
+ * Usually, a unit is either a single definition or a strongly connected component of definitions (headers together with bodies).
+ */
+public class OrderingUnit {
+  final CollectingOrderingListener collector = new CollectingOrderingListener();
+  final Set<TCReferable> definitions = new LinkedHashSet<>();
+  final List<OrderingUnit> dependents = new ArrayList<>();
+  final AtomicInteger pendingDependencies = new AtomicInteger();
+  final boolean headersOnly;
+
+  OrderingUnit(boolean headersOnly) {
+    this.headersOnly = headersOnly;
+  }
+
+  void addDefinitions(List<? extends Concrete.Definition> definitions) {
+    for (Concrete.Definition definition : definitions) {
+      this.definitions.add(definition.getData());
+    }
+  }
+
+  public Set<? extends TCReferable> getDefinitions() {
+    return definitions;
+  }
+
+  public void feed(OrderingListener listener) {
+    collector.feed(listener);
+  }
+}
@@ -0,0 +1,147 @@
+package org.arend.typechecking.order.parallel;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.term.concrete.Concrete;
+import org.arend.typechecking.order.dependency.DependencyListener;
+import org.arend.typechecking.order.listener.OrderingListener;
+
+import java.util.*;
+
+/**
+ * Collects events of an {@link org.arend.typechecking.order.Ordering} and builds the graph of units that can be typechecked independently.
+ * Events are grouped into {@link OrderingUnit}s and a unit depends on every earlier unit which contains either one of its definitions
+ * or a dependency of one of its definitions.
+ * A unit also depends on earlier units which depend on one of its definitions since the last unit which contains it.
+ * Units modify their definitions (they desugar concrete definitions, record typechecked definitions, and update parents of use definitions),
+ * so a definition is never modified by one thread while another thread reads it.
+ */
+public class OrderingUnitGraph implements OrderingListener, DependencyListener {
+  private final DependencyListener myDependencyListener;
+  private final List<OrderingUnit> myUnits = new ArrayList<>();
+  private final Map<TCReferable, Set<TCReferable>> myDependencies = new HashMap<>();
+
+  public OrderingUnitGraph(DependencyListener dependencyListener) {
+    myDependencyListener = dependencyListener;
+  }
+
+  public List<OrderingUnit> getUnits() {
+    return myUnits;
+  }
+
+  @Override
+  public void dependsOn(TCReferable def1, TCReferable def2) {
+    myDependencies.computeIfAbsent(def1, k -> new LinkedHashSet<>()).add(def2);
+    myDependencyListener.dependsOn(def1, def2);
+  }
+
+  @Override
+  public Set<? extends TCReferable> update(TCReferable definition) {
+    return myDependencyListener.update(definition);
+  }
+
+  private OrderingUnit newUnit(List<? extends Concrete.Definition> definitions, boolean headersOnly) {
+    OrderingUnit unit = new OrderingUnit(headersOnly);
+    unit.addDefinitions(definitions);
+    myUnits.add(unit);
+    return unit;
+  }
+
+  @Override
+  public void unitFound(Concrete.Definition definition, boolean recursive) {
+    newUnit(Collections.singletonList(definition), false).collector.unitFound(definition, recursive);
+  }
+
+  @Override
+  public void cycleFound(List<Concrete.Definition> definitions) {
+    newUnit(definitions, true).collector.cycleFound(definitions);
+  }
+
+  @Override
+  public void headerFound(Concrete.Definition definition) {
+    newUnit(Collections.singletonList(definition), true).collector.headerFound(definition);
+  }
+
+  /**
+   * Headers of a strongly connected component are reported just before its bodies.
+   * Since they share the state of the typechecker, they are merged with the bodies into a single unit.
+   */
+  @Override
+  public void bodiesFound(List<Concrete.Definition> definitions) {
+    Set<TCReferable> scc = new HashSet<>();
+    for (Concrete.Definition definition : definitions) {
+      scc.add(definition.getData());
+    }
+
+    int start = myUnits.size();
+    while (start > 0) {
+      OrderingUnit unit = myUnits.get(start - 1);
+      if (!unit.headersOnly || !scc.containsAll(unit.definitions)) {
+        break;
+      }
+      start--;
+    }
+
+    List<OrderingUnit> headers = new ArrayList<>(myUnits.subList(start, myUnits.size()));
+    myUnits.subList(start, myUnits.size()).clear();
+    OrderingUnit unit = newUnit(definitions, false);
+    for (OrderingUnit header : headers) {
+      header.feed(unit.collector);
+    }
+    unit.collector.bodiesFound(definitions);
+  }
+
+  @Override
+  public void useFound(List<Concrete.UseDefinition> definitions) {
+    OrderingUnit unit = newUnit(definitions, false);
+    for (Concrete.UseDefinition definition : definitions) {
+      unit.definitions.add(definition.getUseParent());
+    }
+    unit.collector.useFound(definitions);
+  }
+
+  /**
+   * Computes dependencies between collected units.
+   *
+   * @return the list of units without dependencies.
+   */
+  public List<OrderingUnit> build() {
+    List<OrderingUnit> roots = new ArrayList<>();
+    Map<TCReferable, OrderingUnit> lastUnits = new HashMap<>();
+    Map<TCReferable, List<OrderingUnit>> readers = new HashMap<>();
+    for (OrderingUnit unit : myUnits) {
+      Set<OrderingUnit> dependencies = new HashSet<>();
+      Set<TCReferable> read = new LinkedHashSet<>();
+      for (TCReferable definition : unit.definitions) {
+        addDependency(lastUnits.get(definition), unit, dependencies);
+        for (OrderingUnit reader : readers.getOrDefault(definition, Collections.emptyList())) {
+          addDependency(reader, unit, dependencies);
+        }
+        for (TCReferable dependency : myDependencies.getOrDefault(definition, Collections.emptySet())) {
+          if (!unit.definitions.contains(dependency)) {
+            addDependency(lastUnits.get(dependency), unit, dependencies);
+            read.add(dependency);
+          }
+        }
+      }
+
+      unit.pendingDependencies.set(dependencies.size());
+      if (dependencies.isEmpty()) {
+        roots.add(unit);
+      }
+      for (TCReferable definition : unit.definitions) {
+        lastUnits.put(definition, unit);
+        readers.remove(definition);
+      }
+      for (TCReferable dependency : read) {
+        readers.computeIfAbsent(dependency, k -> new ArrayList<>()).add(unit);
+      }
+    }
+    return roots;
+  }
+
+  private static void addDependency(OrderingUnit dependency, OrderingUnit unit, Set<OrderingUnit> dependencies) {
+    if (dependency != null && dependency != unit && dependencies.add(dependency)) {
+      dependency.dependents.add(unit);
+    }
+  }
+}
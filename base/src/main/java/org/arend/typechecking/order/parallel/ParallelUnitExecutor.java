@@ -0,0 +1,110 @@
+package org.arend.typechecking.order.parallel;
+
+import org.arend.typechecking.computation.CancellationIndicator;
+import org.arend.typechecking.computation.ComputationRunner;
+import org.arend.typechecking.computation.ThreadCancellationIndicator;
+import org.arend.util.ComputationInterruptedException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+
+/**
+ * Processes units of an {@link OrderingUnitGraph} on a work-stealing pool.
+ * A unit is submitted as soon as all units it depends on are processed.
+ */
+public class ParallelUnitExecutor {
+  private final int myThreads;
+  private volatile boolean myCanceled;
+  private volatile Throwable myException;
+
+  public ParallelUnitExecutor(int threads) {
+    myThreads = threads;
+  }
+
+  /**
+   * Processes all units of the graph.
+   * Each unit is processed with its own cancellation indicator which is canceled when either
+   * the cancellation indicator of the calling thread is canceled or processing of another unit fails.
+   *
+   * @param graph   a graph of units.
+   * @param action  an action which is applied to each unit.
+   *
+   * @throws ComputationInterruptedException if the computation was canceled.
+   */
+  public void execute(OrderingUnitGraph graph, Consumer<OrderingUnit> action) throws ComputationInterruptedException {
+    List<OrderingUnit> roots = graph.build();
+    List<OrderingUnit> units = graph.getUnits();
+    if (units.isEmpty()) {
+      return;
+    }
+
+    CancellationIndicator parentIndicator = ComputationRunner.getCancellationIndicator();
+    CancellationIndicator indicator = parentIndicator == ThreadCancellationIndicator.INSTANCE
+      ? () -> myCanceled
+      : () -> myCanceled || parentIndicator.isCanceled();
+    CountDownLatch latch = new CountDownLatch(units.size());
+    ForkJoinPool pool = new ForkJoinPool(myThreads);
+    try {
+      for (OrderingUnit root : roots) {
+        submit(pool, root, action, indicator, latch);
+      }
+
+      boolean interrupted = false;
+      while (true) {
+        try {
+          latch.await();
+          break;
+        } catch (InterruptedException e) {
+          myCanceled = true;
+          interrupted = true;
+        }
+      }
+      if (interrupted) {
+        Thread.currentThread().interrupt();
+      }
+    } finally {
+      pool.shutdown();
+    }
+
+    Throwable exception = myException;
+    if (exception instanceof RuntimeException) {
+      throw (RuntimeException) exception;
+    }
+    if (exception instanceof Error) {
+      throw (Error) exception;
+    }
+    if (myCanceled) {
+      throw new ComputationInterruptedException();
+    }
+  }
+
+  private void submit(ForkJoinPool pool, OrderingUnit unit, Consumer<OrderingUnit> action, CancellationIndicator indicator, CountDownLatch latch) {
+    pool.execute(() -> {
+      try {
+        if (!myCanceled) {
+          ComputationRunner.setCancellationIndicator(indicator);
+          action.accept(unit);
+        }
+      } catch (ComputationInterruptedException e) {
+        myCanceled = true;
+      } catch (Throwable e) {
+        synchronized (this) {
+          if (myException == null) {
+            myException = e;
+          }
+        }
+        myCanceled = true;
+      } finally {
+        ComputationRunner.resetCancellationIndicator();
+        for (OrderingUnit dependent : unit.dependents) {
+          if (dependent.pendingDependencies.decrementAndGet() == 0) {
+            submit(pool, dependent, action, indicator, latch);
+          }
+        }
+        latch.countDown();
+      }
+    });
+  }
+}
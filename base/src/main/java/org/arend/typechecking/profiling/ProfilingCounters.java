@@ -0,0 +1,67 @@
+package org.arend.typechecking.profiling;
+
+/**
+ * Counters of events which happen during typechecking.
+ * Each thread has its own counters, so they can be updated without synchronization.
+ * Counters are updated only if profiling is enabled.
+ */
+public class ProfilingCounters {
+  private static volatile boolean ourEnabled;
+  private static final ThreadLocal<ProfilingCounters> ourCounters = ThreadLocal.withInitial(ProfilingCounters::new);
+
+  long normalizationSteps;
+  long comparisons;
+  long solvedEquations;
+  long instanceSearches;
+  long terminationMatrices;
+
+  public static boolean isEnabled() {
+    return ourEnabled;
+  }
+
+  public static void setEnabled(boolean enabled) {
+    ourEnabled = enabled;
+  }
+
+  static ProfilingCounters get() {
+    return ourCounters.get();
+  }
+
+  /**
+   * Is invoked when a function or a case expression is evaluated or a lambda is applied.
+   */
+  public static void countNormalizationStep() {
+    if (ourEnabled) {
+      ourCounters.get().normalizationSteps++;
+    }
+  }
+
+  public static void countComparison() {
+    if (ourEnabled) {
+      ourCounters.get().comparisons++;
+    }
+  }
+
+  public static void countSolvedEquation() {
+    if (ourEnabled) {
+      ourCounters.get().solvedEquations++;
+    }
+  }
+
+  public static void countInstanceSearch() {
+    if (ourEnabled) {
+      ourCounters.get().instanceSearches++;
+    }
+  }
+
+  /**
+   * Is invoked when the closure of a call graph is computed.
+   *
+   * @param matrices  the number of call matrices in the closure.
+   */
+  public static void countTerminationMatrices(int matrices) {
+    if (ourEnabled) {
+      ourCounters.get().terminationMatrices += matrices;
+    }
+  }
+}
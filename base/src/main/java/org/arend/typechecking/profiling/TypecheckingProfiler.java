@@ -0,0 +1,166 @@
+package org.arend.typechecking.profiling;
+
+import org.arend.naming.reference.TCReferable;
+import org.arend.util.FullName;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects statistics of typechecking of definitions.
+ * It should be notified when typechecking of a header, a body, or a unit starts and finishes.
+ * If typechecking of another definition starts on the same thread before the current one is finished,
+ * the current one is paused, so mutually recursive definitions are measured separately.
+ * In this case, the termination checking is attributed to the last definition.
+ */
+public class TypecheckingProfiler {
+  private final Map<TCReferable, Record> myRecords = new ConcurrentHashMap<>();
+  private final ThreadLocal<Active> myActive = new ThreadLocal<>();
+
+  public static class Record {
+    public final TCReferable referable;
+    private long myTime;
+    private long myNormalizationSteps;
+    private long myComparisons;
+    private long mySolvedEquations;
+    private long myInstanceSearches;
+    private long myTerminationMatrices;
+
+    private Record(TCReferable referable) {
+      this.referable = referable;
+    }
+
+    private synchronized void add(long time, ProfilingCounters counters, ProfilingCounters start) {
+      myTime += time;
+      myNormalizationSteps += counters.normalizationSteps - start.normalizationSteps;
+      myComparisons += counters.comparisons - start.comparisons;
+      mySolvedEquations += counters.solvedEquations - start.solvedEquations;
+      myInstanceSearches += counters.instanceSearches - start.instanceSearches;
+      myTerminationMatrices += counters.terminationMatrices - start.terminationMatrices;
+    }
+
+    public synchronized long getTime() {
+      return myTime;
+    }
+
+    public synchronized long getNormalizationSteps() {
+      return myNormalizationSteps;
+    }
+
+    public synchronized long getComparisons() {
+      return myComparisons;
+    }
+
+    public synchronized long getSolvedEquations() {
+      return mySolvedEquations;
+    }
+
+    public synchronized long getInstanceSearches() {
+      return myInstanceSearches;
+    }
+
+    public synchronized long getTerminationMatrices() {
+      return myTerminationMatrices;
+    }
+
+    public String getName() {
+      return new FullName(referable).toString();
+    }
+  }
+
+  private static class Active {
+    final Record record;
+    final long startTime;
+    final ProfilingCounters startCounters = new ProfilingCounters();
+
+    Active(Record record) {
+      this.record = record;
+      ProfilingCounters counters = ProfilingCounters.get();
+      startCounters.normalizationSteps = counters.normalizationSteps;
+      startCounters.comparisons = counters.comparisons;
+      startCounters.solvedEquations = counters.solvedEquations;
+      startCounters.instanceSearches = counters.instanceSearches;
+      startCounters.terminationMatrices = counters.terminationMatrices;
+      startTime = System.nanoTime();
+    }
+
+    void finish() {
+      record.add(System.nanoTime() - startTime, ProfilingCounters.get(), startCounters);
+    }
+  }
+
+  public void definitionStarted(TCReferable referable) {
+    Active active = myActive.get();
+    if (active != null) {
+      active.finish();
+    }
+    myActive.set(new Active(myRecords.computeIfAbsent(referable, Record::new)));
+  }
+
+  public void definitionFinished(TCReferable referable) {
+    Active active = myActive.get();
+    if (active != null && active.record.referable == referable) {
+      active.finish();
+      myActive.remove();
+    }
+  }
+
+  public void clear() {
+    myRecords.clear();
+  }
+
+  /**
+   * @return records sorted by time in the descending order.
+   */
+  public List<Record> getRecords() {
+    List<Record> records = new ArrayList<>(myRecords.values());
+    records.sort(Comparator.comparingLong(Record::getTime).reversed().thenComparing(Record::getName));
+    return records;
+  }
+
+  private static String escapeJson(String str) {
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < str.length(); i++) {
+      char c = str.charAt(i);
+      if (c == '"' || c == '\\') {
+        builder.append('\\').append(c);
+      } else if (c < ' ') {
+        builder.append(String.format("\\u%04x", (int) c));
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  public void writeJson(Writer writer) throws IOException {
+    writer.write("[\n");
+    List<Record> records = getRecords();
+    for (int i = 0; i < records.size(); i++) {
+      Record record = records.get(i);
+      writer.write("  {\"name\": \"" + escapeJson(record.getName()) + "\", \"timeNs\": " + record.getTime() + ", \"normalizationSteps\": " + record.getNormalizationSteps() + ", \"comparisons\": " + record.getComparisons() + ", \"solvedEquations\": " + record.getSolvedEquations() + ", \"instanceSearches\": " + record.getInstanceSearches() + ", \"terminationMatrices\": " + record.getTerminationMatrices() + "}" + (i == records.size() - 1 ? "\n" : ",\n"));
+    }
+    writer.write("]\n");
+  }
+
+  public void writeCsv(Writer writer) throws IOException {
+    writer.write("name,timeNs,normalizationSteps,comparisons,solvedEquations,instanceSearches,terminationMatrices\n");
+    for (Record record : getRecords()) {
+      writer.write("\"" + record.getName().replace("\"", "\"\"") + "\"," + record.getTime() + "," + record.getNormalizationSteps() + "," + record.getComparisons() + "," + record.getSolvedEquations() + "," + record.getInstanceSearches() + "," + record.getTerminationMatrices() + "\n");
+    }
+  }
+
+  /**
+   * Prints {@code number} slowest definitions.
+   */
+  public void printSummary(PrintStream stream, int number) {
+    List<Record> records = getRecords();
+    stream.println("[INFO] Slowest definitions:");
+    for (Record record : records.subList(0, Math.min(number, records.size()))) {
+      stream.println("  " + record.getName() + ": " + (record.getTime() / 1000000) + "ms, " + record.getNormalizationSteps() + " normalization steps, " + record.getComparisons() + " comparisons, " + record.getSolvedEquations() + " solved equations, " + record.getInstanceSearches() + " instance searches, " + record.getTerminationMatrices() + " termination matrices");
+    }
+  }
+}
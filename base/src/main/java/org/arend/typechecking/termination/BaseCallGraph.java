@@ -2,6 +2,8 @@ package org.arend.typechecking.termination;
 
 /*Generated by MPS */
 
+import org.arend.typechecking.profiling.ProfilingCounters;
+
 import java.util.*;
 
 public abstract class BaseCallGraph<T> {
@@ -11,46 +13,62 @@ public abstract class BaseCallGraph<T> {
   BaseCallGraph() {
   }
 
+  /**
+   * Computes the composition closure of {@code g}.
+   * Only compositions involving newly added matrices are computed at each step.
+   * A matrix is not added if the graph already contains a matrix less than or equal to it,
+   * and matrices greater than a newly added one are removed since they do not affect the result of {@link #checkTermination}.
+   */
   BaseCallGraph(BaseCallGraph<T> g) {
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> newGraph;
-    HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> oldGraph = g.myGraph;
-    int myNewEdges;
-
-    do {
-      myNewEdges = 0;
-      newGraph = new HashMap<>();
-
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            append(edge, newGraph);
+    Deque<BaseCallMatrix<T>> newEdges = new ArrayDeque<>();
+    int matrices = 0;
+    for (HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges : g.myGraph.values()) {
+      for (HashSet<BaseCallMatrix<T>> edgesSheaf : outboundEdges.values()) {
+        for (BaseCallMatrix<T> edge : edgesSheaf) {
+          if (append(edge, myGraph)) {
+            newEdges.add(edge);
+            matrices++;
           }
         }
       }
+    }
 
-      for (T vDom : oldGraph.keySet()) {
-        HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = oldGraph.get(vDom);
-        for (T vCodom : outboundEdges.keySet()) {
-          for (BaseCallMatrix<T> edge : outboundEdges.get(vCodom)) {
-            HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges2 = oldGraph.get(edge.getCodomain());
-            if (outboundEdges2 != null) {
-              for (HashSet<BaseCallMatrix<T>> edgesSheaf : outboundEdges2.values()) {
-                for (BaseCallMatrix<T> edge2 : edgesSheaf) {
-                  if (append(new CompositeCallMatrix<>(edge, edge2), newGraph)) {
-                    myNewEdges++;
-                  }
-                }
-              }
-            }
+    while (!newEdges.isEmpty()) {
+      BaseCallMatrix<T> edge = newEdges.poll();
+      HashSet<BaseCallMatrix<T>> edgesSheaf = myGraph.get(edge.getDomain()).get(edge.getCodomain());
+      if (!edgesSheaf.contains(edge)) {
+        // The edge was subsumed by a smaller one, so are its compositions
+        continue;
+      }
+
+      List<BaseCallMatrix<T>> compositions = new ArrayList<>();
+      HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges = myGraph.get(edge.getCodomain());
+      if (outboundEdges != null) {
+        for (HashSet<BaseCallMatrix<T>> edgesSheaf2 : outboundEdges.values()) {
+          for (BaseCallMatrix<T> edge2 : edgesSheaf2) {
+            compositions.add(new CompositeCallMatrix<>(edge, edge2));
           }
         }
       }
-      oldGraph = newGraph;
-    } while (myNewEdges > 0);
+      for (HashMap<T, HashSet<BaseCallMatrix<T>>> outboundEdges2 : myGraph.values()) {
+        HashSet<BaseCallMatrix<T>> inboundEdges = outboundEdges2.get(edge.getDomain());
+        if (inboundEdges != null) {
+          for (BaseCallMatrix<T> edge2 : inboundEdges) {
+            compositions.add(new CompositeCallMatrix<>(edge2, edge));
+          }
+        }
+      }
+
+      for (BaseCallMatrix<T> composition : compositions) {
+        if (append(composition, myGraph)) {
+          newEdges.add(composition);
+          matrices++;
+        }
+      }
+    }
 
-    myGraph = newGraph;
     isCompositionClosed = true;
+    ProfilingCounters.countTerminationMatrices(matrices);
   }
 
   public void add(Set<BaseCallMatrix<T>> set) {
@@ -78,40 +96,16 @@ public abstract class BaseCallGraph<T> {
   }
 
   private static <T> boolean append(BaseCallMatrix<T> cm, HashMap<T, HashMap<T, HashSet<BaseCallMatrix<T>>>> graph) {
-    HashSet<BaseCallMatrix<T>> set;
-    HashMap<T, HashSet<BaseCallMatrix<T>>> map;
-    if (!(graph.containsKey(cm.getDomain()))) {
-      map = new HashMap<>();
-      set = new HashSet<>();
-      set.add(cm);
-      map.put(cm.getCodomain(), set);
-      graph.put(cm.getDomain(), map);
-      return true;
-    } else {
-      map = graph.get(cm.getDomain());
-      if (!(map.containsKey(cm.getCodomain()))) {
-        set = new HashSet<>();
-        set.add(cm);
-        map.put(cm.getCodomain(), set);
-        return true;
-      } else {
-        set = map.get(cm.getCodomain());
-        boolean alreadyContainsEqual = false;
-
-        for (BaseCallMatrix<T> c : set) {
-          if (cm.equals(c)) {
-            alreadyContainsEqual = true;
-            break;
-          }
-        }
-
-        if (!(alreadyContainsEqual)) {
-          set.add(cm);
-        }
-
-        return !alreadyContainsEqual;
+    HashSet<BaseCallMatrix<T>> set = graph.computeIfAbsent(cm.getDomain(), k -> new HashMap<>()).computeIfAbsent(cm.getCodomain(), k -> new HashSet<>());
+    for (BaseCallMatrix<T> c : set) {
+      if (c.leq(cm)) {
+        return false;
       }
     }
+
+    set.removeIf(cm::leq);
+    set.add(cm);
+    return true;
   }
 
   public boolean checkTermination() {
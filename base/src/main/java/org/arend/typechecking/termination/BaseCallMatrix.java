@@ -9,7 +9,6 @@ import org.arend.ext.prettyprinting.doc.DocStringBuilder;
 import org.arend.util.StringFormat;
 
 import java.util.Arrays;
-import java.util.HashMap;
 
 public abstract class BaseCallMatrix<T> {
   public enum R {
@@ -18,36 +17,6 @@ public abstract class BaseCallMatrix<T> {
     LessThan()
   }
 
-  private static BaseCallMatrix.R rmul(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    switch (a) {
-      case Equal:
-        switch (b) {
-          case Equal:
-            return BaseCallMatrix.R.Equal;
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
-      case LessThan:
-        switch (b) {
-          case Equal:
-          case LessThan:
-            return BaseCallMatrix.R.LessThan;
-          default:
-            return BaseCallMatrix.R.Unknown;
-        }
-      default:
-        return BaseCallMatrix.R.Unknown;
-    }
-  }
-
-  private static BaseCallMatrix.R radd(BaseCallMatrix.R a, BaseCallMatrix.R b) {
-    if (a == R.LessThan || b == R.LessThan) return R.LessThan;
-    if (a == R.Equal || b == R.Equal) return R.Equal;
-    return R.Unknown;
-  }
-
   static boolean rleq(BaseCallMatrix.R a, BaseCallMatrix.R b) {
     switch (a) {
       case LessThan:
@@ -59,8 +28,12 @@ public abstract class BaseCallMatrix<T> {
     }
   }
 
-  private HashMap<Integer, BaseCallMatrix.CallMatrixEntry> myMatrixMap = new HashMap<>();
-  private BaseCallMatrix.R[][] fallbackMatrix = null;
+  // Every relation is stored in two bits: Unknown is 00, Equal is 01, and LessThan is 11.
+  // With this encoding, the sum of relations is their bitwise disjunction and rleq(a, b) holds iff (a & ~b) == 0.
+  private static final long LOW_BITS = 0x5555555555555555L;
+
+  private final long[] myBits;
+  private final int myRowWords;
 
   private final int myWidth;
   private final int myHeight;
@@ -68,48 +41,42 @@ public abstract class BaseCallMatrix<T> {
   BaseCallMatrix(int width, int height) {
     myWidth = width;
     myHeight = height;
+    myRowWords = (2 * width + 63) / 64;
+    myBits = new long[myRowWords * height];
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m) {
     // copy constructor 
     myWidth = m.myWidth;
     myHeight = m.myHeight;
-    if (m.myMatrixMap != null) {
-      for (Integer j : m.myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = m.myMatrixMap.get(j);
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, cme.myRel));
-      }
-    } else {
-      fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-      for (int i = 0; i < myHeight; i++) System.arraycopy(m.fallbackMatrix[i], 0, fallbackMatrix[i], 0, myWidth);
-    }
+    myRowWords = m.myRowWords;
+    myBits = m.myBits.clone();
   }
 
   BaseCallMatrix(BaseCallMatrix<T> m1, BaseCallMatrix<T> m2) {
     // multiplication constructor 
+    this(m2.myWidth, m1.myHeight);
     if (m1.myWidth != m2.myHeight) {
       throw new IllegalArgumentException();
     }
-    myHeight = m1.myHeight;
-    myWidth = m2.myWidth;
 
-    if (m1.myMatrixMap != null && m2.myMatrixMap != null) {
-      for (int j = 0; j < myWidth; j++) {
-        BaseCallMatrix.CallMatrixEntry cme2 = m2.myMatrixMap.get(j);
-        if (cme2 != null) {
-          BaseCallMatrix.CallMatrixEntry cme = m1.myMatrixMap.get(cme2.myIndex);
-          if (cme != null) {
-            myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(cme.myIndex, rmul(cme.myRel, cme2.myRel)));
+    for (int i = 0; i < myHeight; i++) {
+      int row = i * myRowWords;
+      for (int k = 0; k < m1.myWidth; k++) {
+        int code = m1.getCode(i, k);
+        if (code == 0) {
+          continue;
+        }
+        // Row k of m2 multiplied by Equal is the same row, and multiplied by LessThan it is the row in which every known relation becomes LessThan
+        int row2 = k * m2.myRowWords;
+        for (int w = 0; w < myRowWords; w++) {
+          long bits = m2.myBits[row2 + w];
+          if (code == 3) {
+            bits |= (bits & LOW_BITS) << 1;
           }
+          myBits[row + w] |= bits;
         }
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++) {
-          BaseCallMatrix.R s = R.Unknown;
-          for (int k = 0; k < m1.myWidth; k++) s = radd(s, rmul(m1.getValue(i, k), m2.getValue(k, j)));
-          set(i, j, s);
-        }
     }
   }
 
@@ -127,62 +94,47 @@ public abstract class BaseCallMatrix<T> {
 
   public abstract int getCompositeLength();
 
-  public void set(int i, int j, BaseCallMatrix.R v) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cm = myMatrixMap.get(j);
-      if (cm != null) {
-        if (cm.myIndex != i && v != R.Unknown) {
-          enterFallBackMode();
-          fallbackMatrix[i][j] = v;
-        } else if (cm.myIndex == i) {
-          if (v == R.Unknown) myMatrixMap.put(j, null);
-          else cm.myRel = v;
-        }
-      } else if (v != R.Unknown) {
-        myMatrixMap.put(j, new BaseCallMatrix.CallMatrixEntry(i, v));
-      }
-    } else {
-      fallbackMatrix[i][j] = v;
+  private static int toCode(BaseCallMatrix.R r) {
+    switch (r) {
+      case Equal:
+        return 1;
+      case LessThan:
+        return 3;
+      default:
+        return 0;
     }
   }
 
-  public BaseCallMatrix.R getValue(int i, int j) {
-    if (myMatrixMap != null) {
-      BaseCallMatrix.CallMatrixEntry cme = myMatrixMap.get(j);
-      BaseCallMatrix.R result2 = BaseCallMatrix.R.Unknown;
-      if (cme != null && cme.myIndex == i) {
-        result2 = cme.myRel;
-      }
-      return result2;
-    } else {
-      return fallbackMatrix[i][j];
-    }
+  private int getCode(int i, int j) {
+    return (int) (myBits[i * myRowWords + (j >> 5)] >>> ((j & 31) << 1)) & 3;
   }
 
-  private void enterFallBackMode() {
-    fallbackMatrix = new BaseCallMatrix.R[myHeight][myWidth];
-    for (int i = 0; i < myHeight; i++) for (int j = 0; j < myWidth; j++) fallbackMatrix[i][j] = getValue(i, j);
-    myMatrixMap = null;
+  public void set(int i, int j, BaseCallMatrix.R v) {
+    int index = i * myRowWords + (j >> 5);
+    int shift = (j & 31) << 1;
+    myBits[index] = myBits[index] & ~(3L << shift) | (long) toCode(v) << shift;
+  }
+
+  public BaseCallMatrix.R getValue(int i, int j) {
+    switch (getCode(i, j)) {
+      case 1:
+        return R.Equal;
+      case 3:
+        return R.LessThan;
+      default:
+        return R.Unknown;
+    }
   }
 
   public final boolean leq(BaseCallMatrix<T> cm) {
-    if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) {
+    if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain() || myBits.length != cm.myBits.length) {
       return false;
     }
-    if (myMatrixMap != null && cm.myMatrixMap != null) {
-      for (int k : myMatrixMap.keySet()) {
-        BaseCallMatrix.CallMatrixEntry cme = cm.myMatrixMap.get(k);
-        BaseCallMatrix.CallMatrixEntry mme = myMatrixMap.get(k);
-        if (cme == null || cme.myIndex != mme.myIndex || !(BaseCallMatrix.rleq(mme.myRel, cme.myRel))) {
-          return false;
-        }
+    for (int i = 0; i < myBits.length; i++) {
+      if ((myBits[i] & ~cm.myBits[i]) != 0) {
+        return false;
       }
-    } else {
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (!rleq(getValue(i, j), cm.getValue(i, j))) return false;
     }
-
     return true;
   }
 
@@ -190,12 +142,7 @@ public abstract class BaseCallMatrix<T> {
   public final boolean equals(Object object) {
     if (object instanceof BaseCallMatrix) {
       BaseCallMatrix<?> cm = (BaseCallMatrix<?>) object;
-      if (getCodomain() != cm.getCodomain() || getDomain() != cm.getDomain()) return false;
-      if (myMatrixMap != null && cm.myMatrixMap != null) return myMatrixMap.equals(cm.myMatrixMap);
-      for (int i = 0; i < myHeight; i++)
-        for (int j = 0; j < myWidth; j++)
-          if (getValue(i, j) != cm.getValue(i, j)) return false;
-      return true;
+      return getCodomain() == cm.getCodomain() && getDomain() == cm.getDomain() && Arrays.equals(myBits, cm.myBits);
     } else {
       return false;
     }
@@ -204,7 +151,7 @@ public abstract class BaseCallMatrix<T> {
   @Override
   public final int hashCode() {
     int result = getCodomain().hashCode() * 31 + getDomain().hashCode();
-    return result * 31 + (myMatrixMap != null ? myMatrixMap.hashCode() : Arrays.deepHashCode(fallbackMatrix));
+    return result * 31 + Arrays.hashCode(myBits);
   }
 
   protected String[] getColumnLabels() {
@@ -266,28 +213,4 @@ public abstract class BaseCallMatrix<T> {
 
     return result.toString();
   }
-
-  private static class CallMatrixEntry {
-    final int myIndex;
-    BaseCallMatrix.R myRel;
-
-    CallMatrixEntry(int index, BaseCallMatrix.R rel) {
-      myIndex = index;
-      myRel = rel;
-    }
-
-    @Override
-    public int hashCode() {
-      return myIndex * 31 + myRel.hashCode();
-    }
-
-    @Override
-    public boolean equals(Object object) {
-      if (object instanceof BaseCallMatrix.CallMatrixEntry) {
-        BaseCallMatrix.CallMatrixEntry cm = (BaseCallMatrix.CallMatrixEntry) object;
-        return cm.myIndex == myIndex && cm.myRel == myRel;
-      }
-      return false;
-    }
-  }
 }
@@ -70,6 +70,8 @@ import org.arend.typechecking.result.DefCallResult;
 import org.arend.typechecking.result.TResult;
 import org.arend.typechecking.result.TypecheckingResult;
 import org.arend.util.Pair;
+import org.arend.util.PersistentLinkedMap;
+import org.arend.util.PersistentLinkedSet;
 import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 
@@ -150,7 +152,7 @@ public class CheckTypeVisitor implements ConcreteExpressionVisitor<Expression, T
   }
 
   public CheckTypeVisitor(TypecheckerState state, ErrorReporter errorReporter, GlobalInstancePool pool, ArendExtension arendExtension) {
-    this(state, new LinkedHashSet<>(), new LinkedHashMap<>(), errorReporter, pool, arendExtension);
+    this(state, new PersistentLinkedSet<>(), new PersistentLinkedMap<>(), errorReporter, pool, arendExtension);
   }
 
   public ArendExtension getExtension() {
@@ -158,7 +160,7 @@ public class CheckTypeVisitor implements ConcreteExpressionVisitor<Expression, T
   }
 
   public TypecheckingContext saveTypecheckingContext() {
-    return new TypecheckingContext(new LinkedHashSet<>(myFreeBindings), new LinkedHashMap<>(context), myInstancePool.getInstanceProvider(), myInstancePool.getInstancePool(), myArendExtension);
+    return new TypecheckingContext(new PersistentLinkedSet<>(myFreeBindings), new PersistentLinkedMap<>(context), myInstancePool.getInstanceProvider(), myInstancePool.getInstancePool(), myArendExtension);
   }
 
   public static CheckTypeVisitor loadTypecheckingContext(TypecheckingContext typecheckingContext, TypecheckerState state, ErrorReporter errorReporter) {
@@ -201,7 +203,7 @@ public class CheckTypeVisitor implements ConcreteExpressionVisitor<Expression, T
   }
 
   public void copyContextFrom(Map<? extends Referable, ? extends Binding> context) {
-    this.context = new LinkedHashMap<>(context);
+    this.context = new PersistentLinkedMap<>(context);
   }
 
   public Set<? extends Binding> getFreeBindings() {
@@ -209,7 +211,7 @@ public class CheckTypeVisitor implements ConcreteExpressionVisitor<Expression, T
   }
 
   public void copyFreeBindingsFrom(Set<? extends Binding> freeBindings) {
-    myFreeBindings = new LinkedHashSet<>(freeBindings);
+    myFreeBindings = new PersistentLinkedSet<>(freeBindings);
   }
 
   public Set<Binding> getAllBindings() {
@@ -1890,7 +1892,7 @@ public class CheckTypeVisitor implements ConcreteExpressionVisitor<Expression, T
     ContextDataImpl contextDataImpl = new ContextDataImpl((Concrete.ReferenceExpression) refExpr, contextData.getArguments(), expectedType);
     InferenceReferenceExpression inferenceExpr = new InferenceReferenceExpression(new MetaInferenceVariable(expectedType, meta, (Concrete.ReferenceExpression) refExpr, getAllBindings()));
     // (stage == Stage.BEFORE_SOLVER ? myDeferredMetasBeforeSolver : stage == Stage.BEFORE_LEVELS ? myDeferredMetasBeforeLevels : myDeferredMetasAfterLevels)
-    myDeferredMetasBeforeSolver.add(new DeferredMeta(meta, new LinkedHashSet<>(myFreeBindings), new LinkedHashMap<>(context), contextDataImpl, inferenceExpr, errorReporter));
+    myDeferredMetasBeforeSolver.add(new DeferredMeta(meta, new PersistentLinkedSet<>(myFreeBindings), new PersistentLinkedMap<>(context), contextDataImpl, inferenceExpr, errorReporter));
     return new TypecheckingResult(inferenceExpr, expectedType);
   }
 
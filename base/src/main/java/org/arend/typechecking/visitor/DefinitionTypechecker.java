@@ -937,6 +937,7 @@ public class DefinitionTypechecker extends BaseDefinitionTypechecker implements
         goodThisParametersVisitor.visitBody(typedDef.getActualBody(), null);
       }
       typedDef.setGoodThisParameters(goodThisParametersVisitor.getGoodParameters());
+      typedDef.setHeight(DefinitionHeightVisitor.getHeight(typedDef.getActualBody()));
 
       if (checkForUniverses(typedDef.getParameters()) || new UniverseInParametersChecker().check(typedDef.getResultType())) {
         typedDef.setUniverseKind(UniverseKind.WITH_UNIVERSES);
@@ -0,0 +1,35 @@
+package org.arend.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes hashes that identify contents of sources and binary modules.
+ */
+public class ContentHash {
+  private static final String ALGORITHM = "SHA-256";
+
+  public static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  public static byte[] of(byte[] bytes) {
+    return newDigest().digest(bytes);
+  }
+
+  public static byte[] of(InputStream stream) throws IOException {
+    MessageDigest digest = newDigest();
+    byte[] buffer = new byte[8192];
+    int read;
+    while ((read = stream.read(buffer)) != -1) {
+      digest.update(buffer, 0, read);
+    }
+    return digest.digest();
+  }
+}
@@ -0,0 +1,482 @@
+package org.arend.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A map that preserves the insertion order of its keys like {@link LinkedHashMap}.
+ * It is backed by immutable structures which are shared between copies, so a copy of a map can be created in constant time.
+ * Keys are stored in a hash array mapped trie and entries are ordered by a vector trie.
+ * Removed entries leave holes in the vector which are compacted when there are too many of them.
+ * <p>
+ * Keys cannot be null.
+ * An iterator iterates over the state of the map at the moment of its creation, so the map can be modified during the iteration.
+ */
+public class PersistentLinkedMap<K, V> extends AbstractMap<K, V> {
+  private Object myRoot;
+  private Object[] myOrder;
+  private int myOrderShift;
+  private int myLength;
+  private int mySize;
+  private Object myGeneration = new Object();
+
+  private static final int BITS = 5;
+  private static final int WIDTH = 1 << BITS;
+  private static final int MASK = WIDTH - 1;
+
+  private static final class Entry {
+    final Object key;
+    final Object value;
+    final int hash;
+    final int index;
+
+    Entry(Object key, Object value, int hash, int index) {
+      this.key = key;
+      this.value = value;
+      this.hash = hash;
+      this.index = index;
+    }
+  }
+
+  private static final class BitmapNode {
+    final int bitmap;
+    final Object[] array;
+
+    BitmapNode(int bitmap, Object[] array) {
+      this.bitmap = bitmap;
+      this.array = array;
+    }
+  }
+
+  private static final class CollisionNode {
+    final Entry[] entries;
+
+    CollisionNode(Entry[] entries) {
+      this.entries = entries;
+    }
+  }
+
+  public PersistentLinkedMap() {}
+
+  public PersistentLinkedMap(Map<? extends K, ? extends V> map) {
+    if (map instanceof PersistentLinkedMap) {
+      copyFrom((PersistentLinkedMap<?, ?>) map);
+    } else {
+      putAll(map);
+    }
+  }
+
+  private void copyFrom(PersistentLinkedMap<?, ?> map) {
+    myRoot = map.myRoot;
+    myOrder = map.myOrder;
+    myOrderShift = map.myOrderShift;
+    myLength = map.myLength;
+    mySize = map.mySize;
+    myGeneration = map.myGeneration;
+  }
+
+  /**
+   * Replaces the content of this map with the content of {@code map} in constant time.
+   */
+  public void restore(PersistentLinkedMap<? extends K, ? extends V> map) {
+    copyFrom(map);
+    myGeneration = new Object();
+  }
+
+  /**
+   * Removes keys that do not belong to {@code snapshot}.
+   * If {@code snapshot} is a copy of this map made earlier, only keys added after the copy was made are checked.
+   */
+  public void retainKeys(PersistentLinkedMap<?, ?> snapshot) {
+    if (snapshot.myGeneration != myGeneration) {
+      for (Iterator<K> iterator = keyIterator(); iterator.hasNext(); ) {
+        if (snapshot.getEntry(iterator.next()) == null) {
+          iterator.remove();
+        }
+      }
+      return;
+    }
+
+    Object[] order = myOrder;
+    int shift = myOrderShift;
+    int length = myLength;
+    for (int i = snapshot.myLength; i < length; i++) {
+      Entry entry = (Entry) getLeaf(order, shift, i)[i & MASK];
+      if (entry != null && snapshot.getEntry(entry.key) == null) {
+        remove(entry.key);
+      }
+    }
+  }
+
+  private static int hash(Object key) {
+    int h = key.hashCode();
+    return h ^ (h >>> 16);
+  }
+
+  private Entry getEntry(Object key) {
+    if (key == null) {
+      return null;
+    }
+
+    int hash = hash(key);
+    Object node = myRoot;
+    for (int shift = 0; node != null; shift += BITS) {
+      if (node instanceof Entry) {
+        Entry entry = (Entry) node;
+        return entry.hash == hash && entry.key.equals(key) ? entry : null;
+      }
+      if (node instanceof CollisionNode) {
+        for (Entry entry : ((CollisionNode) node).entries) {
+          if (entry.hash == hash && entry.key.equals(key)) {
+            return entry;
+          }
+        }
+        return null;
+      }
+      BitmapNode bitmapNode = (BitmapNode) node;
+      int bit = 1 << ((hash >>> shift) & MASK);
+      if ((bitmapNode.bitmap & bit) == 0) {
+        return null;
+      }
+      node = bitmapNode.array[Integer.bitCount(bitmapNode.bitmap & (bit - 1))];
+    }
+    return null;
+  }
+
+  private static Object put(Object node, Entry entry, int shift) {
+    if (node == null) {
+      return new BitmapNode(1 << ((entry.hash >>> shift) & MASK), new Object[] { entry });
+    }
+
+    if (node instanceof CollisionNode) {
+      Entry[] entries = ((CollisionNode) node).entries;
+      for (int i = 0; i < entries.length; i++) {
+        if (entries[i].key.equals(entry.key)) {
+          Entry[] newEntries = entries.clone();
+          newEntries[i] = entry;
+          return new CollisionNode(newEntries);
+        }
+      }
+      Entry[] newEntries = Arrays.copyOf(entries, entries.length + 1);
+      newEntries[entries.length] = entry;
+      return new CollisionNode(newEntries);
+    }
+
+    BitmapNode bitmapNode = (BitmapNode) node;
+    int bit = 1 << ((entry.hash >>> shift) & MASK);
+    int i = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+    Object[] array = bitmapNode.array;
+    if ((bitmapNode.bitmap & bit) == 0) {
+      Object[] newArray = new Object[array.length + 1];
+      System.arraycopy(array, 0, newArray, 0, i);
+      newArray[i] = entry;
+      System.arraycopy(array, i, newArray, i + 1, array.length - i);
+      return new BitmapNode(bitmapNode.bitmap | bit, newArray);
+    }
+
+    Object child = array[i];
+    Object newChild;
+    if (child instanceof Entry) {
+      Entry oldEntry = (Entry) child;
+      newChild = oldEntry.hash == entry.hash && oldEntry.key.equals(entry.key) ? entry : merge(oldEntry, entry, shift + BITS);
+    } else {
+      newChild = put(child, entry, shift + BITS);
+    }
+    Object[] newArray = array.clone();
+    newArray[i] = newChild;
+    return new BitmapNode(bitmapNode.bitmap, newArray);
+  }
+
+  private static Object merge(Entry entry1, Entry entry2, int shift) {
+    if (shift >= Integer.SIZE) {
+      return new CollisionNode(new Entry[] { entry1, entry2 });
+    }
+
+    int index1 = (entry1.hash >>> shift) & MASK;
+    int index2 = (entry2.hash >>> shift) & MASK;
+    if (index1 == index2) {
+      return new BitmapNode(1 << index1, new Object[] { merge(entry1, entry2, shift + BITS) });
+    }
+    return new BitmapNode((1 << index1) | (1 << index2), index1 < index2 ? new Object[] { entry1, entry2 } : new Object[] { entry2, entry1 });
+  }
+
+  private static Object remove(Object node, Entry entry, int shift) {
+    if (node instanceof CollisionNode) {
+      Entry[] entries = ((CollisionNode) node).entries;
+      if (entries.length == 2) {
+        return entries[0] == entry ? entries[1] : entries[0];
+      }
+      Entry[] newEntries = new Entry[entries.length - 1];
+      int j = 0;
+      for (Entry other : entries) {
+        if (other != entry) {
+          newEntries[j++] = other;
+        }
+      }
+      return new CollisionNode(newEntries);
+    }
+
+    BitmapNode bitmapNode = (BitmapNode) node;
+    int bit = 1 << ((entry.hash >>> shift) & MASK);
+    int i = Integer.bitCount(bitmapNode.bitmap & (bit - 1));
+    Object child = bitmapNode.array[i];
+    Object newChild = child == entry ? null : remove(child, entry, shift + BITS);
+    if (newChild == null) {
+      if (bitmapNode.bitmap == bit) {
+        return null;
+      }
+      Object[] array = bitmapNode.array;
+      Object[] newArray = new Object[array.length - 1];
+      System.arraycopy(array, 0, newArray, 0, i);
+      System.arraycopy(array, i + 1, newArray, i, newArray.length - i);
+      return new BitmapNode(bitmapNode.bitmap & ~bit, newArray);
+    }
+
+    Object[] newArray = bitmapNode.array.clone();
+    newArray[i] = newChild;
+    return new BitmapNode(bitmapNode.bitmap, newArray);
+  }
+
+  private static Object[] getLeaf(Object[] node, int shift, int index) {
+    for (; shift > 0; shift -= BITS) {
+      node = (Object[]) node[(index >>> shift) & MASK];
+    }
+    return node;
+  }
+
+  private static Object[] setOrder(Object[] node, int shift, int index, Entry entry) {
+    Object[] newNode = node == null ? new Object[WIDTH] : node.clone();
+    if (shift == 0) {
+      newNode[index & MASK] = entry;
+    } else {
+      int i = (index >>> shift) & MASK;
+      newNode[i] = setOrder((Object[]) newNode[i], shift - BITS, index, entry);
+    }
+    return newNode;
+  }
+
+  private void append(Object key, Object value, int hash) {
+    if (myOrder != null && myOrderShift + BITS < Integer.SIZE && (myLength >>> (myOrderShift + BITS)) != 0) {
+      Object[] newOrder = new Object[WIDTH];
+      newOrder[0] = myOrder;
+      myOrder = newOrder;
+      myOrderShift += BITS;
+    }
+    Entry entry = new Entry(key, value, hash, myLength);
+    myRoot = put(myRoot, entry, 0);
+    myOrder = setOrder(myOrder, myOrderShift, myLength, entry);
+    myLength++;
+    mySize++;
+  }
+
+  private void compact() {
+    Object[] order = myOrder;
+    int shift = myOrderShift;
+    int length = myLength;
+    myRoot = null;
+    myOrder = null;
+    myOrderShift = 0;
+    myLength = 0;
+    mySize = 0;
+    myGeneration = new Object();
+    for (int i = 0; i < length; i++) {
+      Entry entry = (Entry) getLeaf(order, shift, i)[i & MASK];
+      if (entry != null) {
+        append(entry.key, entry.value, entry.hash);
+      }
+    }
+  }
+
+  @Override
+  public int size() {
+    return mySize;
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return mySize == 0;
+  }
+
+  @Override
+  public boolean containsKey(Object key) {
+    return getEntry(key) != null;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V get(Object key) {
+    Entry entry = getEntry(key);
+    return entry == null ? null : (V) entry.value;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V put(K key, V value) {
+    Entry entry = getEntry(Objects.requireNonNull(key));
+    if (entry == null) {
+      append(key, value, hash(key));
+      return null;
+    }
+    if (entry.value == value) {
+      return value;
+    }
+
+    Entry newEntry = new Entry(entry.key, value, entry.hash, entry.index);
+    myRoot = put(myRoot, newEntry, 0);
+    myOrder = setOrder(myOrder, myOrderShift, entry.index, newEntry);
+    return (V) entry.value;
+  }
+
+  @SuppressWarnings("unchecked")
+  @Override
+  public V remove(Object key) {
+    Entry entry = getEntry(key);
+    if (entry == null) {
+      return null;
+    }
+
+    myRoot = remove(myRoot, entry, 0);
+    myOrder = setOrder(myOrder, myOrderShift, entry.index, null);
+    mySize--;
+    if (mySize == 0) {
+      clear();
+    } else if (myLength - mySize > Math.max(mySize, WIDTH)) {
+      compact();
+    }
+    return (V) entry.value;
+  }
+
+  @Override
+  public void clear() {
+    myRoot = null;
+    myOrder = null;
+    myOrderShift = 0;
+    myLength = 0;
+    mySize = 0;
+    myGeneration = new Object();
+  }
+
+  @NotNull
+  @Override
+  public Set<K> keySet() {
+    return new PersistentLinkedSet<>(this, true);
+  }
+
+  @NotNull
+  @Override
+  public Set<Map.Entry<K, V>> entrySet() {
+    return new AbstractSet<>() {
+      @NotNull
+      @Override
+      public Iterator<Map.Entry<K, V>> iterator() {
+        return new MyIterator<>() {
+          @Override
+          Map.Entry<K, V> get(Entry entry) {
+            return new MapEntry(entry);
+          }
+        };
+      }
+
+      @Override
+      public int size() {
+        return mySize;
+      }
+    };
+  }
+
+  private class MapEntry implements Map.Entry<K, V> {
+    private final K myKey;
+    private V myValue;
+
+    @SuppressWarnings("unchecked")
+    MapEntry(Entry entry) {
+      myKey = (K) entry.key;
+      myValue = (V) entry.value;
+    }
+
+    @Override
+    public K getKey() {
+      return myKey;
+    }
+
+    @Override
+    public V getValue() {
+      return myValue;
+    }
+
+    @Override
+    public V setValue(V value) {
+      V oldValue = myValue;
+      myValue = value;
+      put(myKey, value);
+      return oldValue;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof Map.Entry)) return false;
+      Map.Entry<?, ?> entry = (Map.Entry<?, ?>) o;
+      return myKey.equals(entry.getKey()) && Objects.equals(myValue, entry.getValue());
+    }
+
+    @Override
+    public int hashCode() {
+      return myKey.hashCode() ^ Objects.hashCode(myValue);
+    }
+
+    @Override
+    public String toString() {
+      return myKey + "=" + myValue;
+    }
+  }
+
+  abstract class MyIterator<T> implements Iterator<T> {
+    private final Object[] myIteratorOrder = myOrder;
+    private final int myIteratorShift = myOrderShift;
+    private final int myIteratorLength = myLength;
+    private int myIndex;
+    private Entry myNext;
+    private Entry myLast;
+
+    abstract T get(Entry entry);
+
+    @Override
+    public boolean hasNext() {
+      while (myNext == null && myIndex < myIteratorLength) {
+        myNext = (Entry) getLeaf(myIteratorOrder, myIteratorShift, myIndex)[myIndex & MASK];
+        myIndex++;
+      }
+      return myNext != null;
+    }
+
+    @Override
+    public T next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      myLast = myNext;
+      myNext = null;
+      return get(myLast);
+    }
+
+    @Override
+    public void remove() {
+      if (myLast == null) {
+        throw new IllegalStateException();
+      }
+      PersistentLinkedMap.this.remove(myLast.key);
+      myLast = null;
+    }
+  }
+
+  @SuppressWarnings("unchecked")
+  Iterator<K> keyIterator() {
+    return new MyIterator<>() {
+      @Override
+      K get(Entry entry) {
+        return (K) entry.key;
+      }
+    };
+  }
+}
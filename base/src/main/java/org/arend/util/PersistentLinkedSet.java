@@ -0,0 +1,100 @@
+package org.arend.util;
+
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+
+/**
+ * A set that preserves the insertion order of its elements like {@link LinkedHashSet}.
+ * It is backed by a {@link PersistentLinkedMap}, so a copy of a set can be created in constant time.
+ */
+public class PersistentLinkedSet<T> extends AbstractSet<T> {
+  private final PersistentLinkedMap<T, Object> myMap;
+  private final boolean myKeySet;
+
+  @SuppressWarnings("unchecked")
+  PersistentLinkedSet(PersistentLinkedMap<T, ?> map, boolean isKeySet) {
+    myMap = (PersistentLinkedMap<T, Object>) map;
+    myKeySet = isKeySet;
+  }
+
+  public PersistentLinkedSet() {
+    myMap = new PersistentLinkedMap<>();
+    myKeySet = false;
+  }
+
+  public PersistentLinkedSet(Collection<? extends T> collection) {
+    if (collection instanceof PersistentLinkedSet) {
+      myMap = new PersistentLinkedMap<>(((PersistentLinkedSet<? extends T>) collection).myMap);
+    } else {
+      myMap = new PersistentLinkedMap<>();
+      for (T element : collection) {
+        myMap.put(element, Boolean.TRUE);
+      }
+    }
+    myKeySet = false;
+  }
+
+  /**
+   * Replaces the content of this set with the content of {@code set} in constant time.
+   */
+  public void restore(PersistentLinkedSet<? extends T> set) {
+    if (myKeySet) {
+      throw new UnsupportedOperationException();
+    }
+    myMap.restore(set.myMap);
+  }
+
+  @Override
+  public boolean retainAll(@NotNull Collection<?> collection) {
+    if (!(collection instanceof PersistentLinkedSet)) {
+      return super.retainAll(collection);
+    }
+    int size = myMap.size();
+    myMap.retainKeys(((PersistentLinkedSet<?>) collection).myMap);
+    return size != myMap.size();
+  }
+
+  @NotNull
+  @Override
+  public Iterator<T> iterator() {
+    return myMap.keyIterator();
+  }
+
+  @Override
+  public int size() {
+    return myMap.size();
+  }
+
+  @Override
+  public boolean isEmpty() {
+    return myMap.isEmpty();
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    return myMap.containsKey(o);
+  }
+
+  @Override
+  public boolean add(T t) {
+    if (myKeySet) {
+      throw new UnsupportedOperationException();
+    }
+    return myMap.put(t, Boolean.TRUE) == null;
+  }
+
+  @Override
+  public boolean remove(Object o) {
+    if (!myMap.containsKey(o)) {
+      return false;
+    }
+    myMap.remove(o);
+    return true;
+  }
+
+  @Override
+  public void clear() {
+    myMap.clear();
+  }
+}
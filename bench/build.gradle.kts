@@ -0,0 +1,36 @@
+plugins {
+    java
+}
+
+dependencies {
+    val annotationsVersion: String by rootProject.ext
+    val antlrVersion: String by rootProject.ext
+    val protobufVersion: String by rootProject.ext
+    val jmhVersion = "1.23"
+    implementation("org.jetbrains:annotations:$annotationsVersion")
+    implementation("org.antlr:antlr4-runtime:$antlrVersion")
+    implementation("com.google.protobuf:protobuf-java:$protobufVersion")
+    implementation("org.openjdk.jmh:jmh-core:$jmhVersion")
+    annotationProcessor("org.openjdk.jmh:jmh-generator-annprocess:$jmhVersion")
+
+    implementation(project(":api"))
+    implementation(project(":base"))
+    implementation(project(":proto"))
+    implementation(project(":parser"))
+    implementation(project(":cli"))
+}
+
+// Forks, warmup and measurement are fixed in the benchmark classes, so results of different commits are comparable.
+// A subset of benchmarks can be selected with -Pbench=<regexp>.
+task<JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs JMH benchmarks and writes the results to build/reports/jmh/results.json"
+    classpath = sourceSets["main"].runtimeClasspath
+    main = "org.openjdk.jmh.Main"
+    workingDir(rootProject.rootDir)
+    val resultFile = buildDir.resolve("reports/jmh/results.json")
+    args = listOfNotNull(project.findProperty("bench")?.toString()) + listOf("-rf", "json", "-rff", resultFile.path)
+    doFirst {
+        resultFile.parentFile.mkdirs()
+    }
+}
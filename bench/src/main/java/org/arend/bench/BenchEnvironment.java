@@ -0,0 +1,172 @@
+package org.arend.bench;
+
+import org.antlr.v4.runtime.*;
+import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.ext.error.GeneralError;
+import org.arend.ext.error.ListErrorReporter;
+import org.arend.ext.module.ModulePath;
+import org.arend.extImpl.DefinitionRequester;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.frontend.library.PreludeFileLibrary;
+import org.arend.frontend.parser.*;
+import org.arend.library.Library;
+import org.arend.library.LibraryManager;
+import org.arend.module.ModuleLocation;
+import org.arend.module.scopeprovider.ModuleScopeProvider;
+import org.arend.naming.reference.LocatedReferable;
+import org.arend.naming.reference.Referable;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.naming.resolving.visitor.DefinitionResolveNameVisitor;
+import org.arend.naming.scope.CachingScope;
+import org.arend.naming.scope.Scope;
+import org.arend.naming.scope.ScopeFactory;
+import org.arend.prelude.Prelude;
+import org.arend.term.group.ChildGroup;
+import org.arend.term.group.FileGroup;
+import org.arend.term.group.Group;
+import org.arend.typechecking.ConcurrentTypecheckerState;
+import org.arend.typechecking.TypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Loads prelude from {@code lib/Prelude.ard} and processes modules given as text.
+ * Benchmarks should be run from the root of the repository or with {@code AREND_PATH} pointing to it.
+ */
+public class BenchEnvironment {
+  public static final ModuleLocation MODULE_LOCATION = new ModuleLocation(null, ModuleLocation.LocationKind.SOURCE, new ModulePath("Bench"));
+
+  private final ListErrorReporter myErrorReporter = new ListErrorReporter();
+  private final TypecheckerState myTypecheckerState = new ConcurrentTypecheckerState();
+  private final LibraryManager myLibraryManager;
+  private final ModuleScopeProvider myModuleScopeProvider;
+
+  public BenchEnvironment() {
+    myLibraryManager = new LibraryManager((lib, name) -> { throw new IllegalStateException(); }, new InstanceProviderSet(), myErrorReporter, myErrorReporter, DefinitionRequester.INSTANCE);
+    Library preludeLibrary = new PreludeFileLibrary(null, myTypecheckerState);
+    myModuleScopeProvider = preludeLibrary.getModuleScopeProvider();
+    myLibraryManager.loadLibrary(preludeLibrary, null);
+    new Prelude.PreludeTypechecking(new InstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, PositionComparator.INSTANCE).typecheckLibrary(preludeLibrary);
+    checkErrors("Cannot load prelude");
+  }
+
+  public TypecheckerState getTypecheckerState() {
+    return myTypecheckerState;
+  }
+
+  public ModuleScopeProvider getModuleScopeProvider() {
+    return myModuleScopeProvider;
+  }
+
+  private void checkErrors(String message) {
+    List<GeneralError> errors = myErrorReporter.getErrorList();
+    if (!errors.isEmpty()) {
+      String error = message + ": " + errors.get(0);
+      errors.clear();
+      throw new IllegalStateException(error);
+    }
+  }
+
+  public ArendParser.StatementsContext parseTree(String text) {
+    BaseErrorListener errorListener = new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
+        myErrorReporter.report(new ParserError(new Position(MODULE_LOCATION.getModulePath(), line, pos), msg));
+      }
+    };
+
+    ArendLexer lexer = new ArendLexer(CharStreams.fromString(text));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errorListener);
+
+    ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
+    parser.removeErrorListeners();
+    parser.addErrorListener(errorListener);
+
+    ArendParser.StatementsContext tree = parser.statements();
+    checkErrors("Cannot parse the module");
+    return tree;
+  }
+
+  public FileGroup buildGroup(ArendParser.StatementsContext tree) {
+    FileGroup group = new BuildVisitor(MODULE_LOCATION, myErrorReporter).visitStatements(tree);
+    checkErrors("Cannot build the module");
+    return group;
+  }
+
+  public FileGroup parse(String text) {
+    return buildGroup(parseTree(text));
+  }
+
+  /**
+   * Parses the module and resolves names in it.
+   */
+  public FileGroup resolve(String text) {
+    FileGroup group = parse(text);
+    group.setModuleScopeProvider(myModuleScopeProvider);
+    new DefinitionResolveNameVisitor(ConcreteReferableProvider.INSTANCE, myErrorReporter).resolveGroupWithTypes(group, null, CachingScope.make(ScopeFactory.forGroup(group, myModuleScopeProvider)));
+    myLibraryManager.getInstanceProviderSet().collectInstances(group, CachingScope.make(ScopeFactory.parentScopeForGroup(group, myModuleScopeProvider, true)), ConcreteReferableProvider.INSTANCE, null);
+    checkErrors("Cannot resolve names");
+    return group;
+  }
+
+  public void typecheck(Group group) {
+    new TypecheckingOrderingListener(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, myErrorReporter, PositionComparator.INSTANCE, ref -> null).typecheckModules(Collections.singletonList(group), null);
+    checkErrors("Cannot typecheck the module");
+  }
+
+  public FileGroup typecheck(String text) {
+    FileGroup group = resolve(text);
+    typecheck(group);
+    return group;
+  }
+
+  /**
+   * Removes typechecked definitions of the group from the state, so that the state does not grow between iterations.
+   */
+  public void forget(Group group) {
+    LocatedReferable ref = group.getReferable();
+    if (ref instanceof TCReferable) {
+      myTypecheckerState.reset((TCReferable) ref);
+    }
+    for (Group.InternalReferable internal : group.getInternalReferables()) {
+      LocatedReferable internalRef = internal.getReferable();
+      if (internalRef instanceof TCReferable) {
+        myTypecheckerState.reset((TCReferable) internalRef);
+      }
+    }
+    for (Group subgroup : group.getSubgroups()) {
+      forget(subgroup);
+    }
+    for (Group subgroup : group.getDynamicSubgroups()) {
+      forget(subgroup);
+    }
+  }
+
+  public Definition getDefinition(ChildGroup group, String name) {
+    Referable ref = Scope.Utils.resolveName(group.getGroupScope(), Collections.singletonList(name));
+    Definition definition = ref instanceof TCReferable ? myTypecheckerState.getTypechecked((TCReferable) ref) : null;
+    if (definition == null) {
+      throw new IllegalStateException("Cannot find definition '" + name + "'");
+    }
+    return definition;
+  }
+
+  /**
+   * @return the body of a function defined by a term.
+   */
+  public Expression getBody(ChildGroup group, String name) {
+    Definition definition = getDefinition(group, name);
+    if (!(definition instanceof FunctionDefinition && ((FunctionDefinition) definition).getBody() instanceof Expression)) {
+      throw new IllegalStateException("'" + name + "' is not a function defined by a term");
+    }
+    return (Expression) ((FunctionDefinition) definition).getBody();
+  }
+}
@@ -0,0 +1,62 @@
+package org.arend.bench;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.ext.core.ops.CMP;
+import org.arend.term.group.FileGroup;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.arend.core.expr.ExpressionFactory.Nat;
+
+/**
+ * Compares terms which are convertible.
+ * {@link #unfold} requires evaluation of both sides, {@link #structural} compares two copies of a large lambda.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComparisonBenchmark {
+  @Param({"200"})
+  public int degree;
+
+  private Expression myFib;
+  private Expression myFib2;
+  private Expression myPoly;
+  private Expression myPoly2;
+  private Expression myPolyType;
+
+  @Setup
+  public void setup() {
+    BenchEnvironment environment = new BenchEnvironment();
+    FileGroup group = environment.typecheck(SyntheticSources.ARITHMETIC + "\n" + SyntheticSources.polynomials(degree));
+    myFib = environment.getBody(group, "fibTest");
+    myFib2 = environment.getBody(group, "fibTest'");
+    myPoly = environment.getBody(group, "polyFun");
+    myPoly2 = environment.getBody(group, "polyFun'");
+    myPolyType = ((FunctionDefinition) environment.getDefinition(group, "polyFun")).getResultType();
+  }
+
+  private static boolean compare(Expression expr1, Expression expr2, Expression type) {
+    if (!CompareVisitor.compare(DummyEquations.getInstance(), CMP.EQ, expr1, expr2, type, null)) {
+      throw new IllegalStateException("Expressions are not equal");
+    }
+    return true;
+  }
+
+  @Benchmark
+  public boolean unfold() {
+    return compare(myFib, myFib2, Nat());
+  }
+
+  @Benchmark
+  public boolean structural() {
+    return compare(myPoly, myPoly2, myPolyType);
+  }
+}
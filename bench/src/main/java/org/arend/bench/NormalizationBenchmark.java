@@ -0,0 +1,46 @@
+package org.arend.bench;
+
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.eval.NormalizationEngine;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.term.group.FileGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Normalizes closed terms with both normalization engines.
+ * {@link NormalizationEngine} is invoked directly, so the cache of weak head normal forms is not used.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark {
+  @Param({"SUBSTITUTION", "ENVIRONMENT"})
+  public NormalizationEngine engine;
+
+  @Param({"fibTest", "sumTest", "coeTest"})
+  public String term;
+
+  private Expression myExpression;
+
+  @Setup
+  public void setup() {
+    BenchEnvironment environment = new BenchEnvironment();
+    FileGroup group = environment.typecheck(SyntheticSources.ARITHMETIC);
+    myExpression = environment.getBody(group, term);
+  }
+
+  @Benchmark
+  public Expression whnf() {
+    return engine.normalize(myExpression, NormalizationMode.WHNF);
+  }
+
+  @Benchmark
+  public Expression nf() {
+    return engine.normalize(myExpression, NormalizationMode.NF);
+  }
+}
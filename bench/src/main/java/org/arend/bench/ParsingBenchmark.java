@@ -0,0 +1,43 @@
+package org.arend.bench;
+
+import org.arend.frontend.parser.ArendParser;
+import org.arend.term.group.FileGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parses a generated library.
+ * {@link #parse} includes lexing and parsing, {@link #build} only converts a parse tree with {@link org.arend.frontend.parser.BuildVisitor}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ParsingBenchmark {
+  @Param({"100"})
+  public int size;
+
+  private BenchEnvironment myEnvironment;
+  private String myText;
+  private ArendParser.StatementsContext myTree;
+
+  @Setup
+  public void setup() {
+    myEnvironment = new BenchEnvironment();
+    myText = SyntheticSources.library(size);
+    myTree = myEnvironment.parseTree(myText);
+  }
+
+  @Benchmark
+  public FileGroup parse() {
+    return myEnvironment.parse(myText);
+  }
+
+  @Benchmark
+  public FileGroup build() {
+    return myEnvironment.buildGroup(myTree);
+  }
+}
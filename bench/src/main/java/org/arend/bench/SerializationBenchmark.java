@@ -0,0 +1,63 @@
+package org.arend.bench;
+
+import com.google.protobuf.InvalidProtocolBufferException;
+import org.arend.error.DummyErrorReporter;
+import org.arend.module.serialization.DeserializationException;
+import org.arend.module.serialization.ModuleDeserialization;
+import org.arend.module.serialization.ModuleProtos;
+import org.arend.module.serialization.ModuleSerialization;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.term.group.FileGroup;
+import org.arend.typechecking.order.dependency.DummyDependencyListener;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Writes a typechecked generated library to bytes and reads it back in the same way as binary sources do.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+  @Param({"100"})
+  public int size;
+
+  private BenchEnvironment myEnvironment;
+  private FileGroup myGroup;
+  private byte[] myBytes;
+  private ChildGroup myDeserializedGroup;
+
+  @Setup
+  public void setup() {
+    myEnvironment = new BenchEnvironment();
+    myGroup = myEnvironment.typecheck(SyntheticSources.library(size));
+    myBytes = serialize();
+  }
+
+  @TearDown(Level.Invocation)
+  public void forgetDeserialized() {
+    if (myDeserializedGroup != null) {
+      myEnvironment.forget(myDeserializedGroup);
+      myDeserializedGroup = null;
+    }
+  }
+
+  @Benchmark
+  public byte[] serialize() {
+    return new ModuleSerialization(myEnvironment.getTypecheckerState(), DummyErrorReporter.INSTANCE).writeModule(myGroup, BenchEnvironment.MODULE_LOCATION.getModulePath(), IdReferableConverter.INSTANCE).toByteArray();
+  }
+
+  @Benchmark
+  public ChildGroup deserialize() throws InvalidProtocolBufferException, DeserializationException {
+    ModuleDeserialization moduleDeserialization = new ModuleDeserialization(ModuleProtos.Module.parseFrom(myBytes), myEnvironment.getTypecheckerState(), IdReferableConverter.INSTANCE);
+    myDeserializedGroup = moduleDeserialization.readGroup(BenchEnvironment.MODULE_LOCATION);
+    moduleDeserialization.readDefinitions(myDeserializedGroup);
+    moduleDeserialization.readModule(myEnvironment.getModuleScopeProvider(), DummyDependencyListener.INSTANCE);
+    return myDeserializedGroup;
+  }
+}
@@ -0,0 +1,52 @@
+package org.arend.bench;
+
+import org.arend.core.context.binding.TypedBinding;
+import org.arend.core.definition.Definition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.SmallIntegerExpression;
+import org.arend.core.subst.ExprSubstitution;
+import org.arend.term.group.FileGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.arend.core.expr.ExpressionFactory.Nat;
+
+/**
+ * Substitutes into the body of a function.
+ * {@link #bound} replaces the parameter of the function, {@link #unused} replaces a variable which does not occur in the body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubstitutionBenchmark {
+  @Param({"200"})
+  public int degree;
+
+  private Expression myBody;
+  private ExprSubstitution myBoundSubstitution;
+  private ExprSubstitution myUnusedSubstitution;
+
+  @Setup
+  public void setup() {
+    BenchEnvironment environment = new BenchEnvironment();
+    FileGroup group = environment.typecheck(SyntheticSources.polynomials(degree));
+    Definition definition = environment.getDefinition(group, "poly");
+    myBody = environment.getBody(group, "poly");
+    myBoundSubstitution = new ExprSubstitution(definition.getParameters(), new SmallIntegerExpression(7));
+    myUnusedSubstitution = new ExprSubstitution(new TypedBinding("y", Nat()), new SmallIntegerExpression(7));
+  }
+
+  @Benchmark
+  public Expression bound() {
+    return myBody.subst(myBoundSubstitution);
+  }
+
+  @Benchmark
+  public Expression unused() {
+    return myBody.subst(myUnusedSubstitution);
+  }
+}
@@ -0,0 +1,91 @@
+package org.arend.bench;
+
+/**
+ * Generates modules used in benchmarks.
+ * The text depends only on the parameters, so results of different runs are comparable.
+ */
+public class SyntheticSources {
+  private SyntheticSources() { }
+
+  /**
+   * Recursive functions on natural numbers and a chain of transports along paths.
+   */
+  public static final String ARITHMETIC =
+    "\\func fib (n : Nat) : Nat \\elim n\n" +
+    "  | 0 => 0\n" +
+    "  | 1 => 1\n" +
+    "  | suc (suc n) => fib n Nat.+ fib (suc n)\n" +
+    "\n" +
+    "\\func sumTo (n : Nat) : Nat \\elim n\n" +
+    "  | 0 => 0\n" +
+    "  | suc n => suc n Nat.+ sumTo n\n" +
+    "\n" +
+    "\\func idpNat (n : Nat) : n = n => idp\n" +
+    "\n" +
+    "\\func transport {A : \\Type} (B : A -> \\Type) {a a' : A} (p : a = a') (b : B a) : B a' => coe (\\lam i => B (p @ i)) b right\n" +
+    "\n" +
+    "\\func coeChain (n : Nat) : Nat \\elim n\n" +
+    "  | 0 => 0\n" +
+    "  | suc n => transport (\\lam (_ : Nat) => Nat) (idpNat n) (suc (coeChain n))\n" +
+    "\n" +
+    "\\func fibTest => fib 18\n" +
+    "\n" +
+    "\\func fibTest' => fib 16 Nat.+ fib 17\n" +
+    "\n" +
+    "\\func sumTest => sumTo 300\n" +
+    "\n" +
+    "\\func coeTest => coeChain 300\n";
+
+  /**
+   * A polynomial of the given degree in variable {@code x} in the Horner form.
+   */
+  public static String polynomial(int degree) {
+    StringBuilder builder = new StringBuilder("x");
+    for (int i = 1; i <= degree; i++) {
+      builder.insert(0, '(').append(") Nat.* x Nat.+ ").append(i);
+    }
+    return builder.toString();
+  }
+
+  /**
+   * A function {@code poly} whose body is a polynomial of the given degree
+   * and functions {@code polyFun} and {@code polyFun'} which are lambdas with the same body.
+   */
+  public static String polynomials(int degree) {
+    String poly = polynomial(degree);
+    return
+      "\\func poly (x : Nat) : Nat => " + poly + "\n\n" +
+      "\\func polyFun : Nat -> Nat => \\lam x => " + poly + "\n\n" +
+      "\\func polyFun' : Nat -> Nat => \\lam x => " + poly + "\n";
+  }
+
+  /**
+   * A library of {@code size} blocks; each block consists of a data type, functions defined by pattern matching,
+   * a proof by induction, a class with an instance, and a function which depends on the previous block.
+   */
+  public static String library(int size) {
+    StringBuilder builder = new StringBuilder();
+    builder.append("\\func pmap {A B : \\Type} (f : A -> B) {a a' : A} (p : a = a') : f a = f a' => path (\\lam i => f (p @ i))\n\n");
+    builder.append("\\func chain0 => 0\n\n");
+    for (int i = 1; i <= size; i++) {
+      builder
+        .append("\\data List").append(i).append(" (A : \\Type) | nil").append(i).append(" | cons").append(i).append(" A (List").append(i).append(" A)\n\n")
+        .append("\\func append").append(i).append(" {A : \\Type} (xs ys : List").append(i).append(" A) : List").append(i).append(" A \\elim xs\n")
+        .append("  | nil").append(i).append(" => ys\n")
+        .append("  | cons").append(i).append(" x xs => cons").append(i).append(" x (append").append(i).append(" xs ys)\n\n")
+        .append("\\func length").append(i).append(" {A : \\Type} (xs : List").append(i).append(" A) : Nat \\elim xs\n")
+        .append("  | nil").append(i).append(" => 0\n")
+        .append("  | cons").append(i).append(" _ xs => suc (length").append(i).append(" xs)\n\n")
+        .append("\\func append-length").append(i).append(" {A : \\Type} (xs ys : List").append(i).append(" A) : length").append(i).append(" (append").append(i).append(" xs ys) = length").append(i).append(" ys Nat.+ length").append(i).append(" xs \\elim xs\n")
+        .append("  | nil").append(i).append(" => idp\n")
+        .append("  | cons").append(i).append(" _ xs => pmap suc (append-length").append(i).append(" xs ys)\n\n")
+        .append("\\class Monoid").append(i).append(" (E : \\Set) | ide").append(i).append(" : E | op").append(i).append(" : E -> E -> E\n\n")
+        .append("\\instance NatMonoid").append(i).append(" : Monoid").append(i).append(" Nat | ide").append(i).append(" => 0 | op").append(i).append(" => \\lam a b => a Nat.+ b\n\n")
+        .append("\\func sum").append(i).append(" (xs : List").append(i).append(" Nat) : Nat \\elim xs\n")
+        .append("  | nil").append(i).append(" => ide").append(i).append("\n")
+        .append("  | cons").append(i).append(" x xs => op").append(i).append(" x (sum").append(i).append(" xs)\n\n")
+        .append("\\func chain").append(i).append(" => chain").append(i - 1).append(" Nat.+ sum").append(i).append(" (append").append(i).append(" (cons").append(i).append(" 1 nil").append(i).append(") (cons").append(i).append(" ").append(i).append(" nil").append(i).append("))\n\n");
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,47 @@
+package org.arend.bench;
+
+import org.arend.term.group.FileGroup;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Typechecks a generated library of the given size.
+ * Names are resolved before each invocation, so only typechecking is measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class TypecheckingBenchmark {
+  @Param({"10", "100"})
+  public int size;
+
+  private BenchEnvironment myEnvironment;
+  private String myText;
+  private FileGroup myGroup;
+
+  @Setup
+  public void setup() {
+    myEnvironment = new BenchEnvironment();
+    myText = SyntheticSources.library(size);
+  }
+
+  @Setup(Level.Invocation)
+  public void resolve() {
+    myGroup = myEnvironment.resolve(myText);
+  }
+
+  @TearDown(Level.Invocation)
+  public void forget() {
+    myEnvironment.forget(myGroup);
+  }
+
+  @Benchmark
+  public FileGroup typecheck() {
+    myEnvironment.typecheck(myGroup);
+    return myGroup;
+  }
+}
@@ -2,6 +2,10 @@ package org.arend.frontend;
 
 import org.apache.commons.cli.*;
 import org.arend.core.definition.Definition;
+import org.arend.core.expr.eval.NormalizationEngine;
+import org.arend.core.expr.eval.ConversionCache;
+import org.arend.core.expr.eval.WhnfCache;
+import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.ext.error.ListErrorReporter;
 import org.arend.ext.error.ErrorReporter;
 import org.arend.ext.error.GeneralError;
@@ -21,17 +25,22 @@ import org.arend.prelude.Prelude;
 import org.arend.prelude.PreludeResourceLibrary;
 import org.arend.term.group.Group;
 import org.arend.term.prettyprint.PrettyPrinterConfigWithRenamer;
+import org.arend.typechecking.IncrementalTypecheckerState;
 import org.arend.typechecking.LibraryArendExtensionProvider;
-import org.arend.typechecking.SimpleTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.doubleChecker.CoreModuleChecker;
 import org.arend.typechecking.error.local.GoalError;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.arend.typechecking.profiling.ProfilingCounters;
+import org.arend.typechecking.profiling.TypecheckingProfiler;
 import org.arend.util.FileUtils;
 import org.arend.util.Range;
 
 import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.Writer;
 import java.nio.file.FileSystems;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -39,21 +48,30 @@ import java.nio.file.Paths;
 import java.util.*;
 
 public abstract class BaseCliFrontend {
+  // Output
+  private PrintStream myOut = System.out;
+  private PrintStream myErr = System.err;
+
   // Typechecking
-  private final TypecheckerState myTypecheckerState = new SimpleTypecheckerState();
-  private final ListErrorReporter myErrorReporter = new ListErrorReporter();
+  private final IncrementalTypecheckerState myTypecheckerState = new IncrementalTypecheckerState();
+  private final ListErrorReporter myErrorReporter = new ListErrorReporter(Collections.synchronizedList(new ArrayList<>()));
   private final Map<ModulePath, GeneralError.Level> myModuleResults = new LinkedHashMap<>();
 
   // Status information
   private boolean myExitWithError = false;
   private final ErrorReporter mySystemErrErrorReporter = error -> {
-    System.err.println(error);
+    myErr.println(error);
     myExitWithError = true;
   };
 
   // Libraries
   private final FileLibraryResolver myLibraryResolver = new FileLibraryResolver(new ArrayList<>(), myTypecheckerState, mySystemErrErrorReporter);
   private final LibraryManager myLibraryManager = new MyLibraryManager();
+  private PreludeResourceLibrary myPreludeLibrary;
+  private FileSourceLibrary myDefaultLibrary;
+  private TypecheckingProfiler myProfiler;
+
+  private static final long WATCH_DELAY = 200;
 
   private static String timeToString(long time) {
     if (time < 10000) {
@@ -76,7 +94,7 @@ public abstract class BaseCliFrontend {
 
     @Override
     protected void beforeLibraryLoading(Library library) {
-      System.out.println("[INFO] Loading library " + library.getName());
+      myOut.println("[INFO] Loading library " + library.getName());
       times.push(System.currentTimeMillis());
     }
 
@@ -84,8 +102,8 @@ public abstract class BaseCliFrontend {
     protected void afterLibraryLoading(Library library, boolean successful) {
       long time = System.currentTimeMillis() - times.pop();
       flushErrors();
-      System.err.flush();
-      System.out.println("[INFO] " + (successful ? "Loaded " : "Failed loading ") + "library " + library.getName() + (successful ? " (" + timeToString(time) + ")" : ""));
+      myErr.flush();
+      myOut.println("[INFO] " + (successful ? "Loaded " : "Failed loading ") + "library " + library.getName() + (successful ? " (" + timeToString(time) + ")" : ""));
     }
   }
 
@@ -97,26 +115,99 @@ public abstract class BaseCliFrontend {
     return myTypecheckerState;
   }
 
+  public PrintStream getOutput() {
+    return myOut;
+  }
+
+  public PrintStream getErrorOutput() {
+    return myErr;
+  }
+
+  /**
+   * Sets streams to which the frontend prints messages and errors.
+   */
+  public void setOutput(PrintStream out, PrintStream err) {
+    myOut = out;
+    myErr = err;
+  }
+
+  /**
+   * @return the library which is created for modules given on the command line, or null if there is no such library.
+   */
+  public Library getDefaultLibrary() {
+    return myDefaultLibrary;
+  }
+
 
   private class MyTypechecking extends TypecheckingOrderingListener {
     private int total;
     private int failed;
 
     MyTypechecking() {
-      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, myErrorReporter, PositionComparator.INSTANCE, new LibraryArendExtensionProvider(myLibraryManager));
+      super(myLibraryManager.getInstanceProviderSet(), myTypecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, myErrorReporter, myTypecheckerState, PositionComparator.INSTANCE, new LibraryArendExtensionProvider(myLibraryManager));
+    }
+
+    @Override
+    public void typecheckingHeaderStarted(TCReferable definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionStarted(definition);
+      }
+    }
+
+    @Override
+    public void typecheckingBodyStarted(TCReferable definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionStarted(definition);
+      }
+    }
+
+    @Override
+    public void typecheckingUnitStarted(TCReferable definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionStarted(definition);
+      }
+    }
+
+    @Override
+    public void typecheckingHeaderFinished(TCReferable referable, Definition definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionFinished(referable);
+      }
     }
 
     @Override
     public void typecheckingBodyFinished(TCReferable referable, Definition definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionFinished(referable);
+      }
       update(definition);
     }
 
     @Override
     public void typecheckingUnitFinished(TCReferable referable, Definition definition) {
+      if (myProfiler != null) {
+        myProfiler.definitionFinished(referable);
+      }
       update(definition);
     }
 
-    private void update(Definition definition) {
+    @Override
+    public void moduleFinished(Group module) {
+      // Modules are typechecked before the next one is ordered only if typechecking is sequential
+      if (getNumberOfThreads() > 1) {
+        return;
+      }
+      ModuleLocation location = module.getReferable().getLocation();
+      if (location == null || location.getLocationKind() != ModuleLocation.LocationKind.SOURCE) {
+        return;
+      }
+      Library library = myLibraryManager.getRegisteredLibrary(location.getLibraryName());
+      if (library instanceof UnmodifiableSourceLibrary) {
+        ((UnmodifiableSourceLibrary) library).persistModuleAsync(location.getModulePath());
+      }
+    }
+
+    private synchronized void update(Definition definition) {
       flushErrors();
 
       LocatedReferable parent = definition.getRef().getLocatedReferableParent();
@@ -138,37 +229,59 @@ public abstract class BaseCliFrontend {
     return myExitWithError;
   }
 
+  /**
+   * @return options that can be given on the command line.
+   */
+  public Options getCommandOptions() {
+    Options cmdOptions = new Options();
+    cmdOptions.addOption("h", "help", false, "print this message");
+    cmdOptions.addOption(Option.builder("L").longOpt("libdir").hasArg().argName("dir").desc("directory containing libraries").build());
+    cmdOptions.addOption(Option.builder("l").longOpt("lib").hasArg().argName("library").desc("project dependency (a name of a library or a path to it)").build());
+    cmdOptions.addOption(Option.builder("s").longOpt("sources").hasArg().argName("dir").desc("project source directory").build());
+    cmdOptions.addOption(Option.builder("b").longOpt("binaries").hasArg().argName("dir").desc("project output directory").build());
+    cmdOptions.addOption(Option.builder("e").longOpt("extensions").hasArg().argName("dir").desc("language extensions directory").build());
+    cmdOptions.addOption(Option.builder("m").longOpt("extension-main").hasArg().argName("class").desc("main extension class").build());
+    cmdOptions.addOption(Option.builder("r").longOpt("recompile").desc("recompile files").build());
+    cmdOptions.addOption(Option.builder().longOpt("uncompressed").desc("write binary files without compression so that they can be mapped into memory").build());
+    cmdOptions.addOption(Option.builder("c").longOpt("double-check").desc("double check correctness of the result").build());
+    cmdOptions.addOption(Option.builder().longOpt("double-check-binaries").desc("double check libraries even if all their modules are loaded from binary files").build());
+    cmdOptions.addOption(Option.builder().longOpt("threads").hasArg().argName("N").desc("number of threads used for typechecking").build());
+    cmdOptions.addOption(Option.builder().longOpt("lazy-normalization").desc("use the environment-based normalizer").build());
+    cmdOptions.addOption(Option.builder().longOpt("profile").desc("profile typechecking of definitions and print the slowest ones").build());
+    cmdOptions.addOption(Option.builder().longOpt("profile-output").hasArg().argName("file").desc("write the profile to a .json or .csv file (implies --profile)").build());
+    cmdOptions.addOption(Option.builder().longOpt("whnf-cache").hasArg().argName("size").desc("cache weak head normal forms of at most this number of expressions").build());
+    cmdOptions.addOption(Option.builder().longOpt("conversion-cache").hasArg().argName("size").desc("cache results of at most this number of comparisons of closed expressions").build());
+    cmdOptions.addOption(Option.builder().longOpt("daemon").desc("keep libraries loaded and typecheck requests read from the standard input or a local socket").build());
+    cmdOptions.addOption(Option.builder().longOpt("port").hasArg().argName("port").desc("port of the local socket of the daemon (connections must start with the token that the daemon prints)").build());
+    cmdOptions.addOption(Option.builder("w").longOpt("watch").desc("keep running and typecheck modified modules and their dependents").build());
+    cmdOptions.addOption("t", "test", false, "run tests");
+    cmdOptions.addOption("v", "version", false, "print language version");
+    addCommandOptions(cmdOptions);
+    return cmdOptions;
+  }
+
   private CommandLine parseArgs(String[] args) {
     try {
-      Options cmdOptions = new Options();
-      cmdOptions.addOption("h", "help", false, "print this message");
-      cmdOptions.addOption(Option.builder("L").longOpt("libdir").hasArg().argName("dir").desc("directory containing libraries").build());
-      cmdOptions.addOption(Option.builder("l").longOpt("lib").hasArg().argName("library").desc("project dependency (a name of a library or a path to it)").build());
-      cmdOptions.addOption(Option.builder("s").longOpt("sources").hasArg().argName("dir").desc("project source directory").build());
-      cmdOptions.addOption(Option.builder("b").longOpt("binaries").hasArg().argName("dir").desc("project output directory").build());
-      cmdOptions.addOption(Option.builder("e").longOpt("extensions").hasArg().argName("dir").desc("language extensions directory").build());
-      cmdOptions.addOption(Option.builder("m").longOpt("extension-main").hasArg().argName("class").desc("main extension class").build());
-      cmdOptions.addOption(Option.builder("r").longOpt("recompile").desc("recompile files").build());
-      cmdOptions.addOption(Option.builder("c").longOpt("double-check").desc("double check correctness of the result").build());
-      cmdOptions.addOption("t", "test", false, "run tests");
-      cmdOptions.addOption("v", "version", false, "print language version");
-      addCommandOptions(cmdOptions);
+      Options cmdOptions = getCommandOptions();
       CommandLine cmdLine = new DefaultParser().parse(cmdOptions, args);
 
       if (cmdLine.hasOption("h")) {
-        new HelpFormatter().printHelp("arend [FILES]", cmdOptions);
+        HelpFormatter formatter = new HelpFormatter();
+        PrintWriter writer = new PrintWriter(myOut);
+        formatter.printHelp(writer, formatter.getWidth(), "arend [FILES]", null, cmdOptions, formatter.getLeftPadding(), formatter.getDescPadding(), null);
+        writer.flush();
         return null;
       }
 
       if (cmdLine.hasOption("v")) {
-        System.out.println("Arend " + Prelude.VERSION);
+        myOut.println("Arend " + Prelude.VERSION);
         return null;
       }
 
       return cmdLine;
     } catch (ParseException e) {
       myExitWithError = true;
-      System.err.println(e.getMessage());
+      myErr.println(e.getMessage());
       return null;
     }
   }
@@ -176,15 +289,29 @@ public abstract class BaseCliFrontend {
   protected void addCommandOptions(Options cmdOptions) {}
 
   public CommandLine run(String[] args) {
+    myExitWithError = false;
     CommandLine cmdLine = parseArgs(args);
     if (cmdLine == null) {
       return null;
     }
 
-    if (!myLibraryManager.loadLibrary(new PreludeResourceLibrary(myTypecheckerState), null)) {
+    if (myPreludeLibrary == null) {
+      myPreludeLibrary = new PreludeResourceLibrary(myTypecheckerState);
+    }
+    if (!myLibraryManager.loadLibrary(myPreludeLibrary, null)) {
       return null;
     }
 
+    if (cmdLine.hasOption("daemon")) {
+      return runDaemon(cmdLine.getOptionValue("port")) ? cmdLine : null;
+    }
+
+    // The default library is created anew on each run
+    if (myDefaultLibrary != null) {
+      myLibraryManager.unloadLibrary(myDefaultLibrary);
+      myDefaultLibrary = null;
+    }
+
     // Get library directories
     String[] libDirStrings = cmdLine.getOptionValues("L");
     if (libDirStrings != null) {
@@ -194,7 +321,7 @@ public abstract class BaseCliFrontend {
           myLibraryResolver.addLibraryDirectory(libDir);
         } else {
           myExitWithError = true;
-          System.err.println("[ERROR] " + libDir + " is not a directory");
+          myErr.println("[ERROR] " + libDir + " is not a directory");
         }
       }
     }
@@ -208,7 +335,7 @@ public abstract class BaseCliFrontend {
           libraryDependencies.add(new LibraryDependency(libString));
         } else {
           myExitWithError = true;
-          System.err.println(LibraryError.illegalName(libString));
+          myErr.println(LibraryError.illegalName(libString));
         }
       }
     }
@@ -264,10 +391,11 @@ public abstract class BaseCliFrontend {
       try {
         Files.createDirectories(outDir);
       } catch (IOException e) {
-        e.printStackTrace();
+        e.printStackTrace(myErr);
         outDir = null;
       }
-      requestedLibraries.add(new FileSourceLibrary("\\default", sourceDir, outDir, extDir, extMainClass, requestedModules, argFiles.isEmpty(), libraryDependencies, Range.unbound(), myTypecheckerState));
+      myDefaultLibrary = new FileSourceLibrary("\\default", sourceDir, outDir, extDir, extMainClass, requestedModules, argFiles.isEmpty(), libraryDependencies, Range.unbound(), myTypecheckerState);
+      requestedLibraries.add(myDefaultLibrary);
     }
 
     if (requestedLibraries.isEmpty()) {
@@ -278,19 +406,88 @@ public abstract class BaseCliFrontend {
           requestedLibraries.add(library);
         }
       } else {
-        System.out.println("Nothing to load");
+        myOut.println("Nothing to load");
         return cmdLine;
       }
     }
 
+    int threads = 1;
+    String threadsStr = cmdLine.getOptionValue("threads");
+    if (threadsStr != null) {
+      try {
+        threads = Integer.parseInt(threadsStr);
+      } catch (NumberFormatException e) {
+        threads = 0;
+      }
+      if (threads <= 0) {
+        myErr.println("[ERROR] " + threadsStr + " is not a valid number of threads");
+        myExitWithError = true;
+        return null;
+      }
+    }
+
+    int whnfCacheSize = 0;
+    String whnfCacheStr = cmdLine.getOptionValue("whnf-cache");
+    if (whnfCacheStr != null) {
+      try {
+        whnfCacheSize = Integer.parseInt(whnfCacheStr);
+      } catch (NumberFormatException e) {
+        whnfCacheSize = -1;
+      }
+      if (whnfCacheSize < 0) {
+        myErr.println("[ERROR] " + whnfCacheStr + " is not a valid cache size");
+        myExitWithError = true;
+        return null;
+      }
+    }
+
+    int conversionCacheSize = 0;
+    String conversionCacheStr = cmdLine.getOptionValue("conversion-cache");
+    if (conversionCacheStr != null) {
+      try {
+        conversionCacheSize = Integer.parseInt(conversionCacheStr);
+      } catch (NumberFormatException e) {
+        conversionCacheSize = -1;
+      }
+      if (conversionCacheSize < 0) {
+        myErr.println("[ERROR] " + conversionCacheStr + " is not a valid cache size");
+        myExitWithError = true;
+        return null;
+      }
+    }
+
+    if (cmdLine.hasOption("profile") || cmdLine.hasOption("profile-output")) {
+      myProfiler = new TypecheckingProfiler();
+      ProfilingCounters.setEnabled(true);
+    } else {
+      myProfiler = null;
+      ProfilingCounters.setEnabled(false);
+    }
+
     // Load and typecheck libraries
     MyTypechecking typechecking = new MyTypechecking();
+    typechecking.setNumberOfThreads(threads);
+    typechecking.getWhnfCache().setMaximumSize(whnfCacheSize);
+    typechecking.getConversionCache().setMaximumSize(conversionCacheSize);
+    if (cmdLine.hasOption("lazy-normalization")) {
+      typechecking.getNormalizationSettings().setEngine(NormalizationMode.WHNF, NormalizationEngine.ENVIRONMENT);
+      typechecking.getNormalizationSettings().setEngine(NormalizationMode.NF, NormalizationEngine.ENVIRONMENT);
+    }
     boolean recompile = cmdLine.hasOption("r");
-    boolean doubleCheck = cmdLine.hasOption("c");
+    boolean uncompressed = cmdLine.hasOption("uncompressed");
+    boolean doubleCheckBinaries = cmdLine.hasOption("double-check-binaries");
+    boolean doubleCheck = doubleCheckBinaries || cmdLine.hasOption("c");
     for (UnmodifiableSourceLibrary library : requestedLibraries) {
       myModuleResults.clear();
       if (recompile) {
         library.addFlag(SourceLibrary.Flag.RECOMPILE);
+      } else {
+        library.removeFlag(SourceLibrary.Flag.RECOMPILE);
+      }
+      if (uncompressed) {
+        library.addFlag(SourceLibrary.Flag.UNCOMPRESSED_BINARIES);
+      } else {
+        library.removeFlag(SourceLibrary.Flag.UNCOMPRESSED_BINARIES);
       }
       if (!myLibraryManager.loadLibrary(library, typechecking)) {
         continue;
@@ -298,60 +495,15 @@ public abstract class BaseCliFrontend {
 
       Collection<? extends ModulePath> modules = library.getUpdatedModules();
       if (modules.isEmpty()) {
-        continue;
-      }
-
-      System.out.println();
-      System.out.println("--- Typechecking " + library.getName() + " ---");
-      long time = System.currentTimeMillis();
-      typechecking.typecheckLibrary(library);
-      time = System.currentTimeMillis() - time;
-      flushErrors();
-
-      // Output nice per-module typechecking results
-      int numWithErrors = 0;
-      int numWithGoals = 0;
-      for (ModulePath module : modules) {
-        GeneralError.Level result = myModuleResults.get(module);
-        if (result == null && library.getModuleGroup(module) == null) {
-          result = GeneralError.Level.ERROR;
+        if (doubleCheckBinaries) {
+          doubleCheck(library, library.getLoadedModules(), threads);
         }
-        reportTypeCheckResult(module, result);
-        if (result == GeneralError.Level.ERROR) numWithErrors++;
-        if (result == GeneralError.Level.GOAL) numWithGoals++;
-      }
-
-      if (numWithErrors > 0) {
-        myExitWithError = true;
-        System.out.println("Number of modules with errors: " + numWithErrors);
-      }
-      if (numWithGoals > 0) {
-        System.out.println("Number of modules with goals: " + numWithGoals);
-      }
-      System.out.println("--- Done (" + timeToString(time) + ") ---");
-
-      // Persist updated modules
-      if (library.supportsPersisting()) {
-        library.persistUpdatedModules(mySystemErrErrorReporter);
-        library.clearUpdateModules();
+        continue;
       }
 
+      int numWithErrors = typecheckUpdatedModules(library, modules, typechecking);
       if (doubleCheck && numWithErrors == 0) {
-        System.out.println();
-        System.out.println("--- Checking " + library.getName() + " ---");
-        time = System.currentTimeMillis();
-
-        CoreModuleChecker checker = new CoreModuleChecker(myErrorReporter, myTypecheckerState);
-        for (ModulePath module : library.getLoadedModules()) {
-          Group group = library.getModuleGroup(module);
-          if (group != null) {
-            checker.checkGroup(group);
-          }
-        }
-
-        time = System.currentTimeMillis() - time;
-        flushErrors();
-        System.out.println("--- Done (" + timeToString(time) + ") ---");
+        doubleCheck(library, library.getLoadedModules(), threads);
       }
     }
 
@@ -363,18 +515,18 @@ public abstract class BaseCliFrontend {
           continue;
         }
 
-        System.out.println("[INFO] Loading tests for " + library.getName());
+        myOut.println("[INFO] Loading tests for " + library.getName());
         long time = System.currentTimeMillis();
         boolean loaded = library.loadTests(myLibraryManager);
         time = System.currentTimeMillis() - time;
         if (!loaded) {
-          System.out.println("[INFO] Failed loading tests for " + library.getName());
+          myOut.println("[INFO] Failed loading tests for " + library.getName());
           continue;
         }
-        System.out.println("[INFO] Loaded tests for " + library.getName() + " (" + timeToString(time) + ")");
+        myOut.println("[INFO] Loaded tests for " + library.getName() + " (" + timeToString(time) + ")");
 
-        System.out.println();
-        System.out.println("--- Running tests in " + library.getName() + " ---");
+        myOut.println();
+        myOut.println("--- Running tests in " + library.getName() + " ---");
         typechecking.clear();
         time = System.currentTimeMillis();
 
@@ -388,28 +540,205 @@ public abstract class BaseCliFrontend {
             }
           }
           if (doCheck) {
-            CoreModuleChecker checker = new CoreModuleChecker(myErrorReporter, myTypecheckerState);
-            for (ModulePath module : modules) {
-              Group group = library.getModuleGroup(module);
-              if (group != null) {
-                checker.checkGroup(group);
-              }
-            }
+            new CoreModuleChecker(myErrorReporter, myTypecheckerState).checkGroups(getModuleGroups(library, modules), threads);
           }
         }
 
         time = System.currentTimeMillis() - time;
         flushErrors();
-        System.out.println("Tests completed: " + typechecking.total + ", Failed: " + typechecking.failed);
-        System.out.println("--- Done (" + timeToString(time) + ") ---");
+        myOut.println("Tests completed: " + typechecking.total + ", Failed: " + typechecking.failed);
+        myOut.println("--- Done (" + timeToString(time) + ") ---");
       }
     }
 
+    if (myProfiler != null) {
+      writeProfile(cmdLine.getOptionValue("profile-output"));
+    }
+
+    if (cmdLine.hasOption("w")) {
+      watch(requestedLibraries, typechecking);
+    }
+
     return cmdLine;
   }
 
-  private void flushErrors() {
-    for (GeneralError error : myErrorReporter.getErrorList()) {
+  private void watch(List<UnmodifiableSourceLibrary> libraries, MyTypechecking typechecking) {
+    try (LibraryWatcher watcher = new LibraryWatcher()) {
+      for (UnmodifiableSourceLibrary library : libraries) {
+        if (library instanceof FileSourceLibrary && myLibraryManager.getRegisteredLibraries().contains(library)) {
+          watcher.register((FileSourceLibrary) library);
+        }
+      }
+
+      while (true) {
+        myOut.println();
+        myOut.println("[INFO] Watching for changes");
+        for (Map.Entry<FileSourceLibrary, Set<ModulePath>> entry : watcher.waitForChanges(WATCH_DELAY).entrySet()) {
+          FileSourceLibrary library = entry.getKey();
+          myModuleResults.clear();
+          Set<ModulePath> reloaded = reloadModules(library, entry.getValue());
+          typecheckUpdatedModules(library, reloaded, typechecking);
+
+          // Reloading may also reset definitions of libraries that depend on this one
+          for (Library registered : myLibraryManager.getRegisteredLibraries()) {
+            if (registered != library && registered instanceof UnmodifiableSourceLibrary && !((UnmodifiableSourceLibrary) registered).getUpdatedModules().isEmpty()) {
+              UnmodifiableSourceLibrary dependent = (UnmodifiableSourceLibrary) registered;
+              myModuleResults.clear();
+              typecheckUpdatedModules(dependent, new ArrayList<>(dependent.getUpdatedModules()), typechecking);
+            }
+          }
+        }
+      }
+    } catch (IOException e) {
+      myErr.println("[ERROR] " + e.getMessage());
+      myExitWithError = true;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  /**
+   * Reloads changed modules of a library together with modules that depend on them.
+   * Reloaded modules are marked as updated, so they are typechecked when their libraries are typechecked.
+   *
+   * @return the set of reloaded modules of the library.
+   */
+  public Set<ModulePath> reloadModules(UnmodifiableSourceLibrary library, Collection<? extends ModulePath> modules) {
+    library.clearUpdateModules();
+    Set<ModulePath> reloaded = library.reloadModules(modules, myTypecheckerState, myLibraryManager);
+    flushErrors();
+    myOut.println("[INFO] Reloaded " + reloaded.size() + " module" + (reloaded.size() == 1 ? "" : "s") + " of library " + library.getName());
+    return reloaded;
+  }
+
+  private int typecheckUpdatedModules(UnmodifiableSourceLibrary library, Collection<? extends ModulePath> modules, MyTypechecking typechecking) {
+    myOut.println();
+    myOut.println("--- Typechecking " + library.getName() + " ---");
+    long time = System.currentTimeMillis();
+    typechecking.typecheckLibrary(library);
+    time = System.currentTimeMillis() - time;
+    flushErrors();
+
+    // Output nice per-module typechecking results
+    int numWithErrors = 0;
+    int numWithGoals = 0;
+    for (ModulePath module : modules) {
+      GeneralError.Level result = myModuleResults.get(module);
+      if (result == null && library.getModuleGroup(module) == null) {
+        result = GeneralError.Level.ERROR;
+      }
+      reportTypeCheckResult(module, result);
+      if (result == GeneralError.Level.ERROR) numWithErrors++;
+      if (result == GeneralError.Level.GOAL) numWithGoals++;
+    }
+
+    if (numWithErrors > 0) {
+      myExitWithError = true;
+      myOut.println("Number of modules with errors: " + numWithErrors);
+    }
+    if (numWithGoals > 0) {
+      myOut.println("Number of modules with goals: " + numWithGoals);
+    }
+    myOut.println("--- Done (" + timeToString(time) + ") ---");
+    WhnfCache whnfCache = typechecking.getWhnfCache();
+    if (whnfCache.getMaximumSize() > 0) {
+      myOut.println("[INFO] WHNF cache: " + whnfCache.getHits() + " hits, " + whnfCache.getMisses() + " misses");
+    }
+    ConversionCache conversionCache = typechecking.getConversionCache();
+    if (conversionCache.getMaximumSize() > 0) {
+      myOut.println("[INFO] Conversion cache: " + conversionCache.getHits() + " hits, " + conversionCache.getMisses() + " misses");
+    }
+    InstanceProviderSet instanceProviders = myLibraryManager.getInstanceProviderSet();
+    long instanceHits = instanceProviders.getCacheHits(), instanceMisses = instanceProviders.getCacheMisses();
+    if (instanceHits + instanceMisses > 0) {
+      myOut.println("[INFO] Instance cache: " + instanceHits + " hits, " + instanceMisses + " misses");
+    }
+
+    // Persist updated modules
+    if (library.supportsPersisting()) {
+      library.persistUpdatedModules(mySystemErrErrorReporter);
+    }
+    library.clearUpdateModules();
+    return numWithErrors;
+  }
+
+  private boolean runDaemon(String portStr) {
+    CompilerDaemon daemon = new CompilerDaemon(this);
+    try {
+      if (portStr == null) {
+        daemon.serve(System.in, myOut);
+      } else {
+        int port;
+        try {
+          port = Integer.parseInt(portStr);
+        } catch (NumberFormatException e) {
+          port = -1;
+        }
+        if (port < 0 || port > 65535) {
+          myErr.println("[ERROR] " + portStr + " is not a valid port");
+          myExitWithError = true;
+          return false;
+        }
+        daemon.serve(port);
+      }
+    } catch (IOException e) {
+      myErr.println("[ERROR] " + e.getMessage());
+      myExitWithError = true;
+      return false;
+    }
+    myExitWithError = false;
+    return true;
+  }
+
+  private void writeProfile(String file) {
+    myOut.println();
+    myProfiler.printSummary(myOut, 20);
+    if (file == null) {
+      return;
+    }
+
+    try (Writer writer = Files.newBufferedWriter(Paths.get(file))) {
+      if (file.endsWith(".csv")) {
+        myProfiler.writeCsv(writer);
+      } else {
+        myProfiler.writeJson(writer);
+      }
+      myOut.println("[INFO] Profile written to " + file);
+    } catch (IOException e) {
+      myErr.println("[ERROR] Cannot write profile to " + file + ": " + e.getMessage());
+      myExitWithError = true;
+    }
+  }
+
+  private static List<Group> getModuleGroups(UnmodifiableSourceLibrary library, Collection<? extends ModulePath> modules) {
+    List<Group> groups = new ArrayList<>(modules.size());
+    for (ModulePath module : modules) {
+      Group group = library.getModuleGroup(module);
+      if (group != null) {
+        groups.add(group);
+      }
+    }
+    return groups;
+  }
+
+  private void doubleCheck(UnmodifiableSourceLibrary library, Collection<? extends ModulePath> modules, int threads) {
+    myOut.println();
+    myOut.println("--- Checking " + library.getName() + " ---");
+    long time = System.currentTimeMillis();
+    new CoreModuleChecker(myErrorReporter, myTypecheckerState).checkGroups(getModuleGroups(library, modules), threads);
+    time = System.currentTimeMillis() - time;
+    flushErrors();
+    myOut.println("--- Done (" + timeToString(time) + ") ---");
+  }
+
+  private synchronized void flushErrors() {
+    List<GeneralError> errorList;
+    synchronized (myErrorReporter.getErrorList()) {
+      errorList = new ArrayList<>(myErrorReporter.getErrorList());
+      myErrorReporter.getErrorList().clear();
+    }
+
+    for (GeneralError error : errorList) {
       error.forAffectedDefinitions((referable, err) -> {
         if (referable instanceof LocatedReferable) {
           updateSourceResult(((LocatedReferable) referable).getLocation(), err.level);
@@ -427,13 +756,12 @@ public abstract class BaseCliFrontend {
       String errorText = error.getDoc(ppConfig).toString();
 
       if (error.isSevere()) {
-        System.err.println(errorText);
-        System.err.flush();
+        myErr.println(errorText);
+        myErr.flush();
       } else {
-        System.out.println(errorText);
+        myOut.println(errorText);
       }
     }
-    myErrorReporter.getErrorList().clear();
   }
 
   private void updateSourceResult(ModuleLocation moduleLocation, GeneralError.Level result) {
@@ -449,7 +777,7 @@ public abstract class BaseCliFrontend {
   }
 
   private void reportTypeCheckResult(ModulePath modulePath, GeneralError.Level result) {
-    System.out.println("[" + resultChar(result) + "]" + " " + modulePath);
+    myOut.println("[" + resultChar(result) + "]" + " " + modulePath);
   }
 
   private static char resultChar(GeneralError.Level result) {
@@ -0,0 +1,252 @@
+package org.arend.frontend;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.DefaultParser;
+import org.apache.commons.cli.ParseException;
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.library.Library;
+import org.arend.util.FileUtils;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Keeps a frontend together with its libraries and typechecker state resident and handles check requests.
+ * <p>
+ * Requests are read line by line either from the standard input or from connections to a socket bound to the loopback address.
+ * A request is a list of command line arguments separated by spaces; double quotes can be used to group arguments with spaces.
+ * The output of a request is followed by a line {@code [DONE] OK} or {@code [DONE] FAILED}.
+ * The request {@code shutdown} stops the daemon.
+ * <p>
+ * The first line of each connection to the socket must be the token which the daemon prints when it starts; other connections are closed.
+ * Requests cannot use options that choose where files are written or which extensions are loaded (see {@link #REJECTED_OPTIONS}).
+ * <p>
+ * Before each request, modules of loaded libraries whose source files were added, removed, or modified are reloaded together with modules that depend on them.
+ * Other modules remain loaded and typechecked, and reloaded modules are typechecked when their libraries are requested.
+ */
+public class CompilerDaemon {
+  public static final String SHUTDOWN = "shutdown";
+  public static final String OK = "[DONE] OK";
+  public static final String FAILED = "[DONE] FAILED";
+  public static final String INVALID_TOKEN = "[ERROR] Invalid token";
+  public static final List<String> REJECTED_OPTIONS = Arrays.asList("daemon", "port", "watch", "binaries", "extensions", "extension-main", "profile-output");
+
+  private final BaseCliFrontend myFrontend;
+  private final Map<FileSourceLibrary, Map<Path, Long>> mySnapshots = new HashMap<>();
+
+  public CompilerDaemon(BaseCliFrontend frontend) {
+    myFrontend = frontend;
+  }
+
+  /**
+   * Handles requests from the standard input until it is closed or the shutdown request is received.
+   */
+  public void serve(InputStream input, PrintStream output) throws IOException {
+    handleRequests(new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8)), output);
+  }
+
+  /**
+   * Handles requests from connections to a local socket until the shutdown request is received.
+   * A new token is generated and printed to the standard output.
+   */
+  public void serve(int port) throws IOException {
+    byte[] bytes = new byte[32];
+    new SecureRandom().nextBytes(bytes);
+    String token = Base64.getUrlEncoder().withoutPadding().encodeToString(bytes);
+    try (ServerSocket serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress())) {
+      System.out.println("[INFO] Listening on " + serverSocket.getLocalSocketAddress());
+      System.out.println("[INFO] Token: " + token);
+      serve(serverSocket, token);
+    }
+  }
+
+  /**
+   * Handles requests from connections to a socket until the shutdown request is received.
+   * Connections are handled one at a time.
+   */
+  public void serve(ServerSocket serverSocket, String token) throws IOException {
+    byte[] tokenBytes = token.getBytes(StandardCharsets.UTF_8);
+    while (true) {
+      try (Socket socket = serverSocket.accept()) {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        PrintStream output = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        String line = reader.readLine();
+        if (line == null || !MessageDigest.isEqual(line.trim().getBytes(StandardCharsets.UTF_8), tokenBytes)) {
+          output.println(INVALID_TOKEN);
+          continue;
+        }
+        if (!handleRequests(reader, output)) {
+          return;
+        }
+      } catch (IOException e) {
+        System.err.println("[ERROR] " + e.getMessage());
+      }
+    }
+  }
+
+  /**
+   * @return false if the shutdown request was received, true otherwise.
+   */
+  private boolean handleRequests(BufferedReader reader, PrintStream output) throws IOException {
+    String line;
+    while ((line = reader.readLine()) != null) {
+      line = line.trim();
+      if (line.isEmpty()) {
+        continue;
+      }
+      if (line.equals(SHUTDOWN)) {
+        output.println(OK);
+        return false;
+      }
+
+      PrintStream out = myFrontend.getOutput();
+      PrintStream err = myFrontend.getErrorOutput();
+      myFrontend.setOutput(output, output);
+      boolean ok;
+      try {
+        ok = handleRequest(splitArguments(line), output);
+      } catch (Throwable e) {
+        e.printStackTrace(output);
+        ok = false;
+      } finally {
+        myFrontend.setOutput(out, err);
+      }
+      output.println(ok ? OK : FAILED);
+      output.flush();
+    }
+    return true;
+  }
+
+  private boolean handleRequest(List<String> args, PrintStream output) {
+    String[] argArray = args.toArray(new String[0]);
+    CommandLine cmdLine;
+    try {
+      cmdLine = new DefaultParser().parse(myFrontend.getCommandOptions(), argArray);
+    } catch (ParseException e) {
+      output.println(e.getMessage());
+      return false;
+    }
+    for (String option : REJECTED_OPTIONS) {
+      if (cmdLine.hasOption(option)) {
+        output.println("[ERROR] Option --" + option + " cannot be used in daemon requests");
+        return false;
+      }
+    }
+
+    reloadChangedModules();
+    boolean ok = myFrontend.run(argArray) != null && !myFrontend.isExitWithError();
+
+    for (Library library : myFrontend.getLibraryManager().getRegisteredLibraries()) {
+      if (library instanceof FileSourceLibrary && library != myFrontend.getDefaultLibrary() && !mySnapshots.containsKey(library)) {
+        Map<Path, Long> snapshot = takeSnapshot((FileSourceLibrary) library);
+        if (snapshot != null) {
+          mySnapshots.put((FileSourceLibrary) library, snapshot);
+        }
+      }
+    }
+    return ok;
+  }
+
+  private void reloadChangedModules() {
+    mySnapshots.keySet().retainAll(myFrontend.getLibraryManager().getRegisteredLibraries());
+    for (Iterator<Map.Entry<FileSourceLibrary, Map<Path, Long>>> it = mySnapshots.entrySet().iterator(); it.hasNext(); ) {
+      Map.Entry<FileSourceLibrary, Map<Path, Long>> entry = it.next();
+      FileSourceLibrary library = entry.getKey();
+      Map<Path, Long> snapshot = takeSnapshot(library);
+      Set<ModulePath> changed = new LinkedHashSet<>();
+      if (snapshot == null) {
+        changed.addAll(library.getLoadedModules());
+        it.remove();
+      } else {
+        Set<Path> paths = new HashSet<>(snapshot.keySet());
+        paths.addAll(entry.getValue().keySet());
+        for (Path path : paths) {
+          if (!Objects.equals(snapshot.get(path), entry.getValue().get(path))) {
+            ModulePath module = getModulePath(library, path);
+            if (module != null) {
+              changed.add(module);
+            }
+          }
+        }
+        entry.setValue(snapshot);
+      }
+
+      if (!changed.isEmpty()) {
+        myFrontend.reloadModules(library, changed);
+      }
+    }
+  }
+
+  private static Path[] getBasePaths(FileSourceLibrary library) {
+    return new Path[] { library.getSourceBasePath(), library.getTestBasePath() };
+  }
+
+  private static ModulePath getModulePath(FileSourceLibrary library, Path path) {
+    for (Path basePath : getBasePaths(library)) {
+      if (basePath != null && path.startsWith(basePath)) {
+        return FileUtils.modulePath(basePath.relativize(path), FileUtils.EXTENSION);
+      }
+    }
+    return null;
+  }
+
+  /**
+   * @return modification times of source files of the library or null if they cannot be read.
+   */
+  private static Map<Path, Long> takeSnapshot(FileSourceLibrary library) {
+    Map<Path, Long> snapshot = new HashMap<>();
+    for (Path basePath : getBasePaths(library)) {
+      if (basePath == null || !Files.isDirectory(basePath)) {
+        continue;
+      }
+      try (Stream<Path> stream = Files.walk(basePath)) {
+        for (Iterator<Path> it = stream.iterator(); it.hasNext(); ) {
+          Path path = it.next();
+          if (path.toString().endsWith(FileUtils.EXTENSION) && Files.isRegularFile(path)) {
+            snapshot.put(path, Files.getLastModifiedTime(path).toMillis());
+          }
+        }
+      } catch (IOException | UncheckedIOException e) {
+        return null;
+      }
+    }
+    return snapshot;
+  }
+
+  public static List<String> splitArguments(String line) {
+    List<String> args = new ArrayList<>();
+    StringBuilder builder = new StringBuilder();
+    boolean quoted = false;
+    boolean hasArg = false;
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '"') {
+        quoted = !quoted;
+        hasArg = true;
+      } else if (!quoted && Character.isWhitespace(c)) {
+        if (hasArg) {
+          args.add(builder.toString());
+          builder.setLength(0);
+          hasArg = false;
+        }
+      } else {
+        builder.append(c);
+        hasArg = true;
+      }
+    }
+    if (hasArg) {
+      args.add(builder.toString());
+    }
+    return args;
+  }
+}
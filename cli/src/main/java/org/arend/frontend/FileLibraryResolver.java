@@ -64,7 +64,9 @@ public class FileLibraryResolver implements LibraryResolver {
   }
 
   public void addLibraryDirectory(Path libDir) {
-    myLibDirs.add(libDir);
+    if (!myLibDirs.contains(libDir)) {
+      myLibDirs.add(libDir);
+    }
   }
 
   public void addLibraryDirectories(Collection<? extends Path> libDirs) {
@@ -0,0 +1,124 @@
+package org.arend.frontend;
+
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.library.FileSourceLibrary;
+import org.arend.util.FileUtils;
+import org.arend.util.Pair;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static java.nio.file.StandardWatchEventKinds.*;
+
+/**
+ * Watches source and test directories of libraries and collects modules whose source files were created, modified, or deleted.
+ */
+public class LibraryWatcher implements AutoCloseable {
+  private final WatchService myWatchService;
+  private final Map<WatchKey, Pair<FileSourceLibrary, Path>> myKeys = new HashMap<>();
+
+  public LibraryWatcher() throws IOException {
+    myWatchService = FileSystems.getDefault().newWatchService();
+  }
+
+  /**
+   * Registers the source and test directories of a library and all their subdirectories.
+   */
+  public void register(FileSourceLibrary library) throws IOException {
+    register(library, library.getSourceBasePath());
+    register(library, library.getTestBasePath());
+  }
+
+  private void register(FileSourceLibrary library, Path basePath) throws IOException {
+    if (basePath != null && Files.isDirectory(basePath)) {
+      register(library, basePath, basePath, null);
+    }
+  }
+
+  private void register(FileSourceLibrary library, Path basePath, Path dir, Set<ModulePath> modules) throws IOException {
+    try (Stream<Path> stream = Files.walk(dir)) {
+      for (Iterator<Path> it = stream.iterator(); it.hasNext(); ) {
+        Path path = it.next();
+        if (Files.isDirectory(path)) {
+          myKeys.put(path.register(myWatchService, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY), new Pair<>(library, basePath));
+        } else if (modules != null) {
+          ModulePath module = FileUtils.modulePath(basePath.relativize(path), FileUtils.EXTENSION);
+          if (module != null) {
+            modules.add(module);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Waits until some source files change.
+   * After the first change, it waits until there are no changes for {@code delay} milliseconds, so that a series of writes is handled at once.
+   *
+   * @return changed modules of each library.
+   */
+  public Map<FileSourceLibrary, Set<ModulePath>> waitForChanges(long delay) throws InterruptedException {
+    Map<FileSourceLibrary, Set<ModulePath>> result = new LinkedHashMap<>();
+    while (result.isEmpty()) {
+      WatchKey key = myWatchService.take();
+      while (key != null) {
+        Pair<FileSourceLibrary, Path> pair = myKeys.get(key);
+        if (pair != null) {
+          processEvents(key, pair.proj1, pair.proj2, result);
+        }
+        if (!key.reset()) {
+          myKeys.remove(key);
+        }
+        key = myWatchService.poll(delay, TimeUnit.MILLISECONDS);
+      }
+    }
+    return result;
+  }
+
+  private void processEvents(WatchKey key, FileSourceLibrary library, Path basePath, Map<FileSourceLibrary, Set<ModulePath>> result) {
+    Set<ModulePath> modules = result.computeIfAbsent(library, k -> new LinkedHashSet<>());
+    Path dir = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      if (event.kind() == OVERFLOW) {
+        modules.addAll(library.getLoadedModules());
+        continue;
+      }
+
+      Path path = dir.resolve((Path) event.context());
+      if (path.toString().endsWith(FileUtils.EXTENSION)) {
+        ModulePath module = FileUtils.modulePath(basePath.relativize(path), FileUtils.EXTENSION);
+        if (module != null) {
+          modules.add(module);
+        }
+      } else if (event.kind() == ENTRY_CREATE && Files.isDirectory(path)) {
+        try {
+          register(library, basePath, path, modules);
+        } catch (IOException e) {
+          System.err.println("[ERROR] Cannot watch " + path + ": " + e.getMessage());
+        }
+      } else if (event.kind() == ENTRY_DELETE) {
+        ModulePath prefix = FileUtils.modulePath(basePath.relativize(path), null);
+        if (prefix != null) {
+          List<String> prefixList = prefix.toList();
+          for (ModulePath module : library.getLoadedModules()) {
+            List<String> moduleList = module.toList();
+            if (moduleList.size() > prefixList.size() && moduleList.subList(0, prefixList.size()).equals(prefixList)) {
+              modules.add(module);
+            }
+          }
+        }
+      }
+    }
+    if (modules.isEmpty()) {
+      result.remove(library);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    myWatchService.close();
+  }
+}
@@ -87,7 +87,11 @@ public class FileSourceLibrary extends UnmodifiableSourceLibrary {
   @Nullable
   @Override
   public BinarySource getBinarySource(ModulePath modulePath) {
-    return myBinaryBasePath == null ? null : new GZIPStreamBinarySource(new FileBinarySource(myBinaryBasePath, modulePath));
+    if (myBinaryBasePath == null) {
+      return null;
+    }
+    FileBinarySource source = new FileBinarySource(myBinaryBasePath, modulePath);
+    return hasFlag(Flag.UNCOMPRESSED_BINARIES) ? source : new GZIPStreamBinarySource(source);
   }
 
   @Override
@@ -1,9 +1,12 @@
 package org.arend.frontend.source;
 
 import org.antlr.v4.runtime.*;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.arend.error.CompositeErrorReporter;
 import org.arend.error.CountingErrorReporter;
 import org.arend.ext.error.ErrorReporter;
+import org.arend.ext.error.ListErrorReporter;
 import org.arend.ext.module.ModulePath;
 import org.arend.frontend.ConcreteReferableProvider;
 import org.arend.frontend.parser.*;
@@ -17,7 +20,9 @@ import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.term.NamespaceCommand;
 import org.arend.term.group.FileGroup;
+import org.arend.util.ContentHash;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -30,6 +35,9 @@ public abstract class StreamRawSource implements Source {
   private final boolean myInTests;
   private FileGroup myGroup;
   private byte myPass = 0;
+  private FileGroup myPreparedGroup;
+  private ListErrorReporter myPreparedErrors;
+  private IOException myPreparedException;
 
   protected StreamRawSource(ModulePath modulePath, boolean inTests) {
     myModulePath = modulePath;
@@ -50,36 +58,99 @@ public abstract class StreamRawSource implements Source {
   @NotNull
   protected abstract InputStream getInputStream() throws IOException;
 
+  @Nullable
   @Override
-  public boolean preload(SourceLoader sourceLoader) {
-    SourceLibrary library = sourceLoader.getLibrary();
+  public byte[] getContentHash() {
+    try (InputStream stream = getInputStream()) {
+      return ContentHash.of(stream);
+    } catch (IOException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Parses the source and builds its group.
+   * The parser first uses the SLL prediction mode which is faster but may fail on some inputs.
+   * In this case, the source is parsed again in the LL mode, which reports syntax errors.
+   *
+   * @return the group of the module or null if there were syntax errors.
+   */
+  @Nullable
+  private FileGroup parse(SourceLibrary library, ErrorReporter errorReporter) throws IOException {
     ModulePath modulePath = getModulePath();
-    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
     CountingErrorReporter countingErrorReporter = new CountingErrorReporter();
     final CompositeErrorReporter compositeErrorReporter = new CompositeErrorReporter(errorReporter, countingErrorReporter);
 
-    try {
-      BaseErrorListener errorListener = new BaseErrorListener() {
-        @Override
-        public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
-          compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
-        }
-      };
+    BaseErrorListener errorListener = new BaseErrorListener() {
+      @Override
+      public void syntaxError(Recognizer<?, ?> recognizer, Object o, int line, int pos, String msg, RecognitionException e) {
+        compositeErrorReporter.report(new ParserError(new Position(modulePath, line, pos), msg));
+      }
+    };
 
-      ArendLexer lexer = new ArendLexer(CharStreams.fromStream(getInputStream()));
-      lexer.removeErrorListeners();
-      lexer.addErrorListener(errorListener);
+    ArendLexer lexer = new ArendLexer(CharStreams.fromStream(getInputStream()));
+    lexer.removeErrorListeners();
+    lexer.addErrorListener(errorListener);
 
-      ArendParser parser = new ArendParser(new CommonTokenStream(lexer));
-      parser.removeErrorListeners();
+    CommonTokenStream tokenStream = new CommonTokenStream(lexer);
+    ArendParser parser = new ArendParser(tokenStream);
+    parser.removeErrorListeners();
+    parser.setErrorHandler(new BailErrorStrategy());
+    parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+
+    ArendParser.StatementsContext tree;
+    try {
+      tree = parser.statements();
+    } catch (ParseCancellationException e) {
+      tokenStream.seek(0);
+      parser.reset();
       parser.addErrorListener(errorListener);
+      parser.setErrorHandler(new DefaultErrorStrategy());
+      parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+      tree = parser.statements();
+    }
+    if (countingErrorReporter.getErrorsNumber() > 0) {
+      return null;
+    }
 
-      ArendParser.StatementsContext tree = parser.statements();
-      if (countingErrorReporter.getErrorsNumber() > 0) {
+    return new BuildVisitor(new ModuleLocation(library.getName(), myInTests ? ModuleLocation.LocationKind.TEST : ModuleLocation.LocationKind.SOURCE, modulePath), errorReporter).visitStatements(tree);
+  }
+
+  @Override
+  public void prepare(SourceLoader sourceLoader) {
+    ListErrorReporter errorReporter = new ListErrorReporter();
+    try {
+      myPreparedGroup = parse(sourceLoader.getLibrary(), errorReporter);
+    } catch (IOException e) {
+      myPreparedException = e;
+    }
+    myPreparedErrors = errorReporter;
+  }
+
+  @Override
+  public boolean preload(SourceLoader sourceLoader) {
+    SourceLibrary library = sourceLoader.getLibrary();
+    ModulePath modulePath = getModulePath();
+    ErrorReporter errorReporter = sourceLoader.getTypecheckingErrorReporter();
+
+    try {
+      if (myPreparedErrors != null) {
+        myPreparedErrors.reportTo(errorReporter);
+        myGroup = myPreparedGroup;
+        IOException exception = myPreparedException;
+        myPreparedErrors = null;
+        myPreparedGroup = null;
+        myPreparedException = null;
+        if (exception != null) {
+          throw exception;
+        }
+      } else {
+        myGroup = parse(library, errorReporter);
+      }
+      if (myGroup == null) {
         return false;
       }
 
-      myGroup = new BuildVisitor(new ModuleLocation(library.getName(), myInTests ? ModuleLocation.LocationKind.TEST : ModuleLocation.LocationKind.SOURCE, modulePath), errorReporter).visitStatements(tree);
       library.onGroupLoaded(modulePath, myGroup, true);
 
       for (NamespaceCommand command : myGroup.getNamespaceCommands()) {
@@ -18,7 +18,7 @@ import org.arend.naming.scope.Scope;
 import org.arend.prelude.Prelude;
 import org.arend.prelude.PreludeLibrary;
 import org.arend.term.prettyprint.PrettyPrinterConfigWithRenamer;
-import org.arend.typechecking.SimpleTypecheckerState;
+import org.arend.typechecking.ConcurrentTypecheckerState;
 import org.arend.typechecking.TypecheckerState;
 import org.arend.typechecking.instance.provider.InstanceProviderSet;
 import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
@@ -31,6 +31,7 @@ import org.junit.Before;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.List;
 
 import static org.arend.ext.prettyprinting.doc.DocFactory.text;
@@ -42,18 +43,22 @@ public abstract class ArendTestCase {
   protected Library preludeLibrary;
   protected ModuleScopeProvider moduleScopeProvider;
 
-  protected final TypecheckerState typecheckerState = new SimpleTypecheckerState();
-  protected final List<GeneralError> errorList = new ArrayList<>();
+  protected final TypecheckerState typecheckerState = new ConcurrentTypecheckerState();
+  protected final List<GeneralError> errorList = Collections.synchronizedList(new ArrayList<>());
   protected final ListErrorReporter errorReporter = new ListErrorReporter(errorList);
   protected final TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, PositionComparator.INSTANCE, ref -> null);
 
   @Before
   public void loadPrelude() {
+    loadPrelude(typecheckerState);
+  }
+
+  protected void loadPrelude(TypecheckerState state) {
     libraryManager = new LibraryManager((lib,name) -> { throw new IllegalStateException(); }, new InstanceProviderSet(), errorReporter, errorReporter, DefinitionRequester.INSTANCE);
-    preludeLibrary = new PreludeFileLibrary(null, typecheckerState);
+    preludeLibrary = new PreludeFileLibrary(null, state);
     moduleScopeProvider = preludeLibrary.getModuleScopeProvider();
     libraryManager.loadLibrary(preludeLibrary, null);
-    new Prelude.PreludeTypechecking(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, PositionComparator.INSTANCE).typecheckLibrary(preludeLibrary);
+    new Prelude.PreludeTypechecking(new InstanceProviderSet(), state, ConcreteReferableProvider.INSTANCE, PositionComparator.INSTANCE).typecheckLibrary(preludeLibrary);
     errorList.clear();
   }
 
@@ -0,0 +1,115 @@
+package org.arend.frontend;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.not;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class CompilerDaemonTest {
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void splitArguments() {
+    assertEquals(Arrays.asList("-L", "libs", "Main.ard"), CompilerDaemon.splitArguments("  -L libs\tMain.ard "));
+  }
+
+  @Test
+  public void quotedArguments() {
+    assertEquals(Arrays.asList("-s", "my sources", "", "A"), CompilerDaemon.splitArguments("-s \"my sources\" \"\" A"));
+  }
+
+  @Test
+  public void emptyRequest() {
+    assertEquals(Collections.emptyList(), CompilerDaemon.splitArguments("   "));
+  }
+
+  private static String serve(CompilerDaemon daemon, String requests) throws IOException {
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    daemon.serve(new ByteArrayInputStream(requests.getBytes(StandardCharsets.UTF_8)), new PrintStream(output, true, StandardCharsets.UTF_8));
+    return output.toString(StandardCharsets.UTF_8);
+  }
+
+  @Test
+  public void rejectedOptions() throws IOException {
+    CompilerDaemon daemon = new CompilerDaemon(new ConsoleMain());
+    assertThat(serve(daemon, "--profile-output /tmp/profile.json A\n"), containsString("--profile-output"));
+    assertThat(serve(daemon, "-b /tmp A\n"), containsString("--binaries"));
+    assertThat(serve(daemon, "--extensions=/tmp A\n"), containsString("--extensions"));
+    assertTrue(serve(daemon, "--watch\n").endsWith(CompilerDaemon.FAILED + System.lineSeparator()));
+  }
+
+  @Test
+  public void invalidToken() throws Exception {
+    CompilerDaemon daemon = new CompilerDaemon(new ConsoleMain());
+    try (ServerSocket serverSocket = new ServerSocket(0, 0, InetAddress.getLoopbackAddress())) {
+      CompletableFuture<Void> server = CompletableFuture.runAsync(() -> {
+        try {
+          daemon.serve(serverSocket, "secret");
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+
+      try (Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort())) {
+        PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out.println("guess");
+        out.println(CompilerDaemon.SHUTDOWN);
+        assertEquals(CompilerDaemon.INVALID_TOKEN, in.readLine());
+      }
+
+      try (Socket socket = new Socket(serverSocket.getInetAddress(), serverSocket.getLocalPort())) {
+        PrintStream out = new PrintStream(socket.getOutputStream(), true, StandardCharsets.UTF_8);
+        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+        out.println("secret");
+        out.println(CompilerDaemon.SHUTDOWN);
+        assertEquals(CompilerDaemon.OK, in.readLine());
+      }
+      server.get(10, TimeUnit.SECONDS);
+    }
+  }
+
+  @Test
+  public void warmRequests() throws IOException {
+    Path libDir = folder.newFolder("daemonLib").toPath();
+    Path sourceDir = Files.createDirectories(libDir.resolve("src"));
+    Files.writeString(libDir.resolve("arend.yaml"), "sourcesDir: src\nbinariesDir: bin\n");
+    Path moduleA = Files.writeString(sourceDir.resolve("A.ard"), "\\func f => 0\n");
+    Files.writeString(sourceDir.resolve("B.ard"), "\\import A\n\\func g => f\n");
+    String request = "\"" + libDir.resolve("arend.yaml") + "\"\n";
+
+    CompilerDaemon daemon = new CompilerDaemon(new ConsoleMain());
+    String first = serve(daemon, request);
+    assertThat(first, containsString("Loading library daemonLib"));
+    assertTrue(first.endsWith(CompilerDaemon.OK + System.lineSeparator()));
+
+    FileTime time = Files.getLastModifiedTime(moduleA);
+    Files.writeString(moduleA, "\\func f => unknown\n");
+    Files.setLastModifiedTime(moduleA, FileTime.fromMillis(time.toMillis() + 2000));
+
+    String second = serve(daemon, request);
+    assertThat(second, not(containsString("Loading library daemonLib")));
+    assertThat(second, containsString("Reloaded 2 modules of library daemonLib"));
+    assertThat(second, containsString("unknown"));
+    assertTrue(second.endsWith(CompilerDaemon.FAILED + System.lineSeparator()));
+  }
+}
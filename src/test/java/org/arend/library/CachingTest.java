@@ -1,11 +1,19 @@
 package org.arend.library;
 
 import org.arend.core.definition.Definition;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.IntegerExpression;
+import org.arend.core.expr.type.Type;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.ext.core.ops.CMP;
+import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.ext.module.ModulePath;
 import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.source.Source;
 import org.arend.term.group.ChildGroup;
 import org.arend.term.group.Group;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
 import org.junit.Test;
 
 import java.util.ArrayList;
@@ -121,12 +129,26 @@ public class CachingTest extends LibraryTestCase {
     library.persistUpdatedModules(errorReporter);
     libraryManager.unloadLibrary(library);
 
+    library.updateModule(new ModulePath("A"), "\\data D\n", true);
+    libraryManager.loadLibrary(library, null);
+    assertThat(library.getUpdatedModules(), is(empty()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "D")), is(notNullValue()));
+  }
+
+  @Test
+  public void sourceChangedWithoutTimeStamp() {
+    library.addModule(new ModulePath("A"), "\\data D\n");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    libraryManager.unloadLibrary(library);
+
     library.updateModule(new ModulePath("A"), "\\func f => 0", false);
     libraryManager.loadLibrary(library, null);
     typechecking.typecheckLibrary(library);
     library.persistUpdatedModules(errorReporter);
-    assertThat(get(library.getModuleScopeProvider().forModule(new ModulePath("a")), "f"), is(nullValue()));
     assertThat(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "D"), is(nullValue()));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("A")), "f")), is(notNullValue()));
   }
 
   @Test
@@ -163,6 +185,82 @@ public class CachingTest extends LibraryTestCase {
     assertThat(errorList, is(empty()));
   }
 
+  @Test
+  public void dependencyFingerprintChanged() {
+    library.addModule(new ModulePath("A"), "\\func f : Nat => 0\n");
+    library.addModule(new ModulePath("B"), "\\import A \\func g => f\n");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    // Only A is persisted, so the binary of B refers to the old version of A
+    library.updateModule(new ModulePath("A"), "\\func f : Nat => 1\n", false);
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistModule(new ModulePath("A"), IdReferableConverter.INSTANCE, errorReporter);
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("B")));
+  }
+
+  @Test
+  public void dependencyInterfaceUnchanged() {
+    library.addModule(new ModulePath("A"), "\\func f : Nat => 0\n");
+    library.addModule(new ModulePath("B"), "\\import A \\func g => f\n");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    // A is typechecked again, but its fingerprint does not change, so B is loaded from the binary source
+    library.updateModule(new ModulePath("A"), "\\func f : Nat => 0\n\n", true);
+    libraryManager.loadLibrary(library, null);
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("A"), new ModulePath("B")));
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("A")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "g")), is(notNullValue()));
+  }
+
+  @Test
+  public void dependencyInterfaceChanged() {
+    library.addModule(new ModulePath("A"), "\\func f : Nat => 0\n");
+    library.addModule(new ModulePath("B"), "\\import A \\func g => f\n");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    library.updateModule(new ModulePath("A"), "\\func f : Nat => 1\n", true);
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    assertThat(errorList, is(empty()));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(new ModulePath("A"), new ModulePath("B")));
+    assertThat(typecheckerState.getTypechecked(get(library.getModuleScopeProvider().forModule(new ModulePath("B")), "g")), is(notNullValue()));
+  }
+
+  @Test
+  public void persistAsync() {
+    library.addModule(new ModulePath("A"), "\\func f : Nat => 0\n");
+    library.addModule(new ModulePath("B"), "\\import A \\func g => f\n");
+    libraryManager.loadLibrary(library, null);
+    typechecking.typecheckLibrary(library);
+    // B is persisted after A even though it is scheduled first
+    library.persistModuleAsync(new ModulePath("B"));
+    library.persistModuleAsync(new ModulePath("A"));
+    assertTrue(library.persistUpdatedModules(errorReporter));
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    libraryManager.loadLibrary(library, null);
+    assertThat(library.getUpdatedModules(), is(empty()));
+  }
+
   /* These tests does not make sense with the current implementation of libraries.
   @Test
   public void removeRawSource() {
@@ -272,4 +370,59 @@ public class CachingTest extends LibraryTestCase {
     assertThat(sourceB, is(notNullValue()));
     assertTrue(sourceB.isAvailable());
   }
+
+  @Test
+  public void sharedClosedExpressions() {
+    library.addModule(new ModulePath("A"),
+      "\\func f (x : Nat -> Nat) : Nat -> Nat => x\n" +
+      "\\func g (x : Nat -> Nat) : Nat -> Nat => f x\n" +
+      "\\func p (x : 0 = 0) : 0 = 0 => x\n" +
+      "\\func q (x : 0 = 0) : 0 = 0 => p x");
+    assertTrue(libraryManager.loadLibrary(library, null));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    assertTrue(libraryManager.loadLibrary(library, null));
+    ChildGroup aGroup = library.getModuleGroup(new ModulePath("A"));
+    assertThat(aGroup, is(notNullValue()));
+    FunctionDefinition f = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "f"));
+    FunctionDefinition g = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "g"));
+    assertThat(f, is(notNullValue()));
+    assertThat(g, is(notNullValue()));
+    FunctionDefinition p = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "p"));
+    FunctionDefinition q = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "q"));
+    assertThat(p, is(notNullValue()));
+    assertThat(q, is(notNullValue()));
+    assertSame(p.getResultType(), q.getResultType());
+    assertSame(p.getResultType(), p.getParameters().getTypeExpr());
+
+    // Expressions that bind variables are not shared
+    assertNotSame(f.getResultType(), g.getResultType());
+    assertNotSame(f.getResultType(), f.getParameters().getTypeExpr());
+    assertTrue(CompareVisitor.compare(DummyEquations.getInstance(), CMP.EQ, f.getResultType(), g.getResultType(), Type.OMEGA, null));
+  }
+
+  @Test
+  public void lazyBodies() {
+    library.addModule(new ModulePath("A"),
+      "\\func plus (x y : Nat) : Nat \\elim y | 0 => x | suc y => suc (plus x y)\n" +
+      "\\func h => plus 2 3");
+    assertTrue(libraryManager.loadLibrary(library, null));
+    typechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, is(empty()));
+    libraryManager.unloadLibrary(library);
+
+    assertTrue(library.loadsBodiesLazily());
+    assertTrue(libraryManager.loadLibrary(library, null));
+    ChildGroup aGroup = library.getModuleGroup(new ModulePath("A"));
+    assertThat(aGroup, is(notNullValue()));
+    FunctionDefinition h = (FunctionDefinition) typecheckerState.getTypechecked(get(aGroup.getGroupScope(), "h"));
+    assertThat(h, is(notNullValue()));
+    Expression result = ((Expression) h.getBody()).normalize(NormalizationMode.NF);
+    assertThat(result, is(instanceOf(IntegerExpression.class)));
+    assertEquals(5, ((IntegerExpression) result).getSmallInteger());
+  }
 }
@@ -0,0 +1,107 @@
+package org.arend.library;
+
+import org.arend.ArendTestCase;
+import org.arend.ext.module.ModulePath;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.TCReferable;
+import org.arend.naming.reference.converter.IdReferableConverter;
+import org.arend.term.group.ChildGroup;
+import org.arend.typechecking.IncrementalTypecheckerState;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class DependencyGraphTest extends ArendTestCase {
+  private final IncrementalTypecheckerState incrementalState = new IncrementalTypecheckerState();
+  private final MemoryLibrary library = new MemoryLibrary(incrementalState);
+  private final TypecheckingOrderingListener incrementalTypechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), incrementalState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, incrementalState, PositionComparator.INSTANCE, ref -> null);
+  private final ModulePath moduleA = new ModulePath("A");
+
+  @Before
+  @Override
+  public void loadPrelude() {
+    loadPrelude(incrementalState);
+    setModuleScopeProvider(library.getModuleScopeProvider());
+  }
+
+  private ChildGroup load() {
+    assertTrue(libraryManager.loadLibrary(library, null));
+    ChildGroup group = library.getModuleGroup(moduleA);
+    assertThat(group, is(notNullValue()));
+    return group;
+  }
+
+  @Test
+  public void invalidateDependents() {
+    library.addModule(moduleA,
+      "\\func f => 0\n" +
+      "\\func g => f\n" +
+      "\\func h => g\n" +
+      "\\func k => 1");
+    ChildGroup group = load();
+    incrementalTypechecking.typecheckLibrary(library);
+    assertThat(errorList, containsErrors(0));
+
+    TCReferable f = get(group.getGroupScope(), "f");
+    TCReferable g = get(group.getGroupScope(), "g");
+    TCReferable h = get(group.getGroupScope(), "h");
+    TCReferable k = get(group.getGroupScope(), "k");
+    assertThat(incrementalState.getDependents(f), contains(g));
+    assertThat(incrementalState.getDependencies(h), contains(g));
+
+    assertThat(incrementalState.invalidate(f), containsInAnyOrder(f, g, h));
+    assertThat(incrementalState.getTypechecked(f), is(nullValue()));
+    assertThat(incrementalState.getTypechecked(g), is(nullValue()));
+    assertThat(incrementalState.getTypechecked(h), is(nullValue()));
+    assertThat(incrementalState.getTypechecked(k), is(notNullValue()));
+    assertThat(incrementalState.getDependents(f), is(empty()));
+  }
+
+  @Test
+  public void resetKeepsDependents() {
+    library.addModule(moduleA,
+      "\\func f => 0\n" +
+      "\\func g => f");
+    ChildGroup group = load();
+    incrementalTypechecking.typecheckLibrary(library);
+
+    TCReferable f = get(group.getGroupScope(), "f");
+    TCReferable g = get(group.getGroupScope(), "g");
+    incrementalState.reset(g);
+    assertThat(incrementalState.getDependencies(g), is(empty()));
+    assertThat(incrementalState.getDependents(f), is(empty()));
+
+    incrementalTypechecking.typecheckLibrary(library);
+    assertThat(incrementalState.getDependents(f), contains(g));
+  }
+
+  @Test
+  public void dependenciesArePersisted() {
+    library.addModule(moduleA,
+      "\\func f => 0\n" +
+      "\\lemma g : f = 0 => idp\n" +
+      "\\func h => 1");
+    load();
+    incrementalTypechecking.typecheckLibrary(library);
+    library.persistUpdatedModules(errorReporter);
+    assertThat(errorList, containsErrors(0));
+
+    libraryManager.unloadLibrary(library);
+    ChildGroup group = load();
+    TCReferable f = get(group.getGroupScope(), "f");
+    TCReferable g = get(group.getGroupScope(), "g");
+    TCReferable h = get(group.getGroupScope(), "h");
+    assertThat(incrementalState.getTypechecked(g), is(notNullValue()));
+    assertThat(incrementalState.getDependents(f), contains(g));
+    assertThat(incrementalState.getDependents(h), is(empty()));
+
+    assertThat(incrementalState.invalidate(f), containsInAnyOrder(f, g));
+    assertThat(incrementalState.getTypechecked(h), is(notNullValue()));
+  }
+}
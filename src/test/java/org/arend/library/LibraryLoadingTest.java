@@ -1,12 +1,21 @@
 package org.arend.library;
 
 import org.arend.ext.module.ModulePath;
+import org.arend.frontend.ConcreteReferableProvider;
+import org.arend.frontend.PositionComparator;
+import org.arend.naming.reference.converter.IdReferableConverter;
 import org.arend.source.Source;
 import org.arend.source.SourceLoader;
 import org.arend.term.group.Group;
+import org.arend.typechecking.instance.provider.InstanceProviderSet;
+import org.arend.typechecking.order.dependency.DependencyCollector;
+import org.arend.typechecking.order.listener.TypecheckingOrderingListener;
 import org.junit.Test;
 
+import java.util.Collections;
+
 import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -55,6 +64,32 @@ public class LibraryLoadingTest extends LibraryTestCase {
     assertThat(library.getModuleGroup(moduleB), is(notNullValue()));
   }
 
+  @Test
+  public void loadManyModules() {
+    for (int i = 0; i < 20; i++) {
+      library.addModule(new ModulePath("M" + i), (i == 0 ? "" : "\\import M" + (i - 1) + " ") + "\\func f" + i + " => " + (i == 0 ? "0" : "suc f" + (i - 1)));
+    }
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertThat(errorList, containsErrors(0));
+    for (int i = 0; i < 20; i++) {
+      assertThat(library.getModuleGroup(new ModulePath("M" + i)), is(notNullValue()));
+    }
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void loadManyModulesWithErrors() {
+    for (int i = 0; i < 20; i++) {
+      library.addModule(new ModulePath("M" + i), i % 5 == 0 ? "\\func f =>" : "\\func f => 0");
+    }
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertThat(errorList, is(not(empty())));
+    for (int i = 0; i < 20; i++) {
+      assertThat(library.getModuleGroup(new ModulePath("M" + i)), i % 5 == 0 ? is(nullValue()) : is(notNullValue()));
+    }
+  }
+
   @Test
   public void locateNonExistentModule() {
     Source source = library.getRawSource(new ModulePath("DoesNotExist"));
@@ -69,4 +104,69 @@ public class LibraryLoadingTest extends LibraryTestCase {
     assertThat(library.getModuleGroup(modulePath), is(nullValue()));
     assertThat(errorList, is(not(empty())));
   }
+
+  @Test
+  public void unloadWithDependents() {
+    ModulePath module = new ModulePath("A");
+    library.addModule(module, "\\func f => 0");
+    MemoryLibrary dependent = new MemoryLibrary(typecheckerState);
+    dependent.addModule(new ModulePath("B"), "\\func g => 0");
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertTrue(libraryManager.loadLibrary(dependent, null));
+    libraryManager.registerDependency(dependent, library);
+
+    libraryManager.unloadLibrariesWithDependents(Collections.singletonList(library));
+    assertFalse(libraryManager.isRegistered(library));
+    assertFalse(libraryManager.isRegistered(dependent));
+    assertFalse(dependent.isLoaded());
+    assertThat(dependent.getLoadedModules(), is(empty()));
+
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertThat(library.getModuleGroup(module), is(notNullValue()));
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void reloadWithDependents() {
+    ModulePath moduleA = new ModulePath("A");
+    ModulePath moduleB = new ModulePath("B");
+    ModulePath moduleC = new ModulePath("C");
+    library.addModule(moduleA, "\\func f => 0");
+    library.addModule(moduleB, "\\import A \\func g => f");
+    library.addModule(moduleC, "\\func h => 0");
+    DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE, ref -> null);
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertTrue(typechecking.typecheckLibrary(library));
+    library.clearUpdateModules();
+    Group groupC = library.getModuleGroup(moduleC);
+
+    library.updateModule(moduleA, "\\func f => 1", true);
+    assertThat(library.reloadModules(Collections.singletonList(moduleA), dependencyCollector, libraryManager), containsInAnyOrder(moduleA, moduleB));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(moduleA, moduleB));
+    assertThat(library.getModuleGroup(moduleC), is(sameInstance(groupC)));
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, containsErrors(0));
+  }
+
+  @Test
+  public void reloadImporters() {
+    ModulePath moduleA = new ModulePath("A");
+    ModulePath moduleB = new ModulePath("B");
+    ModulePath moduleC = new ModulePath("C");
+    library.addModule(moduleA, "\\func f => 0");
+    library.addModule(moduleB, "\\import A \\func g => 0");
+    library.addModule(moduleC, "\\func h => 0");
+    DependencyCollector dependencyCollector = new DependencyCollector(typecheckerState);
+    TypecheckingOrderingListener typechecking = new TypecheckingOrderingListener(new InstanceProviderSet(), typecheckerState, ConcreteReferableProvider.INSTANCE, IdReferableConverter.INSTANCE, errorReporter, dependencyCollector, PositionComparator.INSTANCE, ref -> null);
+    assertTrue(libraryManager.loadLibrary(library, null));
+    assertTrue(typechecking.typecheckLibrary(library));
+    library.clearUpdateModules();
+
+    library.updateModule(moduleA, "\\func f => 1", true);
+    assertThat(library.reloadModules(Collections.singletonList(moduleA), dependencyCollector, libraryManager), containsInAnyOrder(moduleA, moduleB));
+    assertThat(library.getUpdatedModules(), containsInAnyOrder(moduleA, moduleB));
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, containsErrors(0));
+  }
 }
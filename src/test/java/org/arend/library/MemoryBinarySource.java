@@ -27,9 +27,7 @@ public class MemoryBinarySource extends StreamBinarySource {
   @Nullable
   @Override
   protected OutputStream getOutputStream() {
-    if (myOutputStream == null) {
-      myOutputStream = new ByteArrayOutputStream();
-    }
+    myOutputStream = new ByteArrayOutputStream();
     return myOutputStream;
   }
 
@@ -0,0 +1,91 @@
+package org.arend.library;
+
+import org.arend.core.definition.Definition;
+import org.arend.ext.module.ModulePath;
+import org.arend.term.group.ChildGroup;
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelTypecheckingTest extends LibraryTestCase {
+  private void assertTypechecked(ModulePath module, String... names) {
+    ChildGroup group = library.getModuleGroup(module);
+    assertThat(group, is(notNullValue()));
+    for (String name : names) {
+      Definition definition = typecheckerState.getTypechecked(get(group.getGroupScope(), name));
+      assertThat(definition, is(notNullValue()));
+      assertThat(definition.status(), is(Definition.TypeCheckingStatus.NO_ERRORS));
+    }
+  }
+
+  @Test
+  public void independentModules() {
+    library.addModule(new ModulePath("B"),
+      "\\data D | con Nat\n" +
+      "\\func b (d : D) : Nat | con n => n");
+    for (int i = 0; i < 10; i++) {
+      library.addModule(new ModulePath("A" + i),
+        "\\import B\n" +
+        "\\func f (n : Nat) : Nat | zero => " + i + " | suc n => g n\n" +
+        "\\func g (n : Nat) : Nat | zero => b (con 0) | suc n => f n\n" +
+        "\\func h => f " + i + " Nat.+ g " + i);
+    }
+    assertTrue(libraryManager.loadLibrary(library, null));
+
+    typechecking.setNumberOfThreads(4);
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, containsErrors(0));
+
+    assertTypechecked(new ModulePath("B"), "D", "b");
+    for (int i = 0; i < 10; i++) {
+      assertTypechecked(new ModulePath("A" + i), "f", "g", "h");
+    }
+  }
+
+  @Test
+  public void instancesAndRecursiveUnits() {
+    library.addModule(new ModulePath("C"),
+      "\\class X (A : \\Type0) {\n" +
+      "  | B : A -> Nat\n" +
+      "}\n" +
+      "\\data D | con Nat\n" +
+      "\\func unCon (d : D) : Nat | con n => n\n" +
+      "\\instance Nat-X : X | A => Nat | B => \\lam n => suc n\n" +
+      "\\instance D-X : X | A => D | B => unCon");
+    for (int i = 0; i < 10; i++) {
+      library.addModule(new ModulePath("A" + i),
+        "\\import C\n" +
+        "\\data Tree | leaf Nat | node Forest\n" +
+        "\\data Forest | nil | cons Tree Forest\n" +
+        "\\func size (t : Tree) : Nat | leaf n => B n | node f => sizes f\n" +
+        "\\func sizes (f : Forest) : Nat | nil => B (con " + i + ") | cons t f => size t Nat.+ sizes f\n" +
+        "\\instance Tree-X : X | A => Tree | B => size\n" +
+        "\\func h => B (node (cons (leaf " + i + ") nil)) Nat.+ B " + i);
+    }
+    assertTrue(libraryManager.loadLibrary(library, null));
+
+    typechecking.setNumberOfThreads(4);
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, containsErrors(0));
+
+    assertTypechecked(new ModulePath("C"), "X", "D", "unCon", "Nat-X", "D-X");
+    for (int i = 0; i < 10; i++) {
+      assertTypechecked(new ModulePath("A" + i), "Tree", "Forest", "size", "sizes", "Tree-X", "h");
+    }
+  }
+
+  @Test
+  public void errorsInParallel() {
+    library.addModule(new ModulePath("A"), "\\func a : Nat => \\Prop");
+    library.addModule(new ModulePath("B"), "\\import A \\func b : Nat => a");
+    library.addModule(new ModulePath("C"), "\\func c : Nat => 0");
+    assertTrue(libraryManager.loadLibrary(library, null));
+
+    typechecking.setNumberOfThreads(2);
+    assertTrue(typechecking.typecheckLibrary(library));
+    assertThat(errorList, is(not(empty())));
+    assertTypechecked(new ModulePath("C"), "c");
+  }
+}
@@ -9,6 +9,7 @@ import org.arend.naming.reference.LocatedReferableImpl;
 import org.arend.naming.reference.Referable;
 import org.arend.naming.scope.EmptyScope;
 import org.arend.naming.scope.ListScope;
+import org.arend.naming.scope.Scope;
 import org.arend.naming.scope.SingletonScope;
 import org.arend.term.FunctionKind;
 import org.arend.term.concrete.Concrete;
@@ -621,6 +622,27 @@ public class NameResolverTest extends NameResolverTestCase {
     assertEquals(Arrays.asList("X", "g", "f"), names);
   }
 
+  @Test
+  public void groupScopeResolveTest() {
+    ChildGroup group = resolveNamesModule(
+      "\\import Prelude()\n" +
+      "\\module X \\where { \\func f => 0 \\func h => 1 }\n" +
+      "\\open X(f \\as f', h)\n" +
+      "\\data D | con\n" +
+      "\\func g => f'");
+    Scope scope = group.getGroupScope();
+    Referable con = scope.resolveName("con");
+    assertNotNull(con);
+    assertEquals("con", con.textRepresentation());
+    Referable f = scope.resolveName("f'");
+    assertNotNull(f);
+    assertEquals("f", f.getUnderlyingReferable().textRepresentation());
+    assertNull(scope.resolveName("f"));
+    assertSame(scope.resolveName("h"), scope.resolveName("h"));
+    assertNotNull(scope.resolveNamespace("X", false));
+    assertNull(scope.resolveNamespace("Y", false));
+  }
+
   @Test
   public void importTest() {
     resolveNamesModule("\\import Foo", 1);
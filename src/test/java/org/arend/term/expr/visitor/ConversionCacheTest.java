@@ -0,0 +1,111 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FunCallExpression;
+import org.arend.core.expr.eval.ConversionCache;
+import org.arend.core.expr.visitor.CompareVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.ext.core.ops.CMP;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.arend.typechecking.implicitargs.equations.DummyEquations;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.ExpressionFactory.Lam;
+import static org.arend.ExpressionFactory.Ref;
+import static org.arend.ExpressionFactory.singleParam;
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.*;
+
+public class ConversionCacheTest extends TypeCheckingTestCase {
+  private final ConversionCache cache = new ConversionCache();
+
+  @Before
+  public void enableCache() {
+    cache.setMaximumSize(100);
+    ConversionCache.setCurrent(cache);
+  }
+
+  @After
+  public void disableCache() {
+    ConversionCache.setCurrent(null);
+  }
+
+  private Expression call(String name, Expression arg) {
+    return new FunCallExpression((FunctionDefinition) getDefinition(name), Sort.SET0, Collections.singletonList(arg));
+  }
+
+  private boolean compare(Expression expr1, Expression expr2, Expression type) {
+    return CompareVisitor.compare(DummyEquations.getInstance(), CMP.EQ, expr1, expr2, type, null);
+  }
+
+  @Test
+  public void repeatedComparison() {
+    typeCheckModule(
+      "\\func f (n : Nat) => suc n\n" +
+      "\\func g (n : Nat) => f n");
+    assertTrue(compare(call("f", Zero()), call("g", Zero()), null));
+    assertTrue(compare(call("f", Zero()), call("g", Zero()), Nat()));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void failedComparison() {
+    typeCheckModule(
+      "\\func f (n : Nat) => suc n\n" +
+      "\\func g (n : Nat) => f n");
+    assertFalse(compare(call("f", Zero()), call("g", Suc(Zero())), null));
+    assertFalse(compare(call("f", Zero()), call("g", Suc(Zero())), null));
+    assertEquals(1, cache.getHits());
+    assertFalse(compare(call("f", Zero()), call("g", Suc(Zero())), Nat()));
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void invalidation() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat => n\n" +
+      "\\func g (n : Nat) : Nat => 0");
+    assertFalse(compare(call("f", Suc(Zero())), call("g", Suc(Zero())), null));
+    FunctionDefinition f = (FunctionDefinition) getDefinition("f");
+    f.setBody(((FunctionDefinition) getDefinition("g")).getBody());
+    assertTrue(compare(call("f", Suc(Zero())), call("g", Suc(Zero())), null));
+    assertEquals(0, cache.getHits());
+    assertTrue(compare(call("f", Suc(Zero())), call("g", Suc(Zero())), null));
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void unrelatedChange() {
+    typeCheckModule(
+      "\\func f (n : Nat) => suc n\n" +
+      "\\func g (n : Nat) => f n\n" +
+      "\\func h (n : Nat) : Nat => n\n" +
+      "\\func k (n : Nat) : Nat => 0");
+    assertTrue(compare(call("f", Zero()), call("g", Zero()), null));
+    ((FunctionDefinition) getDefinition("h")).setBody(((FunctionDefinition) getDefinition("k")).getBody());
+    assertTrue(compare(call("f", Zero()), call("g", Zero()), null));
+    assertEquals(1, cache.getHits());
+  }
+
+  private Expression identity(String name) {
+    SingleDependentLink param = singleParam(name, Nat());
+    return Lam(param, Ref(param));
+  }
+
+  @Test
+  public void renamedBindings() {
+    typeCheckModule(
+      "\\func f (x : Nat -> Nat) => x 0\n" +
+      "\\func g (x : Nat -> Nat) => f x");
+    assertTrue(compare(call("f", identity("n")), call("g", identity("n")), null));
+    assertTrue(compare(call("f", identity("m")), call("g", identity("k")), null));
+    assertEquals(1, cache.getHits());
+  }
+}
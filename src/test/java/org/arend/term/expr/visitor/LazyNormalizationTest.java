@@ -0,0 +1,88 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FunCallExpression;
+import org.arend.core.expr.eval.LazyNormalizer;
+import org.arend.core.expr.eval.NormalizationEngine;
+import org.arend.core.expr.eval.NormalizationSettings;
+import org.arend.core.expr.visitor.NormalizeVisitor;
+import org.arend.core.sort.Sort;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Runs all normalization tests with the environment-based normalizer.
+ */
+public class LazyNormalizationTest extends NormalizationTest {
+  @Before
+  public void useLazyNormalizer() {
+    NormalizationSettings settings = new NormalizationSettings();
+    settings.setEngine(NormalizationMode.WHNF, NormalizationEngine.ENVIRONMENT);
+    settings.setEngine(NormalizationMode.NF, NormalizationEngine.ENVIRONMENT);
+    NormalizationSettings.setCurrent(settings);
+  }
+
+  @After
+  public void restoreNormalizer() {
+    NormalizationSettings.setCurrent(null);
+  }
+
+  private void assertSameNormalForm(Expression expr) {
+    assertEquals(expr.accept(NormalizeVisitor.INSTANCE, NormalizationMode.NF), LazyNormalizer.INSTANCE.normalize(expr, NormalizationMode.NF));
+  }
+
+  @Test
+  public void sharedArgument() {
+    typeCheckModule(
+      "\\func double (n : Nat) : Nat => n Nat.+ n\n" +
+      "\\func f (n : Nat) : Nat \\elim n\n" +
+      "  | 0 => 1\n" +
+      "  | suc n => double (f n)");
+    FunctionDefinition f = (FunctionDefinition) getDefinition("f");
+    assertSameNormalForm(new FunCallExpression(f, Sort.SET0, Collections.singletonList(Suc(Suc(Suc(Zero()))))));
+  }
+
+  @Test
+  public void letAndCase() {
+    typeCheckModule(
+      "\\func g (n : Nat) : Nat => \\let m => suc n \\in \\case m \\with { | 0 => 0 | suc k => \\let p => (k, m) \\in p.1 }");
+    FunctionDefinition g = (FunctionDefinition) getDefinition("g");
+    Expression expr = new FunCallExpression(g, Sort.SET0, Collections.singletonList(Suc(Zero())));
+    assertSameNormalForm(expr);
+    assertEquals(Suc(Zero()), LazyNormalizer.INSTANCE.normalize(expr, NormalizationMode.WHNF));
+  }
+
+  @Test
+  public void partialApplication() {
+    typeCheckModule(
+      "\\func h (n : Nat) : Nat -> Nat -> Nat => \\lam a b => a Nat.+ n\n" +
+      "\\func k : Nat -> Nat => h 2 3");
+    assertSameNormalForm(new FunCallExpression((FunctionDefinition) getDefinition("k"), Sort.SET0, Collections.emptyList()));
+  }
+
+  @Test
+  public void settingsOfOtherThreads() throws InterruptedException {
+    NormalizationEngine[] engine = new NormalizationEngine[1];
+    Thread thread = new Thread(() -> {
+      NormalizationSettings settings = NormalizationSettings.getCurrent();
+      engine[0] = settings == null ? NormalizationEngine.SUBSTITUTION : settings.getEngine(NormalizationMode.WHNF);
+    });
+    thread.start();
+    thread.join();
+    assertEquals(NormalizationEngine.SUBSTITUTION, engine[0]);
+    assertEquals(NormalizationEngine.ENVIRONMENT, NormalizationSettings.getCurrent().getEngine(NormalizationMode.WHNF));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void unsupportedMode() {
+    new NormalizationSettings().setEngine(NormalizationMode.RNF, NormalizationEngine.ENVIRONMENT);
+  }
+}
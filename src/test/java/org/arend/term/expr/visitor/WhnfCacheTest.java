@@ -0,0 +1,111 @@
+package org.arend.term.expr.visitor;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.arend.core.expr.Expression;
+import org.arend.core.expr.FunCallExpression;
+import org.arend.core.expr.eval.WhnfCache;
+import org.arend.core.sort.Sort;
+import org.arend.ext.core.ops.NormalizationMode;
+import org.arend.typechecking.TypeCheckingTestCase;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.arend.core.expr.ExpressionFactory.*;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class WhnfCacheTest extends TypeCheckingTestCase {
+  private final WhnfCache cache = new WhnfCache();
+
+  @Before
+  public void enableCache() {
+    cache.setMaximumSize(100);
+    WhnfCache.setCurrent(cache);
+  }
+
+  @After
+  public void disableCache() {
+    WhnfCache.setCurrent(null);
+  }
+
+  private Expression call(String name) {
+    return new FunCallExpression((FunctionDefinition) getDefinition(name), Sort.SET0, Collections.singletonList(Suc(Zero())));
+  }
+
+  @Test
+  public void repeatedNormalization() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat \\elim n\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => suc (f n)");
+    Expression expr = call("f");
+    Expression result = expr.normalize(NormalizationMode.WHNF);
+    assertSame(result, expr.normalize(NormalizationMode.WHNF));
+    assertEquals(1, cache.getHits());
+    assertEquals(1, cache.getMisses());
+  }
+
+  @Test
+  public void invalidation() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat => n\n" +
+      "\\func g (n : Nat) : Nat => 0");
+    FunctionDefinition f = (FunctionDefinition) getDefinition("f");
+    Expression expr = call("f");
+    assertEquals(Suc(Zero()), expr.normalize(NormalizationMode.WHNF));
+    f.setBody(((FunctionDefinition) getDefinition("g")).getBody());
+    assertEquals(Zero(), expr.normalize(NormalizationMode.WHNF));
+    assertEquals(0, cache.getHits());
+  }
+
+  @Test
+  public void unrelatedChange() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat => n\n" +
+      "\\func g (n : Nat) : Nat => 0");
+    Expression expr = call("f");
+    Expression result = expr.normalize(NormalizationMode.WHNF);
+    FunctionDefinition g = (FunctionDefinition) getDefinition("g");
+    g.setBody(((FunctionDefinition) getDefinition("f")).getBody());
+    assertSame(result, expr.normalize(NormalizationMode.WHNF));
+    assertEquals(1, cache.getHits());
+  }
+
+  @Test
+  public void indirectDependency() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat => g n\n" +
+      "\\func g (n : Nat) : Nat => n\n" +
+      "\\func h (n : Nat) : Nat => 0");
+    Expression expr = call("f");
+    assertEquals(Suc(Zero()), expr.normalize(NormalizationMode.WHNF));
+    ((FunctionDefinition) getDefinition("g")).setBody(((FunctionDefinition) getDefinition("h")).getBody());
+    assertEquals(Zero(), expr.normalize(NormalizationMode.WHNF));
+    assertEquals(0, cache.getHits());
+  }
+
+  @Test
+  public void leastRecentlyUsedEviction() {
+    typeCheckModule(
+      "\\func f (n : Nat) : Nat => n\n" +
+      "\\func g (n : Nat) : Nat => n\n" +
+      "\\func h (n : Nat) : Nat => n");
+    cache.setMaximumSize(2);
+    Expression exprF = call("f");
+    Expression exprG = call("g");
+    Expression exprH = call("h");
+    exprF.normalize(NormalizationMode.WHNF);
+    exprG.normalize(NormalizationMode.WHNF);
+    exprF.normalize(NormalizationMode.WHNF);
+    exprH.normalize(NormalizationMode.WHNF);
+    assertEquals(1, cache.getHits());
+    exprF.normalize(NormalizationMode.WHNF);
+    assertEquals(2, cache.getHits());
+    exprG.normalize(NormalizationMode.WHNF);
+    assertEquals(2, cache.getHits());
+    assertEquals(4, cache.getMisses());
+  }
+}
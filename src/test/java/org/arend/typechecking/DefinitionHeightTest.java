@@ -0,0 +1,46 @@
+package org.arend.typechecking;
+
+import org.arend.core.definition.FunctionDefinition;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class DefinitionHeightTest extends TypeCheckingTestCase {
+  private int getHeight(String name) {
+    return ((FunctionDefinition) getDefinition(name)).getHeight();
+  }
+
+  @Test
+  public void heights() {
+    typeCheckModule(
+      "\\func f (n : Nat) => n Nat.+ 1\n" +
+      "\\func g (n : Nat) => f (f n)\n" +
+      "\\func h (n : Nat) => \\case n \\with { | 0 => g 0 | suc n => f n }\n" +
+      "\\func k (n : Nat) : Nat\n" +
+      "  | 0 => 0\n" +
+      "  | suc n => k n");
+    assertEquals(1, getHeight("f"));
+    assertEquals(2, getHeight("g"));
+    assertEquals(3, getHeight("h"));
+    assertEquals(1, getHeight("k"));
+  }
+
+  @Test
+  public void unfoldHigherSide() {
+    typeCheckModule(
+      "\\func f (n : Nat) => suc n\n" +
+      "\\func g (n : Nat) => f (suc n)\n" +
+      "\\func h (n : Nat) => g n\n" +
+      "\\func test1 (n : Nat) : h n = f (suc n) => idp\n" +
+      "\\func test2 (n : Nat) : f (suc n) = h n => idp\n" +
+      "\\func test3 (n : Nat) : h n = suc (suc n) => idp");
+  }
+
+  @Test
+  public void unfoldMismatch() {
+    typeCheckModule(
+      "\\func f (n : Nat) => suc n\n" +
+      "\\func g (n : Nat) => f n\n" +
+      "\\func test (n : Nat) : g n = f (suc n) => idp", 1);
+  }
+}
@@ -3,6 +3,7 @@ package org.arend.typechecking;
 import org.arend.core.definition.FunctionDefinition;
 import org.arend.core.expr.BigIntegerExpression;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.OffsetExpression;
 import org.arend.core.expr.SmallIntegerExpression;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.junit.Test;
@@ -12,6 +13,7 @@ import java.math.BigInteger;
 import static org.arend.core.expr.ExpressionFactory.Neg;
 import static org.arend.core.expr.ExpressionFactory.Pos;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class EvaluationTest extends TypeCheckingTestCase {
   @Test
@@ -63,4 +65,46 @@ public class EvaluationTest extends TypeCheckingTestCase {
     assertEquals(Neg(new SmallIntegerExpression(22)), ((Expression) ((FunctionDefinition) getDefinition("f6")).getBody()).normalize(NormalizationMode.WHNF));
     assertEquals(Pos(new SmallIntegerExpression(0)),  ((Expression) ((FunctionDefinition) getDefinition("f7")).getBody()).normalize(NormalizationMode.WHNF));
   }
+
+  @Test
+  public void offsetPlus() {
+    typeCheckModule(
+      "\\func f (n : Nat) => n Nat.+ 100000");
+    Expression result = ((Expression) ((FunctionDefinition) getDefinition("f")).getBody()).normalize(NormalizationMode.WHNF);
+    assertTrue(result instanceof OffsetExpression);
+    assertEquals(new SmallIntegerExpression(100000), ((OffsetExpression) result).getOffset());
+  }
+
+  @Test
+  public void offsetComparison() {
+    typeCheckModule(
+      "\\func f (n : Nat) : n Nat.+ 100000 = suc (n Nat.+ 99999) => idp\n" +
+      "\\func g (n : Nat) : (n Nat.+ 100000) Nat.+ 5 = n Nat.+ 100005 => idp\n" +
+      "\\func h (n : Nat) : n Nat.+ 100000 = 100000 => idp", 1);
+  }
+
+  @Test
+  public void offsetComparisonSymmetric() {
+    typeCheckModule(
+      "\\func f (n : Nat) : suc (n Nat.+ 100000) = n Nat.+ 100001 => idp\n" +
+      "\\func g (n : Nat) : n Nat.+ 100001 = suc (n Nat.+ 100000) => idp\n" +
+      "\\func h (n : Nat) : suc (suc n) = n Nat.+ 100000 => idp", 1);
+  }
+
+  @Test
+  public void offsetMinus() {
+    typeCheckModule(
+      "\\func f1 (n : Nat) : (n Nat.+ 100000) Nat.- 99998 = pos (n Nat.+ 2) => idp\n" +
+      "\\func f2 (n : Nat) : 99998 Nat.- (n Nat.+ 100000) = neg (n Nat.+ 2) => idp\n" +
+      "\\func f3 (n m : Nat) : (n Nat.+ 100000) Nat.- (m Nat.+ 99999) = suc n Nat.- m => idp");
+  }
+
+  @Test
+  public void offsetPatternMatching() {
+    typeCheckModule(
+      "\\func p (n : Nat) : Nat\n" +
+      "  | suc (suc m) => m\n" +
+      "  | _ => 0\n" +
+      "\\func f (n : Nat) : p (n Nat.+ 100000) = n Nat.+ 99998 => idp");
+  }
 }
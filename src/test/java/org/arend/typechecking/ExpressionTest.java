@@ -3,7 +3,9 @@ package org.arend.typechecking;
 import org.arend.core.context.binding.Binding;
 import org.arend.core.context.binding.TypedBinding;
 import org.arend.core.context.param.SingleDependentLink;
+import org.arend.core.expr.AppExpression;
 import org.arend.core.expr.Expression;
+import org.arend.core.expr.visitor.SummaryVisitor;
 import org.arend.ext.core.ops.NormalizationMode;
 import org.arend.ext.error.TypeMismatchError;
 import org.arend.naming.reference.LocalReferable;
@@ -211,4 +213,21 @@ public class ExpressionTest extends TypeCheckingTestCase {
   public void caseNoExpectedError() {
     typeCheckDef("\\func test => \\case 1 \\with { zero => 0 | suc y => y }", 1);
   }
+
+  @Test
+  public void substPreservesUnaffected() {
+    Binding x = new TypedBinding("x", Nat());
+    Binding f, y;
+    // bindings in the unaffected subexpression must not collide with x in the bloom filter
+    do {
+      f = new TypedBinding("f", Pi(Nat(), Pi(Nat(), Nat())));
+      y = new TypedBinding("y", Nat());
+    } while (((SummaryVisitor.getFilter(f) | SummaryVisitor.getFilter(y)) & SummaryVisitor.getFilter(x)) != 0);
+    Binding z = new TypedBinding("z", Nat());
+    Expression unaffected = Apps(Ref(f), Suc(Ref(y)));
+    Expression expr = Apps(unaffected, Suc(Ref(x)));
+    Expression result = expr.subst(x, Ref(z));
+    assertSame(unaffected, result.cast(AppExpression.class).getFunction());
+    assertEquals(Apps(Ref(f), Suc(Ref(y)), Suc(Ref(z))), result);
+  }
 }
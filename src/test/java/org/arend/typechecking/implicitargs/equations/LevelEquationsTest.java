@@ -0,0 +1,72 @@
+package org.arend.typechecking.implicitargs.equations;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class LevelEquationsTest {
+  private static LevelEquations<String> equations(String... variables) {
+    LevelEquations<String> result = new LevelEquations<>();
+    for (String variable : variables) {
+      result.addVariable(variable);
+    }
+    return result;
+  }
+
+  @Test
+  public void chainTest() {
+    LevelEquations<String> equations = equations("x", "y", "z");
+    equations.addEquation(new LevelEquation<>("y", "z", -2));
+    equations.addEquation(new LevelEquation<>("x", "y", -1));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(0), solution.get("x"));
+    assertEquals(Integer.valueOf(-1), solution.get("y"));
+    assertEquals(Integer.valueOf(-3), solution.get("z"));
+  }
+
+  @Test
+  public void maxConstantTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    equations.addEquation(new LevelEquation<>("x", "y", -1, 0));
+    equations.addEquation(new LevelEquation<>(null, "x", -1));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(-1), solution.get("x"));
+    assertEquals(Integer.valueOf(-2), solution.get("y"));
+  }
+
+  @Test
+  public void infinityTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    equations.addEquation(new LevelEquation<>("x", "y", -1));
+    equations.addEquation(new LevelEquation<>("x"));
+    Map<String, Integer> solution = new HashMap<>();
+    assertNull(equations.solve(solution));
+    assertEquals(Integer.valueOf(LevelEquations.INFINITY), solution.get("x"));
+    assertEquals(Integer.valueOf(LevelEquations.INFINITY), solution.get("y"));
+  }
+
+  @Test
+  public void cycleTest() {
+    LevelEquations<String> equations = equations("x", "y");
+    LevelEquation<String> equation1 = new LevelEquation<>("x", "y", -1);
+    LevelEquation<String> equation2 = new LevelEquation<>("y", "x", 0);
+    equations.addEquation(equation1);
+    equations.addEquation(equation2);
+    assertEquals(Arrays.asList(equation1, equation2, equation1, equation2, equation1), equations.solve(new HashMap<>()));
+  }
+
+  @Test
+  public void negativeConstantTest() {
+    LevelEquations<String> equations = equations("x");
+    LevelEquation<String> equation = new LevelEquation<>("x", null, -1);
+    equations.addEquation(equation);
+    assertEquals(Collections.singletonList(equation), equations.solve(new HashMap<>()));
+  }
+}
@@ -270,4 +270,34 @@ public class TerminationCheckTest extends TypeCheckingTestCase {
     assert !callCategory.checkTermination();
   }
 
+  @Test
+  public void manyArguments() {
+    String[] arguments = new String[40];
+    Object[] data = new Object[80];
+    for (int i = 0; i < arguments.length; i++) {
+      arguments[i] = "x" + i;
+      data[2 * i] = i == arguments.length - 1 ? '<' : '=';
+      data[2 * i + 1] = i;
+    }
+    TestVertex f = new TestVertex("f", arguments);
+    Set<BaseCallMatrix<TestVertex>> cms = new HashSet<>();
+    cms.add(new TestCallMatrix("1", f, f, data));
+    var callCategory = TestCallGraph.calculateClosure(cms);
+    assert callCategory.checkTermination();
+  }
+
+  @Test
+  public void longCycle() {
+    TestVertex[] vertices = new TestVertex[30];
+    for (int i = 0; i < vertices.length; i++) {
+      vertices[i] = new TestVertex("f" + i, "x", "y");
+    }
+    Set<BaseCallMatrix<TestVertex>> cms = new HashSet<>();
+    for (int i = 0; i < vertices.length; i++) {
+      cms.add(new TestCallMatrix("1", vertices[i], vertices[(i + 1) % vertices.length], '<', 0, '=', 1));
+      cms.add(new TestCallMatrix("2", vertices[i], vertices[(i + 7) % vertices.length], '=', 0, '<', 1));
+    }
+    var callCategory = TestCallGraph.calculateClosure(cms);
+    assert callCategory.checkTermination();
+  }
 }
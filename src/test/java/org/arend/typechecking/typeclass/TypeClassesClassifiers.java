@@ -9,6 +9,7 @@ import org.junit.Test;
 import java.util.Collections;
 
 import static org.arend.ExpressionFactory.ConCall;
+import static org.junit.Assert.assertTrue;
 
 public class TypeClassesClassifiers extends TypeCheckingTestCase {
   @Test
@@ -71,4 +72,44 @@ public class TypeClassesClassifiers extends TypeCheckingTestCase {
       "\\instance s : C (\\Sigma) | a => ()\n" +
       "\\func f : \\Sigma => a");
   }
+
+  @Test
+  public void manyHeadsTest() {
+    typeCheckModule(
+      "\\class C (A : \\Type) | m : A -> Nat\n" +
+      "\\data D1 | d1\n" +
+      "\\data D2 | d2\n" +
+      "\\instance i1 : C D1 | m _ => 1\n" +
+      "\\instance i2 : C D2 | m _ => 2\n" +
+      "\\instance i3 : C Nat | m _ => 3\n" +
+      "\\instance i4 : C D2 | m _ => 4\n" +
+      "\\instance i5 : C (\\Sigma Nat Nat) | m _ => 5\n" +
+      "\\func f1 : m d1 = 1 => idp\n" +
+      "\\func f2 : m d2 = 2 => idp\n" +
+      "\\func f3 : m 7 = 3 => idp\n" +
+      "\\func f5 : m (1,2) = 5 => idp");
+  }
+
+  @Test
+  public void cachedLookupTest() {
+    typeCheckModule(
+      "\\class C (A : \\Type) | m : A -> Nat\n" +
+      "\\data D | d\n" +
+      "\\instance i : C D | m _ => 1\n" +
+      "\\func f1 : m d = 1 => idp\n" +
+      "\\func f2 : m d = 1 => idp\n" +
+      "\\func f3 : m 0 = 1 => idp", 1);
+    assertTrue(libraryManager.getInstanceProviderSet().getCacheHits() > 0);
+  }
+
+  @Test
+  public void integerLookupTest() {
+    typeCheckModule(
+      "\\class C (x : Nat) | m : x = x -> Nat\n" +
+      "\\instance i1 : C 1 | m _ => 1\n" +
+      "\\instance i2 : C 2 | m _ => 2\n" +
+      "\\func f1 : m (idp {Nat} {2}) = 2 => idp\n" +
+      "\\func f2 : m (idp {Nat} {1}) = 1 => idp\n" +
+      "\\func f3 (n : Nat) (p : suc n = suc n) : m p = 1 => idp");
+  }
 }
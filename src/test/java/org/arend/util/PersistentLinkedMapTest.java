@@ -0,0 +1,101 @@
+package org.arend.util;
+
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+public class PersistentLinkedMapTest {
+  private static class Key {
+    private final int myId;
+
+    private Key(int id) {
+      myId = id;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      return o instanceof Key && ((Key) o).myId == myId;
+    }
+
+    @Override
+    public int hashCode() {
+      return myId % 3;
+    }
+  }
+
+  @Test
+  public void orderTest() {
+    Map<String, Integer> map = new PersistentLinkedMap<>();
+    map.put("c", 0);
+    map.put("a", 1);
+    map.put("b", 2);
+    map.put("a", 3);
+    map.remove("c");
+    map.put("c", 4);
+    assertEquals(Arrays.asList("a", "b", "c"), new ArrayList<>(map.keySet()));
+    assertEquals(Arrays.asList(3, 2, 4), new ArrayList<>(map.values()));
+  }
+
+  @Test
+  public void copyTest() {
+    PersistentLinkedMap<Integer, Integer> map = new PersistentLinkedMap<>();
+    for (int i = 0; i < 1000; i++) {
+      map.put(i, i);
+    }
+    PersistentLinkedMap<Integer, Integer> copy = new PersistentLinkedMap<>(map);
+    for (int i = 0; i < 1000; i += 2) {
+      map.remove(i);
+    }
+    map.put(1, -1);
+    assertEquals(500, map.size());
+    assertEquals(Integer.valueOf(-1), map.get(1));
+    assertNull(map.get(0));
+    assertEquals(1000, copy.size());
+    assertEquals(Integer.valueOf(1), copy.get(1));
+    assertEquals(Integer.valueOf(0), copy.get(0));
+  }
+
+  @Test
+  public void retainKeysTest() {
+    PersistentLinkedMap<String, Integer> map = new PersistentLinkedMap<>();
+    map.put("a", 0);
+    map.put("b", 1);
+    PersistentLinkedMap<String, Integer> snapshot = new PersistentLinkedMap<>(map);
+    map.put("c", 2);
+    map.remove("a");
+    map.put("a", 3);
+    map.put("d", 4);
+    map.retainKeys(snapshot);
+    assertEquals(Arrays.asList("b", "a"), new ArrayList<>(map.keySet()));
+    assertEquals(Integer.valueOf(3), map.get("a"));
+  }
+
+  @Test
+  public void restoreTest() {
+    PersistentLinkedSet<String> set = new PersistentLinkedSet<>(Arrays.asList("a", "b"));
+    PersistentLinkedSet<String> snapshot = new PersistentLinkedSet<>(set);
+    set.remove("a");
+    set.add("c");
+    set.restore(snapshot);
+    assertEquals(Arrays.asList("a", "b"), new ArrayList<>(set));
+  }
+
+  @Test
+  public void collisionTest() {
+    Map<Key, Integer> map = new PersistentLinkedMap<>();
+    Map<Key, Integer> expected = new LinkedHashMap<>();
+    for (int i = 0; i < 100; i++) {
+      map.put(new Key(i), i);
+      expected.put(new Key(i), i);
+    }
+    for (int i = 0; i < 100; i += 3) {
+      map.remove(new Key(i));
+      expected.remove(new Key(i));
+    }
+    assertEquals(new ArrayList<>(expected.entrySet()), new ArrayList<>(map.entrySet()));
+    assertTrue(map.containsKey(new Key(1)));
+    assertFalse(map.containsKey(new Key(0)));
+  }
+}